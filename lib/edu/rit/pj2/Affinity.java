@@ -0,0 +1,138 @@
+//******************************************************************************
+//
+// File:    Affinity.java
+// Package: edu.rit.pj2
+// Unit:    Enum edu.rit.pj2.Affinity
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+
+package edu.rit.pj2;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+
+/**
+ * Enum Affinity specifies how the threads executing a parallel statement are
+ * placed on the cores of a multicore node. Placement matters most on a node
+ * with more than one CPU chip (socket), where each chip has its own memory:
+ * a thread accesses memory attached to its own chip faster than memory
+ * attached to another chip.
+ * <P>
+ * With a {@link #compact compact} or {@link #scatter scatter} affinity, each
+ * thread rank is pinned to one particular core, and the same rank is pinned to
+ * the same core in every parallel statement. Combined with a {@link
+ * Schedule#fixed fixed} schedule, which gives the same rank the same chunk of
+ * loop indexes in every parallel for loop with the same bounds, a thread keeps
+ * working on the same part of an array on the same chip from one parallel for
+ * loop to the next. If the array was initialized in such a parallel for loop,
+ * the operating system's first-touch policy places each part of the array in
+ * the memory of the chip that uses it.
+ * <P>
+ * Threads are pinned only to CPUs in the process's CPU affinity mask, and only
+ * to as many CPUs as the task's <TT>cores</TT> property. Tasks running on the
+ * same node at the same time pin their threads to different CPUs, as far as
+ * the node has enough free CPUs.
+ * <P>
+ * Pinning threads requires the PJ2 native affinity library, which is
+ * available only on Linux. If the library cannot be loaded, every affinity
+ * behaves the same as {@link #none none}.
+ *
+ * @see  Task#affinity(Affinity)
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public enum Affinity
+	{
+
+// Exported enumerals.
+
+	/**
+	 * No affinity. Threads are not pinned; the operating system places them.
+	 * This is the default affinity.
+	 */
+	none,
+
+	/**
+	 * Compact affinity. Consecutive thread ranks are pinned to cores on the
+	 * same chip, one thread per physical core, filling up one chip before going
+	 * on to the next chip. Hardware threads sharing a physical core are used
+	 * only once every physical core on the chip has a thread. A compact
+	 * affinity is appropriate when the threads share data, or when there are
+	 * fewer threads than cores on one chip.
+	 */
+	compact,
+
+	/**
+	 * Scatter affinity. Consecutive thread ranks are pinned to cores on
+	 * different chips in round robin fashion. A scatter affinity is
+	 * appropriate when the threads are limited by memory bandwidth, so as to
+	 * use the memory of every chip.
+	 */
+	scatter;
+
+// Hidden data members.
+
+	private static Affinity[] enumerals = values();
+
+// Exported operations.
+
+	/**
+	 * Write an Affinity enumeral to the given out stream.
+	 *
+	 * @param  affinity  Affinity enumeral, or null.
+	 * @param  out       Object output stream.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public static void writeOut
+		(Affinity affinity,
+		 OutStream out)
+		throws IOException
+		{
+		out.writeInt (affinity == null ? -1 : affinity.ordinal());
+		}
+
+	/**
+	 * Read an Affinity enumeral from the given in stream.
+	 *
+	 * @param  in  Object input stream.
+	 *
+	 * @return  Affinity enumeral.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public static Affinity readIn
+		(InStream in)
+		throws IOException
+		{
+		int ordinal = in.readInt();
+		if (-1 > ordinal || ordinal >= enumerals.length)
+			throw new InvalidObjectException (String.format
+				("Affinity.read(): ordinal = %d invalid", ordinal));
+		return ordinal == -1 ? null : enumerals[ordinal];
+		}
+
+	}
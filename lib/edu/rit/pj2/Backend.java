@@ -40,9 +40,15 @@ import edu.rit.util.AList;
 import edu.rit.util.Heartbeat;
 import edu.rit.util.Instance;
 import edu.rit.util.Logger;
+import edu.rit.util.Map;
 import edu.rit.util.PrintStreamLogger;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
@@ -53,8 +59,32 @@ import java.util.concurrent.Semaphore;
  * messages on the {@linkplain edu.rit.pj2.tracker.Launcher Launcher}'s standard
  * output.
  * <P>
+ * The job sends the task only the hash of the job's JAR file, if any. The
+ * Backend gets the JAR file from the {@linkplain JarCache JarCache} and asks
+ * the job for the JAR file's contents only if the JAR file is not in the
+ * cache.
+ * <P>
+ * If the job's tuple space is sharded, the task's requests for tuples held by
+ * {@linkplain edu.rit.pj2.tracker.TupleServer TupleServer}s go directly to
+ * those tuple servers; see class {@linkplain TupleServerMap TupleServerMap}.
+ * <P>
  * Usage: <TT>java edu.rit.pj2.Backend <I>name</I> <I>jobID</I>
  * <I>taskID</I> <I>jobHost</I> <I>jobPort</I></TT>
+ * <BR>Usage: <TT>java edu.rit.pj2.Backend <I>name</I>
+ * <I>launcherPort</I></TT>
+ * <P>
+ * The first form runs the given task of the given job, then exits. The second
+ * form starts a <I>pooled</I> Backend for a {@linkplain
+ * edu.rit.pj2.tracker.Launcher Launcher} with a pool of Backend processes. The
+ * pooled Backend connects to the Launcher at the given port on the local host
+ * and waits for the Launcher to give it a task to run. If the task finishes
+ * successfully and leaves no non-daemon threads running, the pooled Backend
+ * goes back to the Launcher and waits for another task, from the same job or
+ * from a different job; otherwise, the pooled Backend exits. Each task runs
+ * with its own JAR class loader, if the job has a JAR file, which is discarded
+ * when the task finishes, along with the task's idle parallel team threads;
+ * classes on the Backend's class path are shared by all the tasks the Backend
+ * runs.
  * <P>
  * <I>Note:</I> The Backend constructs an instance of the task's class using the
  * class's no-argument constructor, with access checks suppressed. This means
@@ -66,7 +96,7 @@ import java.util.concurrent.Semaphore;
  * information.
  *
  * @author  Alan Kaminsky
- * @version 19-Sep-2014
+ * @version 18-Mar-2015
  */
 public class Backend
 	implements BackendRef
@@ -89,14 +119,25 @@ public class Backend
 	private static ScheduledExecutorService executor;
 	private static Heartbeat heartbeat;
 
-	private static Semaphore finishSema = new Semaphore (0);
+	private static Semaphore finishSema;
 	private static Throwable excThrown;
 
-	private static TupleRequestMap tupleRequestMap = new TupleRequestMap();
+	private static TupleRequestMap tupleRequestMap;
+	private static TupleServerMap tupleServerMap;
 
+	private static PrintStream stdout = System.out;
+	private static PrintStream stderr = System.err;
 	private static ThreadedOutputStream thrOut;
 	private static ThreadedOutputStream thrErr;
 
+	// Thread running the task, and whether the task finished successfully in
+	// a way that lets this process run another task.
+	private static BackendThread backendThread;
+	private static volatile boolean reusable;
+
+	// JAR file contents requested from the job.
+	private static volatile CompletableFuture<byte[]> jarContents;
+
 // Hidden constructors.
 
 	private Backend()
@@ -114,6 +155,11 @@ public class Backend
 		(String[] args)
 		{
 		// Parse command line arguments.
+		if (args.length == 2)
+			{
+			runPooled (args);
+			return;
+			}
 		if (args.length != 5) usage();
 		name = args[0];
 		try
@@ -150,101 +196,10 @@ public class Backend
 
 		// Log messages on standard output.
 		logger = new PrintStreamLogger (System.out);
-		logger.prefix (String.format ("Job %d task %d backend", jobID, taskID));
-
-		// Create Backend.
-		backend = new Backend();
-
-		// Open a connection to the Job.
-		job = new JobSender();
-		try
-			{
-			jobProxy = new Proxy
-				(jobHost,
-				 jobPort,
-				 job,
-				 new BackendReceiver
-					(new ReceiverListener()
-						{
-						public void receiverFailed
-							(Receiver receiver,
-							 Throwable exc)
-							{
-							try { job.taskFailed (taskID, exc); }
-								catch (IOException exc2) {}
-							stopBackend (exc);
-							}
-						},
-					 backend));
-			}
-		catch (IOException exc)
-			{
-			logger.log (String.format ("Cannot connect to job at %s:%d",
-				jobHost, jobPort));
-			System.exit (0);
-			}
-
-		// Backend has started successfully.
-		try
-			{
-			// Add a shutdown hook that will run when the Backend exits.
-			Runtime.getRuntime().addShutdownHook (new Thread()
-				{
-				public void run()
-					{
-					flushConsoleStreams();
-					if (heartbeat != null)
-						heartbeat.cancel();
-					if (executor != null)
-						executor.shutdownNow();
-					if (jobProxy != null)
-						jobProxy.terminate();
-					}
-				});
-
-			// Start heartbeats with the Job.
-			executor = Executors.newSingleThreadScheduledExecutor();
-			heartbeat = new Heartbeat()
-				{
-				protected void sendHeartbeat() throws IOException
-					{
-					job.heartbeatFromTask (taskID);
-					}
-				protected void died()
-					{
-					logger.log ("Job heartbeat died");
-					stopBackend (null);
-					}
-				};
-			heartbeat.enable (executor);
-
-			// Set up multiple thread safe console streams.
-			thrOut = new ThreadedOutputStream (new JobOutputStream (job, 0));
-			thrErr = new ThreadedOutputStream (new JobOutputStream (job, 1));
-			System.setOut (new PrintStream (thrOut, false));
-			System.setErr (new PrintStream (thrErr, false));
-
-			// Tell the Job that the Backend started.
-			job.taskLaunched (backend, taskID, name);
-
-			// All further work is done in response to incoming messages.
-			}
+		addShutdownHook();
 
-		// Capture any exception thrown above.
-		catch (Throwable exc)
-			{
-			stopBackend (exc);
-			}
-
-		// Wait until the backend is finished.
-		finishSema.acquireUninterruptibly();
-		if (excThrown != null)
-			logger.log ("Unexpected exception", excThrown);
-		if (jobProxy != null)
-			{
-			jobProxy.shutdown();
-			jobProxy = null;
-			}
+		// Run the task.
+		runTask();
 		System.exit (0);
 		}
 
@@ -258,7 +213,8 @@ public class Backend
 	public void startTask
 		(TaskInfo info)
 		{
-		new BackendThread (info) .start();
+		backendThread = new BackendThread (info);
+		backendThread.start();
 		}
 
 	/**
@@ -276,6 +232,33 @@ public class Backend
 		tupleRequestMap.tupleTaken (taskID, requestID, tuple);
 		}
 
+	/**
+	 * Tell this backend that the given tuples were taken out of tuple space by
+	 * a batch take request.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  tuples     List of zero or more tuples.
+	 */
+	public void tuplesTaken
+		(long taskID,
+		 long requestID,
+		 AList<Tuple> tuples)
+		{
+		tupleRequestMap.tuplesTaken (taskID, requestID, tuples);
+		}
+
+	/**
+	 * Give this backend the contents of the job's JAR file.
+	 *
+	 * @param  jar  Byte array with the contents of the JAR file.
+	 */
+	public void jarContents
+		(byte[] jar)
+		{
+		jarContents.complete (jar);
+		}
+
 	/**
 	 * Tell this backend to stop the task.
 	 */
@@ -333,17 +316,35 @@ public class Backend
 			{
 			try
 				{
-				// Install JAR class loader if necessary.
-				if (info.jar != null)
+				// Install JAR class loader if necessary, getting the JAR file
+				// from the job only if it is not in the cache.
+				if (info.jarHash != null)
 					{
+					Map<String,byte[]> contents = JarCache.get (info.jarHash);
+					if (contents == null)
+						{
+						jarContents = new CompletableFuture<byte[]>();
+						job.requestJar (info.taskID);
+						contents = JarCache.put
+							(info.jarHash, jarContents.join());
+						jarContents = null;
+						}
 					JarClassLoader loader =
 						new JarClassLoader
 							(Thread.currentThread().getContextClassLoader(),
-							 info.jar);
+							 contents);
 					Thread.currentThread().setContextClassLoader (loader);
 					jobProxy.setContextClassLoader (loader);
 					}
 
+				// Connect to the tuple servers if the job's tuple space is
+				// sharded. The job already opened its tuple space on the
+				// tuple servers with the JAR file.
+				if (info.tupleServers != null)
+					tupleServerMap = new TupleServerMap
+						(info.tupleServers, info.jobFamilies, info.spaceID,
+						 null, tupleRequestMap);
+
 				// Create instance of task subclass.
 				Task task = (Task)
 					Instance.newDefaultInstance (info.taskClassName, true);
@@ -354,6 +355,7 @@ public class Backend
 				info.unmarshalInputTuples();
 				task.inputTuples = info.inputTuples;
 				task.tupleRequestMap = tupleRequestMap;
+				task.tupleServerMap = tupleServerMap;
 				task.properties = new TaskProperties (info.properties);
 				task.groupSize = info.size;
 				task.taskRank = info.rank;
@@ -363,12 +365,16 @@ public class Backend
 
 				// Run the task.
 				task.main (info.args);
+				task.syncTupleServers();
+				task.releaseCpus();
 				flushConsoleStreams();
 
 				// Inform the Job that the task finished successfully.
 				job.taskFinished (info.taskID);
 
-				// Exit the backend process.
+				// Finish the backend; a pooled backend can run another task,
+				// unless the task used GPUs.
+				reusable = info.devnum == null || info.devnum.length == 0;
 				stopBackend (null);
 				}
 
@@ -388,12 +394,252 @@ public class Backend
 
 // Hidden operations.
 
+	/**
+	 * Run one task: connect to the job, run the task the job sends, and
+	 * disconnect from the job.
+	 *
+	 * @return  True if this process can run another task, false otherwise.
+	 */
+	private static boolean runTask()
+		{
+		logger.prefix (String.format ("Job %d task %d backend", jobID, taskID));
+		finishSema = new Semaphore (0);
+		excThrown = null;
+		reusable = false;
+		tupleRequestMap = new TupleRequestMap();
+
+		// Create Backend.
+		backend = new Backend();
+
+		// Open a connection to the Job.
+		job = new JobSender();
+		try
+			{
+			jobProxy = new Proxy
+				(jobHost,
+				 jobPort,
+				 job,
+				 new BackendReceiver
+					(new ReceiverListener()
+						{
+						public void receiverFailed
+							(Receiver receiver,
+							 Throwable exc)
+							{
+							try { job.taskFailed (taskID, exc); }
+								catch (IOException exc2) {}
+							stopBackend (exc);
+							}
+						},
+					 backend));
+			}
+		catch (IOException exc)
+			{
+			logger.log (String.format ("Cannot connect to job at %s:%d",
+				jobHost, jobPort));
+			return false;
+			}
+
+		// Backend has started successfully.
+		try
+			{
+			// Start heartbeats with the Job.
+			executor = Executors.newSingleThreadScheduledExecutor();
+			heartbeat = new Heartbeat()
+				{
+				protected void sendHeartbeat() throws IOException
+					{
+					job.heartbeatFromTask (taskID);
+					}
+				protected void died()
+					{
+					logger.log ("Job heartbeat died");
+					stopBackend (null);
+					}
+				};
+			heartbeat.enable (executor);
+
+			// Set up multiple thread safe console streams.
+			thrOut = new ThreadedOutputStream (new JobOutputStream (job, 0));
+			thrErr = new ThreadedOutputStream (new JobOutputStream (job, 1));
+			System.setOut (new PrintStream (thrOut, false));
+			System.setErr (new PrintStream (thrErr, false));
+
+			// Tell the Job that the Backend started.
+			job.taskLaunched (backend, taskID, name);
+
+			// All further work is done in response to incoming messages.
+			}
+
+		// Capture any exception thrown above.
+		catch (Throwable exc)
+			{
+			stopBackend (exc);
+			}
+
+		// Wait until the backend is finished.
+		finishSema.acquireUninterruptibly();
+		if (excThrown != null)
+			logger.log ("Unexpected exception", excThrown);
+
+		// Wait for the task's thread to end, then tear down this task's
+		// connections, leaving the process ready for another task.
+		if (backendThread != null)
+			try { backendThread.join (1000L); }
+				catch (InterruptedException exc) {}
+		boolean ok = reusable && excThrown == null &&
+			(backendThread == null || ! backendThread.isAlive());
+
+		// Terminate the task's idle parallel team threads and helper threads,
+		// which inherited the task's JAR class loader.
+		Team.reset();
+		if (heartbeat != null)
+			{
+			heartbeat.cancel();
+			heartbeat = null;
+			}
+		if (executor != null)
+			{
+			executor.shutdownNow();
+			executor = null;
+			}
+		jobProxy.shutdown();
+		jobProxy = null;
+		if (tupleServerMap != null)
+			{
+			tupleServerMap.terminate();
+			tupleServerMap = null;
+			}
+		System.setOut (stdout);
+		System.setErr (stderr);
+		thrOut = null;
+		thrErr = null;
+		job = null;
+		backendThread = null;
+
+		// Any thread the task left running would go on running the task's
+		// code alongside the next task.
+		return ok && ! otherThreadsAlive();
+		}
+
+	/**
+	 * Determine whether any non-daemon thread other than the calling thread is
+	 * still alive, after giving such threads a little time to terminate.
+	 *
+	 * @return  True if such a thread is alive, false otherwise.
+	 */
+	private static boolean otherThreadsAlive()
+		{
+		long deadline = System.currentTimeMillis() + 1000L;
+		Thread current = Thread.currentThread();
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+			{
+			if (thread == current || thread.isDaemon())
+				continue;
+			try
+				{
+				thread.join
+					(Math.max (deadline - System.currentTimeMillis(), 1L));
+				}
+			catch (InterruptedException exc)
+				{
+				}
+			if (thread.isAlive())
+				{
+				logger.log (String.format ("Thread \"%s\" still running",
+					thread.getName()));
+				return true;
+				}
+			}
+		return false;
+		}
+
+	/**
+	 * Run a pooled Backend: repeatedly take a task from the Launcher at the
+	 * given port and run it, until the Launcher goes away or a task leaves
+	 * this process unfit to run another task.
+	 *
+	 * @param  args  Array of command line arguments.
+	 */
+	private static void runPooled
+		(String[] args)
+		{
+		name = args[0];
+		int launcherPort = 0;
+		try
+			{
+			launcherPort = Integer.parseInt (args[1]);
+			if (0 > launcherPort || launcherPort > 65535)
+				usage (String.format ("<launcherPort> = %s illegal", args[1]));
+			}
+		catch (NumberFormatException exc)
+			{
+			usage (String.format ("<launcherPort> = %s illegal", args[1]));
+			}
+
+		// Log messages on standard output.
+		logger = new PrintStreamLogger (System.out);
+		addShutdownHook();
+
+		for (;;)
+			{
+			// Wait for the Launcher to give this process a task.
+			try
+				{
+				Socket socket = new Socket
+					(InetAddress.getLoopbackAddress(), launcherPort);
+				DataInputStream in =
+					new DataInputStream (socket.getInputStream());
+				DataOutputStream out =
+					new DataOutputStream (socket.getOutputStream());
+				jobID = in.readLong();
+				taskID = in.readLong();
+				jobHost = in.readUTF();
+				jobPort = in.readInt();
+				out.writeByte (0);
+				out.flush();
+				socket.close();
+				}
+			catch (IOException exc)
+				{
+				System.exit (0);
+				}
+
+			// Run the task.
+			if (! runTask())
+				System.exit (0);
+			}
+		}
+
+	/**
+	 * Add a shutdown hook that will run when the Backend exits.
+	 */
+	private static void addShutdownHook()
+		{
+		Runtime.getRuntime().addShutdownHook (new Thread()
+			{
+			public void run()
+				{
+				flushConsoleStreams();
+				if (heartbeat != null)
+					heartbeat.cancel();
+				if (executor != null)
+					executor.shutdownNow();
+				if (jobProxy != null)
+					jobProxy.terminate();
+				if (tupleServerMap != null)
+					tupleServerMap.terminate();
+				}
+			});
+		}
+
 	/**
 	 * Print a usage message and exit.
 	 */
 	private static void usage()
 		{
 		System.out.printf ("Usage: java edu.rit.pj2.Backend <name> <jobID> <taskID> <jobHost> <jobPort>%n");
+		System.out.printf ("Usage: java edu.rit.pj2.Backend <name> <launcherPort>%n");
 		System.exit (0);
 		}
 
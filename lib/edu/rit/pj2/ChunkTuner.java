@@ -0,0 +1,147 @@
+//******************************************************************************
+//
+// File:    ChunkTuner.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.ChunkTuner
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+/**
+ * Class ChunkTuner picks the chunk size for one team thread executing a
+ * parallel for loop with an adaptive schedule. After each chunk, the thread
+ * reports how many iterations it performed and how long they took. The tuner
+ * keeps running estimates of the time per iteration and of how much that time
+ * varies from chunk to chunk, and sets the next chunk size accordingly:
+ * <UL>
+ * <LI>
+ * While a chunk executes too quickly to be timed accurately, the chunk size
+ * doubles after each chunk.
+ * <LI>
+ * Whenever the time per iteration varies considerably, the chunk size shrinks
+ * towards the minimum chunk size, to balance the load.
+ * <LI>
+ * Once the time per iteration looks uniform, the chunk size doubles after
+ * each chunk, up to the size that takes about {@link #TARGET_NANOS} to
+ * execute, to reduce the thread synchronization overhead.
+ * </UL>
+ *
+ * @author  Alan Kaminsky
+ * @version 04-Mar-2015
+ */
+class ChunkTuner
+	{
+
+// Hidden constants.
+
+	// Target time to execute one chunk (nanoseconds).
+	static final double TARGET_NANOS = 100000.0;
+
+	// Chunks that take less time than this (nanoseconds) are not measured.
+	private static final long NOISE_NANOS = 1000L;
+
+	// Number of chunks to measure before changing the chunk size.
+	private static final int WARMUP_CHUNKS = 3;
+
+	// Weight of the newest measurement in the running estimates.
+	private static final double WEIGHT = 0.25;
+
+	// Time per iteration is considered uniform if its mean absolute deviation
+	// is at most this fraction of its mean.
+	private static final double UNIFORM_RATIO = 0.25;
+
+// Hidden data members.
+
+	private long minSize;
+	private long size;
+	private int count;
+	private double meanCost;
+	private double devCost;
+
+// Exported constructors.
+
+	/**
+	 * Construct a new chunk tuner.
+	 *
+	 * @param  minSize  Minimum chunk size (&ge; 1).
+	 */
+	public ChunkTuner
+		(long minSize)
+		{
+		this.minSize = minSize;
+		this.size = minSize;
+		}
+
+// Exported operations.
+
+	/**
+	 * Returns the size of the next chunk.
+	 *
+	 * @return  Chunk size (&ge; minimum chunk size).
+	 */
+	public long size()
+		{
+		return size;
+		}
+
+	/**
+	 * Report that a chunk was executed, and compute the size of the next chunk.
+	 *
+	 * @param  iters  Number of iterations in the chunk (&ge; 1).
+	 * @param  nanos  Time to execute the chunk (nanoseconds).
+	 *
+	 * @return  Size of the next chunk (&ge; minimum chunk size).
+	 */
+	public long update
+		(long iters,
+		 long nanos)
+		{
+		// A chunk that executes faster than the timer can resolve cannot cause
+		// a load imbalance worth measuring.
+		if (nanos < NOISE_NANOS)
+			{
+			size = size > Long.MAX_VALUE/2 ? Long.MAX_VALUE : size*2;
+			return size;
+			}
+
+		double cost = (double)nanos/(double)iters;
+		++ count;
+		if (count == 1)
+			meanCost = cost;
+		else
+			{
+			devCost += WEIGHT*(Math.abs (cost - meanCost) - devCost);
+			meanCost += WEIGHT*(cost - meanCost);
+			}
+
+		long limit = meanCost <= 0.0 ? Long.MAX_VALUE :
+			Math.max ((long)(TARGET_NANOS/meanCost), minSize);
+		if (count < WARMUP_CHUNKS)
+			size = Math.min (size, limit);
+		else if (devCost > UNIFORM_RATIO*meanCost)
+			size = Math.min (Math.max (size/2, minSize), limit);
+		else
+			size = Math.min (size > Long.MAX_VALUE/2 ? Long.MAX_VALUE : size*2,
+				limit);
+		return size;
+		}
+
+	}
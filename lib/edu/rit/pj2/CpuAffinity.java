@@ -0,0 +1,539 @@
+//******************************************************************************
+//
+// File:    CpuAffinity.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.CpuAffinity
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+
+/**
+ * Class CpuAffinity contains operations for pinning threads to CPUs, as
+ * specified by an {@linkplain Affinity Affinity}.
+ * <P>
+ * The node's CPU topology is read from the Linux <TT>/sys</TT> file system.
+ * Only the CPUs in the process's CPU affinity mask are used, so a process
+ * confined by <TT>taskset</TT> or a cgroup cpuset pins its threads only to CPUs
+ * it is allowed to run on. Threads are pinned by a native method in the PJ2
+ * native affinity library (<TT>libEduRitPj2CpuAffinity.so</TT>). If the
+ * topology cannot be read, the CPUs are assumed to be on one chip. If the
+ * library cannot be loaded, pinning a thread does nothing.
+ * <P>
+ * A task does not pin its threads to just any of the node's CPUs. The first
+ * time a task pins threads, it claims as many CPUs as its <TT>cores</TT>
+ * property (all of the CPUs, if the task may use all the node's cores), and
+ * from then on its threads are pinned only to the claimed CPUs. A CPU is
+ * claimed by locking a file named after the CPU in the directory
+ * <TT>pj2-cpus-<I>user</I></TT> in the directory given by the
+ * <TT>java.io.tmpdir</TT> system property. Tasks running at the same time on
+ * the same node, whether in separate processes or in the same process, thus
+ * claim different CPUs, and the operating system releases a process's claims
+ * if the process dies. If fewer CPUs than needed are free, the task uses the
+ * ones it could claim; if none are free, the task shares the node's CPUs.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class CpuAffinity
+	{
+
+// Load native library.
+
+	static boolean libraryLoaded = false;
+
+	static
+		{
+		try
+			{
+			System.loadLibrary ("EduRitPj2CpuAffinity");
+			libraryLoaded = true;
+			}
+		catch (Throwable exc)
+			{
+			}
+		}
+
+// Hidden class-wide data members.
+
+	// CPU numbers in compact order and in scatter order.
+	private static int[] compactOrder;
+	private static int[] scatterOrder;
+
+	// Directory of CPU claim files.
+	private static File directory = new File
+		(System.getProperty ("java.io.tmpdir"),
+		 "pj2-cpus-" + System.getProperty ("user.name"));
+
+	static
+		{
+		readTopology();
+		}
+
+// Prevent construction.
+
+	private CpuAffinity()
+		{
+		}
+
+// Exported operations.
+
+	/**
+	 * Claim CPUs for a task. The CPUs are claimed in the order given by the
+	 * given affinity, skipping CPUs other tasks have claimed.
+	 *
+	 * @param  affinity  Affinity, either compact or scatter.
+	 * @param  n         Number of CPUs to claim, or &lt; 1 to claim all of the
+	 *                   process's CPUs.
+	 *
+	 * @return  Allotment of claimed CPUs.
+	 */
+	public static Allotment allot
+		(Affinity affinity,
+		 int n)
+		{
+		int[] order = affinity == Affinity.scatter ? scatterOrder : compactOrder;
+		if (n < 1 || n > order.length) n = order.length;
+		boolean[] claimed = new boolean [order.length];
+		FileLock[] locks = new FileLock [order.length];
+		int count = 0;
+		try
+			{
+			directory.mkdirs();
+			for (int i = 0; i < order.length && count < n; ++ i)
+				{
+				locks[i] = tryLock (order[i]);
+				if (locks[i] != null)
+					{
+					claimed[i] = true;
+					++ count;
+					}
+				}
+			}
+		catch (IOException exc)
+			{
+			// Claim files unusable. Use the first n CPUs without claiming.
+			for (int i = 0; i < order.length; ++ i)
+				{
+				if (locks[i] != null)
+					release (locks[i]);
+				locks[i] = null;
+				claimed[i] = i < n;
+				}
+			count = n;
+			}
+		if (count == 0)
+			{
+			// Every CPU is claimed. Share the first n CPUs.
+			for (int i = 0; i < n; ++ i)
+				claimed[i] = true;
+			count = n;
+			}
+
+		int[] cpus = new int [count];
+		int k = 0;
+		for (int i = 0; i < order.length; ++ i)
+			if (claimed[i])
+				cpus[k++] = order[i];
+		return new Allotment (cpus, locks);
+		}
+
+	/**
+	 * Pin the calling thread to the given CPU. If <TT>cpu</TT> is &minus;1,
+	 * the calling thread is unpinned; that is, its original CPU affinity mask
+	 * is restored. If the native affinity library is not loaded, or if the
+	 * operating system refuses, the calling thread is left as is.
+	 *
+	 * @param  cpu  CPU number, or &minus;1.
+	 */
+	public static void pin
+		(int cpu)
+		{
+		if (libraryLoaded)
+			setAffinity (cpu);
+		}
+
+// Hidden operations.
+
+	/**
+	 * Set the calling thread's CPU affinity mask.
+	 *
+	 * @param  cpu  CPU number to pin the calling thread to, or &minus;1 to
+	 *              restore the calling thread's original CPU affinity mask.
+	 *
+	 * @return  0 if successful, an <TT>errno</TT> value otherwise.
+	 */
+	private static native int setAffinity
+		(int cpu);
+
+	/**
+	 * Returns the CPUs in the process's original CPU affinity mask.
+	 *
+	 * @return  Array of CPU numbers, or null if the mask is unknown.
+	 */
+	private static native int[] getAllowedCpus();
+
+	/**
+	 * Returns the CPUs the process is allowed to run on. The CPUs are obtained
+	 * from the native affinity library if it is loaded, otherwise from the
+	 * <TT>Cpus_allowed_list</TT> line of <TT>/proc/self/status</TT>.
+	 *
+	 * @return  Array of CPU numbers, or null if unknown.
+	 */
+	private static int[] allowedCpus()
+		{
+		if (libraryLoaded)
+			try
+				{
+				return getAllowedCpus();
+				}
+			catch (Throwable exc)
+				{
+				// Library built without getAllowedCpus().
+				}
+		try
+			{
+			BufferedReader in = new BufferedReader
+				(new FileReader ("/proc/self/status"));
+			try
+				{
+				String line;
+				while ((line = in.readLine()) != null)
+					if (line.startsWith ("Cpus_allowed_list:"))
+						return parseList (line.substring (18) .trim());
+				return null;
+				}
+			finally
+				{
+				in.close();
+				}
+			}
+		catch (Throwable exc)
+			{
+			return null;
+			}
+		}
+
+	/**
+	 * Parse a Linux CPU list such as <TT>"0-3,8-11"</TT>.
+	 *
+	 * @param  list  CPU list.
+	 *
+	 * @return  Array of CPU numbers.
+	 */
+	private static int[] parseList
+		(String list)
+		{
+		int[] cpus = new int [0];
+		for (String range : list.split (","))
+			{
+			int dash = range.indexOf ('-');
+			int lb = Integer.parseInt
+				(dash == -1 ? range : range.substring (0, dash));
+			int ub = dash == -1 ? lb :
+				Integer.parseInt (range.substring (dash + 1));
+			int n = cpus.length;
+			cpus = Arrays.copyOf (cpus, n + ub - lb + 1);
+			for (int cpu = lb; cpu <= ub; ++ cpu)
+				cpus[n++] = cpu;
+			}
+		return cpus;
+		}
+
+	/**
+	 * Try to claim the given CPU.
+	 *
+	 * @param  cpu  CPU number.
+	 *
+	 * @return  Lock on the CPU's claim file, or null if the CPU is already
+	 *          claimed.
+	 *
+	 * @exception  IOException
+	 *     Thrown if the claim file could not be opened.
+	 */
+	private static FileLock tryLock
+		(int cpu)
+		throws IOException
+		{
+		RandomAccessFile file =
+			new RandomAccessFile (new File (directory, "cpu" + cpu), "rw");
+		FileLock lock = null;
+		try
+			{
+			lock = file.getChannel().tryLock();
+			}
+		catch (OverlappingFileLockException exc)
+			{
+			// Claimed by another task in this process.
+			}
+		finally
+			{
+			if (lock == null)
+				file.close();
+			}
+		return lock;
+		}
+
+	/**
+	 * Release the given CPU claim.
+	 *
+	 * @param  lock  Lock on the CPU's claim file.
+	 */
+	private static void release
+		(FileLock lock)
+		{
+		try
+			{
+			lock.release();
+			lock.channel().close();
+			}
+		catch (IOException exc)
+			{
+			}
+		}
+
+	/**
+	 * Read the node's CPU topology and set up the compact and scatter orders.
+	 */
+	private static void readTopology()
+		{
+		int N = Runtime.getRuntime().availableProcessors();
+		File[] dirs = new File ("/sys/devices/system/cpu") .listFiles();
+		if (dirs != null)
+			{
+			int max = -1;
+			for (File dir : dirs)
+				if (dir.getName().matches ("cpu[0-9]+") &&
+						new File (dir, "topology") .isDirectory())
+					max = Math.max (max,
+						Integer.parseInt (dir.getName().substring (3)));
+			N = Math.max (N, max + 1);
+			}
+
+		// Find the CPUs the process may run on.
+		int[] allowedCpus = allowedCpus();
+		boolean[] allowed = new boolean [N];
+		if (allowedCpus == null)
+			Arrays.fill (allowed, true);
+		else
+			for (int cpu : allowedCpus)
+				if (cpu < N)
+					allowed[cpu] = true;
+
+		// For each CPU, read its chip (package) number and core number.
+		int[] pkg = new int [N];
+		int[] core = new int [N];
+		boolean[] present = new boolean [N];
+		int count = 0;
+		for (int cpu = 0; cpu < N; ++ cpu)
+			{
+			String topo = "/sys/devices/system/cpu/cpu" + cpu + "/topology/";
+			pkg[cpu] = readInt (topo + "physical_package_id");
+			core[cpu] = readInt (topo + "core_id");
+			present[cpu] = pkg[cpu] >= 0 && core[cpu] >= 0;
+			}
+		boolean known = false;
+		for (int cpu = 0; cpu < N; ++ cpu)
+			known = known || present[cpu];
+		if (! known)
+			{
+			// Topology unknown. Assume one chip, one CPU per core.
+			for (int cpu = 0; cpu < N; ++ cpu)
+				{
+				pkg[cpu] = 0;
+				core[cpu] = cpu;
+				present[cpu] = true;
+				}
+			}
+		for (int cpu = 0; cpu < N; ++ cpu)
+			{
+			present[cpu] = present[cpu] && allowed[cpu];
+			if (present[cpu]) ++ count;
+			}
+		if (count == 0)
+			{
+			// Mask and topology disagree. Ignore the mask.
+			for (int cpu = 0; cpu < N; ++ cpu)
+				{
+				present[cpu] = pkg[cpu] >= 0 && core[cpu] >= 0;
+				if (present[cpu]) ++ count;
+				}
+			}
+
+		// Compact order: by chip, then by hardware thread within core, then by
+		// core. Each key packs (chip, hardware thread, core, cpu) into 16-bit
+		// fields.
+		long[] key = new long [count];
+		int k = 0;
+		for (int cpu = 0; cpu < N; ++ cpu)
+			if (present[cpu])
+				{
+				int sibling = 0;
+				for (int c = 0; c < cpu; ++ c)
+					if (present[c] && pkg[c] == pkg[cpu] && core[c] == core[cpu])
+						++ sibling;
+				key[k++] = ((long)(pkg[cpu] & 0xFFFF) << 48) |
+					((long)(sibling & 0xFFFF) << 32) |
+					((long)(core[cpu] & 0xFFFF) << 16) |
+					(long)(cpu & 0xFFFF);
+				}
+		Arrays.sort (key);
+		compactOrder = new int [count];
+		for (k = 0; k < count; ++ k)
+			compactOrder[k] = (int)(key[k] & 0xFFFFL);
+
+		// Scatter order: take the next CPU in compact order from each chip in
+		// turn.
+		int[] chips = new int [count];
+		int numChips = 0;
+		for (k = 0; k < count; ++ k)
+			{
+			int p = (int)(key[k] >>> 48);
+			if (numChips == 0 || chips[numChips - 1] != p)
+				chips[numChips++] = p;
+			}
+		int[] next = new int [numChips];
+		for (int c = 0; c < numChips; ++ c)
+			{
+			next[c] = 0;
+			while ((int)(key[next[c]] >>> 48) != chips[c]) ++ next[c];
+			}
+		scatterOrder = new int [count];
+		k = 0;
+		while (k < count)
+			for (int c = 0; c < numChips; ++ c)
+				if (next[c] < count && (int)(key[next[c]] >>> 48) == chips[c])
+					scatterOrder[k++] = (int)(key[next[c]++] & 0xFFFFL);
+		}
+
+	/**
+	 * Read an integer from the given file.
+	 *
+	 * @param  name  File name.
+	 *
+	 * @return  Integer, or &minus;1 if the file could not be read.
+	 */
+	private static int readInt
+		(String name)
+		{
+		try
+			{
+			BufferedReader in = new BufferedReader (new FileReader (name));
+			try
+				{
+				return Integer.parseInt (in.readLine().trim());
+				}
+			finally
+				{
+				in.close();
+				}
+			}
+		catch (Throwable exc)
+			{
+			return -1;
+			}
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Class Allotment records the CPUs a task has claimed, in compact order and
+	 * in scatter order.
+	 *
+	 * @author  Alan Kaminsky
+	 * @version 18-Mar-2015
+	 */
+	static class Allotment
+		{
+		private int[] compact;
+		private int[] scatter;
+		private FileLock[] locks;
+
+		private Allotment
+			(int[] cpus,
+			 FileLock[] locks)
+			{
+			this.compact = filter (compactOrder, cpus);
+			this.scatter = filter (scatterOrder, cpus);
+			this.locks = locks;
+			}
+
+		/**
+		 * Returns the CPUs to which successive ranks are pinned under the
+		 * given affinity. If there are more ranks than CPUs, the CPUs are
+		 * reused in the same order.
+		 *
+		 * @param  affinity  Affinity.
+		 *
+		 * @return  Array of CPU numbers indexed by rank, or null if the ranks
+		 *          are not pinned.
+		 */
+		public int[] order
+			(Affinity affinity)
+			{
+			switch (affinity)
+				{
+				case compact:
+					return compact;
+				case scatter:
+					return scatter;
+				default:
+					return null;
+				}
+			}
+
+		/**
+		 * Release the claimed CPUs.
+		 */
+		public synchronized void release()
+			{
+			for (int i = 0; i < locks.length; ++ i)
+				if (locks[i] != null)
+					{
+					CpuAffinity.release (locks[i]);
+					locks[i] = null;
+					}
+			}
+
+		// Returns the elements of order that are in cpus, in order.
+		private static int[] filter
+			(int[] order,
+			 int[] cpus)
+			{
+			int[] rv = new int [cpus.length];
+			int k = 0;
+			for (int cpu : order)
+				for (int c : cpus)
+					if (c == cpu)
+						rv[k++] = cpu;
+			return rv;
+			}
+		}
+
+	}
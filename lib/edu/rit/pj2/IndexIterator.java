@@ -0,0 +1,147 @@
+//******************************************************************************
+//
+// File:    IndexIterator.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.IndexIterator
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import edu.rit.util.AList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class IndexIterator provides a thread safe iterator over the elements of a
+ * list that supports random access by index, namely an {@linkplain AList} or a
+ * {@linkplain java.util.RandomAccess RandomAccess} {@linkplain java.util.List
+ * List}. Rather than locking, the iterator hands out ranges of list indexes
+ * using an atomic counter; each thread then reads the elements in its range
+ * from the list directly. The list must not be altered while it is being
+ * iterated over.
+ *
+ * @param  <E>  Iterator element data type.
+ *
+ * @author  Alan Kaminsky
+ * @version 06-Mar-2015
+ */
+class IndexIterator<E>
+	extends SyncIterator<E>
+	{
+
+// Hidden data members.
+
+	private AList<E> alist;
+	private List<E> list;
+	private int size;
+	private AtomicInteger nextIndex = new AtomicInteger (0);
+
+// Exported constructors.
+
+	/**
+	 * Construct a new index iterator over the given AList.
+	 *
+	 * @param  alist  List.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>alist</TT> is null.
+	 */
+	public IndexIterator
+		(AList<E> alist)
+		{
+		if (alist == null)
+			throw new NullPointerException
+				("IndexIterator(): alist is null");
+		this.alist = alist;
+		this.size = alist.size();
+		}
+
+	/**
+	 * Construct a new index iterator over the given random access list.
+	 *
+	 * @param  list  List.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>list</TT> is null.
+	 */
+	public IndexIterator
+		(List<E> list)
+		{
+		if (list == null)
+			throw new NullPointerException
+				("IndexIterator(): list is null");
+		this.list = list;
+		this.size = list.size();
+		}
+
+// Exported operations.
+
+	/**
+	 * Get the next element from this iterator.
+	 *
+	 * @return  Next element, or null if no more elements.
+	 */
+	public E next()
+		{
+		int i = nextIndex.getAndIncrement();
+		return i < size ? get (i) : null;
+		}
+
+	/**
+	 * Get the next batch of elements from this iterator. The elements are
+	 * stored in <TT>batch</TT> starting at index 0. Fewer than
+	 * <TT>batch.length</TT> elements are stored only if this iterator has run
+	 * out of elements.
+	 *
+	 * @param  batch  Array in which to store the elements.
+	 *
+	 * @return  Number of elements stored, or 0 if no more elements.
+	 */
+	public int next
+		(E[] batch)
+		{
+		// Claim a range of indexes. The check first keeps the counter from
+		// overflowing once the list is exhausted.
+		if (nextIndex.get() >= size) return 0;
+		int lb = nextIndex.getAndAdd (batch.length);
+		if (lb >= size || lb < 0) return 0;
+		int n = Math.min (batch.length, size - lb);
+		for (int i = 0; i < n; ++ i)
+			batch[i] = get (lb + i);
+		return n;
+		}
+
+// Hidden operations.
+
+	/**
+	 * Get the element at the given index in the list.
+	 *
+	 * @param  i  Index.
+	 *
+	 * @return  Element.
+	 */
+	private E get
+		(int i)
+		{
+		return alist != null ? alist.get (i) : list.get (i);
+		}
+
+	}
@@ -96,13 +96,27 @@ import java.util.concurrent.atomic.AtomicLong;
  * The threads execute the methods in the inner {@linkplain Loop} class. For
  * further information about how the parallel for loop executes, see class
  * {@linkplain Loop}.
+ * <P>
+ * <B>Repeated execution.</B>
+ * A program that executes the same parallel for loop many times, such as a
+ * time-stepping simulation, can construct the parallel for loop and the loop
+ * body once and call the {@link #exec(Loop) exec()} method repeatedly:
+ * <PRE>
+ *     IntParallelForLoop pfl = parallelFor (<I>lb, ub</I>);
+ *     Loop body = new Loop() ...;
+ *     for (<I>each time step</I>)
+ *         pfl.exec (body);</PRE>
+ * <P>
+ * Apart from the copies of the loop body made for the team threads other than
+ * thread 0, each repeated execution then allocates no objects, except with an
+ * adaptive schedule.
  *
  * @see  ParallelStatement
  * @see  ParallelForLoop
  * @see  Loop
  *
  * @author  Alan Kaminsky
- * @version 22-Mar-2014
+ * @version 11-Mar-2015
  */
 public class IntParallelForLoop
 	extends ParallelForLoop
@@ -112,7 +126,8 @@ public class IntParallelForLoop
 
 	long blb;
 	long bub;
-	AtomicLong nextlb;
+	AtomicLong nextlb = new AtomicLong();
+	RangeDeque[] deque;
 	Loop loop;
 
 // Hidden constructors.
@@ -224,7 +239,8 @@ public class IntParallelForLoop
 		threads = properties.actualThreads();
 		schedule = properties.schedule();
 		chunk = schedule.actualChunk (properties.chunk());
-		nextlb = new AtomicLong (blb);
+		nextlb.set (blb);
+		if (schedule == Schedule.workStealing) initWorkQueues();
 		this.loop = loop;
 		stop = false;
 		Team.execute (threads, this);
@@ -267,6 +283,28 @@ public class IntParallelForLoop
 		loop.reductionMap = null;
 		}
 
+	/**
+	 * Set up the per-thread deques for a work stealing schedule. Initially,
+	 * each thread's deque holds the iterations the thread would perform with a
+	 * fixed schedule.
+	 */
+	void initWorkQueues()
+		{
+		if (deque == null || deque.length != threads)
+			{
+			deque = new RangeDeque [threads];
+			for (int rank = 0; rank < threads; ++ rank)
+				deque[rank] = new RangeDeque();
+			}
+		long chunkSize = Math.max ((bub - blb + threads)/threads, 1L);
+		long chunklb;
+		for (int rank = 0; rank < threads; ++ rank)
+			{
+			chunklb = blb + rank*chunkSize;
+			deque[rank].set (chunklb, Math.min (chunklb + chunkSize - 1L, bub));
+			}
+		}
+
 	/**
 	 * Execute this parallel for loop's iterations with a fixed schedule.
 	 *
@@ -396,4 +434,78 @@ public class IntParallelForLoop
 			}
 		}
 
+	/**
+	 * Execute this parallel for loop's iterations with a work stealing
+	 * schedule.
+	 *
+	 * @param  loop  Loop body.
+	 * @param  rank  Team thread rank.
+	 */
+	void iterateWorkStealing
+		(Loop loop,
+		 int rank)
+		throws Exception
+		{
+		RangeDeque myDeque = deque[rank];
+		long chunkSize = chunk;
+		int chunklb, chunkub;
+		int victim;
+		chunkloop: while (! stop)
+			{
+			if (! myDeque.take (chunkSize))
+				{
+				// This thread's deque is empty. Steal half the iterations from
+				// the next thread whose deque is not empty, if any.
+				victim = rank;
+				do
+					{
+					victim = victim + 1 == threads ? 0 : victim + 1;
+					if (victim == rank) break chunkloop;
+					}
+				while (! deque[victim].stealInto (myDeque));
+				continue;
+				}
+			chunklb = (int)myDeque.chunklb;
+			chunkub = (int)myDeque.chunkub;
+			for (int i = chunklb; ! stop && i <= chunkub; ++ i)
+				loop.run (i);
+			}
+		}
+
+	/**
+	 * Execute this parallel for loop's iterations with an adaptive schedule.
+	 *
+	 * @param  loop  Loop body.
+	 * @param  rank  Team thread rank.
+	 */
+	void iterateAdaptive
+		(Loop loop,
+		 int rank)
+		throws Exception
+		{
+		ChunkTuner tuner = new ChunkTuner (chunk);
+		long minSize = chunk;
+		long chunkSize;
+		long oldlb, newlb, t;
+		int chunklb, chunkub;
+		chunkloop: while (! stop)
+			{
+			do
+				{
+				oldlb = nextlb.get();
+				if (oldlb > bub) break chunkloop;
+				chunkSize = Math.min (tuner.size(),
+					Math.max ((bub - oldlb + 1)/2/threads, minSize));
+				newlb = oldlb + chunkSize;
+				}
+			while (! nextlb.compareAndSet (oldlb, newlb));
+			chunklb = (int)oldlb;
+			chunkub = (int)(Math.min (newlb - 1L, bub));
+			t = System.nanoTime();
+			for (int i = chunklb; ! stop && i <= chunkub; ++ i)
+				loop.run (i);
+			tuner.update (chunkub - chunklb + 1L, System.nanoTime() - t);
+			}
+		}
+
 	}
@@ -25,15 +25,18 @@
 
 package edu.rit.pj2;
 
+import edu.rit.util.AList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Class IteratorParallelForLoop provides a work sharing parallel for loop
  * executed by multiple threads, looping over the elements in an iterator or an
  * iterable collection. An iterator parallel for loop is constructed by the
- * {@link Task#parallelFor(java.util.Iterator) parallelFor(Iterator)} or {@link
- * Task#parallelFor(Iterable) parallelFor(Iterable)} method of class {@linkplain
- * Task}.
+ * {@link Task#parallelFor(java.util.Iterator) parallelFor(Iterator)}, {@link
+ * Task#parallelFor(Iterable) parallelFor(Iterable)}, or {@link
+ * Task#parallelFor(edu.rit.util.AList) parallelFor(AList)} method of class
+ * {@linkplain Task}.
  * <P>
  * <B>Programming pattern.</B>
  * To execute a parallel for loop over the elements in an iterator or an
@@ -63,10 +66,11 @@ import java.util.Iterator;
  *         }
  *     }</PRE>
  * <P>
- * The <I>iter</I> is either an {@linkplain java.util.Iterator Iterator} or an
- * {@linkplain java.lang.Iterable Iterable} collection. <TT>E</TT> is the data
- * type of the iterator's or collection's elements. The iterator must return
- * only non-null elements. The collection must contain only non-null elements.
+ * The <I>iter</I> is either an {@linkplain java.util.Iterator Iterator}, an
+ * {@linkplain java.lang.Iterable Iterable} collection, or an {@linkplain
+ * edu.rit.util.AList AList}. <TT>E</TT> is the data type of the iterator's or
+ * collection's elements. The iterator must return only non-null elements. The
+ * collection must contain only non-null elements.
  * <P>
  * <B>Parallel thread team.</B>
  * The parallel for loop is executed by a team of threads. The number of threads
@@ -77,6 +81,29 @@ import java.util.Iterator;
  * <PRE>
  *     parallelFor (<I>iter</I>) .threads (<I>threads</I>) .exec (new ObjectLoop&lt;E&gt;() ...</PRE>
  * <P>
+ * <B>Batches of elements.</B>
+ * By default, each thread obtains one element at a time from the iterator.
+ * Because the iterator is shared by all the threads, obtaining an element
+ * involves thread synchronization. If the loop body is small, the thread
+ * synchronization overhead can be reduced by having each thread obtain a batch
+ * of elements at a time, as specified by the <TT>chunk</TT> property:
+ * <PRE>
+ *     parallelFor (<I>iter</I>) .chunk (<I>chunk</I>) .exec (new ObjectLoop&lt;E&gt;() ...</PRE>
+ * <P>
+ * Unlike the other parallel for loops, an iterator parallel for loop does not
+ * inherit the <TT>chunk</TT> property of the enclosing task; a batch size
+ * tuned for an integer loop is usually far too large for a collection. The
+ * batch size is one element unless it is set on the iterator parallel for
+ * loop itself.
+ * <P>
+ * If the collection is an {@linkplain edu.rit.util.AList AList}, or a
+ * {@linkplain java.util.List List} that implements {@linkplain
+ * java.util.RandomAccess RandomAccess} such as an {@linkplain
+ * java.util.ArrayList ArrayList}, the threads do not lock the collection;
+ * instead, each thread obtains a range of list indexes and reads the elements
+ * directly. The collection must not be altered while the parallel for loop is
+ * executing.
+ * <P>
  * <B>Parallel loop body.</B>
  * The threads execute the methods in the inner {@linkplain ObjectLoop} class.
  * For further information about how the parallel for loop executes, see class
@@ -89,7 +116,7 @@ import java.util.Iterator;
  * @see  ObjectLoop
  *
  * @author  Alan Kaminsky
- * @version 22-Mar-2014
+ * @version 18-Mar-2015
  */
 public class IteratorParallelForLoop<E>
 	extends ParallelForLoop
@@ -100,10 +127,13 @@ public class IteratorParallelForLoop<E>
 	private SyncIterator<E> iter;
 	private ObjectLoop<E> loop;
 
+	// Number of elements each thread obtains at a time, as set by chunk().
+	private int batch = 1;
+
 // Hidden constructors.
 
 	/**
-	 * Construct a new integer parallel for loop.
+	 * Construct a new iterator parallel for loop.
 	 *
 	 * @param  task  Task in which the parallel for loop is executing.
 	 * @param  iter  Iterator.
@@ -119,6 +149,41 @@ public class IteratorParallelForLoop<E>
 		this.iter = new SyncIterator<E> (iter);
 		}
 
+	/**
+	 * Construct a new iterator parallel for loop over the given AList.
+	 *
+	 * @param  task   Task in which the parallel for loop is executing.
+	 * @param  alist  List.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>alist</TT> is null.
+	 */
+	IteratorParallelForLoop
+		(Task task,
+		 AList<E> alist)
+		{
+		super (task);
+		this.iter = new IndexIterator<E> (alist);
+		}
+
+	/**
+	 * Construct a new iterator parallel for loop over the given random access
+	 * list.
+	 *
+	 * @param  task  Task in which the parallel for loop is executing.
+	 * @param  list  List.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>list</TT> is null.
+	 */
+	IteratorParallelForLoop
+		(Task task,
+		 List<E> list)
+		{
+		super (task);
+		this.iter = new IndexIterator<E> (list);
+		}
+
 // Exported operations.
 
 	/**
@@ -144,6 +209,31 @@ public class IteratorParallelForLoop<E>
 		return this;
 		}
 
+	/**
+	 * Set this parallel for loop's <TT>chunk</TT> property. The <TT>chunk</TT>
+	 * property specifies the number of elements each thread obtains from the
+	 * iterator at a time. If the <TT>chunk</TT> property is {@link
+	 * Task#STANDARD_CHUNK STANDARD_CHUNK} or {@link Task#DEFAULT_CHUNK
+	 * DEFAULT_CHUNK}, each thread obtains one element at a time. The default is
+	 * one element at a time; the <TT>chunk</TT> property of the enclosing task
+	 * is not used.
+	 *
+	 * @param  chunk  Chunk size (&ge; 1), {@link Task#STANDARD_CHUNK}, or
+	 *                {@link Task#DEFAULT_CHUNK}.
+	 *
+	 * @return  This parallel for loop object.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>chunk</TT> is illegal.
+	 */
+	public IteratorParallelForLoop<E> chunk
+		(int chunk)
+		{
+		properties.chunk (chunk);
+		this.batch = chunk >= 1 ? chunk : 1;
+		return this;
+		}
+
 	/**
 	 * Execute this parallel for loop with the loop body specified by the given
 	 * {@linkplain ObjectLoop} object.
@@ -157,6 +247,7 @@ public class IteratorParallelForLoop<E>
 		(ObjectLoop<E> loop)
 		{
 		threads = properties.actualThreads();
+		chunk = batch;
 		this.loop = loop;
 		stop = false;
 		Team.execute (threads, this);
@@ -190,9 +281,21 @@ public class IteratorParallelForLoop<E>
 		loop.start();
 
 		// Execute iterations.
-		E obj = null;
-		while (! stop && (obj = iter.next()) != null)
-			loop.run (obj);
+		if (chunk == 1)
+			{
+			E obj = null;
+			while (! stop && (obj = iter.next()) != null)
+				loop.run (obj);
+			}
+		else
+			{
+			@SuppressWarnings ("unchecked")
+			E[] batch = (E[]) new Object [chunk];
+			int n;
+			while (! stop && (n = iter.next (batch)) > 0)
+				for (int i = 0; ! stop && i < n; ++ i)
+					loop.run (batch[i]);
+			}
 
 		// Perform one-time finalization.
 		loop.finish();
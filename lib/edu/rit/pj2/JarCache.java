@@ -0,0 +1,306 @@
+//******************************************************************************
+//
+// File:    JarCache.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.JarCache
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import edu.rit.util.Map;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+
+/**
+ * Class JarCache provides a content-addressed cache of Java archive (JAR)
+ * files in a {@linkplain Backend Backend} process. A JAR file is identified by
+ * its hash, the SHA-256 digest of its contents. A {@linkplain Job Job} sends a
+ * task only the hash of the job's JAR file; the Backend asks the job for the
+ * JAR file's contents only if the JAR file is not in the cache.
+ * <P>
+ * The cache has two levels. In memory, the cache keeps the parsed contents of
+ * the most recently used JAR files, so the tasks a Backend runs for the same
+ * job share one copy of the class files. On disk, the cache keeps the JAR
+ * files themselves in a directory on the node, named after their hashes, so
+ * all the Backends on the node, for all jobs, share one copy of each JAR file.
+ * The directory is <TT>pj2-jars-<I>user</I></TT> in the directory given by the
+ * <TT>java.io.tmpdir</TT> system property, where <I>user</I> is the
+ * <TT>user.name</TT> system property. A JAR file read from disk whose contents
+ * do not match its hash is ignored.
+ * <P>
+ * The JAR files on disk take up at most {@link #DISK_SIZE} bytes in all. Each
+ * time a JAR file is read from or written to disk, its last-modified time is
+ * set to the current time, which thus records when the JAR file was last used
+ * (the file system's own access times are not relied upon, since they are
+ * often not kept). Whenever a JAR file is written to disk and the total size
+ * exceeds the limit, the least recently used JAR files are deleted until the
+ * total size is within the limit again. The JAR file just written is never
+ * deleted, so one JAR file larger than the limit still gets cached.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class JarCache
+	{
+
+// Hidden data members.
+
+	// Maximum number of parsed JAR files kept in memory.
+	private static final int MEMORY_SIZE = 4;
+
+	// Parsed JAR files kept in memory, indexed by hash, least recently used
+	// first.
+	private static MemoryCache memory = new MemoryCache();
+
+	// Maximum total number of bytes of JAR files kept on disk.
+	static final long DISK_SIZE = 256L*1024L*1024L;
+
+	// Directory of JAR files kept on disk.
+	private static File directory = new File
+		(System.getProperty ("java.io.tmpdir"),
+		 "pj2-jars-" + System.getProperty ("user.name"));
+
+// Prevent construction.
+
+	private JarCache()
+		{
+		}
+
+// Exported operations.
+
+	/**
+	 * Returns the hash of the given JAR file.
+	 *
+	 * @param  jar  Byte array with the contents of the JAR file.
+	 *
+	 * @return  Hash.
+	 */
+	public static byte[] hash
+		(byte[] jar)
+		{
+		try
+			{
+			return MessageDigest.getInstance ("SHA-256") .digest (jar);
+			}
+		catch (NoSuchAlgorithmException exc)
+			{
+			throw new IllegalStateException
+				("JarCache.hash(): Shouldn't happen", exc);
+			}
+		}
+
+	/**
+	 * Get the parsed contents of the JAR file with the given hash from this
+	 * cache.
+	 *
+	 * @param  hash  Hash.
+	 *
+	 * @return  Map from class or resource name to contents, or null if the JAR
+	 *          file is not in this cache.
+	 */
+	public static synchronized Map<String,byte[]> get
+		(byte[] hash)
+		{
+		String key = hex (hash);
+		Map<String,byte[]> contents = memory.get (key);
+		if (contents == null)
+			{
+			try
+				{
+				File file = file (key);
+				byte[] jar = Files.readAllBytes (file.toPath());
+				if (Arrays.equals (hash (jar), hash))
+					{
+					contents = JarClassLoader.readJarContents (jar);
+					memory.put (key, contents);
+					file.setLastModified (System.currentTimeMillis());
+					}
+				}
+			catch (IOException exc)
+				{
+				}
+			}
+		return contents;
+		}
+
+	/**
+	 * Put the given JAR file into this cache.
+	 *
+	 * @param  hash  Hash.
+	 * @param  jar   Byte array with the contents of the JAR file.
+	 *
+	 * @return  Map from class or resource name to contents.
+	 *
+	 * @exception  IOException
+	 *     Thrown if the JAR file's contents do not match the hash. Thrown if
+	 *     the JAR file's contents could not be extracted.
+	 */
+	public static synchronized Map<String,byte[]> put
+		(byte[] hash,
+		 byte[] jar)
+		throws IOException
+		{
+		if (! Arrays.equals (hash (jar), hash))
+			throw new IOException ("JarCache.put(): JAR file hash mismatch");
+		String key = hex (hash);
+		Map<String,byte[]> contents = JarClassLoader.readJarContents (jar);
+		memory.put (key, contents);
+
+		// Save the JAR file on disk. Write a temporary file and rename it, so
+		// other Backends never see a partly written file. Failure to save is
+		// not an error; the JAR file is just not cached on disk.
+		File temp = null;
+		try
+			{
+			directory.mkdirs();
+			temp = File.createTempFile (key, ".tmp", directory);
+			Files.write (temp.toPath(), jar);
+			Files.move (temp.toPath(), file (key) .toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+			file (key) .setLastModified (System.currentTimeMillis());
+			evict (key);
+			}
+		catch (IOException exc)
+			{
+			if (temp != null)
+				temp.delete();
+			}
+		return contents;
+		}
+
+// Hidden operations.
+
+	/**
+	 * Delete the least recently used JAR files on disk until the total size of
+	 * the JAR files on disk is at most {@link #DISK_SIZE}. The JAR file with
+	 * the given key is not deleted. Files that other Backends delete or replace
+	 * meanwhile are skipped.
+	 *
+	 * @param  keep  Key of the JAR file to keep.
+	 */
+	private static void evict
+		(String keep)
+		{
+		File[] files = directory.listFiles (new FileFilter()
+			{
+			public boolean accept (File f)
+				{
+				return f.getName().endsWith (".jar");
+				}
+			});
+		if (files == null) return;
+
+		// Record each file's size and last use once, since other Backends may
+		// change them while the files are being sorted.
+		int n = files.length;
+		final long[] length = new long [n];
+		final long[] used = new long [n];
+		Integer[] order = new Integer [n];
+		long total = 0L;
+		for (int i = 0; i < n; ++ i)
+			{
+			length[i] = files[i].length();
+			used[i] = files[i].lastModified();
+			order[i] = i;
+			total += length[i];
+			}
+		if (total <= DISK_SIZE) return;
+
+		// Delete files, least recently used first.
+		Arrays.sort (order, new Comparator<Integer>()
+			{
+			public int compare (Integer a, Integer b)
+				{
+				return Long.compare (used[a], used[b]);
+				}
+			});
+		File keepFile = file (keep);
+		for (int i = 0; i < n && total > DISK_SIZE; ++ i)
+			{
+			File f = files[order[i]];
+			if (! f.equals (keepFile) && f.delete())
+				total -= length[order[i]];
+			}
+		}
+
+	/**
+	 * Returns the disk file for the JAR file with the given key.
+	 *
+	 * @param  key  Key (hash as a hexadecimal string).
+	 *
+	 * @return  Disk file.
+	 */
+	private static File file
+		(String key)
+		{
+		return new File (directory, key + ".jar");
+		}
+
+	/**
+	 * Returns the given hash as a hexadecimal string.
+	 *
+	 * @param  hash  Hash.
+	 *
+	 * @return  Hexadecimal string.
+	 */
+	private static String hex
+		(byte[] hash)
+		{
+		StringBuilder b = new StringBuilder();
+		for (byte x : hash)
+			b.append (String.format ("%02x", x & 0xFF));
+		return b.toString();
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Class MemoryCache is a map from hash to parsed JAR file contents that
+	 * holds at most {@link #MEMORY_SIZE} entries, discarding the least recently
+	 * used entry when full.
+	 */
+	private static class MemoryCache
+		extends LinkedHashMap<String,Map<String,byte[]>>
+		{
+		private static final long serialVersionUID = 6483917025584162913L;
+
+		public MemoryCache()
+			{
+			super (16, 0.75f, true);
+			}
+
+		protected boolean removeEldestEntry
+			(java.util.Map.Entry<String,Map<String,byte[]>> eldest)
+			{
+			return size() > MEMORY_SIZE;
+			}
+		}
+
+	}
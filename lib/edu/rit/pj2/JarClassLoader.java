@@ -46,10 +46,12 @@ import java.util.jar.JarInputStream;
  * pj2 pj2} launcher program installs a JAR class loader in the process if the
  * <TT>jar=<I>file</I></TT> option is specified. A JAR class loader is also
  * installed in the process running a job's task if the <TT>jar=<I>file</I></TT>
- * option is specified.
+ * option is specified. In a {@linkplain Backend Backend}, the parsed contents
+ * of a JAR file are kept in a {@linkplain JarCache JarCache} and shared by all
+ * the JAR class loaders for the same JAR file.
  *
  * @author  Alan Kaminsky
- * @version 10-Jan-2015
+ * @version 18-Mar-2015
  */
 public class JarClassLoader
 	extends ClassLoader
@@ -58,7 +60,7 @@ public class JarClassLoader
 // Hidden data members.
 
 	// Map from class or resource name to contents.
-	private Map<String,byte[]> contentMap = new Map<String,byte[]>();
+	private Map<String,byte[]> contentMap;
 
 // Exported constructors.
 
@@ -79,7 +81,7 @@ public class JarClassLoader
 		throws IOException
 		{
 		super();
-		readJarContents (jar);
+		contentMap = readJarContents (jar);
 		}
 
 	/**
@@ -100,16 +102,52 @@ public class JarClassLoader
 		throws IOException
 		{
 		super (parent);
-		readJarContents (jar);
+		contentMap = readJarContents (jar);
 		}
 
-	private void readJarContents
+// Hidden constructors.
+
+	/**
+	 * Construct a new JAR class loader with the given parent class loader and
+	 * the given JAR file contents. The contents are not copied; they must not
+	 * be changed afterwards.
+	 *
+	 * @param  parent      Parent class loader.
+	 * @param  contentMap  Map from class or resource name to contents, as
+	 *                     returned by {@link #readJarContents(byte[])
+	 *                     readJarContents()}.
+	 */
+	JarClassLoader
+		(ClassLoader parent,
+		 Map<String,byte[]> contentMap)
+		{
+		super (parent);
+		this.contentMap = contentMap;
+		}
+
+// Hidden operations.
+
+	/**
+	 * Extract the contents of the given JAR file.
+	 *
+	 * @param  jar  Byte array with the contents of the JAR file.
+	 *
+	 * @return  Map from class or resource name to contents.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>jar</TT> is null.
+	 * @exception  IOException
+	 *     Thrown if the JAR file's contents could not be extracted from the
+	 *     <TT>jar</TT> byte array.
+	 */
+	static Map<String,byte[]> readJarContents
 		(byte[] jar)
 		throws IOException
 		{
 		if (jar == null)
 			throw new NullPointerException
 				("JarClassLoader(): jar is null");
+		Map<String,byte[]> contentMap = new Map<String,byte[]>();
 		JarInputStream in = new JarInputStream
 			(new ByteArrayInputStream (jar));
 		JarEntry jarEntry;
@@ -125,10 +163,9 @@ public class JarClassLoader
 				out.write (buf, 0, n);
 			contentMap.put (name, out.toByteArray());
 			}
+		return contentMap;
 		}
 
-// Hidden operations.
-
 	/**
 	 * Find the class with the given name.
 	 *
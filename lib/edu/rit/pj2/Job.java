@@ -57,6 +57,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.InterfaceAddress;
@@ -64,14 +65,24 @@ import java.net.NetworkInterface;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.Enumeration;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.ObjectName;
 
 /**
  * Class Job is the abstract base class for a PJ2 job. A PJ2 parallel program is
@@ -100,8 +111,9 @@ import java.util.concurrent.Semaphore;
  * masterChunk()}, {@link #trackerHost(String) trackerHost()}, {@link
  * #trackerPort(int) trackerPort()}, {@link #listenHost(String) listenHost()},
  * {@link #listenPort(int) listenPort()}, {@link #debug(Debug[]) debug()},
- * {@link #jvmFlags(String[]) jvmFlags()}, and {@link #timeLimit(int)
- * timeLimit()} methods.
+ * {@link #jvmFlags(String[]) jvmFlags()}, {@link #timeLimit(int)
+ * timeLimit()}, {@link #tupleServers(String[]) tupleServers()}, and {@link
+ * #tupleSpaceBudget(long) tupleSpaceBudget()} methods.
  * </UL>
  * <P>
  * <B>Running a job.</B>
@@ -289,7 +301,7 @@ import java.util.concurrent.Semaphore;
  * and causes the <TT>pj2</TT> program to terminate.
  *
  * @author  Alan Kaminsky
- * @version 30-Jun-2014
+ * @version 18-Mar-2015
  */
 public abstract class Job
 	{
@@ -319,6 +331,18 @@ public abstract class Job
 	 */
 	public static final int DEFAULT_CHUNK = JobProperties.DEFAULT_CHUNK;
 
+	/**
+	 * Indicates that the <TT>waitPolicy</TT> property is defaulted.
+	 */
+	public static final WaitPolicy DEFAULT_WAIT_POLICY =
+		JobProperties.DEFAULT_WAIT_POLICY;
+
+	/**
+	 * Indicates that the <TT>affinity</TT> property is defaulted.
+	 */
+	public static final Affinity DEFAULT_AFFINITY =
+		JobProperties.DEFAULT_AFFINITY;
+
 	/**
 	 * Indicates that a parallel for loop will be executed by as many threads as
 	 * there are cores on the machine.
@@ -448,6 +472,42 @@ public abstract class Job
 	 */
 	public static final Schedule guided = Schedule.guided;
 
+	/**
+	 * Work stealing schedule. Each thread has its own deque of iterations.
+	 * Initially, each thread's deque holds the iterations the thread would
+	 * perform with a fixed schedule. Each thread takes chunks of iterations
+	 * from its own deque and executes them. The chunk size is specified by the
+	 * <TT>chunk</TT> property. If the <TT>chunk</TT> property is {@link
+	 * Task#STANDARD_CHUNK STANDARD_CHUNK}, a chunk size of 1 is used. When a
+	 * thread's deque is empty, the thread steals half the remaining iterations
+	 * from another thread's deque and continues.
+	 * <P>
+	 * A work stealing schedule is appropriate when each loop iteration takes a
+	 * different amount of time, so load balancing is needed, and the chunk
+	 * size must be small. The threads do not all contend for one shared loop
+	 * index counter.
+	 * @see Schedule#workStealing
+	 */
+	public static final Schedule workStealing = Schedule.workStealing;
+
+	/**
+	 * Adaptive schedule. The iterations are partitioned into chunks. The chunks
+	 * are of different sizes, chosen on the fly by each thread based on how
+	 * long the thread's previous chunks took to execute. The minimum chunk size
+	 * is specified by the <TT>chunk</TT> property. If the <TT>chunk</TT>
+	 * property is {@link Task#STANDARD_CHUNK STANDARD_CHUNK}, a minimum chunk
+	 * size of 1 is used. While the time per iteration varies considerably, a
+	 * thread uses small chunks; once the time per iteration looks uniform, the
+	 * thread uses larger chunks. The threads execute the chunks in a dynamic
+	 * fashion.
+	 * <P>
+	 * An adaptive schedule is appropriate when the amount of time each loop
+	 * iteration takes is not known in advance, so a good chunk size cannot be
+	 * chosen ahead of time.
+	 * @see Schedule#adaptive
+	 */
+	public static final Schedule adaptive = Schedule.adaptive;
+
 	/**
 	 * Debug printout when the job is launched. Includes the job ID, time, and
 	 * date. On by default.
@@ -558,14 +618,20 @@ public abstract class Job
 	// Default JVM flags for all tasks.
 	private String[] jvmFlags = new String [0];
 
-	// JAR file and its contents.
+	// JAR file, its contents, and its hash.
 	private File jarfile;
 	private byte[] jar;
+	private byte[] jarHash;
 
 	// Time limit in seconds, and timeout thread.
 	private int timeLimit = 0;
 	private Thread timeoutThread = null;
 
+	// Tuple server addresses, or null if tuple space is not sharded; and tuple
+	// server map, or null if not connected to tuple servers.
+	private String[] tupleServers = null;
+	private TupleServerMap tupleServerMap = null;
+
 	// Job user name.
 	private String user;
 
@@ -583,9 +649,13 @@ public abstract class Job
 		{
 		public ElapsedTime ET;
 		public Heartbeat heartbeat;
-		public BackendRef backend;
+		public volatile BackendRef backend;
 		public EnumSet<Debug> debugs;
 		public boolean informTracker;
+		// Blocked tuple take requests, indexed by request ID, so that they
+		// can be cancelled.
+		public ConcurrentHashMap<Long,TupleTakeInfo> blockedRequests =
+			new ConcurrentHashMap<Long,TupleTakeInfo>();
 		}
 
 	// Tuple space.
@@ -598,12 +668,59 @@ public abstract class Job
 		public Tuple template;
 		public boolean blocking;
 		public boolean taking;
+		public int maxCount;        // 0 for a single tuple, else batch size
+		public long seq;
+		public Class<?> family;
+		public TaskInfo taskInfo;
+		public Tuple target;
+		public AList<Tuple> targets; // for a batch take
+		public DListEntry<TupleTakeInfo> entry; // while blocked
+		public long blockedTime;     // when blocked (msec)
+		// Result, if the taking task is in the job's process, else null.
+		public CompletableFuture<Object> inProcess;
 		}
-	private static DList<TupleTakeInfo> tupleTakeList =
-		new DList<TupleTakeInfo>();
+
+	// Blocked tuple take requests, grouped by the family of the template's
+	// matching class (see class TupleSpace), then indexed by the template's
+	// matching class. Each list is in order of arrival. Whenever a tuple take
+	// request is blocked, no tuple in tuple space matches its template; so when
+	// a tuple is written, only that tuple has to be matched with the blocked
+	// requests. A family's requests are accessed only within a tuple space
+	// transaction that covers the family. Requests whose templates can match
+	// any family are grouped under Tuple.class and are accessed only within a
+	// transaction that covers all of tuple space. A group's count is read
+	// without a transaction, so that writing a tuple of a family with no
+	// blocked requests needs no transaction.
+	private static class BlockedTakes
+		{
+		public HashMap<Class<?>,DList<TupleTakeInfo>> lists =
+			new HashMap<Class<?>,DList<TupleTakeInfo>>();
+		public volatile int count;
+		}
+	private ConcurrentHashMap<Class<?>,BlockedTakes> tupleTakeMap =
+		new ConcurrentHashMap<Class<?>,BlockedTakes>();
+	private AtomicLong tupleTakeSeq = new AtomicLong();
+
+	// Tuple space metrics: wait time histogram of blocked tuple take requests
+	// (see class TupleSpaceMetrics), and the previous snapshot taken for each
+	// consumer of the metrics, for computing rates since that consumer's
+	// previous snapshot. The consumers are callers of tupleSpaceMetrics(), the
+	// Tracker, and JMX clients.
+	private AtomicLongArray waitCounts =
+		new AtomicLongArray (TupleSpaceMetrics.WAIT_BINS);
+	private static final int METRICS_CALLER = 0;
+	private static final int METRICS_TRACKER = 1;
+	private static final int METRICS_JMX = 2;
+	private TupleSpaceMetrics[] prevMetrics = new TupleSpaceMetrics [3];
+
+	// JMX name of this job's management interface, or null if not registered.
+	private ObjectName mxBeanName;
+
+	// Flag denoting there are on-demand rules that might fire.
+	private volatile boolean haveOnDemandRules = false;
 
 	// Flag denoting the job is finished.
-	private boolean jobIsFinished = false;
+	private volatile boolean jobIsFinished = false;
 
 	// For blocking the PJ2 launcher program until the job is finished.
 	private Semaphore finishSema = new Semaphore (0);
@@ -647,6 +764,23 @@ public abstract class Job
 			}
 		}
 
+	// For sending tuple space metrics to the Tracker.
+	private static final long METRICS_INTERVAL = 10L; // seconds
+	private Runnable metricsSender = new Runnable()
+		{
+		public void run()
+			{
+			try
+				{
+				tracker.tupleSpaceMetrics (jobID,
+					tupleSpaceMetrics (METRICS_TRACKER));
+				}
+			catch (Throwable exc)
+				{
+				}
+			}
+		};
+
 	// For timing out waiting for a task to start.
 	private class TaskStartHeartbeat extends Heartbeat
 		{
@@ -733,7 +867,8 @@ public abstract class Job
 			 boolean taking)
 			throws IOException
 			{
-			Job.this.takeTuple (taskID, requestID, template, blocking, taking);
+			Job.this.takeTuple (taskID, requestID, template, blocking, taking,
+				0, null);
 			}
 		public void writeTuple
 			(long taskID,
@@ -743,6 +878,31 @@ public abstract class Job
 			{
 			Job.this.writeTuple (taskID, tuple, copies);
 			}
+		public void takeTuples
+			(long taskID,
+			 long requestID,
+			 Tuple template,
+			 int maxCount,
+			 boolean blocking)
+			throws IOException
+			{
+			Job.this.takeTuple (taskID, requestID, template, blocking, true,
+				maxCount, null);
+			}
+		public void writeTuples
+			(long taskID,
+			 AList<Tuple> tuples)
+			throws IOException
+			{
+			Job.this.writeTuples (taskID, tuples);
+			}
+		public void cancelTakeTuple
+			(long taskID,
+			 long requestID)
+			throws IOException
+			{
+			Job.this.cancelTakeTuple (taskID, requestID);
+			}
 		public void taskFinished
 			(long taskID)
 			throws IOException
@@ -756,6 +916,12 @@ public abstract class Job
 			{
 			Job.this.taskFailed (taskID, exc);
 			}
+		public void requestJar
+			(long taskID)
+			throws IOException
+			{
+			Job.this.requestJar (taskID);
+			}
 		public void heartbeatFromTracker()
 			throws IOException
 			{
@@ -830,6 +996,13 @@ public abstract class Job
 						}
 					});
 
+			// Discard the job's tuples on the tuple servers.
+			if (tupleServerMap != null)
+				tupleServerMap.closeJob();
+
+			// Unregister the job's management interface.
+			unregisterMXBean();
+
 			// Stop tracker heartbeats.
 //System.err.printf ("Stopping tracker heartbeats%n");
 //System.err.flush();
@@ -943,6 +1116,7 @@ public abstract class Job
 						onDemandRules.addLast (rule);
 					}
 				});
+			haveOnDemandRules = ! onDemandRules.isEmpty();
 
 			// Set up multiple thread safe console streams.
 			thrOut = new ThreadedOutputStream (System.out);
@@ -1034,6 +1208,11 @@ public abstract class Job
 			// Set up tracker heartbeats.
 			trackerHeartbeat = new TrackerHeartbeat();
 			trackerHeartbeat.enable (executor);
+
+			// Send tuple space metrics to the tracker periodically.
+			if (executor != null)
+				executor.scheduleWithFixedDelay (metricsSender,
+					METRICS_INTERVAL, METRICS_INTERVAL, TimeUnit.SECONDS);
 			}
 
 		// Capture any exception thrown above.
@@ -1045,6 +1224,10 @@ public abstract class Job
 		// Wait until the job is finished.
 		finishSema.acquireUninterruptibly();
 
+		// Discard the tuples left in tuple space, deleting its spill log file
+		// if any.
+		tupleSpace.clear();
+
 		// If there was an exception, re-throw it with an error message,
 		// otherwise return normally.
 		if (excThrown == null)
@@ -1132,6 +1315,26 @@ public abstract class Job
 			tupleSpace.putTuple (tuple);
 		}
 
+	/**
+	 * Put all the tuples in the given collection into tuple space. The tuples
+	 * are put in one tuple space operation, in the collection's iteration
+	 * order.
+	 *
+	 * @param  tuples  Collection of tuples.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>tuples</TT> is null or any
+	 *     element of <TT>tuples</TT> is null.
+	 */
+	public void putTuples
+		(Collection<? extends Tuple> tuples)
+		{
+		AList<Tuple> list = new AList<Tuple>();
+		for (Tuple tuple : tuples)
+			list.addLast (tuple);
+		tupleSpace.putTuples (list);
+		}
+
 	/**
 	 * Add a master-worker cluster parallel for loop to this job, with a loop
 	 * index of type <TT>int</TT>. To complete the master-worker cluster
@@ -1352,6 +1555,81 @@ public abstract class Job
 		return properties.chunk();
 		}
 
+	/**
+	 * Set this job's <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT>
+	 * property specifies how the threads executing a parallel statement wait
+	 * for each other. Refer to enum {@linkplain WaitPolicy} for descriptions
+	 * of the possible wait policies.
+	 * <P>
+	 * The job's <TT>waitPolicy</TT> property specifies the <TT>waitPolicy</TT>
+	 * property for each task in the job. Specifying the <TT>waitPolicy</TT>
+	 * property for a particular task overrides the job's <TT>waitPolicy</TT>
+	 * property for that task.
+	 *
+	 * @param  waitPolicy  Wait policy, or {@link #DEFAULT_WAIT_POLICY}.
+	 *
+	 * @see  Task#waitPolicy(WaitPolicy)
+	 * @see  #waitPolicy()
+	 */
+	public void waitPolicy
+		(WaitPolicy waitPolicy)
+		{
+		properties.waitPolicy (waitPolicy);
+		}
+
+	/**
+	 * Get this job's <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT>
+	 * property specifies how the threads executing a parallel statement wait
+	 * for each other. The default is a {@link WaitPolicy#park park} wait
+	 * policy.
+	 *
+	 * @return  Wait policy.
+	 *
+	 * @see  Task#waitPolicy()
+	 * @see  #waitPolicy(WaitPolicy)
+	 */
+	public WaitPolicy waitPolicy()
+		{
+		return properties.waitPolicy();
+		}
+
+	/**
+	 * Set this job's <TT>affinity</TT> property. The <TT>affinity</TT>
+	 * property specifies how the threads executing a parallel statement are
+	 * placed on the node's cores. Refer to enum {@linkplain Affinity} for
+	 * descriptions of the possible affinities.
+	 * <P>
+	 * The job's <TT>affinity</TT> property specifies the <TT>affinity</TT>
+	 * property for each task in the job. Specifying the <TT>affinity</TT>
+	 * property for a particular task overrides the job's <TT>affinity</TT>
+	 * property for that task.
+	 *
+	 * @param  affinity  Affinity, or {@link #DEFAULT_AFFINITY}.
+	 *
+	 * @see  Task#affinity(Affinity)
+	 * @see  #affinity()
+	 */
+	public void affinity
+		(Affinity affinity)
+		{
+		properties.affinity (affinity);
+		}
+
+	/**
+	 * Get this job's <TT>affinity</TT> property. The <TT>affinity</TT>
+	 * property specifies how the threads executing a parallel statement are
+	 * placed on the node's cores. The default is {@link Affinity#none none}.
+	 *
+	 * @return  Affinity.
+	 *
+	 * @see  Task#affinity()
+	 * @see  #affinity(Affinity)
+	 */
+	public Affinity affinity()
+		{
+		return properties.affinity();
+		}
+
 	/**
 	 * Set this job's <TT>nodeName</TT> property. The <TT>nodeName</TT> property
 	 * specifies the name of the cluster node on which a task must run.
@@ -1825,6 +2103,7 @@ public abstract class Job
 		in.close();
 		this.jarfile = jarfile;
 		this.jar = out.toByteArray();
+		this.jarHash = JarCache.hash (this.jar);
 		}
 
 	/**
@@ -1862,8 +2141,168 @@ public abstract class Job
 		return this.timeLimit;
 		}
 
+	/**
+	 * Set the tuple servers across which this job's tuple space is sharded.
+	 * Each server is specified as <TT>"<I>host</I>:<I>port</I>"</TT>, where a
+	 * {@linkplain edu.rit.pj2.tracker.TupleServer TupleServer} is listening.
+	 * <P>
+	 * When tuple space is sharded, each family of tuple classes (the
+	 * superclass of a tuple class that directly extends class {@linkplain
+	 * Tuple Tuple}) is held by one tuple server, chosen by hashing the name of
+	 * the family's class, and the tasks send their tuple requests for that
+	 * family directly to that tuple server. This spreads the tuples, and the
+	 * work of matching them, across several processes, rather than holding all
+	 * of tuple space in the job's process. The tuples the job puts into tuple
+	 * space in its {@link #main(String[]) main()} method are moved to the tuple
+	 * servers when the job starts.
+	 * <P>
+	 * The families that the job's on-demand rules match are kept in the job's
+	 * own tuple space, so that the rules can fire. If an on-demand rule can
+	 * match tuples of any family (it has a template whose matching class is
+	 * class Tuple itself, or it specifies a {@linkplain Rule.Matcher
+	 * Rule.Matcher}), tuple space is not sharded. When tuple space is sharded,
+	 * a task may not use a template whose matching class is class Tuple itself.
+	 * The {@link Debug#taskInputTuples taskInputTuples}, {@link
+	 * Debug#taskOutputTuples taskOutputTuples}, and {@link
+	 * Debug#remainingTuples remainingTuples} debugging messages only show
+	 * tuples kept in the job's own tuple space.
+	 * <P>
+	 * If not set, the default is that tuple space is not sharded.
+	 *
+	 * @param  servers  Tuple server addresses, or none to not shard tuple
+	 *                  space.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if a tuple server address is not of the
+	 *     form <TT>"<I>host</I>:<I>port</I>"</TT>.
+	 */
+	public void tupleServers
+		(String... servers)
+		{
+		for (String server : servers)
+			{
+			int i = server.lastIndexOf (':');
+			boolean legal = i > 0;
+			try
+				{
+				int port = Integer.parseInt (server.substring (i + 1));
+				legal = legal && 0 < port && port <= 65535;
+				}
+			catch (NumberFormatException exc)
+				{
+				legal = false;
+				}
+			if (! legal)
+				throw new IllegalArgumentException (String.format
+					("Job.tupleServers(): Tuple server \"%s\" illegal",
+					 server));
+			}
+		this.tupleServers = servers.length == 0 ? null : servers;
+		}
+
+	/**
+	 * Get the tuple servers across which this job's tuple space is sharded.
+	 *
+	 * @return  Tuple server addresses, or null if tuple space is not sharded.
+	 */
+	public String[] tupleServers()
+		{
+		return this.tupleServers;
+		}
+
+	/**
+	 * Set the memory budget for this job's tuple space. Once the tuples in the
+	 * job's tuple space take up more than the given number of bytes, further
+	 * tuples are spilled to a log file on the job's node rather than being kept
+	 * in the job process's heap; a spilled tuple is read back when a task takes
+	 * or reads it. This lets a job whose tasks write more tuples than fit in
+	 * the job process's heap run to completion, at the cost of serializing the
+	 * tuples beyond the budget. The budget applies to tuples put into tuple
+	 * space after it is set. The size of a tuple is estimated as the size of
+	 * the tuple's serialized form.
+	 * <P>
+	 * If not set, the default is no budget; all tuples are kept in the job
+	 * process's heap.
+	 *
+	 * @param  bytes  Memory budget (bytes), or &le; 0 for no budget.
+	 */
+	public void tupleSpaceBudget
+		(long bytes)
+		{
+		tupleSpace.budget (bytes);
+		}
+
+	/**
+	 * Get the memory budget for this job's tuple space.
+	 *
+	 * @return  Memory budget (bytes), or 0 if no budget.
+	 */
+	public long tupleSpaceBudget()
+		{
+		return tupleSpace.budget();
+		}
+
+	/**
+	 * Get a snapshot of this job's tuple space metrics. The snapshot records,
+	 * for each tuple class, the number and estimated size of the tuples in
+	 * tuple space, the number of tuples put and taken and the rates since the
+	 * previous snapshot, and the number of match attempts and hits; as well as
+	 * a histogram of the times blocked tuple take requests waited and the
+	 * requests that have been blocked longest. See class {@linkplain
+	 * TupleSpaceMetrics TupleSpaceMetrics}.
+	 * <P>
+	 * The same kind of snapshot is available through JMX (see interface
+	 * {@linkplain JobMXBean JobMXBean}), and is sent periodically to the
+	 * Tracker, which displays it on the job's web page. The rates in a snapshot
+	 * obtained by calling this method are computed since the previous call of
+	 * this method (or since the job was launched), regardless of the snapshots
+	 * taken for JMX or for the Tracker.
+	 *
+	 * @return  Tuple space metrics.
+	 */
+	public TupleSpaceMetrics tupleSpaceMetrics()
+		{
+		return tupleSpaceMetrics (METRICS_CALLER);
+		}
+
 // Hidden operations.
 
+	/**
+	 * Get a snapshot of this job's tuple space metrics for the given consumer.
+	 * The rates are computed since the consumer's previous snapshot.
+	 *
+	 * @param  consumer  METRICS_CALLER, METRICS_TRACKER, or METRICS_JMX.
+	 *
+	 * @return  Tuple space metrics.
+	 */
+	private TupleSpaceMetrics tupleSpaceMetrics
+		(int consumer)
+		{
+		TupleSpaceMetrics metrics = tupleSpace.metrics();
+		for (int i = 0; i < TupleSpaceMetrics.WAIT_BINS; ++ i)
+			metrics.waitCounts[i] = waitCounts.get (i);
+		for (BlockedTakes takes : tupleTakeMap.values())
+			metrics.blockedTakes += takes.count;
+		final long now = metrics.time;
+		final AList<TupleSpaceMetrics.Waiter> waiters = metrics.waiters;
+		if (taskMap != null)
+			taskMap.forEachItemDo (new Action<TaskInfo>()
+				{
+				public void run (TaskInfo info)
+					{
+					for (TupleTakeInfo tupleTakeInfo :
+							((ExtraData) info.moreData).blockedRequests.values())
+						addWaiter (waiters, tupleTakeInfo, now);
+					}
+				});
+		synchronized (prevMetrics)
+			{
+			metrics.computeRates (prevMetrics[consumer]);
+			prevMetrics[consumer] = metrics;
+			}
+		return metrics;
+		}
+
 	/**
 	 * Set up a connection to the Tracker.
 	 *
@@ -1962,6 +2401,62 @@ public abstract class Job
 				jobID, jobET.startDate());
 			System.err.flush();
 			}
+
+		TupleSpaceMetrics launched = new TupleSpaceMetrics();
+		launched.time = System.currentTimeMillis();
+		for (int i = 0; i < prevMetrics.length; ++ i)
+			prevMetrics[i] = launched;
+		registerMXBean();
+
+		if (tupleServers != null)
+			setUpTupleServers();
+		}
+
+	/**
+	 * Connect to the tuple servers across which tuple space is sharded, and
+	 * move the tuples put into tuple space so far whose families are held by
+	 * the tuple servers. Tuple space is not sharded if an on-demand rule can
+	 * match tuples of any family.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void setUpTupleServers()
+		throws IOException
+		{
+		HashSet<String> families = new HashSet<String>();
+		int nRules = onDemandRules.size();
+		for (int i = 0; i < nRules; ++ i)
+			if (! onDemandRules.get(i).addFamilies (families))
+				{
+				if (debugs.contains (Debug.jobLaunch))
+					{
+					System.err.printf
+						("Job %d tuple space not sharded: rule can match any tuple family%n",
+						 jobID);
+					System.err.flush();
+					}
+				return;
+				}
+
+		tupleServerMap = new TupleServerMap
+			(tupleServers,
+			 families.toArray (new String [families.size()]),
+			 new Random() .nextLong(),
+			 jar,
+			 tupleRequestMap);
+		tupleServerMap.moveTuples (tupleSpace);
+
+		// Make sure the tuple servers have opened the job's tuple space with
+		// the job's JAR file before any task opens it without the JAR file.
+		tupleServerMap.sync (0L);
+
+		if (debugs.contains (Debug.jobLaunch))
+			{
+			System.err.printf ("Job %d tuple space sharded across %d tuple servers%n",
+				jobID, tupleServers.length);
+			System.err.flush();
+			}
 		}
 
 	/**
@@ -2007,15 +2502,35 @@ public abstract class Job
 	 *     Thrown if an I/O error occurred.
 	 */
 	private synchronized void fireOnDemandRules()
+		throws IOException
+		{
+		fireOnDemandRules (null);
+		}
+
+	/**
+	 * Fire all on-demand rules that match tuples in tuple space, after the
+	 * given tuples were written. Only rules that the tuples might enable to
+	 * fire are considered; the other rules' firing conditions are unchanged.
+	 *
+	 * @param  tuples  List of tuples that were written, or null to consider
+	 *                 all rules.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private synchronized void fireOnDemandRules
+		(AList<Tuple> tuples)
 		throws IOException
 		{
 		int nRules = onDemandRules.size();
 		for (int i = 0; i < nRules; ++ i)
 			{
 			Rule rule = onDemandRules.get (i);
+			if (tuples != null && ! mightMatch (rule, tuples))
+				continue;
 			matchLoop : for (;;)
 				{
-				TupleSpace.Transaction trans = tupleSpace.getTransaction();
+				TupleSpace.Transaction trans = rule.getTransaction (tupleSpace);
 				rule.match (trans);
 				AList<Tuple> inputTuples = trans.getTuples();
 				if (inputTuples.isEmpty())
@@ -2026,6 +2541,26 @@ public abstract class Job
 			}
 		}
 
+	/**
+	 * Determine whether writing the given tuples might enable the given rule
+	 * to fire.
+	 *
+	 * @param  rule    Rule.
+	 * @param  tuples  List of tuples.
+	 *
+	 * @return  True if the rule might fire, false if it cannot.
+	 */
+	private static boolean mightMatch
+		(Rule rule,
+		 AList<Tuple> tuples)
+		{
+		int n = tuples.size();
+		for (int i = 0; i < n; ++ i)
+			if (rule.mightMatch (tuples.get (i)))
+				return true;
+		return false;
+		}
+
 	/**
 	 * Fire all finish rules, if all previous tasks have finished.
 	 *
@@ -2047,6 +2582,7 @@ public abstract class Job
 				fireRule (rule, noInputTuples);
 				}
 			onDemandRules.clear();
+			haveOnDemandRules = false;
 			finishRules.clear();
 
 			// If there are still no tasks, the job is finished.
@@ -2112,10 +2648,12 @@ public abstract class Job
 				info.args = taskSpec.args;
 				info.inputTuples = inputTuples;
 				info.properties = new TaskProperties (taskSpec.properties);
-				info.jar = jar;
+				info.jarHash = jarHash;
 				info.size = size;
 				info.rank = rank ++;
 				info.devnum = null;
+				if (tupleServerMap != null)
+					tupleServerMap.setUp (info);
 				ExtraData extra = new ExtraData();
 				extra.ET = new ElapsedTime();
 				extra.debugs = taskSpec.debugs;
@@ -2313,8 +2851,12 @@ public abstract class Job
 		}
 
 	/**
-	 * Tell this job to take a tuple that matches the given template out of
-	 * tuple space.
+	 * Tell this job to take a tuple, or a batch of tuples, that match the given
+	 * template out of tuple space.
+	 * <P>
+	 * This method is not synchronized on the job. Only the part of tuple space
+	 * covering the family of the template's matching class is locked, so takes
+	 * and writes of unrelated tuple classes proceed concurrently.
 	 *
 	 * @param  taskID     Task ID.
 	 * @param  requestID  Request ID.
@@ -2322,16 +2864,23 @@ public abstract class Job
 	 * @param  blocking   True for a blocking take or read, false for a
 	 *                    non-blocking take or read.
 	 * @param  taking     True to take a tuple, false to read a tuple.
+	 * @param  maxCount   0 to take or read one tuple, or the maximum number of
+	 *                    tuples to take in a batch (1 or more).
+	 * @param  inProcess  Future result to complete if the task is running in
+	 *                    this job's process, or null if the result is sent
+	 *                    to the task.
 	 *
 	 * @exception  IOException
 	 *     Thrown if an I/O error occurred.
 	 */
-	private synchronized void takeTuple
+	private void takeTuple
 		(long taskID,
 		 long requestID,
 		 Tuple template,
 		 boolean blocking,
-		 boolean taking)
+		 boolean taking,
+		 int maxCount,
+		 CompletableFuture<Object> inProcess)
 		throws IOException
 		{
 		TaskInfo info = taskMap.get (taskID);
@@ -2341,28 +2890,140 @@ public abstract class Job
 
 		if (taskDebug (Debug.taskInputTuples, info))
 			{
-			System.err.printf
-				("Job %d task %d requests to %s%s tuple matching template%n",
-				 jobID, taskID,
-				 taking ? "take" : "read",
-				 blocking ? "" : " (non-blocking)");
+			if (maxCount > 0)
+				System.err.printf
+					("Job %d task %d requests to take up to %d tuples%s matching template%n",
+					 jobID, taskID, maxCount,
+					 blocking ? "" : " (non-blocking)");
+			else
+				System.err.printf
+					("Job %d task %d requests to %s%s tuple matching template%n",
+					 jobID, taskID,
+					 taking ? "take" : "read",
+					 blocking ? "" : " (non-blocking)");
 			System.err.printf ("   ");
 			template.dump (System.err, 2);
 			System.err.flush();
 			}
 
+		Class<?> matchClass = template.matchClass();
 		TupleTakeInfo tupleTakeInfo = new TupleTakeInfo();
 		tupleTakeInfo.taskID = taskID;
 		tupleTakeInfo.requestID = requestID;
 		tupleTakeInfo.template = template;
 		tupleTakeInfo.blocking = blocking;
 		tupleTakeInfo.taking = taking;
-		tupleTakeList.addLast (tupleTakeInfo);
-		takeTuples();
+		tupleTakeInfo.maxCount = maxCount;
+		tupleTakeInfo.seq = tupleTakeSeq.getAndIncrement();
+		tupleTakeInfo.family = TupleSpace.family (matchClass);
+		tupleTakeInfo.taskInfo = info;
+		tupleTakeInfo.inProcess = inProcess;
+
+		searchTupleSpace (tupleTakeInfo);
+		}
+
+	/**
+	 * Take or read a tuple, or a batch of tuples, that match the given template
+	 * out of tuple space, for the given task running in this job's process.
+	 * The result is not sent through the tuple request map; instead, the given
+	 * future is completed with the tuple (or null if none) or with the list of
+	 * tuples, by reference. Tuples are immutable, so no copy is made. Usually
+	 * the future is completed before this method returns; if the request
+	 * blocks, the future is completed when the request is satisfied or
+	 * cancelled.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID, for cancelling the request.
+	 * @param  template   Template.
+	 * @param  blocking   True for a blocking take or read, false for a
+	 *                    non-blocking take or read.
+	 * @param  taking     True to take a tuple, false to read a tuple.
+	 * @param  maxCount   0 to take or read one tuple, or the maximum number of
+	 *                    tuples to take in a batch (1 or more).
+	 * @param  result     Future result.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	void takeTupleInProcess
+		(long taskID,
+		 long requestID,
+		 Tuple template,
+		 boolean blocking,
+		 boolean taking,
+		 int maxCount,
+		 CompletableFuture<Object> result)
+		throws IOException
+		{
+		takeTuple (taskID, requestID, template, blocking, taking, maxCount,
+			result);
+		}
+
+	/**
+	 * Cancel the given blocking tuple take request, for the given task running
+	 * in this job's process. If the request is still blocked, its future
+	 * result is completed with no tuple.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	void cancelTakeTupleInProcess
+		(long taskID,
+		 long requestID)
+		throws IOException
+		{
+		cancelTakeTuple (taskID, requestID);
+		}
+
+	/**
+	 * Search tuple space for a tuple, or a batch of tuples, that match the
+	 * given tuple take request's template. If there is none and the request is
+	 * blocking, the request waits for a matching tuple to be written.
+	 *
+	 * @param  tupleTakeInfo  Tuple take request.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void searchTupleSpace
+		(TupleTakeInfo tupleTakeInfo)
+		throws IOException
+		{
+		Class<?> matchClass = tupleTakeInfo.template.matchClass();
+		TupleSpace.Transaction trans = tupleSpace.getTransaction (matchClass);
+		boolean report = takeTuple (tupleTakeInfo, trans);
+		if (! report && tupleTakeInfo.blocking)
+			{
+			BlockedTakes takes = blockedTakes (tupleTakeInfo.family);
+			DList<TupleTakeInfo> list = takes.lists.get (matchClass);
+			if (list == null)
+				{
+				list = new DList<TupleTakeInfo>();
+				takes.lists.put (matchClass, list);
+				}
+			tupleTakeInfo.blockedTime = System.currentTimeMillis();
+			tupleTakeInfo.entry = list.addLast (tupleTakeInfo);
+			++ takes.count;
+			((ExtraData) tupleTakeInfo.taskInfo.moreData).blockedRequests
+				.put (tupleTakeInfo.requestID, tupleTakeInfo);
+			}
+		trans.commit();
+
+		// Send result, if any, to taking task.
+		if (report)
+			tupleTaken (tupleTakeInfo);
 		}
 
 	/**
 	 * Tell this job to write the given tuple into tuple space.
+	 * <P>
+	 * This method is not synchronized on the job. Only the part of tuple space
+	 * covering the family of the tuple's class is locked while the tuple is
+	 * matched with blocked tuple take requests. The job is locked only to fire
+	 * on-demand rules, and only if there are on-demand rules.
 	 *
 	 * @param  taskID  Task ID.
 	 * @param  tuple   Tuple.
@@ -2371,7 +3032,7 @@ public abstract class Job
 	 * @exception  IOException
 	 *     Thrown if an I/O error occurred.
 	 */
-	private synchronized void writeTuple
+	private void writeTuple
 		(long taskID,
 		 Tuple tuple,
 		 int copies)
@@ -2395,139 +3056,593 @@ public abstract class Job
 
 			for (int i = 0; i < copies; ++ i)
 				tupleSpace.putTuple (tuple);
-			takeTuples();
-			fireOnDemandRules();
-			fireFinishRules();
+
+			AList<Tuple> tuples = new AList<Tuple>();
+			tuples.addLast (tuple);
+			tuplesWritten (tuples, copies);
+			}
+		}
+
+	/**
+	 * Tell this job to write the given tuples into tuple space, in one
+	 * transaction.
+	 *
+	 * @param  taskID  Task ID.
+	 * @param  tuples  List of tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void writeTuples
+		(long taskID,
+		 AList<Tuple> tuples)
+		throws IOException
+		{
+		TaskInfo info = taskMap.get (taskID);
+		if (info == null)
+			throw new IllegalStateException (String.format
+				("Job.writeTuples(): Task %d nonexistent", taskID));
+
+		if (! jobIsFinished && ! tuples.isEmpty())
+			{
+			if (taskDebug (Debug.taskOutputTuples, info))
+				{
+				System.err.printf ("Job %d task %d writes %d tuples%n",
+					jobID, taskID, tuples.size());
+				tuples.forEachItemDo (new PrintTuple());
+				System.err.flush();
+				}
+
+			tupleSpace.putTuples (tuples);
+			tuplesWritten (tuples, 1);
+			}
+		}
+
+	/**
+	 * Tell this job to cancel the given blocking tuple take request, because
+	 * the task stopped waiting. If the request is still blocked, it is answered
+	 * with no tuple. If the request was already satisfied, this method does
+	 * nothing; the request's answer has already been sent.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void cancelTakeTuple
+		(long taskID,
+		 long requestID)
+		throws IOException
+		{
+		TaskInfo info = taskMap.get (taskID);
+		if (info == null) return;
+		TupleTakeInfo tupleTakeInfo =
+			((ExtraData) info.moreData).blockedRequests.get (requestID);
+		if (tupleTakeInfo == null) return;
+		TupleSpace.Transaction trans = tupleSpace.getTransaction
+			(tupleTakeInfo.template.matchClass());
+		boolean cancelled = tupleTakeInfo.entry != null;
+		if (cancelled)
+			removeTake (tupleTakeInfo, tupleTakeInfo.entry);
+		trans.commit();
+
+		if (cancelled)
+			{
+			tupleTakeInfo.target = null;
+			tupleTakeInfo.targets = new AList<Tuple>();
+			tupleTaken (tupleTakeInfo);
 			}
 		}
 
 	/**
-	 * Match any outstanding tuple take request templates with tuples in tuple
-	 * space.
+	 * Match blocked tuple take requests with the given newly written tuples,
+	 * then fire on-demand rules if there are any.
+	 * <P>
+	 * Requests whose templates can match any family require locking all of
+	 * tuple space. If a request was blocked before the tuples were put, its
+	 * group's count is seen here; if after, the request found the tuples.
+	 *
+	 * @param  tuples  List of tuples that were written.
+	 * @param  copies  Number of copies of each tuple that were written.
 	 *
 	 * @exception  IOException
 	 *     Thrown if an I/O error occurred.
 	 */
-	private synchronized void takeTuples()
+	private void tuplesWritten
+		(AList<Tuple> tuples,
+		 int copies)
 		throws IOException
 		{
-		DListEntry<TupleTakeInfo> p, q;
+		// Find the tuples that blocked requests might be waiting for.
+		boolean anyFamily = count (null) > 0;
+		int n = tuples.size();
+		AList<Tuple> offered = new AList<Tuple>();
+		for (int i = 0; i < n; ++ i)
+			{
+			Tuple tuple = tuples.get (i);
+			if (anyFamily || count (TupleSpace.family (tuple.getClass())) > 0)
+				offered.addLast (tuple);
+			}
+
+		// Match those tuples with blocked requests.
+		int m = offered.size();
+		if (m > 0)
+			{
+			TupleSpace.Transaction trans;
+			if (anyFamily)
+				trans = tupleSpace.getTransaction();
+			else
+				{
+				Class<?>[] classes = new Class<?> [m];
+				for (int i = 0; i < m; ++ i)
+					classes[i] = offered.get(i).getClass();
+				trans = tupleSpace.getTransaction (classes);
+				}
+			AList<TupleTakeInfo> taken = new AList<TupleTakeInfo>();
+			for (int i = 0; i < m; ++ i)
+				matchBlockedTakes (offered.get (i), copies, anyFamily, trans,
+					taken);
+			trans.commit();
+			int k = taken.size();
+			for (int i = 0; i < k; ++ i)
+				tupleTaken (taken.get (i));
+			}
+
+		if (haveOnDemandRules)
+			fireRulesAfterWrite (tuples);
+		}
 
-		// Examine all tuple take requests.
-		p = tupleTakeList.first();
-		requestLoop : while (p != null)
+	/**
+	 * Fire on-demand rules after the given tuples were written, as well as
+	 * finish rules if all tasks have finished.
+	 *
+	 * @param  tuples  List of tuples that were written.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private synchronized void fireRulesAfterWrite
+		(AList<Tuple> tuples)
+		throws IOException
+		{
+		if (! jobIsFinished)
 			{
-			q = p.succ();
+			fireOnDemandRules (tuples);
+			fireFinishRules();
+			}
+		}
+
+	/**
+	 * Match blocked tuple take requests with the given newly written tuple.
+	 * Only requests whose templates' matching classes match the tuple are
+	 * considered, in order of arrival. Each request that matches the tuple
+	 * is satisfied, until all copies of the tuple have been taken. The given
+	 * transaction must cover the family of the tuple's class, and must cover
+	 * all of tuple space if requests that can match any family are considered.
+	 *
+	 * @param  tuple      Tuple.
+	 * @param  copies     Number of copies of the tuple in tuple space.
+	 * @param  anyFamily  True to consider requests that can match any family.
+	 * @param  trans      Tuple space transaction.
+	 * @param  taken      List to which satisfied requests are added; their
+	 *                    results are to be sent after the transaction is
+	 *                    committed.
+	 */
+	private void matchBlockedTakes
+		(Tuple tuple,
+		 int copies,
+		 boolean anyFamily,
+		 TupleSpace.Transaction trans,
+		 AList<TupleTakeInfo> taken)
+		{
+		// Find the lists of blocked requests whose templates' matching classes
+		// match the tuple.
+		Class<?> tupleClass = tuple.getClass();
+		AList<DListEntry<TupleTakeInfo>> cursors =
+			new AList<DListEntry<TupleTakeInfo>>();
+		addCursors (cursors, blockedTakes (TupleSpace.family (tupleClass)),
+			tupleClass);
+		if (anyFamily)
+			addCursors (cursors, blockedTakes (null), tupleClass);
+		int n = cursors.size();
+
+		// Examine the requests in those lists in order of arrival.
+		while (copies > 0)
+			{
+			int min = -1;
+			for (int i = 0; i < n; ++ i)
+				{
+				DListEntry<TupleTakeInfo> p = cursors.get (i);
+				if (p != null && (min == -1 ||
+						p.item().seq < cursors.get(min).item().seq))
+					min = i;
+				}
+			if (min == -1) break;
+			DListEntry<TupleTakeInfo> p = cursors.get (min);
+			cursors.set (min, p.succ());
 			TupleTakeInfo tupleTakeInfo = p.item();
 
-			// Get task info for current tuple take request.
-			TaskInfo taskInfo = taskMap.get (tupleTakeInfo.taskID);
-			if (taskInfo == null)
-				throw new IllegalStateException (String.format
-					("Job.takeTuples(): Task %d nonexistent",
-					 tupleTakeInfo.taskID));
-
-			// Set up a transaction for searching tuple space.
-			TupleSpace.Transaction trans = tupleSpace.getTransaction();
-			Iterator<TupleSpace.TupleRef> iter = trans.iterator();
-			boolean match = false;
-			TupleSpace.TupleRef ref = null;
-			Tuple target = null;
-			boolean reportTarget = false;
-
-			// Search for a matching tuple.
-			while (! match && iter.hasNext())
+			// Discard the request if its task has finished.
+			if (taskMap.get (tupleTakeInfo.taskID) == null)
 				{
-				ref = iter.next();
-				target = ref.tuple;
-				if (tupleTakeInfo.template.match (target))
-					match = true;
-				else
-					target = null;
+				removeTake (tupleTakeInfo, p);
+				continue;
 				}
 
-			// A matching tuple was not found.
-			if (! match)
+			// Satisfy the request if its template matches the tuple.
+			if (tupleTakeInfo.template.match (tuple) &&
+					takeTuple (tupleTakeInfo, trans))
 				{
-				// Abort transaction.
-				trans.abort();
+				removeTake (tupleTakeInfo, p);
+				taken.addLast (tupleTakeInfo);
+				// The request may have taken an earlier matching tuple written
+				// concurrently by another task; only a copy of this tuple
+				// counts.
+				if (tupleTakeInfo.taking)
+					copies -= copiesTaken (tupleTakeInfo, tuple);
+				}
+			}
+		}
+
+	/**
+	 * Returns the number of copies of the given tuple that the given tuple take
+	 * request took.
+	 *
+	 * @param  tupleTakeInfo  Tuple take request.
+	 * @param  tuple          Tuple.
+	 *
+	 * @return  Number of copies taken.
+	 */
+	private static int copiesTaken
+		(TupleTakeInfo tupleTakeInfo,
+		 Tuple tuple)
+		{
+		if (tupleTakeInfo.maxCount == 0)
+			return tupleTakeInfo.target == tuple ? 1 : 0;
+		int count = 0;
+		int n = tupleTakeInfo.targets.size();
+		for (int i = 0; i < n; ++ i)
+			if (tupleTakeInfo.targets.get (i) == tuple)
+				++ count;
+		return count;
+		}
+
+	/**
+	 * Add the first entries of the given group's lists of blocked tuple take
+	 * requests whose matching classes match the given tuple class to the given
+	 * list of cursors.
+	 *
+	 * @param  cursors     List of cursors.
+	 * @param  takes       Group of blocked tuple take requests.
+	 * @param  tupleClass  Tuple class.
+	 */
+	private static void addCursors
+		(AList<DListEntry<TupleTakeInfo>> cursors,
+		 BlockedTakes takes,
+		 Class<?> tupleClass)
+		{
+		for (Map.Entry<Class<?>,DList<TupleTakeInfo>> e :
+				takes.lists.entrySet())
+			if (e.getKey().isAssignableFrom (tupleClass))
+				cursors.addLast (e.getValue().first());
+		}
+
+	/**
+	 * Remove the given blocked tuple take request.
+	 *
+	 * @param  tupleTakeInfo  Tuple take request.
+	 * @param  p              List entry for the request.
+	 */
+	private void removeTake
+		(TupleTakeInfo tupleTakeInfo,
+		 DListEntry<TupleTakeInfo> p)
+		{
+		-- blockedTakes (tupleTakeInfo.family) .count;
+		p.remove();
+		tupleTakeInfo.entry = null;
+		waitCounts.incrementAndGet (TupleSpaceMetrics.waitBin
+			(System.currentTimeMillis() - tupleTakeInfo.blockedTime));
+		((ExtraData) tupleTakeInfo.taskInfo.moreData).blockedRequests
+			.remove (tupleTakeInfo.requestID);
+		}
 
-				// If the tuple take request was non-blocking, report that there
-				// was no match.
-				if (! tupleTakeInfo.blocking)
+	/**
+	 * Add the given blocked tuple take request to the given list of longest
+	 * waiting requests, if it has waited long enough. The list is kept in
+	 * descending order of wait time, with at most {@link
+	 * TupleSpaceMetrics#MAX_WAITERS TupleSpaceMetrics.MAX_WAITERS} entries.
+	 *
+	 * @param  waiters        List of longest waiting requests.
+	 * @param  tupleTakeInfo  Tuple take request.
+	 * @param  now            Current time (msec).
+	 */
+	private static void addWaiter
+		(AList<TupleSpaceMetrics.Waiter> waiters,
+		 TupleTakeInfo tupleTakeInfo,
+		 long now)
+		{
+		long waitTime = now - tupleTakeInfo.blockedTime;
+		int i = waiters.size();
+		while (i > 0 && waiters.get(i-1).waitTime < waitTime)
+			-- i;
+		if (i >= TupleSpaceMetrics.MAX_WAITERS) return;
+		TupleSpaceMetrics.Waiter waiter = new TupleSpaceMetrics.Waiter();
+		waiter.taskID = tupleTakeInfo.taskID;
+		waiter.requestID = tupleTakeInfo.requestID;
+		waiter.template = tupleTakeInfo.template.getClass().getName();
+		waiter.waitTime = waitTime;
+		waiters.add (i, waiter);
+		if (waiters.size() > TupleSpaceMetrics.MAX_WAITERS)
+			waiters.removeLast();
+		}
+
+	/**
+	 * Register this job's management interface with the platform MBean
+	 * server. If registration fails, the job runs without it.
+	 */
+	private void registerMXBean()
+		{
+		try
+			{
+			ObjectName name = new ObjectName
+				("edu.rit.pj2:type=Job,id=" + jobID);
+			ManagementFactory.getPlatformMBeanServer().registerMBean
+				(new JobMXBean()
 					{
-					reportTarget = true;
-					if (taskDebug (Debug.taskInputTuples, taskInfo))
+					public long getJobID()
 						{
-						System.err.printf
-							("Job %d task %d finds no matching tuple%n",
-							 jobID, tupleTakeInfo.taskID);
-						System.err.flush();
+						return jobID;
 						}
-					}
-				}
+					public long getTupleCount()
+						{
+						return tupleSpace.metrics().getTupleCount();
+						}
+					public int getBlockedTakes()
+						{
+						int n = 0;
+						for (BlockedTakes takes : tupleTakeMap.values())
+							n += takes.count;
+						return n;
+						}
+					public TupleSpaceMetrics getTupleSpaceMetrics()
+						{
+						return tupleSpaceMetrics (METRICS_JMX);
+						}
+					},
+				 name);
+			mxBeanName = name;
+			}
+		catch (Exception exc)
+			{
+			}
+		}
 
-			// A matching tuple was found for a take.
-			else if (tupleTakeInfo.taking)
+	/**
+	 * Unregister this job's management interface from the platform MBean
+	 * server.
+	 */
+	private void unregisterMXBean()
+		{
+		if (mxBeanName != null)
+			{
+			try
 				{
-				// Remove matching tuple from tuple space.
-				trans.remove (ref);
-				trans.commit();
-				reportTarget = true;
-
-				// Debug printout of matching tuple.
-				if (taskDebug (Debug.taskInputTuples, taskInfo))
-					{
-					System.err.printf
-						("Job %d task %d takes tuple%n",
-						 jobID, tupleTakeInfo.taskID);
-					System.err.printf ("   ");
-					target.dump (System.err, 2);
-					System.err.flush();
-					}
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean
+					(mxBeanName);
 				}
-
-			// A matching tuple was found for a read.
-			else
+			catch (Exception exc)
 				{
-				// Leave matching tuple in tuple space.
-				trans.abort();
-				reportTarget = true;
+				}
+			mxBeanName = null;
+			}
+		}
+
+	/**
+	 * Returns the group of blocked tuple take requests for the given family,
+	 * creating it if necessary. The caller must be within a transaction that
+	 * covers the family.
+	 *
+	 * @param  family  Family, or null for requests that can match any family.
+	 *
+	 * @return  Group of blocked tuple take requests.
+	 */
+	private BlockedTakes blockedTakes
+		(Class<?> family)
+		{
+		Class<?> key = family == null ? Tuple.class : family;
+		BlockedTakes takes = tupleTakeMap.get (key);
+		if (takes == null)
+			{
+			takes = new BlockedTakes();
+			tupleTakeMap.put (key, takes);
+			}
+		return takes;
+		}
 
-				// Debug printout of matching tuple.
+	/**
+	 * Returns the number of blocked tuple take requests for the given family.
+	 * The caller need not be within a transaction.
+	 *
+	 * @param  family  Family, or null for requests that can match any family.
+	 *
+	 * @return  Number of blocked tuple take requests.
+	 */
+	private int count
+		(Class<?> family)
+		{
+		BlockedTakes takes = tupleTakeMap.get
+			(family == null ? Tuple.class : family);
+		return takes == null ? 0 : takes.count;
+		}
+
+	/**
+	 * Match the given tuple take request's template with the tuples in tuple
+	 * space, using the given transaction. If a match is found for a take, the
+	 * matching tuple is tentatively removed. The result is stored in the
+	 * request's <TT>target</TT> field.
+	 *
+	 * @param  tupleTakeInfo  Tuple take request.
+	 * @param  trans          Tuple space transaction.
+	 *
+	 * @return  True if there is a result to send (a match was found, or the
+	 *          request is non-blocking), false otherwise.
+	 */
+	private boolean takeTuple
+		(TupleTakeInfo tupleTakeInfo,
+		 TupleSpace.Transaction trans)
+		{
+		TaskInfo taskInfo = tupleTakeInfo.taskInfo;
+
+		// Take a batch of tuples.
+		if (tupleTakeInfo.maxCount > 0)
+			return takeTuples (tupleTakeInfo, trans);
+
+		// Search for a matching tuple.
+		TupleSpace.TupleRef ref = trans.find (tupleTakeInfo.template);
+		Tuple target = ref != null ? ref.tuple : null;
+		tupleTakeInfo.target = target;
+
+		// A matching tuple was not found.
+		if (ref == null)
+			{
+			// If the tuple take request was non-blocking, report that there was
+			// no match.
+			if (! tupleTakeInfo.blocking)
+				{
 				if (taskDebug (Debug.taskInputTuples, taskInfo))
 					{
 					System.err.printf
-						("Job %d task %d reads tuple%n",
+						("Job %d task %d finds no matching tuple%n",
 						 jobID, tupleTakeInfo.taskID);
-					System.err.printf ("   ");
-					target.dump (System.err, 2);
 					System.err.flush();
 					}
+				return true;
 				}
+			return false;
+			}
+
+		// A matching tuple was found for a take.
+		else if (tupleTakeInfo.taking)
+			{
+			// Remove matching tuple from tuple space.
+			trans.remove (ref);
 
-			// Send result, if any, to taking task.
-			if (reportTarget)
+			// Debug printout of matching tuple.
+			if (taskDebug (Debug.taskInputTuples, taskInfo))
 				{
-				ExtraData extra = (ExtraData) taskInfo.moreData;
-				if (extra.backend != null)
-					extra.backend.tupleTaken
-						(tupleTakeInfo.taskID,
-						 tupleTakeInfo.requestID,
-						 target);
-				else
-					tupleRequestMap.tupleTaken
-						(tupleTakeInfo.taskID,
-						 tupleTakeInfo.requestID,
-						 target);
+				System.err.printf
+					("Job %d task %d takes tuple%n",
+					 jobID, tupleTakeInfo.taskID);
+				System.err.printf ("   ");
+				target.dump (System.err, 2);
+				System.err.flush();
+				}
+			return true;
+			}
 
-				// Remove tuple take request.
-				p.remove();
+		// A matching tuple was found for a read.
+		else
+			{
+			// Leave matching tuple in tuple space; debug printout of matching
+			// tuple.
+			if (taskDebug (Debug.taskInputTuples, taskInfo))
+				{
+				System.err.printf
+					("Job %d task %d reads tuple%n",
+					 jobID, tupleTakeInfo.taskID);
+				System.err.printf ("   ");
+				target.dump (System.err, 2);
+				System.err.flush();
 				}
+			return true;
+			}
+		}
+
+	/**
+	 * Match the given batch tuple take request's template with the tuples in
+	 * tuple space, using the given transaction. Matching tuples are
+	 * tentatively removed, up to the request's maximum count. The result is
+	 * stored in the request's <TT>targets</TT> field.
+	 *
+	 * @param  tupleTakeInfo  Tuple take request.
+	 * @param  trans          Tuple space transaction.
+	 *
+	 * @return  True if there is a result to send (at least one match was
+	 *          found, or the request is non-blocking), false otherwise.
+	 */
+	private boolean takeTuples
+		(TupleTakeInfo tupleTakeInfo,
+		 TupleSpace.Transaction trans)
+		{
+		TaskInfo taskInfo = tupleTakeInfo.taskInfo;
 
-			// Go to next tuple take request.
-			p = q;
+		// Search for and remove matching tuples.
+		AList<Tuple> targets = new AList<Tuple>();
+		TupleSpace.TupleRef ref;
+		while (targets.size() < tupleTakeInfo.maxCount &&
+				(ref = trans.find (tupleTakeInfo.template)) != null)
+			{
+			trans.remove (ref);
+			targets.addLast (ref.tuple);
+			}
+		tupleTakeInfo.targets = targets;
+
+		// Debug printout of matching tuples.
+		if ((! targets.isEmpty() || ! tupleTakeInfo.blocking) &&
+				taskDebug (Debug.taskInputTuples, taskInfo))
+			{
+			System.err.printf
+				("Job %d task %d takes %d tuples%n",
+				 jobID, tupleTakeInfo.taskID, targets.size());
+			targets.forEachItemDo (new PrintTuple());
+			System.err.flush();
 			}
+
+		return ! targets.isEmpty() || ! tupleTakeInfo.blocking;
+		}
+
+	/**
+	 * Send the result of the given tuple take request to the requesting task.
+	 * If the task is running in this job's process, the request's future
+	 * result is completed instead.
+	 *
+	 * @param  tupleTakeInfo  Tuple take request.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void tupleTaken
+		(TupleTakeInfo tupleTakeInfo)
+		throws IOException
+		{
+		ExtraData extra = (ExtraData) tupleTakeInfo.taskInfo.moreData;
+		if (tupleTakeInfo.inProcess != null)
+			tupleTakeInfo.inProcess.complete (tupleTakeInfo.maxCount > 0 ?
+				tupleTakeInfo.targets : tupleTakeInfo.target);
+		else if (tupleTakeInfo.maxCount > 0)
+			{
+			if (extra.backend != null)
+				extra.backend.tuplesTaken
+					(tupleTakeInfo.taskID,
+					 tupleTakeInfo.requestID,
+					 tupleTakeInfo.targets);
+			else
+				tupleRequestMap.tuplesTaken
+					(tupleTakeInfo.taskID,
+					 tupleTakeInfo.requestID,
+					 tupleTakeInfo.targets);
+			}
+		else if (extra.backend != null)
+			extra.backend.tupleTaken
+				(tupleTakeInfo.taskID,
+				 tupleTakeInfo.requestID,
+				 tupleTakeInfo.target);
+		else
+			tupleRequestMap.tupleTaken
+				(tupleTakeInfo.taskID,
+				 tupleTakeInfo.requestID,
+				 tupleTakeInfo.target);
 		}
 
 	/**
@@ -2552,6 +3667,8 @@ public abstract class Job
 		ExtraData extra = (ExtraData) info.moreData;
 		extra.ET.stop();
 		extra.heartbeat.cancel();
+		if (tupleServerMap != null)
+			tupleServerMap.taskFinished (taskID);
 		if (extra.backend != null)
 			extra.backend.terminate();
 		if (extra.informTracker)
@@ -2614,6 +3731,32 @@ public abstract class Job
 		trackerHeartbeat.receiveHeartbeat();
 		}
 
+	/**
+	 * Tell this job to send the contents of the job's JAR file to the backend
+	 * running the given task. This method is not synchronized on the job, so
+	 * sending a large JAR file does not hold up the job.
+	 *
+	 * @param  taskID  Task ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void requestJar
+		(long taskID)
+		throws IOException
+		{
+		BackendRef backend;
+		synchronized (this)
+			{
+			TaskInfo info = taskMap.get (taskID);
+			if (info == null)
+				throw new IllegalStateException (String.format
+					("Job.requestJar(): Task %d nonexistent", taskID));
+			backend = ((ExtraData) info.moreData) .backend;
+			}
+		backend.jarContents (jar);
+		}
+
 	/**
 	 * Tell this job that the given task is still alive.
 	 *
@@ -2703,7 +3846,7 @@ public abstract class Job
 	 *
 	 * @return  True to print the debugging message, false otherwise.
 	 */
-	private synchronized boolean taskDebug
+	private boolean taskDebug
 		(Debug debug,
 		 TaskInfo info)
 		{
@@ -2765,6 +3908,7 @@ public abstract class Job
 		 int lb,
 		 int ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		long chunklb = lb;
 		long chunkub = ub;
 		long chunkSize = Math.max ((chunkub - chunklb + workers)/workers, 1L);
@@ -2772,10 +3916,11 @@ public abstract class Job
 		for (int r = 0; r < workers; ++ r)
 			{
 			newlb = chunklb + chunkSize;
-			putTuple (new Chunk() .rank (r) .lb ((int)chunklb)
+			chunks.addLast (new Chunk() .rank (r) .lb ((int)chunklb)
 				.ub ((int)(Math.min (newlb - 1L, chunkub))));
 			chunklb = newlb;
 			}
+		tupleSpace.putTuples (chunks);
 		}
 
 	/**
@@ -2793,9 +3938,11 @@ public abstract class Job
 		 int lb,
 		 int ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		for (int r = 0; r < workers; ++ r)
-			putTuple (new Chunk() .rank (r) .lb (lb + r) .ub (ub)
+			chunks.addLast (new Chunk() .rank (r) .lb (lb + r) .ub (ub)
 				.stride (workers));
+		tupleSpace.putTuples (chunks);
 		}
 
 	/**
@@ -2813,6 +3960,7 @@ public abstract class Job
 		 int lb,
 		 int ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		long chunklb = lb;
 		long chunkub = ub;
 		long chunkSize = masterChunk;
@@ -2820,10 +3968,11 @@ public abstract class Job
 		while (chunklb <= chunkub)
 			{
 			newlb = chunklb + chunkSize;
-			putTuple (new Chunk() .rank (Chunk.ANY) .lb ((int)chunklb)
+			chunks.addLast (new Chunk() .rank (Chunk.ANY) .lb ((int)chunklb)
 				.ub ((int)(Math.min (newlb - 1L, chunkub))));
 			chunklb = newlb;
 			}
+		tupleSpace.putTuples (chunks);
 		}
 
 	/**
@@ -2841,6 +3990,7 @@ public abstract class Job
 		 int lb,
 		 int ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		long chunklb = lb;
 		long chunkub = ub;
 		long n = masterChunk;
@@ -2850,10 +4000,11 @@ public abstract class Job
 		while (chunklb <= chunkub)
 			{
 			newlb = chunklb + chunkSize;
-			putTuple (new Chunk() .rank (Chunk.ANY) .lb ((int)chunklb)
+			chunks.addLast (new Chunk() .rank (Chunk.ANY) .lb ((int)chunklb)
 				.ub ((int)(Math.min (newlb - 1L, chunkub))));
 			chunklb = newlb;
 			}
+		tupleSpace.putTuples (chunks);
 		}
 
 	/**
@@ -2871,6 +4022,7 @@ public abstract class Job
 		 int lb,
 		 int ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		long chunklb = lb;
 		long chunkub = ub;
 		long minChunkSize = masterChunk;
@@ -2880,10 +4032,38 @@ public abstract class Job
 			chunkSize = Math.max ((chunkub - chunklb + 1L)/2/workers,
 				minChunkSize);
 			newlb = chunklb + chunkSize;
-			putTuple (new Chunk() .rank (Chunk.ANY) .lb ((int)chunklb)
+			chunks.addLast (new Chunk() .rank (Chunk.ANY) .lb ((int)chunklb)
 				.ub ((int)(Math.min (newlb - 1L, chunkub))));
 			chunklb = newlb;
 			}
+		tupleSpace.putTuples (chunks);
+		}
+
+	/**
+	 * Partition the given integer loop index range into chunks using a work
+	 * stealing schedule, and write the chunks into this job's tuple space.
+	 * Each worker task gets one chunk holding its share of the iterations, as
+	 * with a fixed schedule. A {@linkplain StealArbiter StealArbiter} task is
+	 * added to this job; as the worker tasks run out of iterations, the
+	 * arbiter has them steal from the worker tasks that are still busy.
+	 *
+	 * @param  workers      Number of worker tasks.
+	 * @param  masterChunk  <TT>masterChunk</TT> parameter; the least number of
+	 *                      iterations a worker task will give away.
+	 * @param  lb           Loop index lower bound.
+	 * @param  ub           Loop index upper bound.
+	 */
+	void putChunksStealing
+		(int workers,
+		 int masterChunk,
+		 int lb,
+		 int ub)
+		{
+		AList<Tuple> chunks = new AList<Tuple>();
+		for (Chunk chunk : Chunk.partitions (lb, ub, workers))
+			chunks.addLast (new StealChunk() .copy (chunk));
+		tupleSpace.putTuples (chunks);
+		addStealArbiter (workers, masterChunk);
 		}
 
 	/**
@@ -2901,6 +4081,7 @@ public abstract class Job
 		 long lb,
 		 long ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		Int96 n = Int96.of(workers);
 		Int96 chunklb = Int96.of(lb);
 		Int96 chunkub = Int96.of(ub);
@@ -2910,11 +4091,12 @@ public abstract class Job
 		for (int r = 0; r < workers; ++ r)
 			{
 			newlb .assign(chunklb) .add(chunkSize);
-			putTuple (new LongChunk() .rank (r)
+			chunks.addLast (new LongChunk() .rank (r)
 				.lb (chunklb .longval())
 				.ub (Int96.of(newlb) .sub(Int96.ONE) .min(chunkub) .longval()));
 			chunklb .assign(newlb);
 			}
+		tupleSpace.putTuples (chunks);
 		}
 
 	/**
@@ -2932,9 +4114,11 @@ public abstract class Job
 		 long lb,
 		 long ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		for (int r = 0; r < workers; ++ r)
-			putTuple (new LongChunk() .rank (r) .lb (lb + r) .ub (ub)
+			chunks.addLast (new LongChunk() .rank (r) .lb (lb + r) .ub (ub)
 				.stride (workers));
+		tupleSpace.putTuples (chunks);
 		}
 
 	/**
@@ -2952,6 +4136,7 @@ public abstract class Job
 		 long lb,
 		 long ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		Int96 chunklb = Int96.of(lb);
 		Int96 chunkub = Int96.of(ub);
 		Int96 chunkSize = Int96.of(masterChunk);
@@ -2959,11 +4144,12 @@ public abstract class Job
 		while (chunklb.compareTo (chunkub) <= 0)
 			{
 			newlb .assign(chunklb) .add(chunkSize);
-			putTuple (new LongChunk() .rank (LongChunk.ANY)
+			chunks.addLast (new LongChunk() .rank (LongChunk.ANY)
 				.lb (chunklb .longval())
 				.ub (Int96.of(newlb) .sub(Int96.ONE) .min(chunkub) .longval()));
 			chunklb .assign(newlb);
 			}
+		tupleSpace.putTuples (chunks);
 		}
 
 	/**
@@ -2981,6 +4167,7 @@ public abstract class Job
 		 long lb,
 		 long ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		Int96 chunklb = Int96.of(lb);
 		Int96 chunkub = Int96.of(ub);
 		Int96 n = Int96.of(masterChunk) .mul(Int96.of(workers));
@@ -2990,11 +4177,12 @@ public abstract class Job
 		while (chunklb.compareTo (chunkub) <= 0)
 			{
 			newlb .assign(chunklb) .add(chunkSize);
-			putTuple (new LongChunk() .rank (LongChunk.ANY)
+			chunks.addLast (new LongChunk() .rank (LongChunk.ANY)
 				.lb (chunklb .longval())
 				.ub (Int96.of(newlb) .sub(Int96.ONE) .min(chunkub) .longval()));
 			chunklb .assign(newlb);
 			}
+		tupleSpace.putTuples (chunks);
 		}
 
 	/**
@@ -3012,6 +4200,7 @@ public abstract class Job
 		 long lb,
 		 long ub)
 		{
+		AList<Tuple> chunks = new AList<Tuple>();
 		Int96 chunklb = Int96.of(lb);
 		Int96 chunkub = Int96.of(ub);
 		Int96 W = Int96.of(workers);
@@ -3023,11 +4212,57 @@ public abstract class Job
 			chunkSize .assign(chunkub) .sub(chunklb) .add(Int96.ONE)
 				.div(Int96.TWO) .div(W) .max(minChunkSize);
 			newlb .assign(chunklb) .add(chunkSize);
-			putTuple (new LongChunk() .rank (LongChunk.ANY)
+			chunks.addLast (new LongChunk() .rank (LongChunk.ANY)
 				.lb (chunklb .longval())
 				.ub (Int96.of(newlb) .sub(Int96.ONE) .min(chunkub) .longval()));
 			chunklb .assign(newlb);
 			}
+		tupleSpace.putTuples (chunks);
+		}
+
+	/**
+	 * Partition the given long integer loop index range into chunks using a
+	 * work stealing schedule, and write the chunks into this job's tuple
+	 * space. Each worker task gets one chunk holding its share of the
+	 * iterations, as with a fixed schedule. A {@linkplain StealArbiter
+	 * StealArbiter} task is added to this job; as the worker tasks run out of
+	 * iterations, the arbiter has them steal from the worker tasks that are
+	 * still busy.
+	 *
+	 * @param  workers      Number of worker tasks.
+	 * @param  masterChunk  <TT>masterChunk</TT> parameter; the least number of
+	 *                      iterations a worker task will give away.
+	 * @param  lb           Loop index lower bound.
+	 * @param  ub           Loop index upper bound.
+	 */
+	void putChunksStealing
+		(int workers,
+		 int masterChunk,
+		 long lb,
+		 long ub)
+		{
+		AList<Tuple> chunks = new AList<Tuple>();
+		for (LongChunk chunk : LongChunk.partitions (lb, ub, workers))
+			chunks.addLast (new LongStealChunk() .copy (chunk));
+		tupleSpace.putTuples (chunks);
+		addStealArbiter (workers, masterChunk);
+		}
+
+	/**
+	 * Add a rule to this job that runs a {@linkplain StealArbiter
+	 * StealArbiter} task in the job's process.
+	 *
+	 * @param  workers      Number of worker tasks.
+	 * @param  masterChunk  Least number of iterations a worker task will give
+	 *                      away.
+	 */
+	private void addStealArbiter
+		(int workers,
+		 int masterChunk)
+		{
+		rule() .task (StealArbiter.class)
+			.args ("" + workers, "" + masterChunk)
+			.runInJobProcess();
 		}
 
 	/**
@@ -3128,10 +4363,11 @@ public abstract class Job
 		 */
 		public void run()
 			{
+			Task task = null;
 			try
 				{
 				// Create instance of task subclass.
-				Task task = (Task)
+				task = (Task)
 					Instance.newDefaultInstance (info.taskClassName, true);
 
 				// Specify GPU device numbers the task is allowed to use.
@@ -3142,14 +4378,20 @@ public abstract class Job
 				task.taskID = info.taskID;
 				task.inputTuples = info.inputTuples;
 				task.tupleRequestMap = tupleRequestMap;
+				task.tupleServerMap = tupleServerMap;
+				task.jobInProcess = Job.this;
 				task.properties = new TaskProperties (info.properties);
 				task.groupSize = info.size;
 				task.taskRank = info.rank;
 				task.main (info.args);
+				task.syncTupleServers();
+				task.releaseCpus();
 				taskFinished (info.taskID);
 				}
 			catch (Throwable exc)
 				{
+				if (task != null)
+					task.releaseCpus();
 				try { taskFailed (info.taskID, exc); }
 					catch (IOException exc2) {}
 				}
@@ -0,0 +1,69 @@
+//******************************************************************************
+//
+// File:    JobMXBean.java
+// Package: edu.rit.pj2
+// Unit:    Interface edu.rit.pj2.JobMXBean
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+/**
+ * Interface JobMXBean specifies the management interface of a running
+ * {@linkplain Job Job}. While a job is running, the job process registers an
+ * object implementing this interface with the platform MBean server under the
+ * name <TT>edu.rit.pj2:type=Job,id=<I>jobID</I></TT>, so the job's tuple space
+ * can be watched with any JMX client, such as <TT>jconsole</TT>.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public interface JobMXBean
+	{
+
+	/**
+	 * Returns the job ID.
+	 *
+	 * @return  Job ID.
+	 */
+	public long getJobID();
+
+	/**
+	 * Returns the number of tuples in the job's tuple space.
+	 *
+	 * @return  Number of tuples.
+	 */
+	public long getTupleCount();
+
+	/**
+	 * Returns the number of tuple take requests blocked in the job.
+	 *
+	 * @return  Number of blocked requests.
+	 */
+	public int getBlockedTakes();
+
+	/**
+	 * Returns a snapshot of the job's tuple space metrics.
+	 *
+	 * @return  Tuple space metrics.
+	 */
+	public TupleSpaceMetrics getTupleSpaceMetrics();
+
+	}
@@ -70,7 +70,7 @@ import java.io.IOException;
  * task, the rank field is set to {@link #ANY ANY}.
  *
  * @author  Alan Kaminsky
- * @version 19-Jan-2014
+ * @version 18-Mar-2015
  */
 public class LongChunk
 	extends Tuple
@@ -311,6 +311,19 @@ public class LongChunk
 		return this.rank == ANY || targetRank == ANY || this.rank == targetRank;
 		}
 
+	/**
+	 * Get this tuple's index key. The index key is the rank, or null if the
+	 * rank is {@link #ANY}. Thus, a template with a specific rank matches only
+	 * targets with the same rank or with rank {@link #ANY}, as required by the
+	 * {@link #matchContent(Tuple) matchContent()} method.
+	 *
+	 * @return  Index key, or null if none.
+	 */
+	public Object indexKey()
+		{
+		return rank == ANY ? null : Integer.valueOf (rank);
+		}
+
 	/**
 	 * Write this object's fields to the given out stream.
 	 *
@@ -102,7 +102,7 @@ import java.util.concurrent.atomic.AtomicReference;
  * @see  LongLoop
  *
  * @author  Alan Kaminsky
- * @version 22-Mar-2014
+ * @version 11-Mar-2015
  */
 public class LongParallelForLoop
 	extends ParallelForLoop
@@ -112,7 +112,8 @@ public class LongParallelForLoop
 
 	Int96 blb;
 	Int96 bub;
-	AtomicReference<Int96> nextlb;
+	AtomicReference<Int96> nextlb = new AtomicReference<Int96>();
+	RangeDeque[] deque;
 	LongLoop loop;
 
 // Hidden constructors.
@@ -224,7 +225,8 @@ public class LongParallelForLoop
 		threads = properties.actualThreads();
 		schedule = properties.schedule();
 		chunk = schedule.actualChunk (properties.chunk());
-		nextlb = new AtomicReference<Int96> (Int96.of(blb));
+		nextlb.set (Int96.of(blb));
+		if (schedule == Schedule.workStealing) initWorkQueues();
 		this.loop = loop;
 		stop = false;
 		Team.execute (threads, this);
@@ -267,6 +269,34 @@ public class LongParallelForLoop
 		loop.reductionMap = null;
 		}
 
+	/**
+	 * Set up the per-thread deques for a work stealing schedule. Initially,
+	 * each thread's deque holds the iterations the thread would perform with a
+	 * fixed schedule.
+	 */
+	void initWorkQueues()
+		{
+		if (deque == null || deque.length != threads)
+			{
+			deque = new RangeDeque [threads];
+			for (int rank = 0; rank < threads; ++ rank)
+				deque[rank] = new RangeDeque();
+			}
+		Int96 thr = Int96.of(threads);
+		Int96 chunkSize = Int96.of(bub) .sub(blb) .add(thr) .div(thr)
+			.max(Int96.ONE);
+		Int96 chunklb;
+		for (int rank = 0; rank < threads; ++ rank)
+			{
+			chunklb = Int96.of(rank) .mul(chunkSize) .add(blb);
+			if (chunklb.compareTo (bub) > 0)
+				deque[rank].clear();
+			else
+				deque[rank].set (chunklb.longval(), Int96.of(chunklb)
+					.add(chunkSize) .sub(Int96.ONE) .min(bub) .longval());
+			}
+		}
+
 	/**
 	 * Execute this parallel for loop's iterations with a fixed schedule.
 	 *
@@ -407,4 +437,80 @@ public class LongParallelForLoop
 			}
 		}
 
+	/**
+	 * Execute this parallel for loop's iterations with a work stealing
+	 * schedule.
+	 *
+	 * @param  loop  Loop body.
+	 * @param  rank  Team thread rank.
+	 */
+	void iterateWorkStealing
+		(LongLoop loop,
+		 int rank)
+		throws Exception
+		{
+		RangeDeque myDeque = deque[rank];
+		long chunkSize = chunk;
+		long chunklb, chunkub;
+		int victim;
+		chunkloop: while (! stop)
+			{
+			if (! myDeque.take (chunkSize))
+				{
+				// This thread's deque is empty. Steal half the iterations from
+				// the next thread whose deque is not empty, if any.
+				victim = rank;
+				do
+					{
+					victim = victim + 1 == threads ? 0 : victim + 1;
+					if (victim == rank) break chunkloop;
+					}
+				while (! deque[victim].stealInto (myDeque));
+				continue;
+				}
+			chunklb = myDeque.chunklb;
+			chunkub = myDeque.chunkub;
+			for (long i = chunklb; ! stop && i <= chunkub; ++ i)
+				loop.run (i);
+			}
+		}
+
+	/**
+	 * Execute this parallel for loop's iterations with an adaptive schedule.
+	 *
+	 * @param  loop  Loop body.
+	 * @param  rank  Team thread rank.
+	 */
+	void iterateAdaptive
+		(LongLoop loop,
+		 int rank)
+		throws Exception
+		{
+		ChunkTuner tuner = new ChunkTuner (chunk);
+		Int96 thr = Int96.of(threads);
+		Int96 minSize = Int96.of(chunk);
+		Int96 oldlb, newlb;
+		Int96 newSize = Int96.of(0);
+		long chunklb, chunkub, t;
+		chunkloop: while (! stop)
+			{
+			do
+				{
+				oldlb = nextlb.get();
+				if (oldlb.compareTo (bub) > 0) break chunkloop;
+				newSize .assign(bub) .sub(oldlb) .add(Int96.ONE)
+					.div(Int96.TWO) .div(thr) .max(minSize)
+					.min(Int96.of(tuner.size()));
+				newlb = Int96.of(oldlb) .add(newSize);
+				}
+			while (! nextlb.compareAndSet (oldlb, newlb));
+			chunklb = oldlb .longval();
+			chunkub = Int96.of(newlb) .sub(Int96.ONE) .min(bub) .longval();
+			t = System.nanoTime();
+			for (long i = chunklb; ! stop && i <= chunkub; ++ i)
+				loop.run (i);
+			tuner.update (chunkub - chunklb + 1L, System.nanoTime() - t);
+			}
+		}
+
 	}
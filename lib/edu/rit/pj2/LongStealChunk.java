@@ -0,0 +1,54 @@
+//******************************************************************************
+//
+// File:    LongStealChunk.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.LongStealChunk
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+/**
+ * Class LongStealChunk is a {@linkplain LongChunk LongChunk} that a
+ * master-worker cluster parallel for loop with a {@link Schedule#workStealing
+ * workStealing} master schedule puts for each worker task. The chunk holds the
+ * worker task's initial share of the loop iterations. A worker that takes a
+ * LongStealChunk rather than a plain LongChunk gets its further loop iterations
+ * by stealing them from the other worker tasks through the job's {@linkplain
+ * StealArbiter StealArbiter}.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class LongStealChunk
+	extends LongChunk
+	{
+
+// Exported constructors.
+
+	/**
+	 * Construct a new long steal chunk.
+	 */
+	public LongStealChunk()
+		{
+		super();
+		}
+
+	}
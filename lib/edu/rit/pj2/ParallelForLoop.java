@@ -32,19 +32,27 @@ import edu.rit.pj2.tracker.TaskProperties;
  * for loop executed by multiple threads. A parallel for loop is constructed by
  * the <TT>parallelFor()</TT> method of class {@linkplain Task}. For further
  * information, refer to subclasses {@linkplain IntParallelForLoop},
- * {@linkplain LongParallelForLoop}, and
- * {@linkplain IteratorParallelForLoop}.
+ * {@linkplain LongParallelForLoop}, {@linkplain IteratorParallelForLoop}, and
+ * {@linkplain SpliteratorParallelForLoop}.
+ * <P>
+ * The thread that executes a parallel for loop takes part in the loop as
+ * thread rank 0. A parallel for loop may be nested inside another parallel
+ * statement, for example to express a recursive divide-and-conquer algorithm.
+ * A nested parallel for loop does not create a new team of threads. Instead,
+ * its thread ranks are executed by the calling thread together with whatever
+ * threads of a shared pool, one thread per core, are idle at the time.
  *
  * @see  ParallelStatement
  * @see  IntParallelForLoop
  * @see  LongParallelForLoop
  * @see  IteratorParallelForLoop
+ * @see  SpliteratorParallelForLoop
  * @see  Loop
  * @see  LongLoop
  * @see  ObjectLoop
  *
  * @author  Alan Kaminsky
- * @version 23-Mar-2014
+ * @version 18-Mar-2015
  */
 public abstract class ParallelForLoop
 	extends ParallelStatement
@@ -72,4 +80,40 @@ public abstract class ParallelForLoop
 		properties = new TaskProperties() .chain (task.properties);
 		}
 
+// Hidden operations.
+
+	/**
+	 * Returns the wait policy for the team threads executing this parallel
+	 * statement.
+	 *
+	 * @return  Wait policy.
+	 */
+	WaitPolicy waitPolicy()
+		{
+		return properties.waitPolicy();
+		}
+
+	/**
+	 * Returns the affinity for the team threads executing this parallel
+	 * statement.
+	 *
+	 * @return  Affinity.
+	 */
+	Affinity affinity()
+		{
+		return properties.affinity();
+		}
+
+	/**
+	 * Determine whether the ranks of this parallel statement are independent
+	 * of each other. Each thread of a parallel for loop performs whatever
+	 * iterations remain when it asks for more, so the ranks are independent.
+	 *
+	 * @return  True.
+	 */
+	boolean ranksIndependent()
+		{
+		return true;
+		}
+
 	}
@@ -40,7 +40,7 @@ package edu.rit.pj2;
  * @see  ObjectLoop
  *
  * @author  Alan Kaminsky
- * @version 31-Dec-2013
+ * @version 18-Mar-2015
  */
 public abstract class ParallelStatement
 	{
@@ -65,6 +65,56 @@ public abstract class ParallelStatement
 
 // Hidden operations.
 
+	/**
+	 * Returns the wait policy for the team threads executing this parallel
+	 * statement.
+	 *
+	 * @return  Wait policy.
+	 */
+	WaitPolicy waitPolicy()
+		{
+		return task.properties.waitPolicy();
+		}
+
+	/**
+	 * Returns the affinity for the team threads executing this parallel
+	 * statement.
+	 *
+	 * @return  Affinity.
+	 */
+	Affinity affinity()
+		{
+		return task.properties.affinity();
+		}
+
+	/**
+	 * Returns the CPUs to which successive ranks of this parallel statement
+	 * are pinned, as determined by the affinity and the CPUs the task has
+	 * claimed.
+	 *
+	 * @return  Array of CPU numbers indexed by rank, or null if the ranks are
+	 *          not pinned.
+	 */
+	int[] cpus()
+		{
+		Affinity affinity = affinity();
+		return affinity == Affinity.none ? null : task.cpus (affinity);
+		}
+
+	/**
+	 * Determine whether the ranks of this parallel statement are independent
+	 * of each other. If so, the ranks need not execute simultaneously; they may
+	 * execute one after another in the same thread, in any order. If not, for
+	 * example if the ranks wait for each other, every rank must be executed by
+	 * a different thread.
+	 *
+	 * @return  True if the ranks are independent, false otherwise.
+	 */
+	boolean ranksIndependent()
+		{
+		return false;
+		}
+
 	/**
 	 * Execute this parallel statement.
 	 *
@@ -0,0 +1,170 @@
+//******************************************************************************
+//
+// File:    PartialReduction.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.PartialReduction
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import java.io.IOException;
+
+/**
+ * Class PartialReduction is a {@link Tuple} that carries a partial result of a
+ * reduction across the worker tasks of a master-worker cluster parallel for
+ * loop. The worker tasks combine their shared variables in a binary tree; each
+ * worker task except the root sends the result for its subtree to its parent,
+ * by rank, in a partial reduction tuple. See class {@linkplain
+ * WorkerParallelForLoop WorkerParallelForLoop} for further information.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class PartialReduction
+	extends Tuple
+	{
+
+// Exported data members.
+
+	/**
+	 * Rank of the worker task to which the partial result is addressed.
+	 */
+	public int to;
+
+	/**
+	 * Sequence number of the worker parallel for loop within the worker task.
+	 */
+	public int seq;
+
+	/**
+	 * Shared variables holding the partial result.
+	 */
+	public Vbl[] vbls;
+
+// Exported constructors.
+
+	/**
+	 * Construct a new partial reduction tuple.
+	 */
+	public PartialReduction()
+		{
+		}
+
+	/**
+	 * Construct a new partial reduction tuple.
+	 *
+	 * @param  to    Rank of the worker task to which the partial result is
+	 *               addressed.
+	 * @param  seq   Sequence number of the worker parallel for loop.
+	 * @param  vbls  Shared variables holding the partial result.
+	 */
+	public PartialReduction
+		(int to,
+		 int seq,
+		 Vbl[] vbls)
+		{
+		this.to = to;
+		this.seq = seq;
+		this.vbls = vbls;
+		}
+
+// Exported operations.
+
+	/**
+	 * Returns a template that matches partial results addressed to the given
+	 * worker task for the given worker parallel for loop.
+	 *
+	 * @param  to   Worker task rank.
+	 * @param  seq  Sequence number of the worker parallel for loop.
+	 *
+	 * @return  Template.
+	 */
+	public static PartialReduction template
+		(int to,
+		 int seq)
+		{
+		return new PartialReduction (to, seq, null);
+		}
+
+	/**
+	 * Determine if the given target tuple's content matches this template's
+	 * content. There is a match if the template and the target are addressed
+	 * to the same worker task for the same worker parallel for loop.
+	 *
+	 * @param  target  Target tuple.
+	 *
+	 * @return  True if the target tuple's content matches this template tuple's
+	 *          content, false otherwise.
+	 */
+	public boolean matchContent
+		(Tuple target)
+		{
+		PartialReduction t = (PartialReduction) target;
+		return this.to == t.to && this.seq == t.seq;
+		}
+
+	/**
+	 * Get this tuple's index key. The index key is the recipient.
+	 *
+	 * @return  Index key.
+	 */
+	public Object indexKey()
+		{
+		return Integer.valueOf (to);
+		}
+
+	/**
+	 * Write this object's fields to the given out stream.
+	 *
+	 * @param  out  Out stream.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeOut
+		(OutStream out)
+		throws IOException
+		{
+		out.writeInt (to);
+		out.writeInt (seq);
+		out.writeObjectArray (vbls);
+		}
+
+	/**
+	 * Read this object's fields from the given in stream.
+	 *
+	 * @param  in  In stream.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void readIn
+		(InStream in)
+		throws IOException
+		{
+		to = in.readInt();
+		seq = in.readInt();
+		vbls = (Vbl[]) in.readObjectArray();
+		}
+
+	}
@@ -0,0 +1,223 @@
+//******************************************************************************
+//
+// File:    RangeDeque.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.RangeDeque
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+/**
+ * Class RangeDeque provides a double-ended queue of loop indexes for a work
+ * stealing parallel for loop schedule. The deque holds a contiguous range of
+ * loop indexes. The owning team thread takes chunks of indexes from the lower
+ * end of the range. Other team threads steal half the remaining indexes from
+ * the upper end of the range.
+ * <P>
+ * Each team thread has its own deque, so in the common case the owning thread
+ * is the only one accessing the deque and the deque's lock is uncontended.
+ * Loop indexes are stored as <TT>long</TT>s; the arithmetic is done so as not
+ * to overflow even if the range includes <TT>Long.MAX_VALUE</TT>.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class RangeDeque
+	{
+
+// Kludge to avert false sharing in multithreaded programs.
+
+	// Padding fields.
+	volatile long p0 = 1000L;
+	volatile long p1 = 1001L;
+	volatile long p2 = 1002L;
+	volatile long p3 = 1003L;
+	volatile long p4 = 1004L;
+	volatile long p5 = 1005L;
+	volatile long p6 = 1006L;
+	volatile long p7 = 1007L;
+	volatile long p8 = 1008L;
+	volatile long p9 = 1009L;
+	volatile long pa = 1010L;
+	volatile long pb = 1011L;
+	volatile long pc = 1012L;
+	volatile long pd = 1013L;
+	volatile long pe = 1014L;
+	volatile long pf = 1015L;
+
+	// Method to prevent the JDK from optimizing away the padding fields.
+	long preventOptimization()
+		{
+		return p0 + p1 + p2 + p3 + p4 + p5 + p6 + p7 +
+			p8 + p9 + pa + pb + pc + pd + pe + pf;
+		}
+
+// Hidden data members.
+
+	// Remaining loop index range, lb .. ub inclusive. Not meaningful if empty.
+	private long lb;
+	private long ub;
+	private boolean empty = true;
+
+	// Most recently taken or stolen range, returned to the caller.
+	long chunklb;
+	long chunkub;
+
+// Exported constructors.
+
+	/**
+	 * Construct a new range deque. The deque is initially empty.
+	 */
+	public RangeDeque()
+		{
+		}
+
+// Exported operations.
+
+	/**
+	 * Set this deque to hold the given loop index range. If <TT>lb</TT> &gt;
+	 * <TT>ub</TT>, this deque is set to empty.
+	 *
+	 * @param  lb  Loop index lower bound (inclusive).
+	 * @param  ub  Loop index upper bound (inclusive).
+	 */
+	public synchronized void set
+		(long lb,
+		 long ub)
+		{
+		this.lb = lb;
+		this.ub = ub;
+		this.empty = lb > ub;
+		}
+
+	/**
+	 * Set this deque to empty.
+	 */
+	public synchronized void clear()
+		{
+		this.empty = true;
+		}
+
+	/**
+	 * Take a chunk of loop indexes from the lower end of this deque. Called by
+	 * the owning thread. If successful, the chunk's bounds are stored in
+	 * <TT>chunklb</TT> and <TT>chunkub</TT>.
+	 *
+	 * @param  chunk  Maximum number of indexes to take (&ge; 1).
+	 *
+	 * @return  True if a chunk was taken, false if this deque is empty.
+	 */
+	public synchronized boolean take
+		(long chunk)
+		{
+		if (empty) return false;
+		chunklb = lb;
+		if (Long.compareUnsigned (ub - lb, chunk - 1L) > 0)
+			{
+			chunkub = lb + chunk - 1L;
+			lb = chunkub + 1L;
+			}
+		else
+			{
+			chunkub = ub;
+			empty = true;
+			}
+		return true;
+		}
+
+	/**
+	 * Returns the number of loop indexes remaining in this deque.
+	 *
+	 * @return  Number of indexes, or 0 if this deque is empty. If the deque
+	 *          holds more than 2<SUP>63</SUP>&minus;1 indexes,
+	 *          <TT>Long.MAX_VALUE</TT> is returned.
+	 */
+	public synchronized long size()
+		{
+		if (empty) return 0L;
+		long n = ub - lb + 1L;
+		return n > 0L ? n : Long.MAX_VALUE;
+		}
+
+	/**
+	 * Steal the upper half of the loop indexes from this deque into the given
+	 * thief's deque, but only if the upper half holds at least the given
+	 * number of indexes. Called by a thread other than the owning thread. If
+	 * successful, the stolen range is stored in the thief's deque.
+	 *
+	 * @param  thief    Deque of the stealing thread; assumed to be empty.
+	 * @param  minSize  Least number of indexes to steal (&ge; 1).
+	 *
+	 * @return  True if indexes were stolen, false otherwise.
+	 */
+	public boolean stealInto
+		(RangeDeque thief,
+		 long minSize)
+		{
+		long stolenlb, stolenub;
+		synchronized (this)
+			{
+			if (empty) return false;
+			long mid = lb + ((ub - lb) >>> 1);
+			if (Long.compareUnsigned (ub - mid, minSize) < 0) return false;
+			stolenlb = mid + 1L;
+			stolenub = ub;
+			ub = mid;
+			}
+		thief.set (stolenlb, stolenub);
+		return true;
+		}
+
+	/**
+	 * Steal the upper half of the loop indexes from this deque into the given
+	 * thief's deque. Called by a thread other than the owning thread. If
+	 * successful, the stolen range is stored in the thief's deque.
+	 *
+	 * @param  thief  Deque of the stealing thread; assumed to be empty.
+	 *
+	 * @return  True if indexes were stolen, false if this deque is empty.
+	 */
+	public boolean stealInto
+		(RangeDeque thief)
+		{
+		long stolenlb, stolenub;
+		synchronized (this)
+			{
+			if (empty) return false;
+			long mid = lb + ((ub - lb) >>> 1);
+			if (mid < ub)
+				{
+				stolenlb = mid + 1L;
+				stolenub = ub;
+				ub = mid;
+				}
+			else
+				{
+				stolenlb = lb;
+				stolenub = ub;
+				empty = true;
+				}
+			}
+		thief.set (stolenlb, stolenub);
+		return true;
+		}
+
+	}
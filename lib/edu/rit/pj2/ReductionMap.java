@@ -30,9 +30,21 @@ import edu.rit.util.AList;
 /**
  * Class ReductionMap keeps track of shared global reduction variables and their
  * thread-local copies.
+ * <P>
+ * The threads executing a parallel statement normally add the same global
+ * variables to their reduction maps in the same order. Reducing one map into
+ * another therefore matches up the variables by position, and searches for a
+ * variable only if it is not at the same position in both maps.
+ * <P>
+ * A reduction map can be set to <I>slice</I> large {@linkplain SliceableVbl
+ * SliceableVbl}s. A sliced variable is left alone by the {@link
+ * #reduce(ReductionMap) reduce()} and {@link #setGlobalVariables()
+ * setGlobalVariables()} methods. Instead, once every thread has finished, each
+ * thread calls {@link #reduceSlices(ReductionMap[],int) reduceSlices()} to
+ * reduce and set its own slice of every sliced variable.
  *
  * @author  Alan Kaminsky
- * @version 21-May-2013
+ * @version 18-Mar-2015
  */
 class ReductionMap
 	{
@@ -43,37 +55,52 @@ class ReductionMap
 		{
 		public final Vbl globalVbl;
 		public final Vbl localVbl;
+		public final boolean sliced;
 
 		public Variable
 			(Vbl globalVbl,
-			 Vbl localVbl)
+			 Vbl localVbl,
+			 boolean sliced)
 			{
 			this.globalVbl = globalVbl;
 			this.localVbl = localVbl;
-			}
-
-		public boolean equals
-			(Object obj)
-			{
-			return
-				(obj instanceof Variable) &&
-				(((Variable)obj).globalVbl == this.globalVbl);
+			this.sliced = sliced;
 			}
 		}
 
+// Hidden constants.
+
+	// Sliceable variables with at least this many units are sliced.
+	static final int MIN_SLICE_LENGTH = 4096;
+
 // Hidden data members.
 
 	private AList<Variable> variables = new AList<Variable>();
+	private boolean slicing;
+	private int slicedCount;
 
 // Exported constructors.
 
 	/**
-	 * Construct a new reduction map.
+	 * Construct a new reduction map. The reduction map does not slice
+	 * variables.
 	 */
 	public ReductionMap()
 		{
 		}
 
+	/**
+	 * Construct a new reduction map that slices variables or not, as
+	 * specified.
+	 *
+	 * @param  slicing  True to slice large sliceable variables, false not to.
+	 */
+	public ReductionMap
+		(boolean slicing)
+		{
+		this.slicing = slicing;
+		}
+
 // Exported operations.
 
 	/**
@@ -82,6 +109,7 @@ class ReductionMap
 	public void clear()
 		{
 		variables.clear();
+		slicedCount = 0;
 		}
 
 	/**
@@ -95,20 +123,30 @@ class ReductionMap
 		(Vbl globalVbl)
 		{
 		Vbl localVbl = (Vbl) globalVbl.clone();
-		variables.addLast (new Variable (globalVbl, localVbl));
+		boolean sliced = slicing &&
+			(localVbl instanceof SliceableVbl) &&
+			((SliceableVbl)localVbl).length() >= MIN_SLICE_LENGTH;
+		variables.addLast (new Variable (globalVbl, localVbl, sliced));
+		if (sliced) ++ slicedCount;
 		return localVbl;
 		}
 
+	/**
+	 * Determine whether this reduction map has any sliced variables.
+	 *
+	 * @return  True if there are sliced variables, false otherwise.
+	 */
+	public boolean hasSlicedVariables()
+		{
+		return slicedCount > 0;
+		}
+
 	/**
 	 * Reduce the thread-local variables in the given reduction map into the
-	 * thread-local variables in this reduction map.
+	 * thread-local variables in this reduction map. Sliced variables are not
+	 * reduced.
 	 *
 	 * @param  map  Reduction map.
-	 *
-	 * @exception  IllegalStateException
-	 *     (unchecked exception) Thrown if the given <TT>map</TT> does not
-	 *     contain the same global variables in the same order as this reduction
-	 *     map.
 	 */
 	public void reduce
 		(ReductionMap map)
@@ -117,15 +155,16 @@ class ReductionMap
 		for (int i = 0; i < n; ++ i)
 			{
 			Variable thisVbl = this.variables.get (i);
-			int p = map.variables.position (thisVbl);
-			if (p >= 0)
-				thisVbl.localVbl.reduce (map.variables.get(p).localVbl);
+			if (thisVbl.sliced) continue;
+			Variable thatVbl = map.find (thisVbl.globalVbl, i);
+			if (thatVbl != null)
+				thisVbl.localVbl.reduce (thatVbl.localVbl);
 			}
 		}
 
 	/**
 	 * Set the global variables to their corresponding thread-local variables in
-	 * this reduction map.
+	 * this reduction map. Sliced variables are not set.
 	 */
 	public void setGlobalVariables()
 		{
@@ -133,8 +172,73 @@ class ReductionMap
 		for (int i = 0; i < n; ++ i)
 			{
 			Variable vbl = variables.get (i);
-			vbl.globalVbl.set (vbl.localVbl);
+			if (! vbl.sliced)
+				vbl.globalVbl.set (vbl.localVbl);
+			}
+		}
+
+	/**
+	 * Reduce one slice of each sliced variable. This reduction map must be the
+	 * first element of <TT>maps</TT>. For each sliced variable in this map,
+	 * the given <TT>rank</TT>'s slice of the thread-local variables in the
+	 * other maps is reduced into the thread-local variable in this map, and
+	 * then the slice is stored in the global variable. Each rank's slice is a
+	 * different one of <TT>maps.length</TT> nearly equal slices.
+	 *
+	 * @param  maps  Reduction maps of all the threads.
+	 * @param  rank  Rank of the calling thread.
+	 */
+	public void reduceSlices
+		(ReductionMap[] maps,
+		 int rank)
+		{
+		int NT = maps.length;
+		int n = this.variables.size();
+		for (int i = 0; i < n; ++ i)
+			{
+			Variable thisVbl = this.variables.get (i);
+			if (! thisVbl.sliced) continue;
+			SliceableVbl localVbl = (SliceableVbl) thisVbl.localVbl;
+			long len = localVbl.length();
+			int lb = (int)(len*rank/NT);
+			int ub = (int)(len*(rank + 1)/NT);
+			if (lb == ub && lb != 0) continue;
+			for (int k = 1; k < NT; ++ k)
+				{
+				Variable thatVbl = maps[k].find (thisVbl.globalVbl, i);
+				if (thatVbl != null)
+					localVbl.reduce (thatVbl.localVbl, lb, ub);
+				}
+			((SliceableVbl) thisVbl.globalVbl) .set (localVbl, lb, ub);
+			}
+		}
+
+// Hidden operations.
+
+	/**
+	 * Find the entry for the given global variable in this reduction map.
+	 *
+	 * @param  globalVbl  Global variable.
+	 * @param  i          Position where the entry is expected.
+	 *
+	 * @return  Entry, or null if none.
+	 */
+	private Variable find
+		(Vbl globalVbl,
+		 int i)
+		{
+		int n = variables.size();
+		if (i < n)
+			{
+			Variable vbl = variables.get (i);
+			if (vbl.globalVbl == globalVbl) return vbl;
+			}
+		for (i = 0; i < n; ++ i)
+			{
+			Variable vbl = variables.get (i);
+			if (vbl.globalVbl == globalVbl) return vbl;
 			}
+		return null;
 		}
 
 	}
@@ -29,7 +29,7 @@ import edu.rit.pj2.tracker.JobProperties;
 import edu.rit.util.AList;
 import edu.rit.util.DList;
 import edu.rit.util.DListEntry;
-import java.util.Iterator;
+import java.util.Set;
 
 /**
  * Class Rule provides a PJ2 rule. A PJ2 parallel program is either a single
@@ -125,7 +125,7 @@ import java.util.Iterator;
  * Job}.
  *
  * @author  Alan Kaminsky
- * @version 30-Jun-2014
+ * @version 18-Mar-2015
  */
 public class Rule
 	{
@@ -306,6 +306,78 @@ public class Rule
 		matcher.match (transaction, templates);
 		}
 
+	/**
+	 * Get a transaction for matching this rule against the given tuple space.
+	 * If this rule uses the default matcher, the transaction covers only the
+	 * families of this rule's templates' matching classes; otherwise, the
+	 * transaction covers all of tuple space.
+	 *
+	 * @param  tupleSpace  Tuple space.
+	 *
+	 * @return  Transaction.
+	 */
+	TupleSpace.Transaction getTransaction
+		(TupleSpace tupleSpace)
+		{
+		if (! (matcher instanceof DefaultMatcher))
+			return tupleSpace.getTransaction();
+		int n = templates.size();
+		Class<?>[] classes = new Class<?> [n];
+		for (int i = 0; i < n; ++ i)
+			classes[i] = templates.get(i).matchClass();
+		return tupleSpace.getTransaction (classes);
+		}
+
+	/**
+	 * Determine whether writing the given tuple might enable this rule to fire.
+	 * This is so if this rule does not use the default matcher, or if the
+	 * tuple's class is a subclass of one of this rule's templates' matching
+	 * classes.
+	 *
+	 * @param  tuple  Tuple.
+	 *
+	 * @return  True if this rule might fire, false if it cannot.
+	 */
+	boolean mightMatch
+		(Tuple tuple)
+		{
+		if (! (matcher instanceof DefaultMatcher))
+			return true;
+		Class<?> tupleClass = tuple.getClass();
+		int n = templates.size();
+		for (int i = 0; i < n; ++ i)
+			if (templates.get(i).matchClass().isAssignableFrom (tupleClass))
+				return true;
+		return false;
+		}
+
+	/**
+	 * Add the families of this rule's templates' matching classes to the
+	 * given set of family class names. If this rule does not use the default
+	 * matcher, or if a template can match tuples of any family, this rule can
+	 * match tuples of any family.
+	 *
+	 * @param  families  Set of family class names.
+	 *
+	 * @return  True if the families were added, false if this rule can match
+	 *          tuples of any family.
+	 */
+	boolean addFamilies
+		(Set<String> families)
+		{
+		if (! (matcher instanceof DefaultMatcher))
+			return false;
+		int n = templates.size();
+		for (int i = 0; i < n; ++ i)
+			{
+			Class<?> family = TupleSpace.family (templates.get(i).matchClass());
+			if (family == null)
+				return false;
+			families.add (family.getName());
+			}
+		return true;
+		}
+
 // Helper classes/interfaces.
 
 	/**
@@ -343,7 +415,7 @@ public class Rule
 	 * space.
 	 *
 	 * @author  Alan Kaminsky
-	 * @version 14-Dec-2013
+	 * @version 18-Mar-2015
 	 */
 	private static class DefaultMatcher
 		implements Matcher
@@ -374,19 +446,12 @@ public class Rule
 				Tuple template = templates.get (i);
 
 				// Search tuple space for a tuple that matches current template.
-				matched = false;
-				Iterator<TupleSpace.TupleRef> iter = transaction.iterator();
-				while (! matched && iter.hasNext())
-					{
-					TupleSpace.TupleRef ref = iter.next();
-					Tuple target = ref.tuple;
-					if (template.match (target))
-						{
-						// Matching tuple was found; tentatively remove it.
-						transaction.remove (ref);
-						matched = true;
-						}
-					}
+				TupleSpace.TupleRef ref = transaction.find (template);
+				matched = ref != null;
+
+				// Matching tuple was found; tentatively remove it.
+				if (matched)
+					transaction.remove (ref);
 				}
 
 			// Commit/abort transaction if all templates were/were not matched.
@@ -41,7 +41,7 @@ import java.io.InvalidObjectException;
  * @see  LongLoop
  *
  * @author  Alan Kaminsky
- * @version 22-Mar-2014
+ * @version 18-Mar-2015
  */
 public enum Schedule
 	{
@@ -256,6 +256,120 @@ public enum Schedule
 			{
 			job.putChunksGuided (workers, masterChunk, lb, ub);
 			}
+		}),
+
+	/**
+	 * Work stealing schedule. Each thread has its own deque of iterations.
+	 * Initially, each thread's deque holds the iterations the thread would
+	 * perform with a fixed schedule. Each thread takes chunks of iterations
+	 * from its own deque and executes them. The chunk size is specified by the
+	 * <TT>chunk</TT> property. If the <TT>chunk</TT> property is {@link
+	 * Task#STANDARD_CHUNK STANDARD_CHUNK}, a chunk size of 1 is used. When a
+	 * thread's deque is empty, the thread steals half the remaining iterations
+	 * from another thread's deque and continues.
+	 * <P>
+	 * A work stealing schedule is appropriate when each loop iteration takes a
+	 * different amount of time, so load balancing is needed, and the chunk
+	 * size must be small. Unlike the dynamic, proportional, and guided
+	 * schedules, the threads do not all contend for one shared loop index
+	 * counter; a thread accesses another thread's deque only when it has run
+	 * out of work.
+	 * <P>
+	 * For a master-worker parallel for loop, the master gives each worker its
+	 * share of the iterations as with a fixed schedule, all in one chunk, and
+	 * each worker's team threads split the chunk among themselves with a work
+	 * stealing schedule regardless of the worker's <TT>schedule</TT> property.
+	 * When a worker runs out of iterations, it steals half the remaining
+	 * iterations of some thread's deque in another, still busy worker. The job
+	 * process only arbitrates: it picks the busy worker that an idle worker
+	 * steals from, and it tells the workers when no iterations are left. A
+	 * worker does not give away fewer iterations than the <TT>masterChunk</TT>
+	 * property; if the <TT>masterChunk</TT> property is {@link
+	 * Task#STANDARD_CHUNK STANDARD_CHUNK}, a worker gives away as few as one
+	 * iteration. Thus the number of tuples going through tuple space grows with
+	 * the number of workers and steals, not with the number of iterations. This
+	 * is appropriate when each loop iteration takes a very different amount of
+	 * time.
+	 */
+	workStealing (new Scheduler()
+		{
+		public int actualChunk (int chunk)
+			{
+			return chunk == Task.STANDARD_CHUNK ? 1 : chunk;
+			}
+		public void iterate (IntParallelForLoop pfl, Loop loop, int rank)
+			throws Exception
+			{
+			pfl.iterateWorkStealing (loop, rank);
+			}
+		public void iterate (LongParallelForLoop pfl, LongLoop loop, int rank)
+			throws Exception
+			{
+			pfl.iterateWorkStealing (loop, rank);
+			}
+		public void putChunks (Job job, int workers, int masterChunk,
+				int lb, int ub)
+			{
+			job.putChunksStealing (workers, masterChunk, lb, ub);
+			}
+		public void putChunks (Job job, int workers, int masterChunk,
+				long lb, long ub)
+			{
+			job.putChunksStealing (workers, masterChunk, lb, ub);
+			}
+		}),
+
+	/**
+	 * Adaptive schedule. The iterations are partitioned into chunks. The chunks
+	 * are of different sizes, chosen on the fly by each thread based on how
+	 * long the thread's previous chunks took to execute. The minimum chunk size
+	 * is specified by the <TT>chunk</TT> property. If the <TT>chunk</TT>
+	 * property is {@link Task#STANDARD_CHUNK STANDARD_CHUNK}, a minimum chunk
+	 * size of 1 is used. Each thread starts with the minimum chunk size and
+	 * measures the time per iteration. While the time per iteration varies
+	 * considerably, the thread uses small chunks. Once the time per iteration
+	 * looks uniform, the thread doubles its chunk size after each chunk, up to
+	 * a chunk that takes about 100 microseconds to execute. As with a guided
+	 * schedule, a chunk never exceeds the remaining iterations divided by twice
+	 * the number of threads. The threads execute the chunks in a dynamic
+	 * fashion: when a thread has finished executing a chunk, the thread gets
+	 * the next available chunk and executes it.
+	 * <P>
+	 * An adaptive schedule is appropriate when the amount of time each loop
+	 * iteration takes is not known in advance, so a good chunk size cannot be
+	 * chosen ahead of time. It is especially useful when the loop body is so
+	 * cheap that a dynamic schedule with a small chunk size would spend most of
+	 * its time on thread synchronization.
+	 * <P>
+	 * For a master-worker parallel for loop, the master partitions the
+	 * iterations among the workers as with a guided schedule.
+	 */
+	adaptive (new Scheduler()
+		{
+		public int actualChunk (int chunk)
+			{
+			return chunk == Task.STANDARD_CHUNK ? 1 : chunk;
+			}
+		public void iterate (IntParallelForLoop pfl, Loop loop, int rank)
+			throws Exception
+			{
+			pfl.iterateAdaptive (loop, rank);
+			}
+		public void iterate (LongParallelForLoop pfl, LongLoop loop, int rank)
+			throws Exception
+			{
+			pfl.iterateAdaptive (loop, rank);
+			}
+		public void putChunks (Job job, int workers, int masterChunk,
+				int lb, int ub)
+			{
+			job.putChunksGuided (workers, masterChunk, lb, ub);
+			}
+		public void putChunks (Job job, int workers, int masterChunk,
+				long lb, long ub)
+			{
+			job.putChunksGuided (workers, masterChunk, lb, ub);
+			}
 		});
 
 // Hidden helper interface.
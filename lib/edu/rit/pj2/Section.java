@@ -83,7 +83,10 @@ import java.util.Iterator;
  * <B>Parallel thread team.</B>
  * The parallel section group is executed by a team of threads. There are as
  * many threads as there are sections. Each thread calls the {@link #run()
- * run()} method on a different Section object.
+ * run()} method on a different Section object. Alternatively, the {@link
+ * Task#parallelDoVirtual(Section[]) parallelDoVirtual()} method executes each
+ * section in its own virtual thread, which suits sections that spend most of
+ * their time blocked.
  * <P>
  * <B>End-of-sections barrier.</B>
  * There is an implicit barrier at the end of the parallel section group. After
@@ -146,7 +149,7 @@ import java.util.Iterator;
  * @see  ParallelStatement
  *
  * @author  Alan Kaminsky
- * @version 16-Nov-2013
+ * @version 16-Mar-2015
  */
 public abstract class Section
 	implements Cloneable
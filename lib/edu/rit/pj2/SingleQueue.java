@@ -30,10 +30,12 @@ import java.util.concurrent.locks.LockSupport;
 /**
  * Class SingleQueue provides a single-item queue. The queue has a maximum
  * capacity of one item. The queue's consumer must always be a certain thread,
- * specified to the constructor.
+ * specified to the constructor. The consumer waits for an item as specified by
+ * a {@linkplain WaitPolicy WaitPolicy}. The consumer thread can be changed while
+ * the queue is empty, so that a queue object can be reused.
  *
  * @author  Alan Kaminsky
- * @version 19-May-2013
+ * @version 11-Mar-2015
  */
 class SingleQueue
 	{
@@ -42,6 +44,7 @@ class SingleQueue
 
 	private Thread consumer;
 	private volatile Object item;
+	private volatile boolean parked;
 
 // Exported constructors.
 
@@ -58,6 +61,19 @@ class SingleQueue
 
 // Exported operations.
 
+	/**
+	 * Specify this queue's consumer thread. Assumes the queue is empty, and
+	 * assumes the producer will not put an item into the queue until after this
+	 * method returns.
+	 *
+	 * @param  consumer  Consumer thread.
+	 */
+	public void consumer
+		(Thread consumer)
+		{
+		this.consumer = consumer;
+		}
+
 	/**
 	 * Put the given item in this queue. Assumes the queue is empty. Assumes the
 	 * item is not null. Non-blocking operation.
@@ -68,7 +84,8 @@ class SingleQueue
 		(Object item)
 		{
 		this.item = item;
-		LockSupport.unpark (consumer);
+		if (parked)
+			LockSupport.unpark (consumer);
 		}
 
 	/**
@@ -81,8 +98,36 @@ class SingleQueue
 	 */
 	public Object get()
 		{
-		while (item == null)
-			LockSupport.park (this);
+		return get (WaitPolicy.park);
+		}
+
+	/**
+	 * Get an item from this queue, waiting as specified by the given wait
+	 * policy. Assumes the calling thread is the consumer thread specified to
+	 * the constructor. Blocks until an item has been put into this queue.
+	 * Assumes the calling thread will not be interrupted while blocked in this
+	 * method.
+	 *
+	 * @param  policy  Wait policy.
+	 *
+	 * @return  Item.
+	 */
+	public Object get
+		(WaitPolicy policy)
+		{
+		for (int i = policy.spins; item == null && i > 0; -- i)
+			;
+		for (int i = policy.yields; item == null && i > 0; -- i)
+			Thread.yield();
+		if (item == null)
+			{
+			// The put() method unparks the consumer only if the parked flag is
+			// set, so set the flag before checking the item one last time.
+			parked = true;
+			while (item == null)
+				LockSupport.park (this);
+			parked = false;
+			}
 		Object rv = item;
 		item = null;
 		return rv;
@@ -0,0 +1,98 @@
+//******************************************************************************
+//
+// File:    SliceableVbl.java
+// Package: edu.rit.pj2
+// Unit:    Interface edu.rit.pj2.SliceableVbl
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+/**
+ * Interface SliceableVbl specifies the interface for a shared variable whose
+ * state is an array that can be reduced one slice at a time. The array
+ * consists of a number of <I>units</I> given by the {@link #length() length()}
+ * method; a unit is, for example, one bin of a histogram or one word of a
+ * bitmap. Reducing or setting one slice of units must not touch any other
+ * unit, so that different threads can reduce different slices of the same
+ * variables simultaneously.
+ * <P>
+ * When a parallel statement executed by a team of <I>NT</I> threads ends, a
+ * large sliceable variable is not reduced by combining whole thread-local
+ * copies pairwise. Instead, each team thread reduces one slice of all
+ * <I>NT</I> thread-local copies and stores that slice of the result in the
+ * shared variable. State outside the array, if any, such as the total count
+ * of a histogram, is reduced and set along with the slice that starts at unit
+ * 0.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public interface SliceableVbl
+	extends Vbl
+	{
+
+	/**
+	 * Returns the number of units in this shared variable's array.
+	 *
+	 * @return  Number of units.
+	 */
+	public int length();
+
+	/**
+	 * Reduce the given slice of the given shared variable into this shared
+	 * variable. Units <TT>lb</TT> through <TT>ub</TT>&minus;1 of the two
+	 * variables are combined together, and the result is stored in this shared
+	 * variable. If <TT>lb</TT> = 0, any state outside the array is reduced as
+	 * well.
+	 *
+	 * @param  vbl  Shared variable.
+	 * @param  lb   Lower bound unit (inclusive).
+	 * @param  ub   Upper bound unit (exclusive).
+	 *
+	 * @exception  ClassCastException
+	 *     (unchecked exception) Thrown if the class of <TT>vbl</TT> is not
+	 *     compatible with the class of this shared variable.
+	 */
+	public void reduce
+		(Vbl vbl,
+		 int lb,
+		 int ub);
+
+	/**
+	 * Set the given slice of this shared variable to the given slice of the
+	 * given shared variable. Units <TT>lb</TT> through <TT>ub</TT>&minus;1 of
+	 * this variable are set to the corresponding units of <TT>vbl</TT>. If
+	 * <TT>lb</TT> = 0, any state outside the array is set as well.
+	 *
+	 * @param  vbl  Shared variable.
+	 * @param  lb   Lower bound unit (inclusive).
+	 * @param  ub   Upper bound unit (exclusive).
+	 *
+	 * @exception  ClassCastException
+	 *     (unchecked exception) Thrown if the class of <TT>vbl</TT> is not
+	 *     compatible with the class of this shared variable.
+	 */
+	public void set
+		(Vbl vbl,
+		 int lb,
+		 int ub);
+
+	}
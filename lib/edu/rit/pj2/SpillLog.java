@@ -0,0 +1,249 @@
+//******************************************************************************
+//
+// File:    SpillLog.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.SpillLog
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class SpillLog provides an append-only log of records, kept in a temporary
+ * file that is mapped into memory. A {@linkplain TupleSpace TupleSpace} uses a
+ * spill log to hold serialized tuples once its memory budget is exceeded.
+ * <P>
+ * The log file is mapped in regions. A record is never split across regions;
+ * a record larger than the usual region size gets a region of its own. The
+ * log keeps, for each region, a count of the records in the region that are
+ * still in use. Records are appended to the current region until it is full;
+ * the log then moves on to the first region, in file order, whose records
+ * have all been released and that is large enough, mapping a new region at
+ * the end of the file only if there is no such region. When all the records
+ * in the current region are released, appending starts over at the
+ * beginning of the region. The file thus grows only to the largest number of
+ * regions holding records at one time, no matter how many records are
+ * appended and released over time; the file never shrinks until the log is
+ * closed.
+ * <P>
+ * Class SpillLog is multiple thread safe.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class SpillLog
+	{
+
+// Hidden data members.
+
+	// Usual size of a mapped region (bytes).
+	private static final long REGION_SIZE = 64L*1024L*1024L;
+
+	private File file;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+
+	// Mapped region, with the number of records in the region still in use.
+	private static class Region
+		{
+		public final MappedByteBuffer buf;
+		public long live;
+
+		public Region
+			(MappedByteBuffer buf)
+			{
+			this.buf = buf;
+			}
+		}
+
+	// Mapped regions, indexed by position of the region in the file.
+	private TreeMap<Long,Region> regions = new TreeMap<Long,Region>();
+
+	// Position of the end of the last mapped region.
+	private long end = 0L;
+
+	// Position at which the next record will be appended.
+	private long next = 0L;
+
+// Exported constructors.
+
+	/**
+	 * Construct a new spill log. The log file is created in the default
+	 * temporary file directory and is deleted when the log is closed or when
+	 * the JVM exits.
+	 *
+	 * @exception  IOException
+	 *     Thrown if the log file could not be created.
+	 */
+	public SpillLog()
+		throws IOException
+		{
+		file = File.createTempFile ("pj2spill", ".log");
+		file.deleteOnExit();
+		raf = new RandomAccessFile (file, "rw");
+		channel = raf.getChannel();
+		}
+
+// Exported operations.
+
+	/**
+	 * Append the given record to this spill log.
+	 *
+	 * @param  buf  Array containing the record.
+	 * @param  len  Length of the record (bytes).
+	 *
+	 * @return  Position of the record in the log.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized long append
+		(byte[] buf,
+		 int len)
+		throws IOException
+		{
+		Map.Entry<Long,Region> region = region (len);
+		ByteBuffer b = region.getValue().buf.duplicate();
+		b.position ((int)(next - region.getKey()));
+		b.put (buf, 0, len);
+		long pos = next;
+		next += len;
+		++ region.getValue().live;
+		return pos;
+		}
+
+	/**
+	 * Read the record at the given position from this spill log.
+	 *
+	 * @param  pos  Position of the record, as returned by <TT>append()</TT>.
+	 * @param  len  Length of the record (bytes).
+	 *
+	 * @return  Array containing the record.
+	 */
+	public synchronized byte[] read
+		(long pos,
+		 int len)
+		{
+		Map.Entry<Long,Region> region = regions.floorEntry (pos);
+		ByteBuffer b = region.getValue().buf.duplicate();
+		b.position ((int)(pos - region.getKey()));
+		byte[] buf = new byte [len];
+		b.get (buf);
+		return buf;
+		}
+
+	/**
+	 * Release the record at the given position in this spill log. The record
+	 * must not be read afterwards. If the record was the last one in use in
+	 * its region, the region can be reused.
+	 *
+	 * @param  pos  Position of the record, as returned by <TT>append()</TT>.
+	 */
+	public synchronized void release
+		(long pos)
+		{
+		Map.Entry<Long,Region> region = regions.floorEntry (pos);
+		if (-- region.getValue().live == 0L &&
+				region.getKey().equals (regions.floorKey (next)))
+			next = region.getKey();
+		}
+
+	/**
+	 * Close this spill log and delete the log file.
+	 */
+	public synchronized void close()
+		{
+		try
+			{
+			regions.clear();
+			channel.close();
+			raf.close();
+			}
+		catch (IOException exc)
+			{
+			}
+		file.delete();
+		}
+
+// Hidden operations.
+
+	/**
+	 * Returns the mapped region into which a record of the given length will
+	 * be appended. If the current region is too full to hold the record, the
+	 * append position moves to the first empty region large enough to hold the
+	 * record, or to a new region mapped at the end of the file.
+	 *
+	 * @param  len  Length of the record (bytes).
+	 *
+	 * @return  Region.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private Map.Entry<Long,Region> region
+		(int len)
+		throws IOException
+		{
+		Map.Entry<Long,Region> region = regions.floorEntry (next);
+		if (region != null && fits (region, next, len))
+			return region;
+		for (Map.Entry<Long,Region> empty : regions.entrySet())
+			if (empty.getValue().live == 0L &&
+					fits (empty, empty.getKey(), len))
+				{
+				next = empty.getKey();
+				return empty;
+				}
+		long size = Math.max (REGION_SIZE, len);
+		regions.put (end, new Region
+			(channel.map (FileChannel.MapMode.READ_WRITE, end, size)));
+		next = end;
+		end += size;
+		return regions.floorEntry (next);
+		}
+
+	/**
+	 * Determine whether a record of the given length, appended at the given
+	 * position, fits in the given region.
+	 *
+	 * @param  region  Region.
+	 * @param  pos     Position.
+	 * @param  len     Length of the record (bytes).
+	 *
+	 * @return  True if the record fits, false otherwise.
+	 */
+	private static boolean fits
+		(Map.Entry<Long,Region> region,
+		 long pos,
+		 int len)
+		{
+		return pos + len <= region.getKey() + region.getValue().buf.capacity();
+		}
+
+	}
@@ -0,0 +1,308 @@
+//******************************************************************************
+//
+// File:    SpliteratorParallelForLoop.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.SpliteratorParallelForLoop
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import edu.rit.util.AList;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Class SpliteratorParallelForLoop provides a work sharing parallel for loop
+ * executed by multiple threads, looping over the elements in a {@linkplain
+ * java.util.Spliterator Spliterator}. A spliterator parallel for loop is
+ * constructed by the {@link Task#parallelFor(java.util.Spliterator)
+ * parallelFor(Spliterator)} method of class {@linkplain Task}.
+ * <P>
+ * <B>Programming pattern.</B>
+ * To execute a parallel for loop over the elements in a spliterator in the
+ * {@link Task#main(String[]) main()} method of a {@linkplain Task}, follow this
+ * pattern:
+ * <PRE>
+ * public class MyTask extends Task
+ *     {
+ *     public void main (String[] args)
+ *         {
+ *         parallelFor (<I>spliter</I>) .exec (new ObjectLoop&lt;E&gt;()
+ *             {
+ *             // <I>Thread-local variable declarations (optional)</I>
+ *             public void start()
+ *                 {
+ *                 // <I>One-time thread-local initialization (optional method)</I>
+ *                 }
+ *             public void run (E obj)
+ *                 {
+ *                 // <I>Loop body code for element obj (required method)</I>
+ *                 }
+ *             public void finish()
+ *                 {
+ *                 // <I>One-time thread-local finalization (optional method)</I>
+ *                 }
+ *             });
+ *         }
+ *     }</PRE>
+ * <P>
+ * The <I>spliter</I> is a {@linkplain java.util.Spliterator Spliterator}, such
+ * as one obtained from a JDK collection's <TT>spliterator()</TT> method or from
+ * a stream's <TT>spliterator()</TT> method. <TT>E</TT> is the data type of the
+ * spliterator's elements.
+ * <P>
+ * <B>Partitioning.</B>
+ * Before the threads start, the spliterator is partitioned by calling its
+ * <TT>trySplit()</TT> method repeatedly, until there are several pieces for
+ * each thread or until no piece can be split further. The threads then execute
+ * the pieces in a dynamic fashion: when a thread has finished executing a
+ * piece, the thread gets the next available piece and executes it. Within a
+ * piece, the thread obtains elements from the piece's spliterator without any
+ * thread synchronization. How evenly the load is balanced thus depends on how
+ * evenly the spliterator splits. Note that the spliterator of a sequential
+ * stream with intermediate operations does not split at all, so one thread
+ * executes every element; call the stream's <TT>parallel()</TT> method before
+ * its <TT>spliterator()</TT> method.
+ * <P>
+ * <B>Parallel thread team.</B>
+ * The parallel for loop is executed by a team of threads. The number of threads
+ * is given by the <TT>threads</TT> property of the enclosing task (see the
+ * {@link Task#threads() threads()} method of class {@linkplain Task}). The
+ * default is one thread for each core of the machine on which the program is
+ * running. The default can be overridden as follows:
+ * <PRE>
+ *     parallelFor (<I>spliter</I>) .threads (<I>threads</I>) .exec (new ObjectLoop&lt;E&gt;() ...</PRE>
+ * <P>
+ * <B>Parallel loop body.</B>
+ * The threads execute the methods in the inner {@linkplain ObjectLoop} class.
+ * For further information about how the parallel for loop executes, see class
+ * {@linkplain ObjectLoop}.
+ *
+ * @param  <E>  Data type of the spliterator's elements.
+ *
+ * @see  ParallelStatement
+ * @see  ParallelForLoop
+ * @see  ObjectLoop
+ * @see  VblCollector
+ *
+ * @author  Alan Kaminsky
+ * @version 09-Mar-2015
+ */
+public class SpliteratorParallelForLoop<E>
+	extends ParallelForLoop
+	{
+
+// Hidden constants.
+
+	// Number of pieces per thread to split the spliterator into.
+	private static final int PIECES_PER_THREAD = 4;
+
+// Hidden data members.
+
+	private Spliterator<E> spliter;
+	private AList<Spliterator<E>> pieces;
+	private AtomicInteger nextPiece;
+	private ObjectLoop<E> loop;
+
+// Hidden constructors.
+
+	/**
+	 * Construct a new spliterator parallel for loop.
+	 *
+	 * @param  task     Task in which the parallel for loop is executing.
+	 * @param  spliter  Spliterator.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>spliter</TT> is null.
+	 */
+	SpliteratorParallelForLoop
+		(Task task,
+		 Spliterator<E> spliter)
+		{
+		super (task);
+		if (spliter == null)
+			throw new NullPointerException
+				("SpliteratorParallelForLoop(): spliter is null");
+		this.spliter = spliter;
+		}
+
+// Exported operations.
+
+	/**
+	 * Set this parallel for loop's <TT>threads</TT> property. The
+	 * <TT>threads</TT> property specifies the number of threads that will
+	 * execute this parallel for loop. The default is the <TT>threads</TT>
+	 * property of the enclosing task. For further information, see the {@link
+	 * Task#threads(int) threads()} method of class {@linkplain Task}.
+	 *
+	 * @param  threads  Number of threads (&ge; 1), {@link
+	 *                  Task#THREADS_EQUALS_CORES}, or {@link
+	 *                  Task#DEFAULT_THREADS}.
+	 *
+	 * @return  This parallel for loop object.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>threads</TT> is illegal.
+	 */
+	public SpliteratorParallelForLoop<E> threads
+		(int threads)
+		{
+		properties.threads (threads);
+		return this;
+		}
+
+	/**
+	 * Execute this parallel for loop with the loop body specified by the given
+	 * {@linkplain ObjectLoop} object.
+	 *
+	 * @param  loop  Loop object.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>loop</TT> is null.
+	 */
+	public void exec
+		(ObjectLoop<E> loop)
+		{
+		threads = properties.actualThreads();
+		pieces = split (spliter, threads*PIECES_PER_THREAD);
+		nextPiece = new AtomicInteger (0);
+		this.loop = loop;
+		stop = false;
+		Team.execute (threads, this);
+		pieces = null;
+		}
+
+// Hidden operations.
+
+	/**
+	 * Split the given spliterator into the given number of pieces, or until no
+	 * piece can be split further.
+	 *
+	 * @param  spliter  Spliterator.
+	 * @param  n        Desired number of pieces.
+	 *
+	 * @return  List of pieces.
+	 */
+	private static <E> AList<Spliterator<E>> split
+		(Spliterator<E> spliter,
+		 int n)
+		{
+		AList<Spliterator<E>> list = new AList<Spliterator<E>>();
+		list.addLast (spliter);
+		boolean splitting = true;
+		while (splitting && list.size() < n)
+			{
+			// Split each piece in half, if possible.
+			splitting = false;
+			for (int i = list.size() - 1; i >= 0 && list.size() < n; -- i)
+				{
+				Spliterator<E> prefix = list.get(i).trySplit();
+				if (prefix != null)
+					{
+					list.addLast (prefix);
+					splitting = true;
+					}
+				}
+			}
+		return list;
+		}
+
+	/**
+	 * Execute this parallel statement.
+	 *
+	 * @param  rank          Rank of the team thread.
+	 * @param  reductionMap  Reduction map of the team thread.
+	 *
+	 * @exception  Exception
+	 *     The <TT>run()</TT> method may throw any exception.
+	 */
+	void run
+		(int rank,
+		 ReductionMap reductionMap)
+		throws Exception
+		{
+		// Thread 0 operates on the original loop object, the other threads
+		// operate on their own copies of the loop object.
+		@SuppressWarnings ("unchecked")
+		ObjectLoop<E> loop =
+			rank == 0 ? this.loop : (ObjectLoop<E>)(this.loop.clone());
+		loop.parallelForLoop = this;
+		loop.rank = rank;
+		loop.reductionMap = reductionMap;
+
+		// Perform one-time initialization.
+		loop.start();
+
+		// Execute iterations, one piece at a time.
+		Action<E> action = new Action<E> (loop);
+		int p;
+		while (! stop && (p = nextPiece.getAndIncrement()) < pieces.size())
+			{
+			Spliterator<E> piece = pieces.get (p);
+			while (! stop && action.exc == null && piece.tryAdvance (action));
+			if (action.exc != null)
+				throw action.exc;
+			}
+
+		// Perform one-time finalization.
+		loop.finish();
+
+		loop.parallelForLoop = null;
+		loop.rank = -1;
+		loop.reductionMap = null;
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Class Action passes each element from a spliterator to a loop body,
+	 * saving any exception the loop body throws.
+	 *
+	 * @param  <E>  Data type of the spliterator's elements.
+	 */
+	private static class Action<E>
+		implements Consumer<E>
+		{
+		private ObjectLoop<E> loop;
+		public Exception exc;
+
+		public Action
+			(ObjectLoop<E> loop)
+			{
+			this.loop = loop;
+			}
+
+		public void accept
+			(E obj)
+			{
+			try
+				{
+				loop.run (obj);
+				}
+			catch (Exception exc)
+				{
+				this.exc = exc;
+				}
+			}
+		}
+
+	}
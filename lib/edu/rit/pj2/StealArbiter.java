@@ -0,0 +1,226 @@
+//******************************************************************************
+//
+// File:    StealArbiter.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.StealArbiter
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Class StealArbiter is a {@linkplain Task Task} that balances the load among
+ * the worker tasks of a master-worker cluster parallel for loop with a {@link
+ * Schedule#workStealing workStealing} master schedule. The arbiter runs in the
+ * job's process. It performs no loop iterations itself and never sees them;
+ * it only decides which busy worker task each idle worker task steals from.
+ * The arbiter and the worker tasks communicate with {@linkplain StealOrder
+ * StealOrder} tuples:
+ * <UL>
+ * <LI>
+ * When a worker task runs out of iterations, it sends the arbiter an {@link
+ * StealOrder#IDLE IDLE} order.
+ * <LI>
+ * The arbiter sends a {@link StealOrder#STEAL STEAL} order to a busy worker
+ * task, naming the idle worker task as the thief. At most one steal order is
+ * outstanding to each busy worker task.
+ * <LI>
+ * The busy worker task gives away the upper half of one of its team threads'
+ * remaining iterations, in a {@link StealOrder#GIVE GIVE} order, or gives
+ * away nothing if it has too few iterations left. A worker task that gives
+ * away nothing is not asked again until it has stolen iterations itself.
+ * <LI>
+ * The arbiter forwards the given iterations to the thief in a {@link
+ * StealOrder#RANGE RANGE} order, or else looks for another busy worker task.
+ * <LI>
+ * A worker task whose loop was stopped sends the arbiter a {@link
+ * StealOrder#QUIT QUIT} order and gets no more iterations. Iterations that
+ * were meant for it are kept in a pool and handed to the next idle worker
+ * task instead.
+ * <LI>
+ * When all the worker tasks are idle and no steal orders are outstanding, the
+ * arbiter sends each worker task a {@link StealOrder#DONE DONE} order and
+ * terminates.
+ * </UL>
+ * <P>
+ * Usage: <TT>StealArbiter <I>workers</I> <I>minSteal</I></TT>
+ * <BR><I>workers</I> = Number of worker tasks
+ * <BR><I>minSteal</I> = Least number of iterations a worker task gives away
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class StealArbiter
+	extends Task
+	{
+
+// Hidden data members.
+
+	private int W;
+	private long minSteal;
+
+	// Worker task states, indexed by rank.
+	private boolean[] idle;      // Waiting for iterations
+	private boolean[] serving;   // Idle, and a steal order is outstanding
+	private boolean[] asked;     // Busy, and a steal order is outstanding
+	private boolean[] drained;   // Busy, but gave away nothing
+	private boolean[] quit;      // Loop was stopped
+
+	// Iterations given away but not yet handed to an idle worker task.
+	private ArrayDeque<StealOrder> pool = new ArrayDeque<StealOrder>();
+
+	private int idleCount;
+	private int outstanding;
+	private int nextVictim;
+
+// Exported operations.
+
+	/**
+	 * Task main program.
+	 *
+	 * @param  args  Array of zero or more command line argument strings.
+	 *
+	 * @exception  Exception
+	 *     The <TT>main()</TT> method can throw any exception.
+	 */
+	public void main
+		(String[] args)
+		throws Exception
+		{
+		W = Integer.parseInt (args[0]);
+		minSteal = Math.max (Long.parseLong (args[1]), 1L);
+		idle = new boolean [W];
+		serving = new boolean [W];
+		asked = new boolean [W];
+		drained = new boolean [W];
+		quit = new boolean [W];
+
+		StealOrder template = new StealOrder();
+		for (;;)
+			{
+			StealOrder order = takeTuple (template);
+			switch (order.kind)
+				{
+				case StealOrder.IDLE:
+					idle[order.from] = true;
+					++ idleCount;
+					break;
+				case StealOrder.GIVE:
+					asked[order.from] = false;
+					serving[order.thief] = false;
+					-- outstanding;
+					if (order.isEmpty())
+						drained[order.from] = true;
+					else if (quit[order.thief])
+						pool.addLast (order);
+					else
+						give (order.thief, order);
+					break;
+				case StealOrder.QUIT:
+					if (! idle[order.from])
+						{
+						idle[order.from] = true;
+						++ idleCount;
+						}
+					quit[order.from] = true;
+					if (! order.isEmpty())
+						pool.addLast (order);
+					break;
+				}
+
+			// Match idle worker tasks with pooled iterations or with busy
+			// worker tasks to steal from.
+			for (int thief = 0; thief < W; ++ thief)
+				if (idle[thief] && ! serving[thief] && ! quit[thief])
+					{
+					if (! pool.isEmpty())
+						{
+						give (thief, pool.removeFirst());
+						continue;
+						}
+					int victim = victim();
+					if (victim == -1) break;
+					asked[victim] = true;
+					serving[thief] = true;
+					++ outstanding;
+					putTuple (new StealOrder (victim, StealOrder.STEAL,
+						StealOrder.ARBITER, thief, minSteal, 0L));
+					}
+
+			// All done?
+			if (idleCount == W && outstanding == 0)
+				{
+				ArrayList<Tuple> done = new ArrayList<Tuple>();
+				for (int w = 0; w < W; ++ w)
+					done.add (new StealOrder (w, StealOrder.DONE,
+						StealOrder.ARBITER, w, 1L, 0L));
+				putTuples (done);
+				return;
+				}
+			}
+		}
+
+// Hidden operations.
+
+	/**
+	 * Give the iterations in the given order to the given idle worker task.
+	 *
+	 * @param  thief  Rank of the worker task.
+	 * @param  order  Order holding the iterations.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void give
+		(int thief,
+		 StealOrder order)
+		throws IOException
+		{
+		idle[thief] = false;
+		drained[thief] = false;
+		-- idleCount;
+		putTuple (new StealOrder (thief, StealOrder.RANGE, StealOrder.ARBITER,
+			thief, order.lb, order.ub));
+		}
+
+	/**
+	 * Pick the next busy worker task to steal from, in round robin order.
+	 *
+	 * @return  Rank of the victim, or &minus;1 if none.
+	 */
+	private int victim()
+		{
+		for (int i = 0; i < W; ++ i)
+			{
+			int v = (nextVictim + i) % W;
+			if (! idle[v] && ! asked[v] && ! drained[v])
+				{
+				nextVictim = (v + 1) % W;
+				return v;
+				}
+			}
+		return -1;
+		}
+
+	}
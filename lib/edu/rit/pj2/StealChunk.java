@@ -0,0 +1,53 @@
+//******************************************************************************
+//
+// File:    StealChunk.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.StealChunk
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+/**
+ * Class StealChunk is a {@linkplain Chunk Chunk} that a master-worker cluster
+ * parallel for loop with a {@link Schedule#workStealing workStealing} master
+ * schedule puts for each worker task. The chunk holds the worker task's initial
+ * share of the loop iterations. A worker that takes a StealChunk rather than a
+ * plain Chunk gets its further loop iterations by stealing them from the other
+ * worker tasks through the job's {@linkplain StealArbiter StealArbiter}.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class StealChunk
+	extends Chunk
+	{
+
+// Exported constructors.
+
+	/**
+	 * Construct a new steal chunk.
+	 */
+	public StealChunk()
+		{
+		super();
+		}
+
+	}
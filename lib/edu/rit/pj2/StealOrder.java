@@ -0,0 +1,287 @@
+//******************************************************************************
+//
+// File:    StealOrder.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.StealOrder
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import java.io.IOException;
+
+/**
+ * Class StealOrder is a {@link Tuple} that carries a message between the
+ * worker tasks of a master-worker cluster parallel for loop with a {@link
+ * Schedule#workStealing workStealing} master schedule and the {@linkplain
+ * StealArbiter StealArbiter} running in the job process. Each order is
+ * addressed to one worker task, by rank, or to the arbiter.
+ * <P>
+ * The orders are:
+ * <UL>
+ * <LI>
+ * {@link #IDLE} &mdash; From a worker to the arbiter: the worker has run out
+ * of loop iterations.
+ * <LI>
+ * {@link #STEAL} &mdash; From the arbiter to a busy worker: give some of your
+ * remaining loop iterations to the given thief.
+ * <LI>
+ * {@link #GIVE} &mdash; From a worker to the arbiter: the given loop
+ * iterations, possibly none, are for the given thief.
+ * <LI>
+ * {@link #RANGE} &mdash; From the arbiter to an idle worker: perform the given
+ * loop iterations.
+ * <LI>
+ * {@link #DONE} &mdash; From the arbiter to an idle worker: all the loop
+ * iterations have been performed.
+ * <LI>
+ * {@link #QUIT} &mdash; From a worker to the arbiter: the worker's loop was
+ * stopped; give the worker no more loop iterations. The order hands back the
+ * given loop iterations, if any, that reached the worker after it stopped.
+ * </UL>
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class StealOrder
+	extends Tuple
+	{
+
+// Exported constants.
+
+	/**
+	 * Designates that the order is addressed to the arbiter.
+	 */
+	public static final int ARBITER = -1;
+
+	/**
+	 * The worker has run out of loop iterations.
+	 */
+	public static final int IDLE = 0;
+
+	/**
+	 * Give some loop iterations to a thief.
+	 */
+	public static final int STEAL = 1;
+
+	/**
+	 * Loop iterations given to a thief.
+	 */
+	public static final int GIVE = 2;
+
+	/**
+	 * Perform loop iterations.
+	 */
+	public static final int RANGE = 3;
+
+	/**
+	 * All the loop iterations have been performed.
+	 */
+	public static final int DONE = 4;
+
+	/**
+	 * The worker's loop was stopped.
+	 */
+	public static final int QUIT = 5;
+
+// Exported data members.
+
+	/**
+	 * Rank of the worker task to which the order is addressed, or {@link
+	 * #ARBITER}.
+	 */
+	public int to;
+
+	/**
+	 * Kind of order.
+	 */
+	public int kind;
+
+	/**
+	 * Rank of the worker task from which the order came, or {@link #ARBITER}.
+	 */
+	public int from;
+
+	/**
+	 * Rank of the thief worker task ({@link #STEAL} and {@link #GIVE} only).
+	 */
+	public int thief;
+
+	/**
+	 * Loop index lower bound ({@link #GIVE}, {@link #RANGE}, and {@link
+	 * #QUIT}), or the least number of loop iterations worth giving ({@link
+	 * #STEAL}).
+	 */
+	public long lb;
+
+	/**
+	 * Loop index upper bound ({@link #GIVE}, {@link #RANGE}, and {@link
+	 * #QUIT}).
+	 */
+	public long ub;
+
+// Exported constructors.
+
+	/**
+	 * Construct a new order template that matches orders addressed to the
+	 * arbiter.
+	 */
+	public StealOrder()
+		{
+		this.to = ARBITER;
+		}
+
+	/**
+	 * Construct a new order.
+	 *
+	 * @param  to     Rank of the worker task to which the order is addressed,
+	 *                or {@link #ARBITER}.
+	 * @param  kind   Kind of order.
+	 * @param  from   Rank of the worker task from which the order came, or
+	 *                {@link #ARBITER}.
+	 * @param  thief  Rank of the thief worker task.
+	 * @param  lb     Loop index lower bound, or least number of iterations.
+	 * @param  ub     Loop index upper bound.
+	 */
+	public StealOrder
+		(int to,
+		 int kind,
+		 int from,
+		 int thief,
+		 long lb,
+		 long ub)
+		{
+		this.to = to;
+		this.kind = kind;
+		this.from = from;
+		this.thief = thief;
+		this.lb = lb;
+		this.ub = ub;
+		}
+
+// Exported operations.
+
+	/**
+	 * Returns a template that matches orders addressed to the given worker
+	 * task.
+	 *
+	 * @param  rank  Worker task rank.
+	 *
+	 * @return  Template.
+	 */
+	public static StealOrder template
+		(int rank)
+		{
+		StealOrder order = new StealOrder();
+		order.to = rank;
+		return order;
+		}
+
+	/**
+	 * Determine if this order's loop index range is empty.
+	 *
+	 * @return  True if empty, false otherwise.
+	 */
+	public boolean isEmpty()
+		{
+		return lb > ub;
+		}
+
+	/**
+	 * Determine if the given target tuple's content matches this template's
+	 * content. There is a match if the template and the target are addressed
+	 * to the same recipient.
+	 *
+	 * @param  target  Target tuple.
+	 *
+	 * @return  True if the target tuple's content matches this template tuple's
+	 *          content, false otherwise.
+	 */
+	public boolean matchContent
+		(Tuple target)
+		{
+		return this.to == ((StealOrder)target).to;
+		}
+
+	/**
+	 * Get this tuple's index key. The index key is the recipient.
+	 *
+	 * @return  Index key.
+	 */
+	public Object indexKey()
+		{
+		return Integer.valueOf (to);
+		}
+
+	/**
+	 * Write this object's fields to the given out stream.
+	 *
+	 * @param  out  Out stream.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeOut
+		(OutStream out)
+		throws IOException
+		{
+		out.writeInt (to);
+		out.writeInt (kind);
+		out.writeInt (from);
+		out.writeInt (thief);
+		out.writeLong (lb);
+		out.writeLong (ub);
+		}
+
+	/**
+	 * Read this object's fields from the given in stream.
+	 *
+	 * @param  in  In stream.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void readIn
+		(InStream in)
+		throws IOException
+		{
+		to = in.readInt();
+		kind = in.readInt();
+		from = in.readInt();
+		thief = in.readInt();
+		lb = in.readLong();
+		ub = in.readLong();
+		}
+
+	/**
+	 * Returns a string version of this order.
+	 *
+	 * @return  String version.
+	 */
+	public String toString()
+		{
+		return String.format
+			("StealOrder(to=%d,kind=%d,from=%d,thief=%d,lb=%d,ub=%d)",
+			 to, kind, from, thief, lb, ub);
+		}
+
+	}
@@ -29,11 +29,13 @@ import java.util.Iterator;
 
 /**
  * Class SyncIterator provides an iterator with multiple thread safe methods.
+ * Elements can be obtained one at a time or in batches; obtaining a batch of
+ * elements locks the underlying iterator only once.
  *
  * @param  <E>  Iterator element data type.
  *
  * @author  Alan Kaminsky
- * @version 21-May-2013
+ * @version 06-Mar-2015
  */
 class SyncIterator<E>
 	{
@@ -42,6 +44,16 @@ class SyncIterator<E>
 
 	private Iterator<E> iter;
 
+// Hidden constructors.
+
+	/**
+	 * Construct a new synchronized iterator with no underlying iterator. For
+	 * use by subclasses that override the <TT>next()</TT> methods.
+	 */
+	SyncIterator()
+		{
+		}
+
 // Exported constructors.
 
 	/**
@@ -74,4 +86,24 @@ class SyncIterator<E>
 		return iter.hasNext() ? iter.next() : null;
 		}
 
+	/**
+	 * Get the next batch of elements from this iterator. The elements are
+	 * stored in <TT>batch</TT> starting at index 0. Fewer than
+	 * <TT>batch.length</TT> elements are stored only if this iterator has run
+	 * out of elements. Assumes that the underlying iterator will not return a
+	 * null element.
+	 *
+	 * @param  batch  Array in which to store the elements.
+	 *
+	 * @return  Number of elements stored, or 0 if no more elements.
+	 */
+	public synchronized int next
+		(E[] batch)
+		{
+		int n = 0;
+		while (n < batch.length && iter.hasNext())
+			batch[n++] = iter.next();
+		return n;
+		}
+
 	}
@@ -29,7 +29,16 @@ import edu.rit.pj2.tracker.JobRef;
 import edu.rit.pj2.tracker.TaskProperties;
 import edu.rit.util.AList;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class Task is the abstract base class for a PJ2 task. A PJ2 parallel program
@@ -74,25 +83,39 @@ import java.util.Iterator;
  * Work sharing parallel for loop over the elements in an iterable collection
  * (see {@link #parallelFor(Iterable) parallelFor(Iterable)})
  * <LI>
+ * Work sharing parallel for loop over the elements in a list (see {@link
+ * #parallelFor(AList) parallelFor(AList)})
+ * <LI>
+ * Work sharing parallel for loop over the elements from a spliterator, such as
+ * a stream's spliterator (see {@link #parallelFor(Spliterator)
+ * parallelFor(Spliterator)})
+ * <LI>
  * Parallel section group, multiple different sections (see {@link
  * #parallelDo(Section[]) parallelDo(Section...)})
  * <LI>
  * Parallel section group, multiple copies of the same section (see {@link
  * #parallelDo(int,Section) parallelDo(int,Section)})
  * <LI>
+ * Parallel section group executed by virtual threads, for sections that mostly
+ * block (see {@link #parallelDoVirtual(Section[])
+ * parallelDoVirtual(Section...)} and {@link #parallelDoVirtual(int,Section)
+ * parallelDoVirtual(int,Section)})
+ * <LI>
  * Worker portion of a master-worker cluster parallel for loop (see {@link
  * #workerFor() workerFor()})
  * </UL>
  * <P>
  * The task's computation can query the task's properties by calling the {@link
  * #threads() threads()}, {@link #schedule() schedule()}, {@link #chunk()
- * chunk()}, {@link #nodeName() nodeName()}, {@link #cores() cores()}, and
+ * chunk()}, {@link #waitPolicy() waitPolicy()}, {@link #affinity()
+ * affinity()}, {@link #nodeName() nodeName()}, {@link #cores() cores()}, and
  * {@link #gpus() gpus()} methods. The task's computation can alter the task's
  * initial properties by calling the {@link #threads(int) threads(int)}, {@link
- * #schedule(Schedule) schedule(Schedule)}, and {@link #chunk(int) chunk(int)}
- * methods. While the task's computation can alter the task's <TT>nodeName</TT>,
- * <TT>cores</TT>, and <TT>gpus</TT> properties, doing so has no effect once the
- * task has started.
+ * #schedule(Schedule) schedule(Schedule)}, {@link #chunk(int) chunk(int)},
+ * {@link #waitPolicy(WaitPolicy) waitPolicy(WaitPolicy)}, and {@link
+ * #affinity(Affinity) affinity(Affinity)} methods. While the task's computation
+ * can alter the task's <TT>nodeName</TT>, <TT>cores</TT>, and <TT>gpus</TT>
+ * properties, doing so has no effect once the task has started.
  * <P>
  * Shared variables used by the thread executing the sequential statements and
  * by the threads executing the parallel statements are typically declared as
@@ -210,7 +233,7 @@ import java.util.Iterator;
  * causes the <TT>pj2</TT> program to terminate.
  *
  * @author  Alan Kaminsky
- * @version 30-May-2014
+ * @version 18-Mar-2015
  */
 public abstract class Task
 	{
@@ -233,6 +256,18 @@ public abstract class Task
 	 */
 	public static final int DEFAULT_CHUNK = TaskProperties.DEFAULT_CHUNK;
 
+	/**
+	 * Indicates that the <TT>waitPolicy</TT> property is defaulted.
+	 */
+	public static final WaitPolicy DEFAULT_WAIT_POLICY =
+		TaskProperties.DEFAULT_WAIT_POLICY;
+
+	/**
+	 * Indicates that the <TT>affinity</TT> property is defaulted.
+	 */
+	public static final Affinity DEFAULT_AFFINITY =
+		TaskProperties.DEFAULT_AFFINITY;
+
 	/**
 	 * Indicates that a parallel for loop will be executed by as many threads as
 	 * there are cores on the machine.
@@ -362,14 +397,62 @@ public abstract class Task
 	 */
 	public static final Schedule guided = Schedule.guided;
 
+	/**
+	 * Work stealing schedule. Each thread has its own deque of iterations.
+	 * Initially, each thread's deque holds the iterations the thread would
+	 * perform with a fixed schedule. Each thread takes chunks of iterations
+	 * from its own deque and executes them. The chunk size is specified by the
+	 * <TT>chunk</TT> property. If the <TT>chunk</TT> property is {@link
+	 * Task#STANDARD_CHUNK STANDARD_CHUNK}, a chunk size of 1 is used. When a
+	 * thread's deque is empty, the thread steals half the remaining iterations
+	 * from another thread's deque and continues.
+	 * <P>
+	 * A work stealing schedule is appropriate when each loop iteration takes a
+	 * different amount of time, so load balancing is needed, and the chunk
+	 * size must be small. The threads do not all contend for one shared loop
+	 * index counter.
+	 * @see Schedule#workStealing
+	 */
+	public static final Schedule workStealing = Schedule.workStealing;
+
+	/**
+	 * Adaptive schedule. The iterations are partitioned into chunks. The chunks
+	 * are of different sizes, chosen on the fly by each thread based on how
+	 * long the thread's previous chunks took to execute. The minimum chunk size
+	 * is specified by the <TT>chunk</TT> property. If the <TT>chunk</TT>
+	 * property is {@link Task#STANDARD_CHUNK STANDARD_CHUNK}, a minimum chunk
+	 * size of 1 is used. While the time per iteration varies considerably, a
+	 * thread uses small chunks; once the time per iteration looks uniform, the
+	 * thread uses larger chunks. The threads execute the chunks in a dynamic
+	 * fashion.
+	 * <P>
+	 * An adaptive schedule is appropriate when the amount of time each loop
+	 * iteration takes is not known in advance, so a good chunk size cannot be
+	 * chosen ahead of time.
+	 * @see Schedule#adaptive
+	 */
+	public static final Schedule adaptive = Schedule.adaptive;
+
 // Hidden data members.
 
 	JobRef job;                      // null if not part of a job
 	long taskID;                     // 0 if not part of a job
 	AList<Tuple> inputTuples;        // null if not part of a job
 	TupleRequestMap tupleRequestMap; // null if not part of a job
+	TupleServerMap tupleServerMap;   // null if tuple space is not sharded
+	Job jobInProcess;                // null if not running in job's process
 	int groupSize;                   // 0 if not part of a job
 	int taskRank;                    // 0 if not part of a job
+	int workerReductions;            // Worker loop reductions performed
+
+	// Number of threads executing ranks of this task's parallel statements
+	// (see class Team).
+	AtomicInteger busyThreads = new AtomicInteger (0);
+
+	// CPUs claimed for pinning team threads, or null if none yet. Claimed and
+	// released while synchronized on cpuLock.
+	private volatile CpuAffinity.Allotment cpuAllotment;
+	private final Object cpuLock = new Object();
 
 	// Task properties.
 	TaskProperties properties = new TaskProperties();
@@ -540,6 +623,72 @@ public abstract class Task
 		return properties.chunk();
 		}
 
+	/**
+	 * Set this task's <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT>
+	 * property specifies how the threads executing a parallel statement wait
+	 * for each other, both between and at the end of parallel statements. A
+	 * task that executes many short parallel statements may run faster with a
+	 * {@link WaitPolicy#spin spin} or {@link WaitPolicy#spinYield spinYield}
+	 * wait policy. Refer to enum {@linkplain WaitPolicy} for descriptions of
+	 * the possible wait policies.
+	 *
+	 * @param  waitPolicy  Wait policy, or {@link #DEFAULT_WAIT_POLICY}.
+	 *
+	 * @see  #waitPolicy()
+	 */
+	public void waitPolicy
+		(WaitPolicy waitPolicy)
+		{
+		properties.waitPolicy (waitPolicy);
+		}
+
+	/**
+	 * Get this task's <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT>
+	 * property specifies how the threads executing a parallel statement wait
+	 * for each other. The default is a {@link WaitPolicy#park park} wait
+	 * policy.
+	 *
+	 * @return  Wait policy.
+	 *
+	 * @see  #waitPolicy(WaitPolicy)
+	 */
+	public WaitPolicy waitPolicy()
+		{
+		return properties.waitPolicy();
+		}
+
+	/**
+	 * Set this task's <TT>affinity</TT> property. The <TT>affinity</TT>
+	 * property specifies how the threads executing a parallel statement are
+	 * placed on the node's cores. A task whose parallel loops are memory bound
+	 * may run faster if each team thread stays on the same core, and thus on
+	 * the same socket, from one parallel loop to the next. Refer to enum
+	 * {@linkplain Affinity} for descriptions of the possible affinities.
+	 *
+	 * @param  affinity  Affinity, or {@link #DEFAULT_AFFINITY}.
+	 *
+	 * @see  #affinity()
+	 */
+	public void affinity
+		(Affinity affinity)
+		{
+		properties.affinity (affinity);
+		}
+
+	/**
+	 * Get this task's <TT>affinity</TT> property. The <TT>affinity</TT>
+	 * property specifies how the threads executing a parallel statement are
+	 * placed on the node's cores. The default is {@link Affinity#none none}.
+	 *
+	 * @return  Affinity.
+	 *
+	 * @see  #affinity(Affinity)
+	 */
+	public Affinity affinity()
+		{
+		return properties.affinity();
+		}
+
 	/**
 	 * Set this task's <TT>nodeName</TT> property. The <TT>nodeName</TT>
 	 * property specifies the name of the cluster node on which the task must
@@ -689,8 +838,11 @@ public abstract class Task
 	/**
 	 * Execute a work sharing parallel for loop over the elements of an
 	 * {@linkplain java.lang.Iterable Iterable} collection. The collection must
-	 * contain only non-null elements. For further information, see classes
-	 * {@linkplain ParallelForLoop} and {@linkplain IteratorParallelForLoop}.
+	 * contain only non-null elements. If the collection is a {@linkplain
+	 * java.util.List List} that implements {@linkplain java.util.RandomAccess
+	 * RandomAccess}, the elements are obtained by index without locking the
+	 * collection. For further information, see classes {@linkplain
+	 * ParallelForLoop} and {@linkplain IteratorParallelForLoop}.
 	 *
 	 * @param  <E>   Data type of the elements in the collection.
 	 * @param  coll  Iterable collection.
@@ -701,9 +853,52 @@ public abstract class Task
 	public <E> IteratorParallelForLoop<E> parallelFor
 		(Iterable<E> coll)
 		{
+		if (coll instanceof List && coll instanceof RandomAccess)
+			return new IteratorParallelForLoop<E> (this, (List<E>) coll);
 		return new IteratorParallelForLoop<E> (this, coll.iterator());
 		}
 
+	/**
+	 * Execute a work sharing parallel for loop over the elements of an
+	 * {@linkplain AList}. The list must contain only non-null elements and must
+	 * not be altered while the parallel for loop is executing. The elements are
+	 * obtained by index without locking the list. For further information, see
+	 * classes {@linkplain ParallelForLoop} and {@linkplain
+	 * IteratorParallelForLoop}.
+	 *
+	 * @param  <E>    Data type of the elements in the list.
+	 * @param  alist  List.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>alist</TT> is null.
+	 */
+	public <E> IteratorParallelForLoop<E> parallelFor
+		(AList<E> alist)
+		{
+		return new IteratorParallelForLoop<E> (this, alist);
+		}
+
+	/**
+	 * Execute a work sharing parallel for loop over the elements of a
+	 * {@linkplain java.util.Spliterator Spliterator}. The spliterator is split
+	 * into pieces using its <TT>trySplit()</TT> method, and the team threads
+	 * execute the pieces without locking. To loop over the elements of a
+	 * stream, pass in the stream's spliterator. For further information, see
+	 * classes {@linkplain ParallelForLoop} and {@linkplain
+	 * SpliteratorParallelForLoop}.
+	 *
+	 * @param  <E>      Data type of the elements returned by the spliterator.
+	 * @param  spliter  Spliterator.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>spliter</TT> is null.
+	 */
+	public <E> SpliteratorParallelForLoop<E> parallelFor
+		(Spliterator<E> spliter)
+		{
+		return new SpliteratorParallelForLoop<E> (this, spliter);
+		}
+
 	/**
 	 * Execute the given group of sections in parallel. The sections' {@link
 	 * Section#run() run()} methods are called simultaneously, each by a
@@ -716,28 +911,12 @@ public abstract class Task
 	 *     (unchecked exception) Thrown if no sections are specified.
 	 */
 	public void parallelDo
-		(final Section... sections)
+		(Section... sections)
 		{
-		final int NT = sections.length;
-		if (NT == 0)
+		if (sections.length == 0)
 			throw new IllegalArgumentException
 				("Task.parallelDo(): No sections specified");
-		Team.execute (NT, new ParallelStatement (this)
-			{
-			void run (int rank, ReductionMap reductionMap) throws Exception
-				{
-				Section section = sections[rank];
-				section.task = Task.this;
-				section.threads = NT;
-				section.rank = rank;
-				section.reductionMap = reductionMap;
-				section.run();
-				section.task = null;
-				section.threads = -1;
-				section.rank = -1;
-				section.reductionMap = null;
-				}
-			});
+		Team.execute (sections.length, sectionsStatement (sections));
 		}
 
 	/**
@@ -756,8 +935,8 @@ public abstract class Task
 	 *     (unchecked exception) Thrown if <TT>section</TT> is null.
 	 */
 	public void parallelDo
-		(final int K,
-		 final Section section)
+		(int K,
+		 Section section)
 		{
 		if (K < 1)
 			throw new IllegalArgumentException (String.format
@@ -765,22 +944,70 @@ public abstract class Task
 		if (section == null)
 			throw new NullPointerException
 				("Task.parallelDo(): section is null");
-		Team.execute (K, new ParallelStatement (this)
-			{
-			void run (int rank, ReductionMap reductionMap) throws Exception
-				{
-				Section sec = rank == 0 ? section : (Section) section.clone();
-				sec.task = Task.this;
-				sec.threads = K;
-				sec.rank = rank;
-				sec.reductionMap = reductionMap;
-				sec.run();
-				sec.task = null;
-				sec.threads = -1;
-				sec.rank = -1;
-				sec.reductionMap = null;
-				}
-			});
+		Team.execute (K, copiesStatement (K, section));
+		}
+
+	/**
+	 * Execute the given group of sections in parallel, each section in its own
+	 * virtual thread. The sections' {@link Section#run() run()} methods are
+	 * called simultaneously, each by a different thread. The calling thread
+	 * executes the first section; a new thread executes each of the other
+	 * sections. If the JVM supports virtual threads, the new threads are
+	 * virtual threads, otherwise they are ordinary platform threads. Otherwise,
+	 * this method behaves the same as the {@link #parallelDo(Section[])
+	 * parallelDo(Section...)} method, including the reduction of thread-local
+	 * variables.
+	 * <P>
+	 * Use this method for sections that spend most of their time blocked, for
+	 * example waiting to take tuples, reading files, or doing socket I/O. Then
+	 * thousands of sections can execute in parallel without occupying
+	 * thousands of operating system threads. For sections that do
+	 * computations, use the {@link #parallelDo(Section[])
+	 * parallelDo(Section...)} method, which executes the sections on a team of
+	 * reusable platform threads.
+	 *
+	 * @param  sections  Sections to be executed in parallel.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if no sections are specified.
+	 */
+	public void parallelDoVirtual
+		(Section... sections)
+		{
+		if (sections.length == 0)
+			throw new IllegalArgumentException
+				("Task.parallelDoVirtual(): No sections specified");
+		Team.executeVirtual (sections.length, sectionsStatement (sections));
+		}
+
+	/**
+	 * Execute the given number of copies of the given section in parallel,
+	 * each copy in its own virtual thread. The copies are created by cloning
+	 * the given section object. The calling thread executes the first copy; a
+	 * new thread executes each of the other copies. If the JVM supports
+	 * virtual threads, the new threads are virtual threads, otherwise they are
+	 * ordinary platform threads. For further information, see the {@link
+	 * #parallelDoVirtual(Section[]) parallelDoVirtual(Section...)} method.
+	 *
+	 * @param  K        Number of sections (&ge; 1).
+	 * @param  section  Section to be executed in parallel.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>K</TT> &lt; 1.
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>section</TT> is null.
+	 */
+	public void parallelDoVirtual
+		(int K,
+		 Section section)
+		{
+		if (K < 1)
+			throw new IllegalArgumentException (String.format
+				("Task.parallelDoVirtual(): K = %d illegal", K));
+		if (section == null)
+			throw new NullPointerException
+				("Task.parallelDoVirtual(): section is null");
+		Team.executeVirtual (K, copiesStatement (K, section));
 		}
 
 	/**
@@ -916,9 +1143,7 @@ public abstract class Task
 		if (template == null)
 			throw new NullPointerException
 				("Task.takeTuple(): template is null");
-		long id = tupleRequestMap.addRequest (taskID);
-		job.takeTuple (taskID, id, template, true, true);
-		T tuple = (T) tupleRequestMap.takeTuple (taskID, id);
+		T tuple = requestTuple (template, true, true);
 		if (tuple == null)
 			throw new IllegalStateException
 				("Task.takeTuple(): Shouldn't happen");
@@ -926,6 +1151,125 @@ public abstract class Task
 			return tuple;
 		}
 
+	/**
+	 * Take a tuple that matches the given template out of tuple space, waiting
+	 * at most the given amount of time. If there are no matching tuples in
+	 * tuple space, this method blocks until a matching tuple appears in tuple
+	 * space or until the timeout expires, whichever happens first. If the
+	 * timeout expires, the take request is cancelled and null is returned;
+	 * however, if a matching tuple arrived before the request could be
+	 * cancelled, that tuple is returned. If there is more than one matching
+	 * tuple in tuple space, one of the matching tuples is chosen in an
+	 * unspecified manner.
+	 * <P>
+	 * If the calling thread is interrupted while waiting, the take request is
+	 * cancelled as though the timeout expired, and the thread's interrupted
+	 * status is set.
+	 * <P>
+	 * The task <I>must not alter its input tuples.</I> If an output tuple needs
+	 * to be the same as an input tuple but with modifications, create a copy of
+	 * the input tuple and modify that.
+	 *
+	 * @param  <T>       Tuple data type.
+	 * @param  template  Template.
+	 * @param  timeout   Timeout (milliseconds).
+	 *
+	 * @return  Tuple that matches the <TT>template</TT>, or null if the timeout
+	 *          expired.
+	 *
+	 * @exception  IllegalStateException
+	 *     (unchecked exception) Thrown if this task is not executing as part of
+	 *     a job.
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>template</TT> is null.
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>timeout</TT> &lt; 0.
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public <T extends Tuple> T takeTuple
+		(T template,
+		 long timeout)
+		throws IOException
+		{
+		if (job == null)
+			throw new IllegalStateException
+				("Task.takeTuple(): Task is not part of a job");
+		if (template == null)
+			throw new NullPointerException
+				("Task.takeTuple(): template is null");
+		if (timeout < 0L)
+			throw new IllegalArgumentException (String.format
+				("Task.takeTuple(): timeout = %d illegal", timeout));
+		long id = tupleRequestMap.newRequestID();
+		CompletableFuture<T> result =
+			typed (startTake (template, true, true, 0, id));
+		try
+			{
+			return result.get (timeout, TimeUnit.MILLISECONDS);
+			}
+		catch (TimeoutException exc)
+			{
+			}
+		catch (InterruptedException exc)
+			{
+			Thread.currentThread().interrupt();
+			}
+		catch (ExecutionException exc)
+			{
+			throw new IllegalStateException
+				("Task.takeTuple(): Shouldn't happen", exc.getCause());
+			}
+		// Cancel the request. The request is answered either with no tuple or,
+		// if a tuple arrived in the meantime, with that tuple.
+		cancelTake (id, template);
+		return result.join();
+		}
+
+	/**
+	 * Take a tuple that matches the given template out of tuple space
+	 * asynchronously. This method sends the take request and returns a future
+	 * without blocking. The future is completed with the tuple once a matching
+	 * tuple appears in tuple space. If there is more than one matching tuple in
+	 * tuple space, one of the matching tuples is chosen in an unspecified
+	 * manner.
+	 * <P>
+	 * Dependent actions attached to the future with non-async methods may run
+	 * in the thread that receives the tuple; such actions must not block.
+	 * Cancelling the future does not cancel the take request; the tuple is
+	 * still taken out of tuple space.
+	 * <P>
+	 * The task <I>must not alter its input tuples.</I> If an output tuple needs
+	 * to be the same as an input tuple but with modifications, create a copy of
+	 * the input tuple and modify that.
+	 *
+	 * @param  <T>       Tuple data type.
+	 * @param  template  Template.
+	 *
+	 * @return  Future tuple that matches the <TT>template</TT>.
+	 *
+	 * @exception  IllegalStateException
+	 *     (unchecked exception) Thrown if this task is not executing as part of
+	 *     a job.
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>template</TT> is null.
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public <T extends Tuple> CompletableFuture<T> takeTupleAsync
+		(T template)
+		throws IOException
+		{
+		if (job == null)
+			throw new IllegalStateException
+				("Task.takeTupleAsync(): Task is not part of a job");
+		if (template == null)
+			throw new NullPointerException
+				("Task.takeTupleAsync(): template is null");
+		return typed (startTake
+			(template, true, true, 0, tupleRequestMap.newRequestID()));
+		}
+
 	/**
 	 * Try to take a tuple that matches the given template out of tuple space.
 	 * If there are no matching tuples in tuple space, this method returns null
@@ -959,9 +1303,127 @@ public abstract class Task
 		if (template == null)
 			throw new NullPointerException
 				("Task.tryToTakeTuple(): template is null");
-		long id = tupleRequestMap.addRequest (taskID);
-		job.takeTuple (taskID, id, template, false, true);
-		return (T) tupleRequestMap.takeTuple (taskID, id);
+		return requestTuple (template, false, true);
+		}
+
+	/**
+	 * Start trying to take a tuple that matches the given template out of
+	 * tuple space, without blocking. The returned future is completed with the
+	 * tuple taken, or with null if there were no matching tuples. A worker
+	 * parallel for loop uses this method to prefetch master chunks.
+	 *
+	 * @param  <T>       Tuple data type.
+	 * @param  template  Template.
+	 *
+	 * @return  Future tuple that matches the <TT>template</TT>, or future null
+	 *          if none.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	<T extends Tuple> CompletableFuture<T> tryToTakeTupleAsync
+		(T template)
+		throws IOException
+		{
+		return typed (startTake
+			(template, false, true, 0, tupleRequestMap.newRequestID()));
+		}
+
+	/**
+	 * Take a batch of tuples that match the given template out of tuple space.
+	 * At most <TT>maxCount</TT> matching tuples are taken, in one request to
+	 * the job. If there are no matching tuples in tuple space, this method
+	 * blocks until at least one matching tuple appears in tuple space. If there
+	 * are more than <TT>maxCount</TT> matching tuples in tuple space, the
+	 * matching tuples to take are chosen in an unspecified manner.
+	 * <P>
+	 * The task <I>must not alter its input tuples.</I> If an output tuple needs
+	 * to be the same as an input tuple but with modifications, create a copy of
+	 * the input tuple and modify that.
+	 *
+	 * @param  <T>       Tuple data type.
+	 * @param  template  Template.
+	 * @param  maxCount  Maximum number of tuples to take (&ge; 1).
+	 *
+	 * @return  List of between 1 and <TT>maxCount</TT> tuples that match the
+	 *          <TT>template</TT>.
+	 *
+	 * @exception  IllegalStateException
+	 *     (unchecked exception) Thrown if this task is not executing as part of
+	 *     a job.
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>template</TT> is null.
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>maxCount</TT> &lt; 1.
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public <T extends Tuple> AList<T> takeTuples
+		(T template,
+		 int maxCount)
+		throws IOException
+		{
+		if (job == null)
+			throw new IllegalStateException
+				("Task.takeTuples(): Task is not part of a job");
+		if (template == null)
+			throw new NullPointerException
+				("Task.takeTuples(): template is null");
+		if (maxCount < 1)
+			throw new IllegalArgumentException (String.format
+				("Task.takeTuples(): maxCount = %d illegal", maxCount));
+		AList<T> tuples = requestTuples (template, maxCount, true);
+		if (tuples == null || tuples.isEmpty())
+			throw new IllegalStateException
+				("Task.takeTuples(): Shouldn't happen");
+		else
+			return tuples;
+		}
+
+	/**
+	 * Try to take a batch of tuples that match the given template out of tuple
+	 * space. At most <TT>maxCount</TT> matching tuples are taken, in one
+	 * request to the job. If there are no matching tuples in tuple space, this
+	 * method returns an empty list without blocking. If there are more than
+	 * <TT>maxCount</TT> matching tuples in tuple space, the matching tuples to
+	 * take are chosen in an unspecified manner.
+	 * <P>
+	 * The task <I>must not alter its input tuples.</I> If an output tuple needs
+	 * to be the same as an input tuple but with modifications, create a copy of
+	 * the input tuple and modify that.
+	 *
+	 * @param  <T>       Tuple data type.
+	 * @param  template  Template.
+	 * @param  maxCount  Maximum number of tuples to take (&ge; 1).
+	 *
+	 * @return  List of between 0 and <TT>maxCount</TT> tuples that match the
+	 *          <TT>template</TT>.
+	 *
+	 * @exception  IllegalStateException
+	 *     (unchecked exception) Thrown if this task is not executing as part of
+	 *     a job.
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>template</TT> is null.
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>maxCount</TT> &lt; 1.
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public <T extends Tuple> AList<T> tryToTakeTuples
+		(T template,
+		 int maxCount)
+		throws IOException
+		{
+		if (job == null)
+			throw new IllegalStateException
+				("Task.tryToTakeTuples(): Task is not part of a job");
+		if (template == null)
+			throw new NullPointerException
+				("Task.tryToTakeTuples(): template is null");
+		if (maxCount < 1)
+			throw new IllegalArgumentException (String.format
+				("Task.tryToTakeTuples(): maxCount = %d illegal", maxCount));
+		return requestTuples (template, maxCount, false);
 		}
 
 	/**
@@ -998,9 +1460,7 @@ public abstract class Task
 		if (template == null)
 			throw new NullPointerException
 				("Task.readTuple(): template is null");
-		long id = tupleRequestMap.addRequest (taskID);
-		job.takeTuple (taskID, id, template, true, false);
-		T tuple = (T) tupleRequestMap.takeTuple (taskID, id);
+		T tuple = requestTuple (template, true, false);
 		if (tuple == null)
 			throw new IllegalStateException
 				("Task.readTuple(): Shouldn't happen");
@@ -1042,9 +1502,7 @@ public abstract class Task
 		if (template == null)
 			throw new NullPointerException
 				("Task.tryToReadTuple(): template is null");
-		long id = tupleRequestMap.addRequest (taskID);
-		job.takeTuple (taskID, id, template, false, false);
-		return (T) tupleRequestMap.takeTuple (taskID, id);
+		return requestTuple (template, false, false);
 		}
 
 	/**
@@ -1099,11 +1557,414 @@ public abstract class Task
 			throw new NullPointerException (String.format
 				("Task.putTuple(): copies = %d illegal", copies));
 		else if (copies > 0)
-			job.writeTuple (taskID, tuple, copies);
+			sendWriteTuple (tuple, copies);
+		}
+
+	/**
+	 * Put all the output tuples in the given collection into tuple space. The
+	 * tuples are sent to the job in one request and are put into tuple space
+	 * in one tuple space operation, in the collection's iteration order. If
+	 * <TT>tuples</TT> is empty, this method does nothing.
+	 *
+	 * @param  tuples  Collection of output tuples.
+	 *
+	 * @exception  IllegalStateException
+	 *     (unchecked exception) Thrown if this task is not executing as part of
+	 *     a job.
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>tuples</TT> is null or any
+	 *     element of <TT>tuples</TT> is null.
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void putTuples
+		(Collection<? extends Tuple> tuples)
+		throws IOException
+		{
+		if (job == null)
+			throw new IllegalStateException
+				("Task.putTuples(): Task is not part of a job");
+		AList<Tuple> list = new AList<Tuple>();
+		for (Tuple tuple : tuples)
+			{
+			if (tuple == null)
+				throw new NullPointerException
+					("Task.putTuples(): tuple is null");
+			list.addLast (tuple);
+			}
+		if (! list.isEmpty())
+			sendWriteTuples (list);
 		}
 
 // Hidden operations.
 
+	/**
+	 * Take or read a tuple that matches the given template, waiting for the
+	 * result.
+	 *
+	 * @param  <T>       Tuple data type.
+	 * @param  template  Template.
+	 * @param  blocking  True for a blocking take or read, false for a
+	 *                   non-blocking take or read.
+	 * @param  taking    True to take a tuple, false to read a tuple.
+	 *
+	 * @return  Tuple, or null if none (non-blocking only).
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private <T extends Tuple> T requestTuple
+		(T template,
+		 boolean blocking,
+		 boolean taking)
+		throws IOException
+		{
+		CompletableFuture<T> result = typed (startTake
+			(template, blocking, taking, 0, tupleRequestMap.newRequestID()));
+		return result.join();
+		}
+
+	/**
+	 * Take a batch of tuples that match the given template, waiting for the
+	 * result.
+	 *
+	 * @param  <T>       Tuple data type.
+	 * @param  template  Template.
+	 * @param  maxCount  Maximum number of tuples to take (1 or more).
+	 * @param  blocking  True to block until at least one tuple is taken,
+	 *                   false to take zero or more tuples without blocking.
+	 *
+	 * @return  List of tuples taken.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private <T extends Tuple> AList<T> requestTuples
+		(T template,
+		 int maxCount,
+		 boolean blocking)
+		throws IOException
+		{
+		CompletableFuture<AList<T>> result = typed (startTake
+			(template, blocking, true, maxCount,
+			 tupleRequestMap.newRequestID()));
+		return result.join();
+		}
+
+	/**
+	 * Returns the given future result of a take or read request, typed as the
+	 * result the request will be completed with. This is the one place where
+	 * the tuple operations cast their results to the template's type.
+	 *
+	 * @param  <R>     Result data type.
+	 * @param  result  Future result.
+	 *
+	 * @return  Typed future result.
+	 */
+	@SuppressWarnings ("unchecked")
+	private static <R> CompletableFuture<R> typed
+		(CompletableFuture<Object> result)
+		{
+		return (CompletableFuture<R>) (CompletableFuture<?>) result;
+		}
+
+	/**
+	 * Start taking or reading a tuple, or a batch of tuples, that match the
+	 * given template. If this task is running in the job's process, the
+	 * tuples are taken directly out of the job's tuple space, by reference;
+	 * otherwise a request is sent. Either way, only the returned future is
+	 * completed when the result is ready; no other waiting thread is woken up.
+	 *
+	 * @param  template   Template.
+	 * @param  blocking   True for a blocking take or read, false for a
+	 *                    non-blocking take or read.
+	 * @param  taking     True to take a tuple, false to read a tuple.
+	 * @param  maxCount   0 to take or read one tuple, or the maximum number of
+	 *                    tuples to take in a batch (1 or more).
+	 * @param  requestID  Request ID.
+	 *
+	 * @return  Future result: the tuple (or null if none) if
+	 *          <TT>maxCount</TT> = 0, the list of tuples otherwise.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private CompletableFuture<Object> startTake
+		(Tuple template,
+		 boolean blocking,
+		 boolean taking,
+		 int maxCount,
+		 long requestID)
+		throws IOException
+		{
+		CompletableFuture<Object> result = new CompletableFuture<Object>();
+		if (takesInProcess (template))
+			jobInProcess.takeTupleInProcess (taskID, requestID, template,
+				blocking, taking, maxCount, result);
+		else
+			{
+			tupleRequestMap.addRequest (taskID, requestID, result);
+			if (maxCount == 0)
+				sendTakeTuple (requestID, template, blocking, taking);
+			else
+				sendTakeTuples (requestID, template, maxCount, blocking);
+			}
+		return result;
+		}
+
+	/**
+	 * Cancel the given blocking take request, if it is still blocked. The
+	 * request is then answered with no tuple.
+	 *
+	 * @param  requestID  Request ID.
+	 * @param  template   Template of the request.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void cancelTake
+		(long requestID,
+		 Tuple template)
+		throws IOException
+		{
+		if (takesInProcess (template))
+			jobInProcess.cancelTakeTupleInProcess (taskID, requestID);
+		else if (tupleServerMap == null)
+			job.cancelTakeTuple (taskID, requestID);
+		else
+			tupleServerMap.cancelTakeTuple (job, taskID, requestID, template);
+		}
+
+	/**
+	 * Determine whether tuples matching the given template are taken directly
+	 * out of the job's tuple space. This is so if this task is running in the
+	 * job's process and the template's family is kept in the job.
+	 *
+	 * @param  template  Template.
+	 *
+	 * @return  True to take tuples directly, false to send a request.
+	 */
+	private boolean takesInProcess
+		(Tuple template)
+		{
+		return jobInProcess != null && (tupleServerMap == null ||
+			! tupleServerMap.isSharded (template.matchClass()));
+		}
+
+	/**
+	 * Send a take request to the job, or to the tuple server holding the
+	 * template's family if the job's tuple space is sharded.
+	 *
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  blocking   True for a blocking take or read, false for a
+	 *                    non-blocking take or read.
+	 * @param  taking     True to take a tuple, false to read a tuple.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void sendTakeTuple
+		(long requestID,
+		 Tuple template,
+		 boolean blocking,
+		 boolean taking)
+		throws IOException
+		{
+		if (tupleServerMap == null)
+			job.takeTuple (taskID, requestID, template, blocking, taking);
+		else
+			tupleServerMap.takeTuple (job, taskID, requestID, template,
+				blocking, taking);
+		}
+
+	/**
+	 * Send a batch take request to the job, or to the tuple server holding the
+	 * template's family if the job's tuple space is sharded.
+	 *
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  maxCount   Maximum number of tuples to take (1 or more).
+	 * @param  blocking   True to block until at least one tuple is taken,
+	 *                    false to take zero or more tuples without blocking.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void sendTakeTuples
+		(long requestID,
+		 Tuple template,
+		 int maxCount,
+		 boolean blocking)
+		throws IOException
+		{
+		if (tupleServerMap == null)
+			job.takeTuples (taskID, requestID, template, maxCount, blocking);
+		else
+			tupleServerMap.takeTuples (job, taskID, requestID, template,
+				maxCount, blocking);
+		}
+
+	/**
+	 * Send the given tuple to the job, or to the tuple server holding the
+	 * tuple's family if the job's tuple space is sharded.
+	 *
+	 * @param  tuple   Tuple.
+	 * @param  copies  Number of copies to write (1 or more).
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void sendWriteTuple
+		(Tuple tuple,
+		 int copies)
+		throws IOException
+		{
+		if (tupleServerMap == null)
+			job.writeTuple (taskID, tuple, copies);
+		else
+			tupleServerMap.writeTuple (job, taskID, tuple, copies);
+		}
+
+	/**
+	 * Send the given tuples to the job, or to the tuple servers holding the
+	 * tuples' families if the job's tuple space is sharded.
+	 *
+	 * @param  tuples  List of tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void sendWriteTuples
+		(AList<Tuple> tuples)
+		throws IOException
+		{
+		if (tupleServerMap == null)
+			job.writeTuples (taskID, tuples);
+		else
+			tupleServerMap.writeTuples (job, taskID, tuples);
+		}
+
+	/**
+	 * Wait until the tuple servers have handled every tuple this task wrote to
+	 * them. The task's writes travel over the tuple server connections, while
+	 * the task's completion is reported over the job connection; without this
+	 * wait, a task that runs when this task finishes could miss this task's
+	 * output tuples. If the job's tuple space is not sharded, this method does
+	 * nothing.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	void syncTupleServers()
+		throws IOException
+		{
+		if (tupleServerMap != null)
+			tupleServerMap.sync (taskID);
+		}
+
+	/**
+	 * Returns the CPUs to which successive ranks of this task's parallel
+	 * statements are pinned under the given affinity. The first time this
+	 * method is called, this task claims its CPUs; see class {@linkplain
+	 * CpuAffinity}.
+	 *
+	 * @param  affinity  Affinity, either compact or scatter.
+	 *
+	 * @return  Array of CPU numbers indexed by rank.
+	 */
+	int[] cpus
+		(Affinity affinity)
+		{
+		CpuAffinity.Allotment allotment = cpuAllotment;
+		if (allotment == null)
+			{
+			synchronized (cpuLock)
+				{
+				allotment = cpuAllotment;
+				if (allotment == null)
+					cpuAllotment = allotment =
+						CpuAffinity.allot (affinity, properties.cores());
+				}
+			}
+		return allotment.order (affinity);
+		}
+
+	/**
+	 * Release the CPUs this task has claimed, if any.
+	 */
+	void releaseCpus()
+		{
+		synchronized (cpuLock)
+			{
+			if (cpuAllotment != null)
+				{
+				cpuAllotment.release();
+				cpuAllotment = null;
+				}
+			}
+		}
+
+	/**
+	 * Returns a parallel statement that executes the given group of sections.
+	 *
+	 * @param  sections  Sections; one for each rank.
+	 *
+	 * @return  Parallel statement.
+	 */
+	private ParallelStatement sectionsStatement
+		(final Section[] sections)
+		{
+		final int NT = sections.length;
+		return new ParallelStatement (this)
+			{
+			void run (int rank, ReductionMap reductionMap) throws Exception
+				{
+				Section section = sections[rank];
+				section.task = Task.this;
+				section.threads = NT;
+				section.rank = rank;
+				section.reductionMap = reductionMap;
+				section.run();
+				section.task = null;
+				section.threads = -1;
+				section.rank = -1;
+				section.reductionMap = null;
+				}
+			};
+		}
+
+	/**
+	 * Returns a parallel statement that executes the given number of copies of
+	 * the given section.
+	 *
+	 * @param  K        Number of copies.
+	 * @param  section  Section; copied for each rank except rank 0.
+	 *
+	 * @return  Parallel statement.
+	 */
+	private ParallelStatement copiesStatement
+		(final int K,
+		 final Section section)
+		{
+		return new ParallelStatement (this)
+			{
+			void run (int rank, ReductionMap reductionMap) throws Exception
+				{
+				Section sec = rank == 0 ? section : (Section) section.clone();
+				sec.task = Task.this;
+				sec.threads = K;
+				sec.rank = rank;
+				sec.reductionMap = reductionMap;
+				sec.run();
+				sec.task = null;
+				sec.threads = -1;
+				sec.rank = -1;
+				sec.reductionMap = null;
+				}
+			};
+		}
+
 	/**
 	 * Get this task class's initial <TT>threads</TT> property. When a
 	 * {@linkplain TaskSpec} is created for this task class, the task spec's
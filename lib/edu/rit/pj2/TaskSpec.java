@@ -105,7 +105,7 @@ import java.util.Set;
  * {@linkplain Job Job}.
  *
  * @author  Alan Kaminsky
- * @version 08-Jul-2014
+ * @version 18-Mar-2015
  */
 public class TaskSpec
 	{
@@ -128,6 +128,18 @@ public class TaskSpec
 	 */
 	public static final int DEFAULT_CHUNK = TaskProperties.DEFAULT_CHUNK;
 
+	/**
+	 * Indicates that the <TT>waitPolicy</TT> property is defaulted.
+	 */
+	public static final WaitPolicy DEFAULT_WAIT_POLICY =
+		TaskProperties.DEFAULT_WAIT_POLICY;
+
+	/**
+	 * Indicates that the <TT>affinity</TT> property is defaulted.
+	 */
+	public static final Affinity DEFAULT_AFFINITY =
+		TaskProperties.DEFAULT_AFFINITY;
+
 	/**
 	 * Indicates that a parallel for loop will be executed by as many threads as
 	 * there are cores on the machine.
@@ -376,6 +388,46 @@ public class TaskSpec
 		return this;
 		}
 
+	/**
+	 * Specify the task's <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT>
+	 * property specifies how the threads executing a parallel statement wait
+	 * for each other. If not specified, the default is to use the
+	 * <TT>waitPolicy</TT> property of the enclosing job. Refer to enum
+	 * {@linkplain WaitPolicy} for descriptions of the possible wait policies.
+	 *
+	 * @param  waitPolicy  Wait policy, or {@link #DEFAULT_WAIT_POLICY}.
+	 *
+	 * @return  This task specification.
+	 *
+	 * @see  Task#waitPolicy(WaitPolicy)
+	 */
+	public TaskSpec waitPolicy
+		(WaitPolicy waitPolicy)
+		{
+		properties.waitPolicy (waitPolicy);
+		return this;
+		}
+
+	/**
+	 * Specify the task's <TT>affinity</TT> property. The <TT>affinity</TT>
+	 * property specifies how the threads executing a parallel statement are
+	 * placed on the node's cores. If not specified, the default is to use the
+	 * <TT>affinity</TT> property of the enclosing job. Refer to enum
+	 * {@linkplain Affinity} for descriptions of the possible affinities.
+	 *
+	 * @param  affinity  Affinity, or {@link #DEFAULT_AFFINITY}.
+	 *
+	 * @return  This task specification.
+	 *
+	 * @see  Task#affinity(Affinity)
+	 */
+	public TaskSpec affinity
+		(Affinity affinity)
+		{
+		properties.affinity (affinity);
+		return this;
+		}
+
 	/**
 	 * Specify the task's <TT>nodeName</TT> property. The <TT>nodeName</TT>
 	 * property specifies the name of the cluster node on which the task must
@@ -469,6 +521,12 @@ public class TaskSpec
 	/**
 	 * Specify that the task must run in the job's process. If not specified,
 	 * the default is to run in another process, possibly on another node.
+	 * <P>
+	 * A task running in the job's process puts tuples into, and takes tuples
+	 * out of, the job's tuple space directly. Tuples are passed by reference,
+	 * not copied; so such a task relies on the immutability of {@linkplain
+	 * Tuple Tuple}s and must not alter a tuple after putting it or after
+	 * taking it.
 	 *
 	 * @return  This task specification.
 	 */
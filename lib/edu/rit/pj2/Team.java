@@ -27,52 +27,183 @@ package edu.rit.pj2;
 
 import edu.rit.util.AList;
 import edu.rit.util.Predicate;
+import java.lang.reflect.Method;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Class Team provides a team of threads that are executing a {@linkplain
  * ParallelStatement}.
+ * <P>
+ * The thread that executes a parallel statement takes part in it as rank 0. A
+ * team with <I>NT</I> ranks therefore has <I>NT</I>&minus;1 team threads, for
+ * ranks 1 through <I>NT</I>&minus;1; a team with one rank has no team threads
+ * at all.
+ * <P>
+ * Teams are reused. Executing a parallel statement with an idle team of the
+ * required size allocates no objects and acquires no locks; the idle team is
+ * taken from a lock-free cache that holds one team for each team size up to
+ * {@link #CACHE_SIZE}&minus;1. Further idle teams are kept in a pool.
+ * <P>
+ * A parallel for loop executed by a thread that is already executing a
+ * parallel statement (a <I>nested</I> parallel for loop) does not get a team
+ * of its own. Instead, the loop's ranks are handed out one at a time to
+ * whichever threads claim them first: the calling thread, which starts with
+ * rank 0, and helper threads from a shared work stealing pool. Because a rank
+ * is only waited for once some thread has claimed it, and the calling thread
+ * claims every rank no other thread has claimed, nested loops cannot deadlock
+ * no matter how deeply they nest, and recursive divide-and-conquer programs do
+ * not create a team for every level of recursion. Other nested parallel
+ * statements, whose ranks may have to execute simultaneously, still get a
+ * team.
+ * <P>
+ * Helper threads are used only for cores the task is not already using. Each
+ * task counts the threads executing ranks of its parallel statements, and a
+ * nested statement gets at most as many helpers as would keep that count
+ * within the task's <TT>cores</TT> property (or the number of cores on the
+ * machine, if the task may use all of them). While the outer team's threads
+ * are all busy, nested ranks therefore run in the calling threads themselves,
+ * and a task never runs more threads than it was given cores because of
+ * nesting.
+ * <P>
+ * Alternatively, a parallel statement can be executed by a separate new thread
+ * for each rank other than rank 0, without a team; see {@link
+ * #executeVirtual(int,ParallelStatement) executeVirtual()}. If the JVM
+ * supports virtual threads, the new threads are virtual threads.
+ * <P>
+ * If a parallel statement that is not nested has a {@linkplain Affinity
+ * compact or scatter affinity}, each team thread, and the calling thread for
+ * rank 0, pins itself to the CPU for its rank before executing the statement.
+ * Since a team thread always executes the same rank, it stays on the same CPU
+ * from one parallel statement to the next. Nested parallel statements and
+ * parallel statements executed by separate new threads ignore the affinity.
+ * <P>
+ * Team threads and helper threads inherit the context class loader of the
+ * thread that created them. A process that runs one task after another calls
+ * {@link #reset() reset()} between tasks, so the next task's parallel
+ * statements get new threads rather than threads holding on to the previous
+ * task's class loader.
  *
  * @author  Alan Kaminsky
- * @version 18-Jul-2013
+ * @version 18-Mar-2015
  */
 class Team
 	{
 
 // Hidden class-wide data members.
 
-	// List of already-created teams.
+	// Number of cache entries.
+	static final int CACHE_SIZE = 256;
+
+	// Cache of idle teams. cache[NT] is an idle team with NT threads, or null.
+	private static AtomicReferenceArray<Team> cache =
+		new AtomicReferenceArray<Team> (CACHE_SIZE);
+
+	// List of already-created idle teams not in the cache.
 	private static AList<Team> pool = new AList<Team>();
 
+	// Shared work stealing pool for helper threads of nested parallel for
+	// loops. Helpers are limited by each task's cores, not by the pool size.
+	private static volatile ForkJoinPool nestedPool = new ForkJoinPool();
+
+	// Parallel statement that tells the team threads to terminate.
+	private static final ParallelStatement TERMINATE = new ParallelStatement
+		(null)
+		{
+		void run (int rank, ReductionMap reductionMap)
+			{
+			}
+		};
+
+	// Virtual thread support. ofVirtual is the Thread.ofVirtual() method and
+	// unstarted is the Thread.Builder.unstarted() method, or null if the JVM
+	// does not support virtual threads.
+	private static Method ofVirtual;
+	private static Method unstarted;
+	static
+		{
+		try
+			{
+			ofVirtual = Thread.class.getMethod ("ofVirtual");
+			unstarted = Class.forName ("java.lang.Thread$Builder")
+				.getMethod ("unstarted", Runnable.class);
+			unstarted.invoke (ofVirtual.invoke (null), new Runnable()
+				{
+				public void run()
+					{
+					}
+				});
+			}
+		catch (Throwable exc)
+			{
+			// Virtual threads not supported (or not enabled).
+			ofVirtual = null;
+			unstarted = null;
+			}
+		}
+
+	// Per-thread state.
+	private static ThreadLocal<ThreadState> state =
+		new ThreadLocal<ThreadState>()
+			{
+			protected ThreadState initialValue()
+				{
+				return new ThreadState();
+				}
+			};
+
 // Hidden data members.
 
-	// Number of threads in the team.
+	// Number of ranks in the team.
 	private int NT;
 
-	// The team threads themselves.
+	// The team threads themselves. thread[0] is null; rank 0 is executed by the
+	// thread that calls execute().
 	private TeamThread[] thread;
 
 	// Synchronization tree.
-	// Each thread has a parent thread and zero or more child threads. Queues
-	// (class SingleQueue) are used to synchronize and communicate between
-	// threads.
-	// fromParent[i] is the queue for thread i to receive from its parent.
+	// Each rank has a parent rank and zero or more child ranks. Queues (class
+	// SingleQueue) are used to synchronize and communicate between threads.
+	// Rank 0 is the root; its queues from its children are consumed by
+	// whichever thread calls execute().
+	// fromParent[i] is the queue for rank i to receive from its parent.
 	private SingleQueue[] fromParent;
-	// toParent[i] is the queue for thread i to send to its parent.
+	// toParent[i] is the queue for rank i to send to its parent.
 	private SingleQueue[] toParent;
-	// fromChild[i][j] is the queue for thread i to receive from its j-th child.
+	// fromChild[i][j] is the queue for rank i to receive from its j-th child.
 	private SingleQueue[][] fromChild;
-	// toChild[i][j] is the queue for thread i to send to its j-th child.
+	// toChild[i][j] is the queue for rank i to send to its j-th child.
 	private SingleQueue[][] toChild;
 
+	// Reduction map for rank 0.
+	private ReductionMap reductionMap;
+
+	// Reduction maps for all ranks, indexed by rank.
+	private ReductionMap[] maps;
+
+	// Parallel statement that reduces the sliced variables in the reduction
+	// maps, executed after a parallel statement that has any.
+	private ParallelStatement sliceReduction;
+
 	// Parallel statement the team is executing.
 	private ParallelStatement statement;
 
+	// How the threads wait in the synchronization tree. Set from the most
+	// recently executed parallel statement.
+	private volatile WaitPolicy policy = WaitPolicy.park;
+
+	// CPUs to which the ranks are pinned, indexed by rank, or null if not
+	// pinned. Set from the most recently executed parallel statement.
+	private volatile int[] cpus;
+
 // Hidden constructors.
 
 	/**
 	 * Construct a new team.
 	 *
-	 * @param  NT  Number of team threads. Assumed to be &ge; 1.
+	 * @param  NT  Number of ranks. Assumed to be &ge; 1.
 	 */
 	private Team
 		(int NT)
@@ -82,9 +213,24 @@ class Team
 		// Create team threads.
 		this.NT = NT;
 		thread = new TeamThread [NT];
-		for (int rank = 0; rank < NT; ++ rank)
+		for (int rank = 1; rank < NT; ++ rank)
 			thread[rank] = new TeamThread (rank);
 
+		// Set up reduction maps. Large sliceable variables are sliced only if
+		// there is more than one rank to share the work.
+		reductionMap = new ReductionMap (NT > 1);
+		maps = new ReductionMap [NT];
+		maps[0] = reductionMap;
+		for (int rank = 1; rank < NT; ++ rank)
+			maps[rank] = thread[rank].reductionMap;
+		sliceReduction = new ParallelStatement (null)
+			{
+			void run (int rank, ReductionMap reductionMap)
+				{
+				maps[0].reduceSlices (maps, rank);
+				}
+			};
+
 		// Set up synchronization tree.
 		fromParent = new SingleQueue [NT];
 		toParent = new SingleQueue [NT];
@@ -92,7 +238,6 @@ class Team
 		toChild = new SingleQueue [NT] [NT];
 		int[] numChildren = new int [NT];
 		SingleQueue[] queues = null;
-		fromParent[0] = new SingleQueue (thread[0]); // Special case
 		for (int gap = 1; gap < NT; gap <<= 1)
 			for (int parent = 0; parent < gap; ++ parent)
 				{
@@ -121,19 +266,34 @@ class Team
 			}
 
 		// Start team threads.
-		for (int rank = 0; rank < NT; ++ rank)
+		for (int rank = 1; rank < NT; ++ rank)
 			thread[rank].start();
 		}
 
 // Hidden operations.
 
+	/**
+	 * Get a team with the given number of threads from the cache or the pool.
+	 * Construct a new team if necessary.
+	 *
+	 * @param  NT  Number of team threads.
+	 */
+	private static Team getTeam
+		(int NT)
+		{
+		Team team = null;
+		if (NT < CACHE_SIZE)
+			team = cache.getAndSet (NT, null);
+		return team != null ? team : getPooledTeam (NT);
+		}
+
 	/**
 	 * Get a team with the given number of threads from the pool. Construct a
 	 * new team if necessary.
 	 *
 	 * @param  NT  Number of team threads.
 	 */
-	private static synchronized Team getTeam
+	private static synchronized Team getPooledTeam
 		(final int NT)
 		{
 		int p = pool.position (new Predicate<Team>()
@@ -146,12 +306,25 @@ class Team
 		return p == -1 ? new Team (NT) : pool.swapRemoveLast (p);
 		}
 
+	/**
+	 * Release the given team back to the cache, or to the pool if the team's
+	 * cache entry is occupied.
+	 *
+	 * @param  team  Team.
+	 */
+	private static void releaseTeam
+		(Team team)
+		{
+		if (team.NT >= CACHE_SIZE || ! cache.compareAndSet (team.NT, null, team))
+			releasePooledTeam (team);
+		}
+
 	/**
 	 * Release the given team back to the pool.
 	 *
 	 * @param  team  Team.
 	 */
-	private static synchronized void releaseTeam
+	private static synchronized void releasePooledTeam
 		(Team team)
 		{
 		pool.addLast (team);
@@ -159,7 +332,8 @@ class Team
 
 	/**
 	 * Get a team with the given number of threads, and make every thread in the
-	 * team execute the given parallel statement.
+	 * team execute the given parallel statement. The calling thread executes
+	 * rank 0 of the parallel statement.
 	 *
 	 * @param  NT         Number of team threads. Must be &ge; 1.
 	 * @param  statement  Parallel statement object.
@@ -174,44 +348,339 @@ class Team
 		if (NT < 1)
 			throw new IllegalArgumentException (String.format
 				("Team.execute(): NT = %d illegal", NT));
+		ThreadState st = state.get();
+		if (st.level > 0 && NT > 1 && statement.ranksIndependent())
+			{
+			new NestedStatement (NT, statement) .execute();
+			return;
+			}
 		Team team = getTeam (NT);
-		team.execute (statement);
+		++ st.level;
+		try
+			{
+			team.execute (statement, st);
+			}
+		finally
+			{
+			-- st.level;
+			}
 		releaseTeam (team);
 		}
 
 	/**
-	 * Make every thread in this team execute the given parallel statement.
+	 * Make every thread in this team execute the given parallel statement. The
+	 * calling thread executes rank 0. The statement's affinity is honored only
+	 * if the statement is not nested; the threads of a nested team stay
+	 * wherever they are.
 	 *
 	 * @param  statement  Parallel statement object.
+	 * @param  st         Calling thread's state.
 	 */
 	private void execute
+		(ParallelStatement statement,
+		 ThreadState st)
+		{
+		this.policy = statement.waitPolicy();
+		this.cpus = st.level == 1 ? statement.cpus() : null;
+		place (st, cpus, 0);
+		Throwable exc = dispatch (statement);
+		if (exc == null && reductionMap.hasSlicedVariables())
+			exc = dispatch (sliceReduction);
+		if (exc != null)
+			throw new TerminateException
+				("Exception in parallel team thread", exc);
+		reductionMap.setGlobalVariables();
+		}
+
+	/**
+	 * Make every thread in this team execute the given parallel statement,
+	 * and wait for them all to finish. The calling thread executes rank 0.
+	 * Unless the parallel statement is the slice reduction, each rank's
+	 * reduction map is cleared beforehand and the reduction maps are reduced
+	 * into rank 0's reduction map afterwards.
+	 *
+	 * @param  statement  Parallel statement object.
+	 *
+	 * @return  Exception thrown by any rank, or null if none.
+	 */
+	private Throwable dispatch
 		(ParallelStatement statement)
 		{
+		boolean slicePhase = statement == sliceReduction;
 		this.statement = statement;
-		toParent[0] = new SingleQueue (Thread.currentThread());
-		fromParent[0].put (statement);
-		Object result = toParent[0].get();
-		if (result instanceof Throwable)
-			throw new TerminateException
-				("Exception in parallel team thread", (Throwable)result);
-		((ReductionMap)result).setGlobalVariables();
+		SingleQueue[] toChildQueues = toChild[0];
+		SingleQueue[] fromChildQueues = fromChild[0];
+		Thread caller = Thread.currentThread();
+		for (SingleQueue queue : fromChildQueues)
+			queue.consumer (caller);
+		// Count every rank as busy before any rank starts, so a nested
+		// statement in one rank does not take a core another rank is about to
+		// use.
+		Task task = statement.task;
+		if (task != null)
+			task.busyThreads.addAndGet (NT);
+		for (SingleQueue queue : toChildQueues)
+			queue.put (statement);
+		Throwable exc = null;
+		if (! slicePhase)
+			reductionMap.clear();
+		try
+			{
+			statement.run (0, reductionMap);
+			}
+		catch (Throwable exc2)
+			{
+			exc = exc2;
+			}
+		if (task != null)
+			task.busyThreads.decrementAndGet();
+		for (SingleQueue queue : fromChildQueues)
+			{
+			Object result = queue.get (policy);
+			if (result instanceof Throwable)
+				exc = (Throwable) result;
+			if (exc == null && ! slicePhase)
+				reductionMap.reduce ((ReductionMap)result);
+			}
 		this.statement = null;
+		return exc;
+		}
+
+	/**
+	 * Terminate all idle teams and the work stealing pool for nested parallel
+	 * statements, and wait for the team threads to terminate. Later parallel
+	 * statements get new team threads and a new work stealing pool, whose
+	 * threads inherit the context class loader of the thread that executes
+	 * those statements. Teams that are executing a parallel statement are not
+	 * affected.
+	 */
+	static void reset()
+		{
+		AList<Team> idle = new AList<Team>();
+		for (int NT = 0; NT < CACHE_SIZE; ++ NT)
+			{
+			Team team = cache.getAndSet (NT, null);
+			if (team != null)
+				idle.addLast (team);
+			}
+		synchronized (Team.class)
+			{
+			for (int i = 0; i < pool.size(); ++ i)
+				idle.addLast (pool.get (i));
+			pool.clear();
+			}
+		for (int i = 0; i < idle.size(); ++ i)
+			idle.get(i).terminate();
+		ForkJoinPool oldPool = nestedPool;
+		nestedPool = new ForkJoinPool();
+		oldPool.shutdown();
+		}
+
+	/**
+	 * Terminate this idle team's threads and wait for them to terminate.
+	 */
+	private void terminate()
+		{
+		for (SingleQueue queue : toChild[0])
+			queue.put (TERMINATE);
+		boolean interrupted = false;
+		for (int rank = 1; rank < NT; ++ rank)
+			for (;;)
+				try
+					{
+					thread[rank].join();
+					break;
+					}
+				catch (InterruptedException exc)
+					{
+					interrupted = true;
+					}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		}
+
+	/**
+	 * Make a separate new thread execute each rank of the given parallel
+	 * statement, except rank 0, which the calling thread executes. If the JVM
+	 * supports virtual threads, the new threads are virtual threads, otherwise
+	 * they are platform threads. This is intended for parallel statements
+	 * whose ranks spend most of their time blocked, so that many ranks can be
+	 * executed without occupying as many operating system threads.
+	 *
+	 * @param  NT         Number of ranks. Must be &ge; 1.
+	 * @param  statement  Parallel statement object.
+	 *
+	 * @param  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>NT</TT> &lt; 1.
+	 */
+	static void executeVirtual
+		(int NT,
+		 final ParallelStatement statement)
+		{
+		if (NT < 1)
+			throw new IllegalArgumentException (String.format
+				("Team.executeVirtual(): NT = %d illegal", NT));
+		final ReductionMap[] reductionMap = new ReductionMap [NT];
+		final Throwable[] exc = new Throwable [NT];
+		Thread[] thread = new Thread [NT];
+		for (int rank = 0; rank < NT; ++ rank)
+			reductionMap[rank] = new ReductionMap();
+
+		// Start the threads.
+		for (int rank = 1; rank < NT; ++ rank)
+			{
+			final int r = rank;
+			thread[rank] = newThread (new Runnable()
+				{
+				public void run()
+					{
+					exc[r] = runRank (statement, r, reductionMap[r]);
+					}
+				});
+			thread[rank].start();
+			}
+
+		// Execute rank 0, then wait for the threads.
+		exc[0] = runRank (statement, 0, reductionMap[0]);
+		boolean interrupted = false;
+		for (int rank = 1; rank < NT; ++ rank)
+			for (;;)
+				try
+					{
+					thread[rank].join();
+					break;
+					}
+				catch (InterruptedException exc2)
+					{
+					interrupted = true;
+					}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		// Report an exception, or reduce the thread-local variables.
+		for (int rank = 0; rank < NT; ++ rank)
+			if (exc[rank] != null)
+				throw new TerminateException
+					("Exception in parallel team thread", exc[rank]);
+		for (int rank = 1; rank < NT; ++ rank)
+			reductionMap[0].reduce (reductionMap[rank]);
+		reductionMap[0].setGlobalVariables();
+		}
+
+	/**
+	 * Create a new unstarted thread to run the given runnable object. The
+	 * thread is a virtual thread if the JVM supports virtual threads, otherwise
+	 * a daemon platform thread.
+	 *
+	 * @param  runnable  Runnable object.
+	 *
+	 * @return  Thread.
+	 */
+	private static Thread newThread
+		(Runnable runnable)
+		{
+		if (unstarted != null)
+			try
+				{
+				return (Thread) unstarted.invoke
+					(ofVirtual.invoke (null), runnable);
+				}
+			catch (Exception exc)
+				{
+				throw new IllegalStateException
+					("Team.newThread(): Shouldn't happen", exc);
+				}
+		Thread thread = new Thread (runnable);
+		thread.setDaemon (true);
+		return thread;
+		}
+
+	/**
+	 * Execute the given rank of the given parallel statement in the calling
+	 * thread.
+	 *
+	 * @param  statement     Parallel statement object.
+	 * @param  rank          Rank.
+	 * @param  reductionMap  Reduction map for the rank.
+	 *
+	 * @return  Exception thrown by the rank, or null if none.
+	 */
+	private static Throwable runRank
+		(ParallelStatement statement,
+		 int rank,
+		 ReductionMap reductionMap)
+		{
+		ThreadState st = state.get();
+		++ st.level;
+		try
+			{
+			statement.run (rank, reductionMap);
+			return null;
+			}
+		catch (Throwable exc)
+			{
+			return exc;
+			}
+		finally
+			{
+			-- st.level;
+			}
+		}
+
+	/**
+	 * Place the calling thread for executing the given rank on the given CPUs.
+	 * The thread is pinned (or unpinned) only if it is not already where it
+	 * belongs, so a thread that executes the same rank over and over stays put
+	 * without any further system calls.
+	 *
+	 * @param  st    Calling thread's state.
+	 * @param  cpus  CPUs indexed by rank, or null to unpin.
+	 * @param  rank  Rank.
+	 */
+	private static void place
+		(ThreadState st,
+		 int[] cpus,
+		 int rank)
+		{
+		int cpu = cpus == null ? -1 : cpus[rank % cpus.length];
+		if (cpu != st.cpu)
+			{
+			CpuAffinity.pin (cpu);
+			st.cpu = cpu;
+			}
 		}
 
 // Hidden helper classes.
 
+	/**
+	 * Class ThreadState records the state of a thread that executes parallel
+	 * statements.
+	 *
+	 * @author  Alan Kaminsky
+	 * @version 18-Mar-2015
+	 */
+	private static class ThreadState
+		{
+		// Nesting level of parallel statements; nonzero if the thread is
+		// executing a rank of a parallel statement.
+		int level;
+
+		// CPU to which the thread is pinned, or -1 if not pinned.
+		int cpu = -1;
+		}
+
 	/**
 	 * Class TeamThread provides one thread in a team of threads that are
 	 * executing a {@linkplain ParallelStatement}.
 	 *
 	 * @author  Alan Kaminsky
-	 * @version 18-Jul-2013
+	 * @version 13-Mar-2015
 	 */
 	class TeamThread
 		extends Thread
 		{
 		int rank;
-		ReductionMap reductionMap = new ReductionMap();
+		ReductionMap reductionMap = new ReductionMap (true);
 
 		public TeamThread
 			(int rank)
@@ -222,18 +691,27 @@ class Team
 
 		public void run()
 			{
+			ThreadState st = state.get();
+			st.level = 1;
 			Throwable exc = null;
 			SingleQueue fromParentQueue = fromParent[rank];
+			SingleQueue toParentQueue = toParent[rank];
 			SingleQueue[] toChildQueues = toChild[rank];
 			SingleQueue[] fromChildQueues = fromChild[rank];
 			// Note: The above are the same each time around.
 			for (;;)
 				{
 				ParallelStatement statement = (ParallelStatement)
-					fromParentQueue.get();
+					fromParentQueue.get (policy);
 				for (SingleQueue queue: toChildQueues)
 					queue.put (statement);
-				reductionMap.clear();
+				if (statement == TERMINATE)
+					return;
+				place (st, cpus, rank);
+				boolean slicePhase = statement == sliceReduction;
+				if (! slicePhase)
+					reductionMap.clear();
+				Task task = statement.task;
 				try
 					{
 					statement.run (rank, reductionMap);
@@ -242,17 +720,132 @@ class Team
 					{
 					exc = exc2;
 					}
+				if (task != null)
+					task.busyThreads.decrementAndGet();
 				for (SingleQueue queue : fromChildQueues)
 					{
-					Object result = queue.get();
+					Object result = queue.get (policy);
 					if (result instanceof Throwable)
 						exc = (Throwable) result;
-					if (exc == null)
+					if (exc == null && ! slicePhase)
 						reductionMap.reduce ((ReductionMap)result);
 					}
-				toParent[rank].put (exc != null ? exc : reductionMap);
-				// Note: The above might be different each time around.
+				toParentQueue.put (exc != null ? exc : reductionMap);
+				}
+			}
+		}
+
+	/**
+	 * Class NestedStatement executes a nested parallel statement whose ranks
+	 * are independent of each other. The calling thread and helper threads
+	 * from the shared work stealing pool claim the ranks one at a time and
+	 * execute them. The number of helpers is limited by the task's idle cores.
+	 *
+	 * @author  Alan Kaminsky
+	 * @version 13-Mar-2015
+	 */
+	private static class NestedStatement
+		implements Runnable
+		{
+		private int NT;
+		private ParallelStatement statement;
+		private Task task;
+		private ReductionMap[] reductionMap;
+		private Thread caller;
+		private AtomicInteger nextRank = new AtomicInteger (1);
+		private AtomicInteger unfinished;
+		private volatile Throwable exc;
+
+		public NestedStatement
+			(int NT,
+			 ParallelStatement statement)
+			{
+			this.NT = NT;
+			this.statement = statement;
+			this.task = statement.task;
+			this.reductionMap = new ReductionMap [NT];
+			for (int rank = 0; rank < NT; ++ rank)
+				reductionMap[rank] = new ReductionMap();
+			this.caller = Thread.currentThread();
+			this.unfinished = new AtomicInteger (NT);
+			}
+
+		// Called by the calling thread.
+		public void execute()
+			{
+			int helpers = reserveHelpers();
+			for (int i = 0; i < helpers; ++ i)
+				nestedPool.execute (this);
+			runRank (0);
+			runRanks();
+			while (unfinished.get() > 0)
+				LockSupport.park (this);
+			if (exc != null)
+				throw new TerminateException
+					("Exception in parallel team thread", exc);
+			for (int rank = 1; rank < NT; ++ rank)
+				reductionMap[0].reduce (reductionMap[rank]);
+			reductionMap[0].setGlobalVariables();
+			}
+
+		// Called by a pool thread.
+		public void run()
+			{
+			runRanks();
+			task.busyThreads.decrementAndGet();
+			}
+
+		// Reserve as many of the task's idle cores as there are ranks for
+		// helpers to execute, and return the number reserved. Each helper
+		// gives back its core when it finds no more ranks to claim. The caller
+		// does not wait for the helpers, since a helper may not start until
+		// after the caller has executed every rank.
+		private int reserveHelpers()
+			{
+			if (task == null) return 0;
+			int limit = task.cores();
+			if (limit < 1)
+				limit = Runtime.getRuntime().availableProcessors();
+			int busy, n;
+			do
+				{
+				busy = task.busyThreads.get();
+				n = Math.min (NT - 1, limit - busy);
+				if (n <= 0) return 0;
+				}
+			while (! task.busyThreads.compareAndSet (busy, busy + n));
+			return n;
+			}
+
+		// Claim and execute ranks until there are none left.
+		private void runRanks()
+			{
+			int rank;
+			while ((rank = nextRank.getAndIncrement()) < NT)
+				runRank (rank);
+			}
+
+		// Execute the given rank, unless another rank has thrown an exception.
+		private void runRank
+			(int rank)
+			{
+			ThreadState st = state.get();
+			++ st.level;
+			try
+				{
+				if (exc == null)
+					statement.run (rank, reductionMap[rank]);
+				}
+			catch (Throwable exc2)
+				{
+				exc = exc2;
+				}
+			finally
+				{
+				-- st.level;
 				}
+			if (unfinished.decrementAndGet() == 0)
+				LockSupport.unpark (caller);
 			}
 		}
 
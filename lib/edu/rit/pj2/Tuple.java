@@ -98,9 +98,18 @@ import java.lang.reflect.Modifier;
  * #matchContent(Tuple) matchContent()} methods. A typical situation is when you
  * want to match some fields of the template and target, and possibly ignore
  * other fields.
+ * <P>
+ * <B>Tuple indexing.</B>
+ * Tuple space keeps the tuples of each class separately, so a template is only
+ * compared with tuples of its matching class or a subclass thereof. A subclass
+ * whose {@link #matchContent(Tuple) matchContent()} method compares one
+ * particular field can also override the {@link #indexKey() indexKey()}
+ * method to return that field's value. Tuple space then finds the tuples that
+ * could match such a template with a hash table lookup on the template's index
+ * key, rather than by comparing the template with every tuple of the class.
  *
  * @author  Alan Kaminsky
- * @version 07-Jan-2015
+ * @version 18-Mar-2015
  */
 public abstract class Tuple
 	implements Cloneable, Streamable
@@ -207,6 +216,27 @@ public abstract class Tuple
 		return true;
 		}
 
+	/**
+	 * Get this tuple's index key. If this tuple is used as a template and its
+	 * index key is not null, the template matches a target tuple only if the
+	 * target tuple's index key is equal to the template's index key or is
+	 * null. That is, the {@link #matchContent(Tuple) matchContent()} method
+	 * must return false whenever the template's and the target's index keys
+	 * are both non-null and not equal. A tuple's index key must not change
+	 * while the tuple is in tuple space.
+	 * <P>
+	 * The Tuple base class's <TT>indexKey()</TT> method returns null, meaning
+	 * tuples are not indexed. If desired, a subclass can override the
+	 * <TT>indexKey()</TT> method to return the value of the field that the
+	 * <TT>matchContent()</TT> method compares.
+	 *
+	 * @return  Index key, or null if none.
+	 */
+	public Object indexKey()
+		{
+		return null;
+		}
+
 	/**
 	 * Write this tuple's fields to the given out stream.
 	 *
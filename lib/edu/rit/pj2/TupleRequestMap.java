@@ -25,65 +25,48 @@
 
 package edu.rit.pj2;
 
-import edu.rit.util.Map;
+import edu.rit.util.AList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class TupleRequestMap provides an object for coordinating requests by a
  * {@linkplain Task Task} to take tuples out of tuple space in a {@linkplain Job
  * Job}.
+ * <P>
+ * Each request has its own future result. When a request's result is
+ * reported, the request is removed and its result is completed; only the
+ * threads waiting for that request's result, if any, are woken up.
  *
  * @author  Alan Kaminsky
- * @version 10-Jan-2015
+ * @version 18-Mar-2015
  */
 class TupleRequestMap
 	{
 
 // Hidden helper classes.
 
-	private static class TupleRef
-		{
-		public Tuple tuple;
-
-		public TupleRef
-			(Tuple tuple)
-			{
-			this.tuple = tuple;
-			}
-		}
-
 	private static class Info
 		{
 		public long taskID;
-		public long requestID;
-		public TupleRef tupleRef;
+		public CompletableFuture<Object> result;
 
 		public Info
 			(long taskID,
-			 long requestID)
+			 CompletableFuture<Object> result)
 			{
 			this.taskID = taskID;
-			this.requestID = requestID;
-			}
-
-		public boolean equals
-			(Object obj)
-			{
-			return
-				(obj instanceof Info) &&
-				((Info) obj).taskID == this.taskID &&
-				((Info) obj).requestID == this.requestID;
-			}
-
-		public int hashCode()
-			{
-			return (int)((taskID << 16) + requestID);
+			this.result = result;
 			}
 		}
 
 // Hidden data members.
 
-	private Map<Info,Info> requestMap = new Map<Info,Info>();
-	private long nextRequestID = 1L;
+	// Outstanding requests, indexed by request ID.
+	private ConcurrentHashMap<Long,Info> requestMap =
+		new ConcurrentHashMap<Long,Info>();
+	private AtomicLong nextRequestID = new AtomicLong (1L);
 
 // Exported constructors.
 
@@ -97,44 +80,32 @@ class TupleRequestMap
 // Exported operations.
 
 	/**
-	 * Add a new request to take a tuple.
-	 *
-	 * @param  taskID  Task ID.
+	 * Returns a new request ID. Request IDs are unique within this tuple
+	 * request map.
 	 *
 	 * @return  Request ID.
 	 */
-	public synchronized long addRequest
-		(long taskID)
+	public long newRequestID()
 		{
-		long id = nextRequestID ++;
-		Info info = new Info (taskID, id);
-		requestMap.put (info, info);
-		return id;
+		return nextRequestID.getAndIncrement();
 		}
 
 	/**
-	 * Take a tuple. This method blocks until the tuple is taken.
+	 * Add a new request to take a tuple, or a batch of tuples. When the
+	 * request's result is reported, the given future is completed with the
+	 * tuple taken (a {@linkplain Tuple Tuple}, or null if none) or with the
+	 * list of tuples taken (an {@linkplain AList AList&lt;Tuple&gt;}).
 	 *
 	 * @param  taskID     Task ID.
-	 * @param  requestID  Request ID.
-	 *
-	 * @return  Tuple.
+	 * @param  requestID  Request ID, from <TT>newRequestID()</TT>.
+	 * @param  result     Future result.
 	 */
-	public synchronized Tuple takeTuple
+	public void addRequest
 		(long taskID,
-		 long requestID)
+		 long requestID,
+		 CompletableFuture<Object> result)
 		{
-		Info key = new Info (taskID, requestID);
-		Info info = requestMap.get (key);
-		if (info == null)
-			throw new IllegalStateException (String.format
-				("TupleRequestMap.takeTuple(%d,%d): Unknown taskID/requestID",
-				 taskID, requestID));
-		while (info.tupleRef == null)
-			try { wait(); }
-				catch (InterruptedException exc) {}
-		requestMap.remove (key);
-		return info.tupleRef.tuple;
+		requestMap.put (requestID, new Info (taskID, result));
 		}
 
 	/**
@@ -142,21 +113,54 @@ class TupleRequestMap
 	 *
 	 * @param  taskID     Task ID.
 	 * @param  requestID  Request ID.
-	 * @param  tuple      Tuple.
+	 * @param  tuple      Tuple, or null if none.
 	 */
-	public synchronized void tupleTaken
+	public void tupleTaken
 		(long taskID,
 		 long requestID,
 		 Tuple tuple)
 		{
-		Info key = new Info (taskID, requestID);
-		Info info = requestMap.get (key);
-		if (info == null)
+		remove (taskID, requestID, "tupleTaken") .complete (tuple);
+		}
+
+	/**
+	 * Report that the given tuples were taken by a batch take request.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  tuples     List of zero or more tuples.
+	 */
+	public void tuplesTaken
+		(long taskID,
+		 long requestID,
+		 AList<Tuple> tuples)
+		{
+		remove (taskID, requestID, "tuplesTaken") .complete (tuples);
+		}
+
+// Hidden operations.
+
+	/**
+	 * Remove the given request.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  method     Calling method's name, for error messages.
+	 *
+	 * @return  Request's future result.
+	 */
+	private CompletableFuture<Object> remove
+		(long taskID,
+		 long requestID,
+		 String method)
+		{
+		Info info = requestMap.get (requestID);
+		if (info == null || info.taskID != taskID)
 			throw new IllegalStateException (String.format
-				("TupleRequestMap.tupleTaken(%d,%d): Unknown taskID/requestID",
-				 taskID, requestID));
-		info.tupleRef = new TupleRef (tuple);
-		notifyAll();
+				("TupleRequestMap.%s(%d,%d): Unknown taskID/requestID",
+				 method, taskID, requestID));
+		requestMap.remove (requestID);
+		return info.result;
 		}
 
 	}
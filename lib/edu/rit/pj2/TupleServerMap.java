@@ -0,0 +1,540 @@
+//******************************************************************************
+//
+// File:    TupleServerMap.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.TupleServerMap
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import edu.rit.pj2.tracker.BackendReceiver;
+import edu.rit.pj2.tracker.BackendRef;
+import edu.rit.pj2.tracker.JobRef;
+import edu.rit.pj2.tracker.Proxy;
+import edu.rit.pj2.tracker.Receiver;
+import edu.rit.pj2.tracker.ReceiverListener;
+import edu.rit.pj2.tracker.TaskInfo;
+import edu.rit.pj2.tracker.TupleServerSender;
+import edu.rit.util.AList;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.HashSet;
+
+/**
+ * Class TupleServerMap provides an object that sends a {@linkplain Job Job}'s
+ * tuple requests to the {@linkplain edu.rit.pj2.tracker.TupleServer
+ * TupleServer}s across which the job's tuple space is sharded.
+ * <P>
+ * Each family of tuple classes (see class {@linkplain TupleSpace TupleSpace})
+ * is assigned either to the job's own tuple space or to one tuple server. The
+ * families that the job's on-demand rules match are kept in the job's own
+ * tuple space; every other family is assigned to a tuple server by hashing the
+ * name of the family's class. Requests for families kept in the job are sent
+ * to the job as usual. Results of take requests sent to tuple servers are
+ * reported to a {@linkplain TupleRequestMap TupleRequestMap}.
+ * <P>
+ * A template whose {@linkplain Tuple#matchClass() matching class} is class
+ * {@linkplain Tuple Tuple} itself can match tuples of any family, which may be
+ * held by any tuple server; such templates cannot be used when the job's tuple
+ * space is sharded.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+class TupleServerMap
+	{
+
+// Hidden data members.
+
+	private String[] addresses;
+	private String[] jobFamilies;
+	private long spaceID;
+	private TupleServerSender[] servers;
+	private HashSet<String> jobFamilySet = new HashSet<String>();
+	private TupleRequestMap tupleRequestMap;
+
+// Exported constructors.
+
+	/**
+	 * Construct a new tuple server map and connect to the given tuple servers.
+	 *
+	 * @param  addresses        Array of tuple server addresses
+	 *                          (<TT>"<I>host</I>:<I>port</I>"</TT>).
+	 * @param  jobFamilies      Array of class names of the families kept in the
+	 *                          job's own tuple space.
+	 * @param  spaceID          ID of the job's tuple space on the tuple
+	 *                          servers.
+	 * @param  jar              Java archive (JAR) containing the job's class
+	 *                          files, or null if none.
+	 * @param  tupleRequestMap  Tuple request map to which results of take
+	 *                          requests are reported.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if a tuple server address is illegal.
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred, such as a tuple server that could
+	 *     not be reached.
+	 */
+	public TupleServerMap
+		(String[] addresses,
+		 String[] jobFamilies,
+		 long spaceID,
+		 byte[] jar,
+		 TupleRequestMap tupleRequestMap)
+		throws IOException
+		{
+		this.addresses = addresses;
+		this.jobFamilies = jobFamilies;
+		this.spaceID = spaceID;
+		this.tupleRequestMap = tupleRequestMap;
+		for (String family : jobFamilies)
+			jobFamilySet.add (family);
+
+		BackendRef results = new Results();
+		servers = new TupleServerSender [addresses.length];
+		try
+			{
+			for (int i = 0; i < addresses.length; ++ i)
+				{
+				int j = addresses[i].lastIndexOf (':');
+				if (j == -1)
+					throw new IllegalArgumentException (String.format
+						("TupleServerMap(): Tuple server address \"%s\" " +
+						 "illegal", addresses[i]));
+				TupleServerSender server = new TupleServerSender();
+				new Proxy
+					(addresses[i].substring (0, j),
+					 Integer.parseInt (addresses[i].substring (j + 1)),
+					 server,
+					 new BackendReceiver
+						(new ReceiverListener()
+							{
+							public void receiverFailed
+								(Receiver receiver,
+								 Throwable exc)
+								{
+								receiver.terminate();
+								}
+							},
+						 results));
+				servers[i] = server;
+				server.openJob (null, spaceID, jar);
+				}
+			}
+		catch (NumberFormatException exc)
+			{
+			terminate();
+			throw new IllegalArgumentException
+				("TupleServerMap(): Tuple server port illegal", exc);
+			}
+		catch (IOException exc)
+			{
+			terminate();
+			throw exc;
+			}
+		}
+
+// Exported operations.
+
+	/**
+	 * Record the tuple servers of this tuple server map in the given task
+	 * information object.
+	 *
+	 * @param  info  Task information object.
+	 */
+	public void setUp
+		(TaskInfo info)
+		{
+		info.tupleServers = addresses;
+		info.jobFamilies = jobFamilies;
+		info.spaceID = spaceID;
+		}
+
+	/**
+	 * Determine whether tuples of the given class's family are held by a tuple
+	 * server.
+	 *
+	 * @param  type  Tuple class, or template matching class.
+	 *
+	 * @return  True if the family is held by a tuple server, false if it is
+	 *          kept in the job's own tuple space.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>type</TT> can match tuples of any
+	 *     family.
+	 */
+	public boolean isSharded
+		(Class<?> type)
+		{
+		return server (type) != null;
+		}
+
+	/**
+	 * Send a take request to the tuple server holding the family of the
+	 * given template's matching class, or to the given job if the family is
+	 * kept in the job.
+	 *
+	 * @param  job        Job.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  blocking   True for a blocking take or read, false for a
+	 *                    non-blocking take or read.
+	 * @param  taking     True to take a tuple, false to read a tuple.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>template</TT> can match tuples of
+	 *     any family.
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void takeTuple
+		(JobRef job,
+		 long taskID,
+		 long requestID,
+		 Tuple template,
+		 boolean blocking,
+		 boolean taking)
+		throws IOException
+		{
+		TupleServerSender server = server (template.matchClass());
+		if (server == null)
+			job.takeTuple (taskID, requestID, template, blocking, taking);
+		else
+			server.takeTuple (null, spaceID, taskID, requestID, template,
+				blocking, taking);
+		}
+
+	/**
+	 * Send a batch take request to the tuple server holding the family of the
+	 * given template's matching class, or to the given job if the family is
+	 * kept in the job.
+	 *
+	 * @param  job        Job.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  maxCount   Maximum number of tuples to take (1 or more).
+	 * @param  blocking   True to block until at least one tuple is taken,
+	 *                    false to take zero or more tuples without blocking.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>template</TT> can match tuples of
+	 *     any family.
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void takeTuples
+		(JobRef job,
+		 long taskID,
+		 long requestID,
+		 Tuple template,
+		 int maxCount,
+		 boolean blocking)
+		throws IOException
+		{
+		TupleServerSender server = server (template.matchClass());
+		if (server == null)
+			job.takeTuples (taskID, requestID, template, maxCount, blocking);
+		else
+			server.takeTuples (null, spaceID, taskID, requestID, template,
+				maxCount, blocking);
+		}
+
+	/**
+	 * Cancel a blocking take request sent to the tuple server holding the
+	 * family of the given template's matching class, or to the given job if
+	 * the family is kept in the job.
+	 *
+	 * @param  job        Job.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template of the request.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void cancelTakeTuple
+		(JobRef job,
+		 long taskID,
+		 long requestID,
+		 Tuple template)
+		throws IOException
+		{
+		TupleServerSender server = server (template.matchClass());
+		if (server == null)
+			job.cancelTakeTuple (taskID, requestID);
+		else
+			server.cancelTakeTuple (spaceID, taskID, requestID);
+		}
+
+	/**
+	 * Send the given tuple to the tuple server holding the family of the
+	 * tuple's class, or to the given job if the family is kept in the job.
+	 *
+	 * @param  job     Job.
+	 * @param  taskID  Task ID.
+	 * @param  tuple   Tuple.
+	 * @param  copies  Number of copies to write (1 or more).
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeTuple
+		(JobRef job,
+		 long taskID,
+		 Tuple tuple,
+		 int copies)
+		throws IOException
+		{
+		TupleServerSender server = server (tuple.getClass());
+		if (server == null)
+			job.writeTuple (taskID, tuple, copies);
+		else
+			server.writeTuple (spaceID, taskID, tuple, copies);
+		}
+
+	/**
+	 * Send the given tuples to the tuple servers holding the families of the
+	 * tuples' classes, and to the given job if any of the families are kept in
+	 * the job. The tuples going to each destination are sent in one request,
+	 * in the order they appear in the list.
+	 *
+	 * @param  job     Job.
+	 * @param  taskID  Task ID.
+	 * @param  tuples  List of tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeTuples
+		(JobRef job,
+		 long taskID,
+		 AList<Tuple> tuples)
+		throws IOException
+		{
+		AList<Tuple> local = new AList<Tuple>();
+		AList<AList<Tuple>> remote = split (tuples, local);
+		if (! local.isEmpty())
+			job.writeTuples (taskID, local);
+		for (int i = 0; i < servers.length; ++ i)
+			if (! remote.get (i) .isEmpty())
+				servers[i].writeTuples (spaceID, taskID, remote.get (i));
+		}
+
+	/**
+	 * Move the tuples in the given tuple space whose families are held by
+	 * tuple servers to those tuple servers.
+	 *
+	 * @param  tupleSpace  Tuple space.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void moveTuples
+		(TupleSpace tupleSpace)
+		throws IOException
+		{
+		AList<Tuple> tuples = tupleSpace.allTuples();
+		AList<Tuple> local = new AList<Tuple>();
+		AList<AList<Tuple>> remote = split (tuples, local);
+		if (local.size() == tuples.size()) return;
+		tupleSpace.clear();
+		tupleSpace.putTuples (local);
+		for (int i = 0; i < servers.length; ++ i)
+			if (! remote.get (i) .isEmpty())
+				servers[i].writeTuples (spaceID, 0L, remote.get (i));
+		}
+
+	/**
+	 * Wait until each tuple server has handled all the requests this tuple
+	 * server map sent it before. A sync request is sent to each tuple server,
+	 * which reports no tuple for the request once it has handled the earlier
+	 * requests.
+	 *
+	 * @param  taskID  Task ID under which the sync requests are made.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void sync
+		(long taskID)
+		throws IOException
+		{
+		CompletableFuture<?>[] results =
+			new CompletableFuture<?> [servers.length];
+		for (int i = 0; i < servers.length; ++ i)
+			{
+			CompletableFuture<Object> result = new CompletableFuture<Object>();
+			long requestID = tupleRequestMap.newRequestID();
+			tupleRequestMap.addRequest (taskID, requestID, result);
+			results[i] = result;
+			servers[i].sync (null, spaceID, taskID, requestID);
+			}
+		CompletableFuture.allOf (results) .join();
+		}
+
+	/**
+	 * Tell the tuple servers that the given task finished or failed.
+	 *
+	 * @param  taskID  Task ID.
+	 */
+	public void taskFinished
+		(long taskID)
+		{
+		for (TupleServerSender server : servers)
+			try { server.taskFinished (spaceID, taskID); }
+				catch (IOException exc) {}
+		}
+
+	/**
+	 * Tell the tuple servers that the job finished, and disconnect from them.
+	 */
+	public void closeJob()
+		{
+		for (TupleServerSender server : servers)
+			try { server.closeJob (spaceID); }
+				catch (IOException exc) {}
+		terminate();
+		}
+
+	/**
+	 * Disconnect from the tuple servers.
+	 */
+	public void terminate()
+		{
+		for (TupleServerSender server : servers)
+			if (server != null)
+				server.terminate();
+		}
+
+// Hidden operations.
+
+	/**
+	 * Returns the tuple server holding the family of the given class.
+	 *
+	 * @param  type  Tuple class, or template matching class.
+	 *
+	 * @return  Tuple server, or null if the family is kept in the job.
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>type</TT> can match tuples of any
+	 *     family.
+	 */
+	private TupleServerSender server
+		(Class<?> type)
+		{
+		Class<?> family = TupleSpace.family (type);
+		if (family == null)
+			throw new IllegalArgumentException (String.format
+				("TupleServerMap.server(): Template matching class %s can " +
+				 "match any tuple family; not supported when tuple space " +
+				 "is sharded",
+				 type.getName()));
+		String name = family.getName();
+		if (jobFamilySet.contains (name))
+			return null;
+		return servers[(name.hashCode() & 0x7fffffff) % servers.length];
+		}
+
+	/**
+	 * Split the given list of tuples by destination.
+	 *
+	 * @param  tuples  List of tuples.
+	 * @param  local   List to which tuples kept in the job are added.
+	 *
+	 * @return  List of lists of tuples, one for each tuple server.
+	 */
+	private AList<AList<Tuple>> split
+		(AList<Tuple> tuples,
+		 AList<Tuple> local)
+		{
+		AList<AList<Tuple>> remote = new AList<AList<Tuple>>();
+		for (int i = 0; i < servers.length; ++ i)
+			remote.addLast (new AList<Tuple>());
+		int n = tuples.size();
+		for (int i = 0; i < n; ++ i)
+			{
+			Tuple tuple = tuples.get (i);
+			TupleServerSender server = server (tuple.getClass());
+			if (server == null)
+				local.addLast (tuple);
+			else
+				for (int j = 0; j < servers.length; ++ j)
+					if (servers[j] == server)
+						remote.get (j) .addLast (tuple);
+			}
+		return remote;
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Class Results reports the results of take requests from the tuple
+	 * servers to the tuple request map.
+	 */
+	private class Results
+		implements BackendRef
+		{
+		public void startTask
+			(TaskInfo info)
+			{
+			}
+
+		public void tupleTaken
+			(long taskID,
+			 long requestID,
+			 Tuple tuple)
+			{
+			tupleRequestMap.tupleTaken (taskID, requestID, tuple);
+			}
+
+		public void tuplesTaken
+			(long taskID,
+			 long requestID,
+			 AList<Tuple> tuples)
+			{
+			tupleRequestMap.tuplesTaken (taskID, requestID, tuples);
+			}
+
+		public void jarContents
+			(byte[] jar)
+			{
+			}
+
+		public void stopTask()
+			{
+			}
+
+		public void heartbeatFromJob()
+			{
+			}
+
+		public void shutdown()
+			{
+			}
+
+		public void terminate()
+			{
+			}
+		}
+
+	}
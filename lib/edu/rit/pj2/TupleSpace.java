@@ -25,9 +25,23 @@
 
 package edu.rit.pj2;
 
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
 import edu.rit.util.AList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -46,18 +60,53 @@ import java.util.concurrent.locks.ReentrantLock;
  * method. 
  * <P>
  * To remove tuple(s) from tuple space, call the {@link #getTransaction()
- * getTransaction()} method to get a {@linkplain Transaction Transaction}
- * object, then use the transaction object to find and remove the desired
- * tuple(s).
+ * getTransaction()} method or the {@link #getTransaction(Class[])
+ * getTransaction(Class...)} method to get a {@linkplain Transaction
+ * Transaction} object, then use the transaction object to find and remove the
+ * desired tuple(s).
  * <P>
- * Tuple space is locked while a tuple is being put. Tuple space is locked while
- * a transaction is in progress, from when the transaction is created until when
- * the transaction is committed or aborted. If tuple space is locked, the {@link
- * #putTuple(Tuple) putTuple()} and {@link #getTransaction() getTransaction()}
- * methods will block until tuple space is unlocked.
+ * Tuple space is indexed. The tuples are kept in a separate bucket for each
+ * tuple class, and within a bucket, tuples with an {@linkplain Tuple#indexKey()
+ * index key} are kept in a hash table keyed by the index key. The {@link
+ * Transaction#find(Tuple) find()} method uses the index to compare a template
+ * only with tuples that could match it.
+ * <P>
+ * Tuple space is divided into <I>stripes,</I> one for each <I>family</I> of
+ * tuple classes. A tuple class's family is the superclass of the tuple class
+ * (or the tuple class itself) that directly extends class {@linkplain Tuple
+ * Tuple}. A template whose {@linkplain Tuple#matchClass() matching class} is a
+ * proper subclass of class Tuple can only match tuples in its matching class's
+ * family; so a put or a transaction that involves only certain families needs
+ * to lock only those families' stripes, and puts and transactions involving
+ * different families can proceed concurrently.
+ * <P>
+ * A stripe is locked while a tuple is being put into that stripe. The stripes
+ * covered by a transaction are locked while the transaction is in progress,
+ * from when the transaction is created until when the transaction is committed
+ * or aborted. A transaction obtained from the {@link #getTransaction()
+ * getTransaction()} method covers, and locks, all of tuple space. A transaction
+ * obtained from the {@link #getTransaction(Class[]) getTransaction(Class...)}
+ * method covers only the stripes of the given classes' families. If a stripe
+ * is locked, the {@link #putTuple(Tuple) putTuple()} and
+ * <TT>getTransaction()</TT> methods will block until the stripe is unlocked.
+ * <P>
+ * Tuple space can be given a memory {@linkplain #budget(long) budget}. Once
+ * the tuples in tuple space take up more than the budget, each further tuple
+ * put into tuple space is <I>spilled:</I> the tuple is serialized into a log
+ * file mapped into memory, and only the tuple's reference and index key are
+ * kept on the heap. A spilled tuple is read back from the log when it is
+ * compared with a template, when a transaction finds it, or when a
+ * transaction's iterator returns it. The log is deleted when tuple space is
+ * {@linkplain #clear() cleared} or when the JVM exits.
+ * <P>
+ * Tuple space keeps counters for each tuple class: tuples put and taken,
+ * templates compared with tuples, and searches that found a tuple. The
+ * counters are updated while the tuple's stripe is locked anyway, so keeping
+ * them costs no extra synchronization. The {@link #metrics() metrics()} method
+ * returns a snapshot of them.
  *
  * @author  Alan Kaminsky
- * @version 30-Jun-2014
+ * @version 18-Mar-2015
  */
 public class TupleSpace
 	{
@@ -77,27 +126,263 @@ public class TupleSpace
 	public static class TupleRef
 		{
 		/**
-		 * Reference to the tuple.
+		 * Reference to the tuple. This is never null for a tuple reference
+		 * returned by a {@linkplain Transaction Transaction}, even if the
+		 * tuple was spilled. Do not change this field.
 		 */
-		public final Tuple tuple;
+		public Tuple tuple;
 
 		// True if this tuple reference has been tentatively removed.
 		private boolean removed;
 
+		// Sequence number; tuple references put earlier have smaller numbers.
+		private long seq;
+
+		// Index key of the tuple.
+		private Object key;
+
+		// Bucket containing this tuple reference.
+		private Bucket bucket;
+
+		// Serialized size of the tuple if counted against the memory budget,
+		// else 0.
+		private int size;
+
+		// Position and length of the spilled tuple in the spill log, or -1 if
+		// the tuple was not spilled. A spilled tuple is also referred to weakly
+		// so that it need not be read back while it is still reachable.
+		private long spillPos = -1L;
+		private int spillLen;
+		private WeakReference<Tuple> spilled;
+
 		// Construct a new tuple reference to the given tuple.
 		private TupleRef
-			(Tuple tuple)
+			(Tuple tuple,
+			 long seq,
+			 Bucket bucket)
 			{
 			this.tuple = tuple;
+			this.seq = seq;
+			this.key = tuple.indexKey();
+			this.bucket = bucket;
+			}
+		}
+
+// Hidden helper classes.
+
+	// Stripe of tuple references to tuples of one family.
+	private static class Stripe
+		{
+		// Stripe index; stripes are always locked in order of index.
+		public final int index;
+		// Lock.
+		public ReentrantLock lock = new ReentrantLock();
+		// Index of tuple references, one bucket per tuple class.
+		public HashMap<Class<?>,Bucket> buckets =
+			new HashMap<Class<?>,Bucket>();
+
+		public Stripe
+			(int index)
+			{
+			this.index = index;
+			}
+		}
+
+	// Bucket of tuple references to tuples of one class.
+	private class Bucket
+		{
+		// Stripe containing this bucket.
+		public final Stripe stripe;
+		// Tuple class.
+		public final Class<?> type;
+		// All tuple references in this bucket.
+		public LinkedHashSet<TupleRef> all = new LinkedHashSet<TupleRef>();
+		// Tuple references with no index key.
+		public LinkedHashSet<TupleRef> unkeyed = new LinkedHashSet<TupleRef>();
+		// Tuple references with an index key, grouped by index key.
+		public HashMap<Object,LinkedHashSet<TupleRef>> keyed =
+			new HashMap<Object,LinkedHashSet<TupleRef>>();
+		// Constructor for reading spilled tuples back, or null if not needed
+		// yet.
+		public Constructor<?> ctor;
+		// Metrics: tuples put and taken, comparisons of templates with tuples,
+		// and searches that found a tuple.
+		public long puts;
+		public long takes;
+		public long matchAttempts;
+		public long matchHits;
+		// Total serialized size and number of the tuple references whose
+		// sizes are known, and serialized size of a sample tuple (-1 if not
+		// measured yet) for estimating the sizes of the others.
+		public long knownBytes;
+		public long knownCount;
+		public int sampleSize = -1;
+
+		public Bucket
+			(Stripe stripe,
+			 Class<?> type)
+			{
+			this.stripe = stripe;
+			this.type = type;
+			}
+
+		public void add
+			(TupleRef ref)
+			{
+			++ puts;
+			int size = knownSize (ref);
+			if (size > 0)
+				{
+				knownBytes += size;
+				++ knownCount;
+				}
+			all.add (ref);
+			if (ref.key == null)
+				unkeyed.add (ref);
+			else
+				{
+				LinkedHashSet<TupleRef> refs = keyed.get (ref.key);
+				if (refs == null)
+					{
+					refs = new LinkedHashSet<TupleRef>();
+					keyed.put (ref.key, refs);
+					}
+				refs.add (ref);
+				}
+			}
+
+		public void remove
+			(TupleRef ref)
+			{
+			++ takes;
+			int size = knownSize (ref);
+			if (size > 0)
+				{
+				knownBytes -= size;
+				-- knownCount;
+				}
+			all.remove (ref);
+			if (ref.key == null)
+				unkeyed.remove (ref);
+			else
+				{
+				LinkedHashSet<TupleRef> refs = keyed.get (ref.key);
+				refs.remove (ref);
+				if (refs.isEmpty())
+					keyed.remove (ref.key);
+				}
+			}
+
+		// Returns the earliest tuple reference in this bucket that matches the
+		// given template and is not tentatively removed, or null if none. The
+		// bucket's tuple class is assumed to match the template.
+		public TupleRef find
+			(Tuple template)
+			{
+			Object key = template.indexKey();
+			TupleRef found;
+			if (key == null)
+				found = first (all, template);
+			else
+				{
+				TupleRef ref = first (keyed.get (key), template);
+				TupleRef ref2 = first (unkeyed, template);
+				found = ref == null || (ref2 != null && ref2.seq < ref.seq) ?
+					ref2 : ref;
+				}
+			if (found != null)
+				++ matchHits;
+			return found;
+			}
+
+		private TupleRef first
+			(LinkedHashSet<TupleRef> refs,
+			 Tuple template)
+			{
+			if (refs != null)
+				for (TupleRef ref : refs)
+					if (! ref.removed)
+						{
+						++ matchAttempts;
+						if (template.matchContent (peek (ref)))
+							return ref;
+						}
+			return null;
+			}
+
+		// Remove all tuple references from this bucket, keeping the metrics.
+		public void clear()
+			{
+			all.clear();
+			unkeyed.clear();
+			keyed.clear();
+			knownBytes = 0L;
+			knownCount = 0L;
+			}
+
+		// Returns the metrics for this bucket's tuple class.
+		public TupleSpaceMetrics.TupleClass metrics()
+			{
+			TupleSpaceMetrics.TupleClass tc =
+				new TupleSpaceMetrics.TupleClass();
+			tc.name = type.getName();
+			tc.count = all.size();
+			if (knownCount < tc.count && sampleSize == -1)
+				for (TupleRef ref : all)
+					if (knownSize (ref) == 0)
+						{
+						sampleSize = sampleSize (peek (ref));
+						break;
+						}
+			tc.bytes = knownBytes +
+				(tc.count - knownCount)*Math.max (sampleSize, 0);
+			tc.puts = puts;
+			tc.takes = takes;
+			tc.matchAttempts = matchAttempts;
+			tc.matchHits = matchHits;
+			return tc;
 			}
 		}
 
 // Hidden data members.
 
+	// Lock for creating stripes. A transaction covering all of tuple space
+	// holds this lock, so no stripes are created while it is in progress, as
+	// well as all the stripe locks. Stripe locks are always acquired in order
+	// of stripe index, and never while holding a stripe lock.
 	private ReentrantLock lock = new ReentrantLock();
 
-	// List (set) of tuple references.
-	private LinkedHashSet<TupleRef> tupleList = new LinkedHashSet<TupleRef>();
+	// Stripes, indexed by family, and all stripes in order of index.
+	private ConcurrentHashMap<Class<?>,Stripe> stripes =
+		new ConcurrentHashMap<Class<?>,Stripe>();
+	private volatile Stripe[] allStripes = new Stripe [0];
+
+	// Sequence number for the next tuple reference.
+	private AtomicLong nextSeq = new AtomicLong();
+
+	// Memory budget (bytes), or 0 if none; serialized size of the tuples
+	// counted against the budget; and spill log, created when first needed.
+	private volatile long budget = 0L;
+	private AtomicLong heapBytes = new AtomicLong();
+	private SpillLog spillLog;
+
+	// For sorting tuple references and stripes.
+	private static final Comparator<TupleRef> BY_SEQ =
+		new Comparator<TupleRef>()
+		{
+		public int compare (TupleRef a, TupleRef b)
+			{
+			return a.seq < b.seq ? -1 : a.seq > b.seq ? 1 : 0;
+			}
+		};
+	private static final Comparator<Stripe> BY_INDEX =
+		new Comparator<Stripe>()
+		{
+		public int compare (Stripe a, Stripe b)
+			{
+			return a.index - b.index;
+			}
+		};
 
 // Exported constructors.
 
@@ -112,8 +397,8 @@ public class TupleSpace
 
 	/**
 	 * Put the given tuple into this tuple space. The <TT>putTuple()</TT> method
-	 * will block until no other <TT>putTuple()</TT> method call is in progress
-	 * and no transaction is in progress.
+	 * will block until no other <TT>putTuple()</TT> method call and no
+	 * transaction is in progress on the tuple's stripe.
 	 *
 	 * @param  tuple  Tuple.
 	 *
@@ -127,26 +412,89 @@ public class TupleSpace
 			throw new NullPointerException
 				("TupleSpace.putTuple(): tuple is null");
 
-		lock.lock();
+		Stripe stripe = stripe (stripeKey (tuple.getClass()));
+		stripe.lock.lock();
+		add (stripe, tuple);
+		stripe.lock.unlock();
+		}
 
-		TupleRef ref = new TupleRef (tuple);
-		tupleList.add (ref);
+	/**
+	 * Put the given tuples into this tuple space, in one transaction. The
+	 * tuples are put in the order they appear in the list. Other threads see
+	 * either none or all of the tuples. The <TT>putTuples()</TT> method will
+	 * block until no other <TT>putTuple()</TT> method call and no transaction
+	 * is in progress on the tuples' stripes.
+	 *
+	 * @param  tuples  List of tuples.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>tuples</TT> or any element
+	 *     thereof is null.
+	 */
+	public void putTuples
+		(AList<Tuple> tuples)
+		{
+		int n = tuples.size();
+		Class<?>[] keys = new Class<?> [n];
+		for (int i = 0; i < n; ++ i)
+			{
+			Tuple tuple = tuples.get (i);
+			if (tuple == null)
+				throw new NullPointerException
+					("TupleSpace.putTuples(): tuple is null");
+			keys[i] = stripeKey (tuple.getClass());
+			}
 
-		lock.unlock();
+		Stripe[] covered = lockStripes (keys);
+		for (int i = 0; i < n; ++ i)
+			add (stripes.get (keys[i]), tuples.get (i));
+		unlock (covered, false);
 		}
 
 	/**
 	 * Get a transaction for finding and removing tuples from this tuple space.
-	 * The <TT>getTransaction()</TT> method will block until no
-	 * <TT>putTuple()</TT> method call is in progress and no other transaction
-	 * is in progress.
+	 * The transaction covers all of tuple space. The <TT>getTransaction()</TT>
+	 * method will block until no <TT>putTuple()</TT> method call is in progress
+	 * and no other transaction is in progress.
 	 *
 	 * @return  Transaction.
 	 */
 	public Transaction getTransaction()
 		{
-		lock.lock();
-		return new Transaction();
+		return new Transaction (lockAll(), true);
+		}
+
+	/**
+	 * Get a transaction for finding and removing tuples of the given classes
+	 * from this tuple space. The transaction covers the stripes of the given
+	 * classes' families; the transaction can only find and remove tuples that
+	 * match templates whose {@linkplain Tuple#matchClass() matching classes}
+	 * are among the given classes or their subclasses. If any given class is
+	 * not a proper subclass of class {@linkplain Tuple Tuple}, the transaction
+	 * covers all of tuple space, like the {@link #getTransaction()
+	 * getTransaction()} method. The <TT>getTransaction()</TT> method will block
+	 * until no <TT>putTuple()</TT> method call and no other transaction is in
+	 * progress on the covered stripes.
+	 *
+	 * @param  classes  Tuple classes.
+	 *
+	 * @return  Transaction.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>classes</TT> or any element
+	 *     thereof is null.
+	 */
+	public Transaction getTransaction
+		(Class<?>... classes)
+		{
+		Class<?>[] keys = new Class<?> [classes.length];
+		for (int i = 0; i < classes.length; ++ i)
+			{
+			keys[i] = family (classes[i]);
+			if (keys[i] == null)
+				return getTransaction();
+			}
+		return new Transaction (lockStripes (keys), false);
 		}
 
 	/**
@@ -156,24 +504,429 @@ public class TupleSpace
 	 */
 	public AList<Tuple> allTuples()
 		{
-		lock.lock();
+		Stripe[] covered = lockAll();
 
 		AList<Tuple> list = new AList<Tuple>();
-		for (TupleRef ref : tupleList)
-			list.addLast (ref.tuple);
+		for (TupleRef ref : sortedRefs (covered))
+			list.addLast (peek (ref));
 
-		lock.unlock();
+		unlockAll (covered);
 		return list;
 		}
 
 	/**
-	 * Remove all tuples from tuple space.
+	 * Remove all tuples from tuple space. The spill log, if any, is closed and
+	 * its file is deleted; a new spill log is created if further tuples are
+	 * spilled.
 	 */
 	public void clear()
+		{
+		Stripe[] covered = lockAll();
+		for (Stripe stripe : covered)
+			for (Bucket bucket : stripe.buckets.values())
+				bucket.clear();
+		heapBytes.set (0L);
+		synchronized (this)
+			{
+			if (spillLog != null)
+				spillLog.close();
+			spillLog = null;
+			}
+		unlockAll (covered);
+		}
+
+	/**
+	 * Get a snapshot of the metrics for each tuple class that has been put
+	 * into this tuple space: the number of tuples in tuple space and their
+	 * estimated size, the number of tuples put and taken, and the number of
+	 * match attempts and hits. The counters are kept as tuples are put, found,
+	 * and removed; taking a snapshot locks all of tuple space only long enough
+	 * to copy them. Put and take rates are not computed.
+	 *
+	 * @return  Tuple space metrics.
+	 */
+	public TupleSpaceMetrics metrics()
+		{
+		TupleSpaceMetrics metrics = new TupleSpaceMetrics();
+		Stripe[] covered = lockAll();
+		metrics.time = System.currentTimeMillis();
+		for (Stripe stripe : covered)
+			for (Bucket bucket : stripe.buckets.values())
+				metrics.classes.addLast (bucket.metrics());
+		unlockAll (covered);
+		return metrics;
+		}
+
+	/**
+	 * Set the memory budget for this tuple space. Once the serialized sizes of
+	 * the tuples in this tuple space add up to more than the budget, further
+	 * tuples put into this tuple space are spilled to a log file instead of
+	 * being kept on the heap. The budget applies to tuples put after it is
+	 * set. The serialized size of a tuple is only an estimate of the heap
+	 * space the tuple occupies.
+	 * <P>
+	 * If not set, the default is no budget; all tuples are kept on the heap.
+	 *
+	 * @param  bytes  Memory budget (bytes), or &le; 0 for no budget.
+	 */
+	public void budget
+		(long bytes)
+		{
+		this.budget = Math.max (bytes, 0L);
+		}
+
+	/**
+	 * Get the memory budget for this tuple space.
+	 *
+	 * @return  Memory budget (bytes), or 0 if no budget.
+	 */
+	public long budget()
+		{
+		return this.budget;
+		}
+
+	/**
+	 * Returns the family of the given matching class. The family is the
+	 * superclass of the matching class (or the matching class itself) that
+	 * directly extends class {@linkplain Tuple Tuple}. A template can only
+	 * match tuples whose classes are in its matching class's family.
+	 *
+	 * @param  matchClass  Matching class.
+	 *
+	 * @return  Family, or null if the matching class is not a proper subclass
+	 *          of class Tuple, in which case a template can match tuples of any
+	 *          family.
+	 */
+	public static Class<?> family
+		(Class<?> matchClass)
+		{
+		if (matchClass == Tuple.class ||
+				! Tuple.class.isAssignableFrom (matchClass))
+			return null;
+		return stripeKey (matchClass);
+		}
+
+// Hidden operations.
+
+	/**
+	 * Returns the key of the stripe containing tuples of the given class.
+	 *
+	 * @param  type  Tuple class.
+	 *
+	 * @return  Stripe key.
+	 */
+	private static Class<?> stripeKey
+		(Class<?> type)
+		{
+		while (type != Tuple.class && type.getSuperclass() != Tuple.class)
+			type = type.getSuperclass();
+		return type;
+		}
+
+	/**
+	 * Returns the stripe with the given key, creating it if necessary.
+	 *
+	 * @param  key  Stripe key.
+	 *
+	 * @return  Stripe.
+	 */
+	private Stripe stripe
+		(Class<?> key)
+		{
+		Stripe stripe = stripes.get (key);
+		if (stripe == null)
+			{
+			lock.lock();
+			stripe = stripes.get (key);
+			if (stripe == null)
+				{
+				Stripe[] oldStripes = allStripes;
+				stripe = new Stripe (oldStripes.length);
+				Stripe[] newStripes = Arrays.copyOf
+					(oldStripes, oldStripes.length + 1);
+				newStripes[oldStripes.length] = stripe;
+				stripes.put (key, stripe);
+				allStripes = newStripes;
+				}
+			lock.unlock();
+			}
+		return stripe;
+		}
+
+	/**
+	 * Add the given tuple to the given stripe. The stripe must be locked.
+	 *
+	 * @param  stripe  Stripe.
+	 * @param  tuple   Tuple.
+	 */
+	private void add
+		(Stripe stripe,
+		 Tuple tuple)
+		{
+		Class<?> type = tuple.getClass();
+		Bucket bucket = stripe.buckets.get (type);
+		if (bucket == null)
+			{
+			bucket = new Bucket (stripe, type);
+			stripe.buckets.put (type, bucket);
+			}
+		TupleRef ref = new TupleRef (tuple, nextSeq.getAndIncrement(), bucket);
+		long budget = this.budget;
+		if (budget > 0L)
+			spillIfOverBudget (ref, budget);
+		bucket.add (ref);
+		}
+
+	/**
+	 * Count the given new tuple reference against the memory budget, or spill
+	 * its tuple if the budget would be exceeded.
+	 *
+	 * @param  ref     Tuple reference.
+	 * @param  budget  Memory budget (bytes).
+	 *
+	 * @exception  IllegalStateException
+	 *     (unchecked exception) Thrown if the tuple could not be spilled.
+	 */
+	private void spillIfOverBudget
+		(TupleRef ref,
+		 long budget)
+		{
+		try
+			{
+			ByteArrayOutputStream bytes = serialize (ref.tuple);
+			int size = bytes.size();
+			if (heapBytes.get() + size <= budget)
+				{
+				heapBytes.addAndGet (size);
+				ref.size = size;
+				}
+			else
+				{
+				synchronized (this)
+					{
+					if (spillLog == null)
+						spillLog = new SpillLog();
+					ref.spillPos = spillLog.append (bytes.toByteArray(), size);
+					}
+				ref.spillLen = size;
+				ref.spilled = new WeakReference<Tuple> (ref.tuple);
+				ref.tuple = null;
+				}
+			}
+		catch (IOException exc)
+			{
+			throw new IllegalStateException
+				("TupleSpace.putTuple(): Cannot spill tuple", exc);
+			}
+		}
+
+	/**
+	 * Serialize the given tuple.
+	 *
+	 * @param  tuple  Tuple.
+	 *
+	 * @return  Byte array output stream containing the serialized tuple.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private static ByteArrayOutputStream serialize
+		(Tuple tuple)
+		throws IOException
+		{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutStream out = new OutStream (bytes, 512);
+		tuple.writeOut (out);
+		out.flush();
+		return bytes;
+		}
+
+	/**
+	 * Returns the serialized size of the given tuple, for estimating the size
+	 * of tuples whose sizes are not known.
+	 *
+	 * @param  tuple  Tuple.
+	 *
+	 * @return  Serialized size (bytes), or 0 if the tuple could not be
+	 *          serialized.
+	 */
+	private static int sampleSize
+		(Tuple tuple)
+		{
+		try
+			{
+			return serialize (tuple) .size();
+			}
+		catch (Exception exc)
+			{
+			return 0;
+			}
+		}
+
+	/**
+	 * Returns the serialized size of the tuple the given tuple reference
+	 * refers to, if known.
+	 *
+	 * @param  ref  Tuple reference.
+	 *
+	 * @return  Serialized size (bytes), or 0 if not known.
+	 */
+	private static int knownSize
+		(TupleRef ref)
+		{
+		return ref.spillPos != -1L ? ref.spillLen : ref.size;
+		}
+
+	/**
+	 * Returns the tuple the given tuple reference refers to, reading it back
+	 * from the spill log if necessary. The tuple is not kept on the heap.
+	 *
+	 * @param  ref  Tuple reference.
+	 *
+	 * @return  Tuple.
+	 *
+	 * @exception  IllegalStateException
+	 *     (unchecked exception) Thrown if the tuple could not be read back.
+	 */
+	private Tuple peek
+		(TupleRef ref)
+		{
+		Tuple tuple = ref.tuple;
+		if (tuple == null)
+			tuple = ref.spilled.get();
+		if (tuple == null)
+			{
+			byte[] buf;
+			synchronized (this)
+				{
+				buf = spillLog.read (ref.spillPos, ref.spillLen);
+				}
+			try
+				{
+				Bucket bucket = ref.bucket;
+				if (bucket.ctor == null)
+					{
+					bucket.ctor = bucket.type.getDeclaredConstructor();
+					bucket.ctor.setAccessible (true);
+					}
+				tuple = (Tuple) bucket.ctor.newInstance();
+				tuple.readIn (new InStream (new ByteArrayInputStream (buf)));
+				}
+			catch (Exception exc)
+				{
+				throw new IllegalStateException
+					("TupleSpace: Cannot read back spilled tuple", exc);
+				}
+			ref.spilled = new WeakReference<Tuple> (tuple);
+			}
+		return tuple;
+		}
+
+	/**
+	 * Release the memory budget or the spill log record used by the given
+	 * tuple reference, which has been removed from tuple space.
+	 *
+	 * @param  ref  Tuple reference.
+	 */
+	private void release
+		(TupleRef ref)
+		{
+		if (ref.spillPos != -1L)
+			synchronized (this)
+				{
+				spillLog.release (ref.spillPos);
+				}
+		else if (ref.size > 0)
+			heapBytes.addAndGet (-ref.size);
+		}
+
+	/**
+	 * Lock the stripes with the given keys, creating them if necessary.
+	 *
+	 * @param  keys  Stripe keys; may contain duplicates.
+	 *
+	 * @return  Distinct stripes, in order of index.
+	 */
+	private Stripe[] lockStripes
+		(Class<?>[] keys)
+		{
+		Stripe[] covered = new Stripe [keys.length];
+		int n = 0;
+		for (Class<?> key : keys)
+			{
+			Stripe stripe = stripe (key);
+			boolean found = false;
+			for (int i = 0; ! found && i < n; ++ i)
+				found = covered[i] == stripe;
+			if (! found)
+				covered[n++] = stripe;
+			}
+		if (n < covered.length)
+			covered = Arrays.copyOf (covered, n);
+		Arrays.sort (covered, BY_INDEX);
+		for (Stripe stripe : covered)
+			stripe.lock.lock();
+		return covered;
+		}
+
+	/**
+	 * Lock all of tuple space.
+	 *
+	 * @return  All stripes, in order of index.
+	 */
+	private Stripe[] lockAll()
 		{
 		lock.lock();
-		tupleList.clear();
-		lock.unlock();
+		Stripe[] covered = allStripes;
+		for (Stripe stripe : covered)
+			stripe.lock.lock();
+		return covered;
+		}
+
+	/**
+	 * Unlock the given stripes, locked in order of index.
+	 *
+	 * @param  covered  Stripes.
+	 * @param  all      True if all of tuple space was locked.
+	 */
+	private void unlock
+		(Stripe[] covered,
+		 boolean all)
+		{
+		for (int i = covered.length - 1; i >= 0; -- i)
+			covered[i].lock.unlock();
+		if (all)
+			lock.unlock();
+		}
+
+	/**
+	 * Unlock all of tuple space.
+	 *
+	 * @param  covered  All stripes, as returned by <TT>lockAll()</TT>.
+	 */
+	private void unlockAll
+		(Stripe[] covered)
+		{
+		unlock (covered, true);
+		}
+
+	/**
+	 * Returns a list of the tuple references in the given stripes, in order of
+	 * sequence number.
+	 *
+	 * @param  stripes  Stripes.
+	 *
+	 * @return  List of tuple references.
+	 */
+	private static ArrayList<TupleRef> sortedRefs
+		(Stripe[] stripes)
+		{
+		ArrayList<TupleRef> list = new ArrayList<TupleRef>();
+		for (Stripe stripe : stripes)
+			for (Bucket bucket : stripe.buckets.values())
+				list.addAll (bucket.all);
+		Collections.sort (list, BY_SEQ);
+		return list;
 		}
 
 // Transaction class.
@@ -185,13 +938,17 @@ public class TupleSpace
 	 * <OL TYPE=1>
 	 * <P><LI>
 	 * Create a transaction by calling the {@link TupleSpace#getTransaction()
-	 * getTransaction()} method on the {@linkplain TupleSpace TupleSpace}
-	 * object. At this point the tuple space object becomes locked.
-	 * <P><LI>
-	 * Call the transaction's {@link #iterator() iterator()} method to get
-	 * an iterator for scanning the references to tuples in tuple space.
+	 * getTransaction()} method or the {@link
+	 * TupleSpace#getTransaction(Class[]) getTransaction(Class...)} method on
+	 * the {@linkplain TupleSpace TupleSpace} object. At this point the tuple
+	 * space object, or the stripes of it that the transaction covers, become
+	 * locked.
 	 * <P><LI>
-	 * Use the iterator's methods to scan the tuples.
+	 * Call the transaction's {@link #find(Tuple) find()} method to find the
+	 * reference to a tuple that matches a template. Alternatively, call the
+	 * transaction's {@link #iterator() iterator()} method to get an iterator
+	 * for scanning the references to tuples in tuple space, and use the
+	 * iterator's methods to scan the tuples.
 	 * <P><LI>
 	 * To remove a certain tuple from tuple space, call the transaction's {@link
 	 * #remove(TupleSpace.TupleRef) remove()} method. This <I>tentatively</I>
@@ -202,7 +959,7 @@ public class TupleSpace
 	 * {@link #restore(TupleSpace.TupleRef) restore()} method. This
 	 * <I>tentatively</I> restores the tuple.
 	 * <P><LI>
-	 * Steps 2, 3, 4, and 5 may be repeated as many times as necessary.
+	 * Steps 2, 3, and 4 may be repeated as many times as necessary.
 	 * <P><LI>
 	 * To <I>permanently</I> accept all tentative changes made during the
 	 * transaction, call the transaction's {@link #commit() commit()} method. At
@@ -224,7 +981,7 @@ public class TupleSpace
 	 * methods until the transaction is committed or aborted.
 	 *
 	 * @author  Alan Kaminsky
-	 * @version 30-Jun-2014
+	 * @version 18-Mar-2015
 	 */
 	public class Transaction
 		{
@@ -232,15 +989,37 @@ public class TupleSpace
 		private LinkedHashSet<TupleRef> removedTupleRefs =
 			new LinkedHashSet<TupleRef>();
 
-		private Transaction()
+		// Spilled tuple references whose tuples were read back during this
+		// transaction; the tuples are dropped from the heap again unless
+		// removed.
+		private ArrayList<TupleRef> pagedIn = new ArrayList<TupleRef>();
+
+		// Stripes covered by this transaction, in order of index, and whether
+		// this transaction covers all of tuple space.
+		private Stripe[] covered;
+		private boolean all;
+
+		private Transaction
+			(Stripe[] covered,
+			 boolean all)
 			{
+			this.covered = covered;
+			this.all = all;
 			}
 
 		/**
 		 * Get an iterator for scanning the references to tuples in tuple space.
+		 * The tuple references are in the order the tuples were put into tuple
+		 * space. If this transaction does not cover all of tuple space, only
+		 * tuples in the stripes this transaction covers are scanned.
 		 * <P>
 		 * <I>Note:</I> The returned iterator's <TT>remove()</TT> method is not
 		 * supported.
+		 * <P>
+		 * <I>Note:</I> Each spilled tuple the iterator returns is read back
+		 * onto the heap and stays there until this transaction is committed or
+		 * aborted; scanning a large spilled tuple space with the iterator can
+		 * exhaust the heap.
 		 *
 		 * @return  Iterator.
 		 *
@@ -254,7 +1033,152 @@ public class TupleSpace
 				throw new IllegalStateException
 					("TupleSpace.Transaction.iterator(): Transaction not in progress");
 
-			return tupleList.iterator();
+			final Iterator<TupleRef> iter = sortedRefs (covered) .iterator();
+			return new Iterator<TupleRef>()
+				{
+				public boolean hasNext()
+					{
+					return iter.hasNext();
+					}
+				public TupleRef next()
+					{
+					return pageIn (iter.next());
+					}
+				public void remove()
+					{
+					throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+		/**
+		 * Find a reference to a tuple in tuple space that matches the given
+		 * template, as determined by the template's {@link Tuple#match(Tuple)
+		 * match()} method. Tuples that were tentatively removed during this
+		 * transaction are not considered. If more than one tuple matches, the
+		 * reference to the tuple that was put into tuple space earliest is
+		 * returned.
+		 * <P>
+		 * Only tuples of the template's {@linkplain Tuple#matchClass()
+		 * matching class} or a subclass thereof are compared with the
+		 * template. If the template has an {@linkplain Tuple#indexKey() index
+		 * key}, only tuples with the same index key or no index key are
+		 * compared with the template.
+		 * <P>
+		 * If this transaction does not cover all of tuple space, the template's
+		 * matching class must be in the family of one of the classes given when
+		 * this transaction was created.
+		 *
+		 * @param  template  Template.
+		 *
+		 * @return  Tuple reference, or null if there is no matching tuple.
+		 *
+		 * @exception  IllegalStateException
+		 *     (unchecked exception) Thrown if this transaction is not in
+		 *     progress.
+		 * @exception  NullPointerException
+		 *     (unchecked exception) Thrown if <TT>template</TT> is null.
+		 * @exception  IllegalArgumentException
+		 *     (unchecked exception) Thrown if this transaction does not cover
+		 *     the template's matching class's family.
+		 */
+		public TupleRef find
+			(Tuple template)
+			{
+			if (! inProgress)
+				throw new IllegalStateException
+					("TupleSpace.Transaction.find(): Transaction not in progress");
+			if (template == null)
+				throw new NullPointerException
+					("TupleSpace.Transaction.find(): template is null");
+
+			Class<?> matchClass = template.matchClass();
+			Class<?> family = family (matchClass);
+			TupleRef found = null;
+			if (family == null)
+				{
+				if (! all)
+					throw new IllegalArgumentException
+						("TupleSpace.Transaction.find(): Template not covered");
+				for (Stripe stripe : covered)
+					found = find (stripe, template, matchClass, found);
+				}
+			else
+				{
+				Stripe stripe = stripes.get (family);
+				if (! covers (stripe))
+					throw new IllegalArgumentException
+						("TupleSpace.Transaction.find(): Template not covered");
+				if (stripe != null)
+					found = find (stripe, template, matchClass, found);
+				}
+			return found == null ? null : pageIn (found);
+			}
+
+		// Make sure the given tuple reference's tuple is on the heap until
+		// this transaction ends.
+		private TupleRef pageIn
+			(TupleRef ref)
+			{
+			if (ref.tuple == null)
+				{
+				ref.tuple = peek (ref);
+				pagedIn.add (ref);
+				}
+			return ref;
+			}
+
+		// Drop the tuples read back during this transaction from the heap
+		// again, except those of the given tuple references.
+		private void pageOut
+			(LinkedHashSet<TupleRef> keep)
+			{
+			for (TupleRef ref : pagedIn)
+				if (! keep.contains (ref))
+					ref.tuple = null;
+			pagedIn.clear();
+			}
+
+		// Returns the earlier of the given tuple reference and the earliest
+		// tuple reference in the given stripe that matches the given template.
+		private TupleRef find
+			(Stripe stripe,
+			 Tuple template,
+			 Class<?> matchClass,
+			 TupleRef found)
+			{
+			for (Bucket bucket : stripe.buckets.values())
+				if (matchClass.isAssignableFrom (bucket.type))
+					{
+					TupleRef ref = bucket.find (template);
+					if (ref != null && (found == null || ref.seq < found.seq))
+						found = ref;
+					}
+			return found;
+			}
+
+		// Determine whether this transaction covers the given stripe.
+		private boolean covers
+			(Stripe stripe)
+			{
+			if (all) return true;
+			for (Stripe s : covered)
+				if (s == stripe) return true;
+			return false;
+			}
+
+		// Determine whether the given tuple reference is in the part of tuple
+		// space this transaction covers.
+		private boolean contains
+			(TupleRef ref)
+			{
+			return ref.bucket.all.contains (ref) && covers (ref.bucket.stripe);
+			}
+
+		// Unlock the part of tuple space this transaction covers.
+		private void unlock()
+			{
+			TupleSpace.this.unlock (covered, all);
 			}
 
 		/**
@@ -281,7 +1205,7 @@ public class TupleSpace
 				throw new NullPointerException
 					("TupleSpace.Transaction.remove(): ref is null");
 
-			if (! tupleList.contains (ref))
+			if (! contains (ref))
 				throw new IllegalArgumentException
 					("TupleSpace.Transaction.remove(): ref not in tuple space");
 
@@ -313,7 +1237,7 @@ public class TupleSpace
 				throw new NullPointerException
 					("TupleSpace.Transaction.restore(): ref is null");
 
-			if (! tupleList.contains (ref))
+			if (! contains (ref))
 				throw new IllegalArgumentException
 					("TupleSpace.Transaction.restore(): ref not in tuple space");
 
@@ -335,10 +1259,14 @@ public class TupleSpace
 				throw new IllegalStateException
 					("TupleSpace.Transaction.commit(): Transaction not in progress");
 			for (TupleRef ref : removedTupleRefs)
-				tupleList.remove (ref);
+				{
+				ref.bucket.remove (ref);
+				release (ref);
+				}
+			pageOut (removedTupleRefs);
 
 			inProgress = false;
-			lock.unlock();
+			unlock();
 			}
 
 		/**
@@ -358,9 +1286,10 @@ public class TupleSpace
 			for (TupleRef ref : removedTupleRefs)
 				ref.removed = false;
 			removedTupleRefs.clear();
+			pageOut (removedTupleRefs);
 
 			inProgress = false;
-			lock.unlock();
+			unlock();
 			}
 
 		/**
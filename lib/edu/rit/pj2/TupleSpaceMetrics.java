@@ -0,0 +1,531 @@
+//******************************************************************************
+//
+// File:    TupleSpaceMetrics.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.TupleSpaceMetrics
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import edu.rit.io.Streamable;
+import edu.rit.util.AList;
+import java.io.IOException;
+
+/**
+ * Class TupleSpaceMetrics is a snapshot of a {@linkplain Job Job}'s tuple
+ * space, for finding out why a job stalls. It records:
+ * <UL>
+ * <P><LI>
+ * For each tuple class, the number of tuples in tuple space and their
+ * estimated size; the number of tuples put and taken, and the rates at which
+ * they were put and taken since the previous snapshot; and the number of
+ * times a template was compared with a tuple of the class (match attempts)
+ * versus the number of searches that found a matching tuple (match hits).
+ * <P><LI>
+ * A histogram of the times blocked tuple take requests waited before they
+ * were satisfied or discarded.
+ * <P><LI>
+ * The tuple take requests that have been blocked longest.
+ * </UL>
+ * <P>
+ * A snapshot is obtained by calling the job's {@link Job#tupleSpaceMetrics()
+ * tupleSpaceMetrics()} method. It is also available through JMX (see interface
+ * {@linkplain JobMXBean JobMXBean}) and on the job's web page in the
+ * {@linkplain edu.rit.pj2.tracker.Tracker Tracker}'s web interface. Tuples
+ * kept on {@linkplain edu.rit.pj2.tracker.TupleServer TupleServer}s are not
+ * included.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class TupleSpaceMetrics
+	implements Streamable
+	{
+
+// Exported constants.
+
+	/**
+	 * Number of bins in the wait time histogram. Bin 0 counts waits shorter
+	 * than 1 msec; bin <I>i</I>, 1 &le; <I>i</I> &lt; <TT>WAIT_BINS</TT>&minus;1,
+	 * counts waits of at least 2<SUP><I>i</I>&minus;1</SUP> and less than
+	 * 2<SUP><I>i</I></SUP> msec; the last bin counts all longer waits.
+	 */
+	public static final int WAIT_BINS = 20;
+
+	/**
+	 * Maximum number of longest waiting tuple take requests recorded.
+	 */
+	public static final int MAX_WAITERS = 10;
+
+// Exported helper classes.
+
+	/**
+	 * Class TupleSpaceMetrics.TupleClass records metrics for one tuple class.
+	 *
+	 * @author  Alan Kaminsky
+	 * @version 18-Mar-2015
+	 */
+	public static class TupleClass
+		implements Streamable
+		{
+		String name;
+		long count;
+		long bytes;
+		long puts;
+		long takes;
+		double putRate;
+		double takeRate;
+		long matchAttempts;
+		long matchHits;
+
+		/**
+		 * Construct a new tuple class metrics object.
+		 */
+		public TupleClass()
+			{
+			}
+
+		/**
+		 * Returns the fully qualified name of the tuple class.
+		 *
+		 * @return  Class name.
+		 */
+		public String getName()
+			{
+			return name;
+			}
+
+		/**
+		 * Returns the number of tuples of the class in tuple space.
+		 *
+		 * @return  Live count.
+		 */
+		public long getCount()
+			{
+			return count;
+			}
+
+		/**
+		 * Returns the estimated size of the tuples of the class in tuple space.
+		 * The size of a tuple is estimated as the size of its serialized form.
+		 *
+		 * @return  Size (bytes).
+		 */
+		public long getBytes()
+			{
+			return bytes;
+			}
+
+		/**
+		 * Returns the number of tuples of the class put into tuple space.
+		 *
+		 * @return  Put count.
+		 */
+		public long getPuts()
+			{
+			return puts;
+			}
+
+		/**
+		 * Returns the number of tuples of the class taken out of tuple space.
+		 *
+		 * @return  Take count.
+		 */
+		public long getTakes()
+			{
+			return takes;
+			}
+
+		/**
+		 * Returns the rate at which tuples of the class were put into tuple
+		 * space since the previous snapshot.
+		 *
+		 * @return  Put rate (tuples/sec).
+		 */
+		public double getPutRate()
+			{
+			return putRate;
+			}
+
+		/**
+		 * Returns the rate at which tuples of the class were taken out of tuple
+		 * space since the previous snapshot.
+		 *
+		 * @return  Take rate (tuples/sec).
+		 */
+		public double getTakeRate()
+			{
+			return takeRate;
+			}
+
+		/**
+		 * Returns the number of times a template was compared with a tuple of
+		 * the class.
+		 *
+		 * @return  Match attempts.
+		 */
+		public long getMatchAttempts()
+			{
+			return matchAttempts;
+			}
+
+		/**
+		 * Returns the number of searches that found a matching tuple of the
+		 * class.
+		 *
+		 * @return  Match hits.
+		 */
+		public long getMatchHits()
+			{
+			return matchHits;
+			}
+
+		/**
+		 * Write this object to the given out stream.
+		 *
+		 * @param  out  Out stream.
+		 *
+		 * @exception  IOException
+		 *     Thrown if an I/O error occurred.
+		 */
+		public void writeOut
+			(OutStream out)
+			throws IOException
+			{
+			out.writeString (name);
+			out.writeLong (count);
+			out.writeLong (bytes);
+			out.writeLong (puts);
+			out.writeLong (takes);
+			out.writeDouble (putRate);
+			out.writeDouble (takeRate);
+			out.writeLong (matchAttempts);
+			out.writeLong (matchHits);
+			}
+
+		/**
+		 * Read this object from the given in stream.
+		 *
+		 * @param  in  In stream.
+		 *
+		 * @exception  IOException
+		 *     Thrown if an I/O error occurred.
+		 */
+		public void readIn
+			(InStream in)
+			throws IOException
+			{
+			name = in.readString();
+			count = in.readLong();
+			bytes = in.readLong();
+			puts = in.readLong();
+			takes = in.readLong();
+			putRate = in.readDouble();
+			takeRate = in.readDouble();
+			matchAttempts = in.readLong();
+			matchHits = in.readLong();
+			}
+		}
+
+	/**
+	 * Class TupleSpaceMetrics.Waiter records a blocked tuple take request.
+	 *
+	 * @author  Alan Kaminsky
+	 * @version 18-Mar-2015
+	 */
+	public static class Waiter
+		implements Streamable
+		{
+		long taskID;
+		long requestID;
+		String template;
+		long waitTime;
+
+		/**
+		 * Construct a new waiter object.
+		 */
+		public Waiter()
+			{
+			}
+
+		/**
+		 * Returns the ID of the task that made the request.
+		 *
+		 * @return  Task ID.
+		 */
+		public long getTaskID()
+			{
+			return taskID;
+			}
+
+		/**
+		 * Returns the request ID.
+		 *
+		 * @return  Request ID.
+		 */
+		public long getRequestID()
+			{
+			return requestID;
+			}
+
+		/**
+		 * Returns the fully qualified name of the request's template's class.
+		 *
+		 * @return  Template class name.
+		 */
+		public String getTemplate()
+			{
+			return template;
+			}
+
+		/**
+		 * Returns how long the request has been blocked.
+		 *
+		 * @return  Wait time (msec).
+		 */
+		public long getWaitTime()
+			{
+			return waitTime;
+			}
+
+		/**
+		 * Write this object to the given out stream.
+		 *
+		 * @param  out  Out stream.
+		 *
+		 * @exception  IOException
+		 *     Thrown if an I/O error occurred.
+		 */
+		public void writeOut
+			(OutStream out)
+			throws IOException
+			{
+			out.writeLong (taskID);
+			out.writeLong (requestID);
+			out.writeString (template);
+			out.writeLong (waitTime);
+			}
+
+		/**
+		 * Read this object from the given in stream.
+		 *
+		 * @param  in  In stream.
+		 *
+		 * @exception  IOException
+		 *     Thrown if an I/O error occurred.
+		 */
+		public void readIn
+			(InStream in)
+			throws IOException
+			{
+			taskID = in.readLong();
+			requestID = in.readLong();
+			template = in.readString();
+			waitTime = in.readLong();
+			}
+		}
+
+// Hidden data members.
+
+	long time;
+	AList<TupleClass> classes = new AList<TupleClass>();
+	long[] waitCounts = new long [WAIT_BINS];
+	int blockedTakes;
+	AList<Waiter> waiters = new AList<Waiter>();
+
+// Exported constructors.
+
+	/**
+	 * Construct a new tuple space metrics object.
+	 */
+	public TupleSpaceMetrics()
+		{
+		}
+
+// Exported operations.
+
+	/**
+	 * Returns the time at which this snapshot was taken.
+	 *
+	 * @return  Time (milliseconds since the epoch).
+	 */
+	public long getTime()
+		{
+		return time;
+		}
+
+	/**
+	 * Returns the metrics for each tuple class that has been put into tuple
+	 * space, in no particular order.
+	 *
+	 * @return  Array of tuple class metrics.
+	 */
+	public TupleClass[] getTupleClasses()
+		{
+		return classes.toArray (new TupleClass [classes.size()]);
+		}
+
+	/**
+	 * Returns the total number of tuples in tuple space.
+	 *
+	 * @return  Live count.
+	 */
+	public long getTupleCount()
+		{
+		long count = 0L;
+		for (int i = 0; i < classes.size(); ++ i)
+			count += classes.get(i).count;
+		return count;
+		}
+
+	/**
+	 * Returns the estimated total size of the tuples in tuple space.
+	 *
+	 * @return  Size (bytes).
+	 */
+	public long getTupleBytes()
+		{
+		long bytes = 0L;
+		for (int i = 0; i < classes.size(); ++ i)
+			bytes += classes.get(i).bytes;
+		return bytes;
+		}
+
+	/**
+	 * Returns the wait time histogram of blocked tuple take requests that
+	 * were satisfied or discarded. See {@link #WAIT_BINS WAIT_BINS} for the
+	 * bins.
+	 *
+	 * @return  Array of counts, indexed by bin.
+	 */
+	public long[] getWaitCounts()
+		{
+		return waitCounts.clone();
+		}
+
+	/**
+	 * Returns the number of tuple take requests that are blocked.
+	 *
+	 * @return  Number of blocked requests.
+	 */
+	public int getBlockedTakes()
+		{
+		return blockedTakes;
+		}
+
+	/**
+	 * Returns the tuple take requests that have been blocked longest, up to
+	 * {@link #MAX_WAITERS MAX_WAITERS} of them, longest first.
+	 *
+	 * @return  Array of waiters.
+	 */
+	public Waiter[] getLongestWaiters()
+		{
+		return waiters.toArray (new Waiter [waiters.size()]);
+		}
+
+	/**
+	 * Returns the wait time histogram bin for the given wait time.
+	 *
+	 * @param  waitTime  Wait time (msec).
+	 *
+	 * @return  Bin index.
+	 */
+	public static int waitBin
+		(long waitTime)
+		{
+		return Math.min (64 - Long.numberOfLeadingZeros (Math.max (waitTime, 0L)),
+			WAIT_BINS - 1);
+		}
+
+	/**
+	 * Write this object to the given out stream.
+	 *
+	 * @param  out  Out stream.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeOut
+		(OutStream out)
+		throws IOException
+		{
+		out.writeLong (time);
+		out.writeFields (classes);
+		out.writeLongArray (waitCounts);
+		out.writeInt (blockedTakes);
+		out.writeFields (waiters);
+		}
+
+	/**
+	 * Read this object from the given in stream.
+	 *
+	 * @param  in  In stream.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void readIn
+		(InStream in)
+		throws IOException
+		{
+		time = in.readLong();
+		classes = in.readFields (new AList<TupleClass>());
+		waitCounts = in.readLongArray();
+		blockedTakes = in.readInt();
+		waiters = in.readFields (new AList<Waiter>());
+		}
+
+// Hidden operations.
+
+	/**
+	 * Compute the put and take rates of each tuple class since the given
+	 * previous snapshot.
+	 *
+	 * @param  prev  Previous snapshot, or null if none.
+	 */
+	void computeRates
+		(TupleSpaceMetrics prev)
+		{
+		if (prev == null || time <= prev.time) return;
+		double secs = (time - prev.time)/1000.0;
+		for (int i = 0; i < classes.size(); ++ i)
+			{
+			TupleClass tc = classes.get (i);
+			long puts = 0L, takes = 0L;
+			for (int j = 0; j < prev.classes.size(); ++ j)
+				{
+				TupleClass p = prev.classes.get (j);
+				if (p.name.equals (tc.name))
+					{
+					puts = p.puts;
+					takes = p.takes;
+					break;
+					}
+				}
+			tc.putRate = (tc.puts - puts)/secs;
+			tc.takeRate = (tc.takes - takes)/secs;
+			}
+		}
+
+	}
@@ -0,0 +1,198 @@
+//******************************************************************************
+//
+// File:    VblCollector.java
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.VblCollector
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Class VblCollector provides a {@linkplain java.util.stream.Collector
+ * Collector} that reduces the elements of a stream into a {@linkplain Vbl}
+ * shared variable. This lets code written with the parallel reduction pattern,
+ * such as code using {@linkplain edu.rit.pj2.vbl.LongVbl.Sum LongVbl.Sum} or a
+ * {@linkplain edu.rit.pj2.vbl.HistogramVbl HistogramVbl}, consume a (possibly
+ * parallel) stream.
+ * <P>
+ * The collector follows the same pattern as a parallel statement. Each
+ * partial result container is a clone of the given shared variable, just like
+ * a thread-local copy obtained by the {@link LoopBody#threadLocal(Vbl)
+ * threadLocal()} method. Each element is accumulated into a container by the
+ * given accumulator function. Containers are combined by calling the shared
+ * variable's {@link Vbl#reduce(Vbl) reduce()} method. Finally, the result is
+ * stored back in the original shared variable with its {@link Vbl#set(Vbl)
+ * set()} method, and the original shared variable is returned.
+ * <P>
+ * For example:
+ * <PRE>
+ *     LongVbl total = new LongVbl.Sum (0);
+ *     list.parallelStream() .collect (new VblCollector&lt;Item,LongVbl&gt;
+ *         (total, (vbl, item) -&gt; vbl.item += item.size()));
+ *     System.out.printf ("Total = %d%n", total.item);</PRE>
+ * <P>
+ * As in a parallel statement, the shared variable's initial value should be
+ * the identity for its reduction operation, since every container starts out
+ * with that value.
+ *
+ * @param  <T>  Data type of the stream elements.
+ * @param  <V>  Data type of the shared variable.
+ *
+ * @see  Vbl
+ * @see  SpliteratorParallelForLoop
+ *
+ * @author  Alan Kaminsky
+ * @version 09-Mar-2015
+ */
+public class VblCollector<T,V extends Vbl>
+	implements Collector<T,V,V>
+	{
+
+// Hidden data members.
+
+	private V vbl;
+	private BiConsumer<V,T> accumulator;
+
+// Exported constructors.
+
+	/**
+	 * Construct a new shared variable collector.
+	 *
+	 * @param  vbl          Shared variable in which to store the result.
+	 * @param  accumulator  Function that accumulates one stream element into a
+	 *                      copy of the shared variable.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>vbl</TT> is null or
+	 *     <TT>accumulator</TT> is null.
+	 */
+	public VblCollector
+		(V vbl,
+		 BiConsumer<V,? super T> accumulator)
+		{
+		if (vbl == null)
+			throw new NullPointerException
+				("VblCollector(): vbl is null");
+		if (accumulator == null)
+			throw new NullPointerException
+				("VblCollector(): accumulator is null");
+		this.vbl = vbl;
+		final BiConsumer<V,? super T> acc = accumulator;
+		this.accumulator = new BiConsumer<V,T>()
+			{
+			public void accept
+				(V v,
+				 T t)
+				{
+				acc.accept (v, t);
+				}
+			};
+		}
+
+// Exported operations.
+
+	/**
+	 * Returns a function that creates a new result container, namely a clone of
+	 * the shared variable.
+	 *
+	 * @return  Supplier function.
+	 */
+	public Supplier<V> supplier()
+		{
+		return new Supplier<V>()
+			{
+			@SuppressWarnings ("unchecked")
+			public V get()
+				{
+				return (V) vbl.clone();
+				}
+			};
+		}
+
+	/**
+	 * Returns a function that accumulates one stream element into a result
+	 * container.
+	 *
+	 * @return  Accumulator function.
+	 */
+	public BiConsumer<V,T> accumulator()
+		{
+		return accumulator;
+		}
+
+	/**
+	 * Returns a function that combines two result containers by reduction.
+	 *
+	 * @return  Combiner function.
+	 */
+	public BinaryOperator<V> combiner()
+		{
+		return new BinaryOperator<V>()
+			{
+			public V apply
+				(V a,
+				 V b)
+				{
+				a.reduce (b);
+				return a;
+				}
+			};
+		}
+
+	/**
+	 * Returns a function that stores the final result container into the
+	 * shared variable and returns the shared variable.
+	 *
+	 * @return  Finisher function.
+	 */
+	public Function<V,V> finisher()
+		{
+		return new Function<V,V>()
+			{
+			public V apply
+				(V result)
+				{
+				vbl.set (result);
+				return vbl;
+				}
+			};
+		}
+
+	/**
+	 * Returns this collector's characteristics. A shared variable collector
+	 * has none.
+	 *
+	 * @return  Empty set of characteristics.
+	 */
+	public Set<Collector.Characteristics> characteristics()
+		{
+		return Collections.emptySet();
+		}
+
+	}
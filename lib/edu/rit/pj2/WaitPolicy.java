@@ -0,0 +1,148 @@
+//******************************************************************************
+//
+// File:    WaitPolicy.java
+// Package: edu.rit.pj2
+// Unit:    Enum edu.rit.pj2.WaitPolicy
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+
+package edu.rit.pj2;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+
+/**
+ * Enum WaitPolicy specifies how the threads in a parallel team wait for each
+ * other. A team thread waits when it is idle between parallel statements, when
+ * it waits for its child threads to finish a parallel statement, and when the
+ * task's main thread waits for the team to finish a parallel statement.
+ * <P>
+ * Parking a waiting thread frees up its core for other work, but waking a
+ * parked thread takes several microseconds. Spinning keeps the core busy, but a
+ * spinning thread notices at once when it may proceed. A task that executes
+ * many short parallel statements in a row may run faster with a spinning wait
+ * policy; a task that executes long parallel statements, or shares its cores
+ * with other tasks, should use the default {@link #park park} wait policy.
+ * Spinning pays off only if every team thread, as well as the task's main
+ * thread, has a core to itself; otherwise a spinning thread takes the core
+ * away from the very thread it is waiting for.
+ * <P>
+ * Under every wait policy, a thread that has waited long enough eventually
+ * parks. Thus, the threads of an idle team do not occupy cores indefinitely.
+ *
+ * @see  Task#waitPolicy(WaitPolicy)
+ *
+ * @author  Alan Kaminsky
+ * @version 11-Mar-2015
+ */
+public enum WaitPolicy
+	{
+
+// Exported enumerals.
+
+	/**
+	 * Park wait policy. A waiting thread parks immediately and is unparked when
+	 * it may proceed. This is the default wait policy.
+	 */
+	park (0, 0),
+
+	/**
+	 * Spin wait policy. A waiting thread busy-waits for a while, then parks if
+	 * it still may not proceed.
+	 */
+	spin (1 << 16, 0),
+
+	/**
+	 * Spin-then-yield wait policy. A waiting thread busy-waits for a short
+	 * while, then repeatedly yields the core to other threads for a while, then
+	 * parks if it still may not proceed.
+	 */
+	spinYield (1 << 12, 1 << 10);
+
+// Hidden data members.
+
+	private static WaitPolicy[] enumerals = values();
+
+	// Number of busy-wait iterations before yielding.
+	final int spins;
+
+	// Number of yields before parking.
+	final int yields;
+
+// Hidden constructors.
+
+	/**
+	 * Construct a new WaitPolicy enumeral.
+	 *
+	 * @param  spins   Number of busy-wait iterations before yielding.
+	 * @param  yields  Number of yields before parking.
+	 */
+	private WaitPolicy
+		(int spins,
+		 int yields)
+		{
+		this.spins = spins;
+		this.yields = yields;
+		}
+
+// Exported operations.
+
+	/**
+	 * Write a WaitPolicy enumeral to the given out stream.
+	 *
+	 * @param  policy  WaitPolicy enumeral, or null.
+	 * @param  out     Object output stream.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public static void writeOut
+		(WaitPolicy policy,
+		 OutStream out)
+		throws IOException
+		{
+		out.writeInt (policy == null ? -1 : policy.ordinal());
+		}
+
+	/**
+	 * Read a WaitPolicy enumeral from the given in stream.
+	 *
+	 * @param  in  Object input stream.
+	 *
+	 * @return  WaitPolicy enumeral.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public static WaitPolicy readIn
+		(InStream in)
+		throws IOException
+		{
+		int ordinal = in.readInt();
+		if (-1 > ordinal || ordinal >= enumerals.length)
+			throw new InvalidObjectException (String.format
+				("WaitPolicy.read(): ordinal = %d invalid", ordinal));
+		return ordinal == -1 ? null : enumerals[ordinal];
+		}
+
+	}
@@ -27,15 +27,32 @@ package edu.rit.pj2;
 
 import edu.rit.pj2.tracker.TaskProperties;
 import java.io.IOException;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Class WorkerIntParallelForLoop provides the worker portion of a master-worker
  * cluster parallel for loop with a loop index of type <TT>int</TT>.
+ * <P>
+ * The worker keeps the next master chunk prefetched: while the team threads
+ * perform the iterations of one chunk, a non-blocking take for the next chunk
+ * is already under way. Each master chunk is performed in its own frame, which
+ * holds that chunk's schedule state. A team thread that finishes its share of
+ * one chunk moves on to the next chunk's frame without waiting for the other
+ * team threads, up to {@link #LOOKAHEAD} chunks ahead of the slowest team
+ * thread.
+ * <P>
+ * If the master uses a {@link Schedule#workStealing workStealing} schedule,
+ * the worker's first chunk is a {@linkplain StealChunk StealChunk} holding the
+ * worker's whole share of the iterations, and the team threads split each
+ * chunk with a work stealing schedule. When every team thread has finished
+ * the worker's iterations, the worker asks the job's {@linkplain StealArbiter
+ * StealArbiter} for more, and the next chunk comes from another worker. Until
+ * then, between local chunks, the team threads answer the arbiter's requests
+ * to give iterations away.
  *
  * @author  Alan Kaminsky
- * @version 20-Jun-2014
+ * @version 18-Mar-2015
  */
 class WorkerIntParallelForLoop
 	extends IntParallelForLoop
@@ -43,9 +60,34 @@ class WorkerIntParallelForLoop
 
 // Hidden data members.
 
+	// Number of master chunks a team thread may run ahead of the slowest team
+	// thread.
+	private static final int LOOKAHEAD = 1;
+
 	private Chunk template;
-	private Chunk masterChunk;
-	private CyclicBarrier barrier;
+	private CompletableFuture<Chunk> prefetch;
+
+	// Frames for the master chunks in progress. Frame k is stored at index
+	// k % frames.length.
+	private Frame[] frames = new Frame [LOOKAHEAD + 1];
+
+	// Index of the oldest frame not yet finished by all team threads.
+	private int oldest;
+
+	// Index of the next frame to be created.
+	private int created;
+
+	// True while a team thread is taking the master chunk for the next frame.
+	// The take happens outside this object's monitor, so the other team
+	// threads can still finish frames, answer steal orders, and stop the loop.
+	private boolean fetching;
+
+	// Pending order from the steal arbiter, or null if the master does not use
+	// a work stealing schedule or all the iterations have been performed.
+	private volatile CompletableFuture<StealOrder> orders;
+
+	// True if this worker has told the steal arbiter it is idle.
+	private boolean idleSent;
 
 // Hidden constructors.
 
@@ -80,35 +122,50 @@ class WorkerIntParallelForLoop
 		threads = properties.actualThreads();
 		schedule = properties.schedule();
 		chunk = schedule.actualChunk (properties.chunk());
-		nextlb = new AtomicLong();
 		this.loop = loop;
 		stop = false;
 		template = new Chunk() .rank (task.taskRank());
-		barrier = new CyclicBarrier (threads, new Runnable()
+		oldest = 0;
+		created = 0;
+		fetching = false;
+		orders = null;
+		idleSent = false;
+		try
 			{
-			public void run()
-				{
-				try
-					{
-					masterChunk = stop ? null : task.tryToTakeTuple (template);
-					if (masterChunk != null)
-						{
-						blb = masterChunk.lb();
-						bub = masterChunk.ub();
-						nextlb.set (blb);
-						}
-					}
-				catch (IOException exc)
-					{
-					throw new TerminateException (exc);
-					}
-				}
-			});
-		Team.execute (threads, this);
+			prefetch = task.tryToTakeTupleAsync (template);
+			Team.execute (threads, this);
+
+			// If the loop was stopped, tell the steal arbiter.
+			if (orders != null)
+				quit();
+			}
+		catch (CompletionException exc)
+			{
+			throw new TerminateException (exc.getCause());
+			}
+		catch (IOException exc)
+			{
+			throw new TerminateException (exc);
+			}
+		for (int i = 0; i < frames.length; ++ i)
+			frames[i] = null;
 		}
 
 // Hidden operations.
 
+	/**
+	 * Determine whether the ranks of this parallel statement are independent
+	 * of each other. The threads of a worker parallel for loop each perform
+	 * their share of every master chunk and may run only a limited number of
+	 * chunks ahead of each other, so the ranks are not independent.
+	 *
+	 * @return  False.
+	 */
+	boolean ranksIndependent()
+		{
+		return false;
+		}
+
 	/**
 	 * Execute this parallel statement.
 	 *
@@ -133,16 +190,29 @@ class WorkerIntParallelForLoop
 		// Perform one-time initialization.
 		loop.start();
 
-		// Execute a series of chunks from the master.
-		for (;;)
+		// Execute a series of chunks from the master. The loop body stops the
+		// frame it is executing; that stops the whole worker. If this thread
+		// fails, stop the whole worker so the other threads do not wait for
+		// this thread to catch up.
+		try
 			{
-			barrier.await();
-			if (masterChunk == null) break;
-			int stride = masterChunk.stride();
-			if (stride == 1)
-				schedule.iterate (this, loop, rank);
-			else
-				iterateStridedLeapfrog (loop, rank, stride);
+			Frame frame;
+			for (int k = 0; (frame = frame (k)) != null; ++ k)
+				{
+				loop.parallelForLoop = frame;
+				if (frame.stride == 1)
+					frame.schedule.iterate (frame, loop, rank);
+				else
+					frame.iterateStridedLeapfrog (loop, rank);
+				loop.parallelForLoop = this;
+				if (frame.stop) stopAll();
+				frameDone (frame);
+				}
+			}
+		catch (Throwable exc)
+			{
+			stopAll();
+			throw exc;
 			}
 
 		// Perform one-time finalization.
@@ -154,25 +224,428 @@ class WorkerIntParallelForLoop
 		}
 
 	/**
-	 * Execute this parallel for loop's iterations with a strided leapfrog
-	 * schedule.
+	 * Get the frame for the given master chunk. If the frame does not exist
+	 * yet, the prefetched master chunk is put in a new frame, and a prefetch
+	 * of the following master chunk is started. If the calling thread is too
+	 * far ahead of the slowest team thread, or another team thread is taking
+	 * the master chunk, this method blocks until the frame can be had.
+	 * <P>
+	 * The master chunk is taken without holding this object's monitor, since
+	 * the take may wait for the prefetch or for the steal arbiter's orders.
+	 *
+	 * @param  k  Index of the master chunk.
 	 *
-	 * @param  loop    Loop body.
-	 * @param  rank    Team thread rank.
-	 * @param  stride  Stride.
+	 * @return  Frame, or null if there are no more master chunks or the loop
+	 *          was stopped.
 	 */
-	void iterateStridedLeapfrog
-		(Loop loop,
-		 int rank,
-		 int stride)
-		throws Exception
+	private Frame frame
+		(int k)
+		throws InterruptedException
+		{
+		synchronized (this)
+			{
+			while (! stop &&
+					(k > oldest + LOOKAHEAD || (k == created && fetching)))
+				wait();
+			if (stop)
+				return null;
+			if (k < created)
+				return frames[k % frames.length];
+			fetching = true;
+			}
+		Chunk masterChunk = null;
+		try
+			{
+			masterChunk = nextChunk();
+			}
+		finally
+			{
+			synchronized (this)
+				{
+				frames[k % frames.length] =
+					masterChunk == null ? null : new Frame (masterChunk);
+				++ created;
+				fetching = false;
+				notifyAll();
+				}
+			}
+		return frames[k % frames.length];
+		}
+
+	/**
+	 * Take the prefetched master chunk and start prefetching the following
+	 * master chunk.
+	 *
+	 * @return  Master chunk, or null if there are no more master chunks.
+	 */
+	private Chunk nextChunk()
+		{
+		try
+			{
+			if (orders != null)
+				return nextStolenChunk();
+			Chunk masterChunk = prefetch.join();
+			if (masterChunk instanceof StealChunk)
+				{
+				// Work stealing master schedule. Further chunks come from the
+				// steal arbiter.
+				schedule = Schedule.workStealing;
+				chunk = schedule.actualChunk (properties.chunk());
+				prefetch = null;
+				orders = task.takeTupleAsync
+					(StealOrder.template (task.taskRank()));
+				return masterChunk;
+				}
+			prefetch = masterChunk == null ? null :
+				task.tryToTakeTupleAsync (template);
+			return masterChunk;
+			}
+		catch (CompletionException exc)
+			{
+			throw new TerminateException (exc.getCause());
+			}
+		catch (IOException exc)
+			{
+			throw new TerminateException (exc);
+			}
+		}
+
+	/**
+	 * Tell the steal arbiter this worker is idle, if not told already, then
+	 * wait for the arbiter's orders. Meanwhile, give nothing away if asked.
+	 * The worker is not idle until the other team threads have finished every
+	 * frame in progress; until then, they answer the arbiter's requests to
+	 * give their remaining iterations away.
+	 *
+	 * @return  Chunk of iterations stolen from another worker, or null if all
+	 *          the iterations have been performed or the loop was stopped.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private Chunk nextStolenChunk()
+		throws IOException
+		{
+		int rank = task.taskRank();
+		if (! idleSent)
+			{
+			if (! awaitFramesDone())
+				return null;
+			task.putTuple (new StealOrder (StealOrder.ARBITER, StealOrder.IDLE,
+				rank, rank, 1L, 0L));
+			idleSent = true;
+			}
+		for (;;)
+			{
+			StealOrder order = awaitOrder();
+			switch (order.kind)
+				{
+				case StealOrder.STEAL:
+					give (null, order);
+					break;
+				case StealOrder.RANGE:
+					idleSent = false;
+					return new Chunk() .rank (rank)
+						.lb ((int)order.lb) .ub ((int)order.ub);
+				case StealOrder.DONE:
+					return null;
+				}
+			}
+		}
+
+	/**
+	 * Wait until all the team threads have finished every frame created so
+	 * far, or until the loop is stopped.
+	 *
+	 * @return  True if the frames are finished, false if the loop was stopped.
+	 */
+	private synchronized boolean awaitFramesDone()
+		{
+		while (! stop && oldest < created)
+			{
+			try
+				{
+				wait();
+				}
+			catch (InterruptedException exc)
+				{
+				throw new TerminateException (exc);
+				}
+			}
+		return ! stop;
+		}
+
+	/**
+	 * Tell the steal arbiter this worker's loop was stopped, then answer the
+	 * arbiter's orders until all the workers are done. Iterations that reach
+	 * this worker afterwards are handed back to the arbiter.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void quit()
+		throws IOException
+		{
+		int rank = task.taskRank();
+		task.putTuple (new StealOrder (StealOrder.ARBITER, StealOrder.QUIT,
+			rank, rank, 1L, 0L));
+		for (;;)
+			{
+			StealOrder order = nextOrder();
+			switch (order.kind)
+				{
+				case StealOrder.STEAL:
+					give (null, order);
+					break;
+				case StealOrder.RANGE:
+					task.putTuple (new StealOrder (StealOrder.ARBITER,
+						StealOrder.QUIT, rank, rank, order.lb, order.ub));
+					break;
+				case StealOrder.DONE:
+					return;
+				}
+			}
+		}
+
+	/**
+	 * Wait for the steal arbiter's next order to this worker without holding
+	 * this object's monitor, then take the order. Orders taken meanwhile by
+	 * <TT>serviceSteal()</TT> are skipped.
+	 *
+	 * @return  Order.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private StealOrder awaitOrder()
+		throws IOException
+		{
+		for (;;)
+			{
+			CompletableFuture<StealOrder> o = orders;
+			o.join();
+			synchronized (this)
+				{
+				if (orders == o)
+					return nextOrder();
+				}
+			}
+		}
+
+	/**
+	 * Wait for the steal arbiter's next order to this worker, and start
+	 * taking the order after that unless this order is the last.
+	 *
+	 * @return  Order.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private StealOrder nextOrder()
+		throws IOException
+		{
+		StealOrder order = orders.join();
+		orders = order.kind == StealOrder.DONE ? null :
+			task.takeTupleAsync (StealOrder.template (task.taskRank()));
+		return order;
+		}
+
+	/**
+	 * Answer the steal arbiter's order to give iterations away, if one has
+	 * arrived. Any other order is left for the team thread taking the next
+	 * master chunk. Called by a team thread between chunks of iterations.
+	 *
+	 * @param  frame  Frame the calling thread is executing.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void serviceSteal
+		(Frame frame)
+		throws IOException
+		{
+		CompletableFuture<StealOrder> o = orders;
+		if (o == null || ! o.isDone()) return;
+		StealOrder order;
+		synchronized (this)
+			{
+			if (orders != o || o.join().kind != StealOrder.STEAL) return;
+			order = nextOrder();
+			}
+		give (frame, order);
+		}
+
+	/**
+	 * Give away the upper half of the remaining iterations of the team thread
+	 * in the given frame that has the most iterations left, as told by the
+	 * given steal order. Give away nothing if that would be fewer iterations
+	 * than the steal order allows.
+	 *
+	 * @param  frame  Frame, or null to give away nothing.
+	 * @param  order  Steal order.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private void give
+		(Frame frame,
+		 StealOrder order)
+		throws IOException
+		{
+		RangeDeque loot = new RangeDeque();
+		long lb = 1L, ub = 0L;
+		if (frame != null && frame.giveAway (loot, order.lb) &&
+				loot.take (Long.MAX_VALUE))
+			{
+			lb = loot.chunklb;
+			ub = loot.chunkub;
+			}
+		task.putTuple (new StealOrder (StealOrder.ARBITER, StealOrder.GIVE,
+			task.taskRank(), order.thief, lb, ub));
+		}
+
+	/**
+	 * Record that the calling thread has finished the given frame.
+	 *
+	 * @param  frame  Frame.
+	 */
+	private synchronized void frameDone
+		(Frame frame)
+		{
+		if (++ frame.done == threads)
+			{
+			++ oldest;
+			notifyAll();
+			}
+		}
+
+	/**
+	 * Stop this parallel for loop, including all frames in progress.
+	 */
+	private synchronized void stopAll()
 		{
-		int rankStride = rank*stride;
-		int thrStride = threads*stride;
-		int chunklb = (int)(blb + rankStride);
-		int chunkub = (int)(bub);
-		for (int i = chunklb; ! stop && i <= chunkub; i += thrStride)
-			loop.run (i);
+		stop = true;
+		for (Frame frame : frames)
+			if (frame != null)
+				frame.stop = true;
+		notifyAll();
+		}
+
+	/**
+	 * Class Frame holds the schedule state for one master chunk.
+	 */
+	private class Frame
+		extends IntParallelForLoop
+		{
+		int stride;
+		int done;
+
+		Frame
+			(Chunk masterChunk)
+			{
+			super (WorkerIntParallelForLoop.this.task,
+				masterChunk.lb(), masterChunk.ub());
+			WorkerIntParallelForLoop outer = WorkerIntParallelForLoop.this;
+			threads = outer.threads;
+			schedule = outer.schedule;
+			chunk = outer.chunk;
+			stride = masterChunk.stride();
+			nextlb.set (blb);
+			if (schedule == Schedule.workStealing)
+				initWorkQueues();
+			}
+
+		/**
+		 * Execute this frame's iterations with a work stealing schedule. If
+		 * the master uses a work stealing schedule, answer the steal arbiter
+		 * between chunks.
+		 *
+		 * @param  loop  Loop body.
+		 * @param  rank  Team thread rank.
+		 */
+		void iterateWorkStealing
+			(Loop loop,
+			 int rank)
+			throws Exception
+			{
+			if (orders == null)
+				{
+				super.iterateWorkStealing (loop, rank);
+				return;
+				}
+			RangeDeque myDeque = deque[rank];
+			long chunkSize = chunk;
+			int chunklb, chunkub;
+			int victim;
+			chunkloop: while (! stop)
+				{
+				serviceSteal (this);
+				if (! myDeque.take (chunkSize))
+					{
+					// This thread's deque is empty. Steal half the iterations
+					// from the next thread whose deque is not empty, if any.
+					victim = rank;
+					do
+						{
+						victim = victim + 1 == threads ? 0 : victim + 1;
+						if (victim == rank) break chunkloop;
+						}
+					while (! deque[victim].stealInto (myDeque));
+					continue;
+					}
+				chunklb = (int)myDeque.chunklb;
+				chunkub = (int)myDeque.chunkub;
+				for (int i = chunklb; ! stop && i <= chunkub; ++ i)
+					loop.run (i);
+				}
+			}
+
+		/**
+		 * Steal the upper half of the remaining iterations of the team thread
+		 * with the most iterations left into the given deque, provided that
+		 * is at least the given number of iterations.
+		 *
+		 * @param  loot     Deque to hold the iterations given away.
+		 * @param  minSize  Least number of iterations to give away.
+		 *
+		 * @return  True if iterations were given away, false otherwise.
+		 */
+		boolean giveAway
+			(RangeDeque loot,
+			 long minSize)
+			{
+			RangeDeque richest = null;
+			long most = 0L;
+			for (RangeDeque d : deque)
+				{
+				long n = d.size();
+				if (n > most)
+					{
+					richest = d;
+					most = n;
+					}
+				}
+			return richest != null && richest.stealInto (loot, minSize);
+			}
+
+		/**
+		 * Execute this frame's iterations with a strided leapfrog schedule.
+		 *
+		 * @param  loop  Loop body.
+		 * @param  rank  Team thread rank.
+		 */
+		void iterateStridedLeapfrog
+			(Loop loop,
+			 int rank)
+			throws Exception
+			{
+			int rankStride = rank*stride;
+			int thrStride = threads*stride;
+			int chunklb = (int)(blb + rankStride);
+			int chunkub = (int)(bub);
+			for (int i = chunklb; ! stop && i <= chunkub; i += thrStride)
+				loop.run (i);
+			}
 		}
 
 	}
@@ -26,6 +26,7 @@
 package edu.rit.pj2;
 
 import edu.rit.pj2.tracker.TaskProperties;
+import edu.rit.util.AList;
 import java.io.IOException;
 
 /**
@@ -75,6 +76,10 @@ import java.io.IOException;
  * properties can also be specified on the {@link pj2 pj2} command line. If any
  * property is not specified, the enclosing task's property is used.
  * <P><LI>
+ * Optionally, call the {@link #reduce(Vbl) reduce()} method on the
+ * WorkerParallelForLoop object for each shared variable whose worker task
+ * copies are to be reduced together when the loop finishes.
+ * <P><LI>
  * If the loop index is type <TT>int</TT>, call the {@link #exec(Loop)
  * exec(Loop)} method, specifying the parallel for loop body, which is an
  * instance of class {@linkplain Loop Loop}. See class {@linkplain Loop Loop}
@@ -113,7 +118,10 @@ import java.io.IOException;
  * and <TT>chunk</TT> properties. (The default is a fixed schedule. See enum
  * {@linkplain Schedule Schedule} for further information about the possible
  * schedules.) Each team thread performs a series of iterations by calling its
- * loop object's {@link Loop#run(int) run()} method repeatedly. When all the
+ * loop object's {@link Loop#run(int) run()} method repeatedly. While the team
+ * threads work on one chunk, the worker is already taking the next chunk from
+ * tuple space, and a team thread that finishes its share of one chunk goes on
+ * to the next chunk without waiting for the other team threads. When all the
  * team threads have finished all the iterations for all the chunks, each team
  * thread calls its loop object's {@link Loop#finish() finish()} method.
  * <P>
@@ -125,6 +133,27 @@ import java.io.IOException;
  * program. Generally, coarse-grained (large) chunks are used at the job level
  * and fine-grained (small) chunks are used at the task level.
  * <P>
+ * <B>Reduction.</B>
+ * Each worker task typically reduces its team threads' results into a shared
+ * variable (see class {@linkplain Vbl Vbl}). To reduce the worker tasks' shared
+ * variables together, call the {@link #reduce(Vbl) reduce()} method before
+ * calling <TT>exec()</TT>. When a worker task has finished its share of the
+ * loop iterations, the worker tasks combine their shared variables in a binary
+ * tree: the worker task of rank <I>r</I> takes the partial results of the
+ * worker tasks of rank 2<I>r</I>+1 and 2<I>r</I>+2, if any, out of tuple space,
+ * reduces them into its own shared variables, and puts the result for its
+ * subtree into tuple space for the worker task of rank (<I>r</I>&minus;1)/2.
+ * When <TT>exec()</TT> returns in the worker task of rank 0, that task's shared
+ * variables hold the overall result, which the task can then print or put into
+ * tuple space for some other task; in the other worker tasks, the shared
+ * variables hold the partial result for the task's subtree. No task has to
+ * take and reduce all <I>K</I> results one after another, and every worker
+ * task performs at most two reductions.
+ * <P>
+ * Every worker task must call <TT>reduce()</TT> for the same number of shared
+ * variables, of the same classes, in the same order, and every worker task
+ * must execute its worker parallel for loops in the same order.
+ * <P>
  * <B>Early loop exit.</B>
  * To terminate a master-worker cluster parallel for loop before all the loop
  * iterations have been executed:
@@ -146,12 +175,17 @@ import java.io.IOException;
  * @see  LongLoop
  *
  * @author  Alan Kaminsky
- * @version 09-Jan-2014
+ * @version 18-Mar-2015
  */
 public class WorkerParallelForLoop
 	extends ParallelForLoop
 	{
 
+// Hidden data members.
+
+	// Shared variables to reduce across the worker tasks.
+	private AList<Vbl> reductionVbls = new AList<Vbl>();
+
 // Hidden constructors.
 
 	/**
@@ -240,6 +274,30 @@ public class WorkerParallelForLoop
 		return this;
 		}
 
+	/**
+	 * Reduce the given shared variable across the worker tasks when this
+	 * parallel for loop finishes. When the <TT>exec()</TT> method returns in
+	 * the worker task of rank 0, <TT>vbl</TT> holds the reduction of all the
+	 * worker tasks' copies of <TT>vbl</TT>. See the class documentation for
+	 * further information.
+	 *
+	 * @param  vbl  Shared variable. It must be streamable or serializable.
+	 *
+	 * @return  This parallel for loop object.
+	 *
+	 * @exception  NullPointerException
+	 *     (unchecked exception) Thrown if <TT>vbl</TT> is null.
+	 */
+	public WorkerParallelForLoop reduce
+		(Vbl vbl)
+		{
+		if (vbl == null)
+			throw new NullPointerException
+				("WorkerParallelForLoop.reduce(): vbl is null");
+		reductionVbls.addLast (vbl);
+		return this;
+		}
+
 	/**
 	 * Execute this parallel for loop with the loop body specified by the given
 	 * {@linkplain Loop Loop} object.
@@ -253,6 +311,7 @@ public class WorkerParallelForLoop
 		(Loop loop)
 		{
 		new WorkerIntParallelForLoop (task, properties) .exec (loop);
+		reduceWorkers();
 		}
 
 	/**
@@ -268,10 +327,53 @@ public class WorkerParallelForLoop
 		(LongLoop loop)
 		{
 		new WorkerLongParallelForLoop (task, properties) .exec (loop);
+		reduceWorkers();
 		}
 
 // Hidden operations.
 
+	/**
+	 * Reduce the shared variables across the worker tasks in a binary tree.
+	 */
+	private void reduceWorkers()
+		{
+		if (reductionVbls.isEmpty()) return;
+		int seq = ++ task.workerReductions;
+		int rank = task.taskRank;
+		int K = task.groupSize;
+		int N = reductionVbls.size();
+		Vbl[] vbls = new Vbl [N];
+		for (int i = 0; i < N; ++ i)
+			vbls[i] = reductionVbls.get (i);
+		try
+			{
+			// Reduce the children's partial results into this task's.
+			PartialReduction template = PartialReduction.template (rank, seq);
+			int children = Math.max (0, Math.min (2, K - 2*rank - 1));
+			for (int c = 0; c < children; ++ c)
+				{
+				Vbl[] partial = task.takeTuple (template) .vbls;
+				for (int i = 0; i < N; ++ i)
+					vbls[i].reduce (partial[i]);
+				}
+
+			// Send this subtree's result to the parent. A task running in the
+			// job process shares tuples by reference, so send a copy.
+			if (rank > 0)
+				{
+				if (task.jobInProcess != null)
+					for (int i = 0; i < N; ++ i)
+						vbls[i] = (Vbl) vbls[i].clone();
+				task.putTuple
+					(new PartialReduction ((rank - 1)/2, seq, vbls));
+				}
+			}
+		catch (IOException exc)
+			{
+			throw new TerminateException (exc);
+			}
+		}
+
 	/**
 	 * Execute this parallel statement.
 	 *
@@ -59,7 +59,7 @@ import java.util.Scanner;
  * <BR><TT><I>N</I></TT> = Number of trials
  *
  * @author  Alan Kaminsky
- * @version 14-Jan-2015
+ * @version 18-Mar-2015
  */
 public class MinVerCovClu3
 	extends Job
@@ -164,7 +164,7 @@ public class MinVerCovClu3
 
 			// Check randomly chosen candidate covers.
 			minCover = new BitSetVbl.MinSize (V) .add (0, V);
-			workerFor() .exec (new LongLoop()
+			workerFor() .reduce (minCover) .exec (new LongLoop()
 				{
 				BitSetVbl thrMinCover;
 				BitSet candidate;
@@ -188,8 +188,10 @@ public class MinVerCovClu3
 					}
 				});
 
-			// Send best candidate cover to reduction task.
-			putTuple (new ObjectTuple<BitSetVbl> (minCover));
+			// Send overall best candidate cover from the root of the reduction
+			// tree to reduction task.
+			if (taskRank() == 0)
+				putTuple (new ObjectTuple<BitSetVbl> (minCover));
 			}
 
 		/**
@@ -222,12 +224,9 @@ public class MinVerCovClu3
 			// Parse command line arguments.
 			int V = Integer.parseInt (args[0]);
 
-			// Reduce all worker task results together.
-			BitSetVbl minCover = new BitSetVbl.MinSize (V) .add (0, V);
-			ObjectTuple<BitSetVbl> template = new ObjectTuple<BitSetVbl>();
-			ObjectTuple<BitSetVbl> taskCover;
-			while ((taskCover = tryToTakeTuple (template)) != null)
-				minCover.reduce (taskCover.item);
+			// Take the worker tasks' reduced result.
+			BitSetVbl minCover =
+				takeTuple (new ObjectTuple<BitSetVbl>()) .item;
 
 			// Print final result.
 			System.out.printf ("Cover =");
@@ -48,10 +48,12 @@ import edu.rit.util.Random;
  * number generator. The computation is performed in <I>K</I> multithreaded
  * {@linkplain edu.rit.pj2.Task Task}s. Each task generates random points using
  * a different seed derived from the given <TT><I>seed</I></TT>. The tasks are
- * performed in parallel as a {@linkplain edu.rit.pj2.Job Job}.
+ * performed in parallel as a {@linkplain edu.rit.pj2.Job Job}. The tasks'
+ * counts are reduced together in a tree of worker tasks, and the reduction task
+ * prints the result.
  *
  * @author  Alan Kaminsky
- * @version 01-Jan-2014
+ * @version 18-Mar-2015
  */
 public class PiClu
 	extends Job
@@ -99,7 +101,7 @@ public class PiClu
 	 * {@linkplain PiClu PiClu} program.
 	 *
 	 * @author  Alan Kaminsky
-	 * @version 01-Jan-2014
+	 * @version 18-Mar-2015
 	 */
 	private static class WorkerTask
 		extends Task
@@ -125,7 +127,7 @@ public class PiClu
 			// Generate n random points in the unit square, count how many are
 			// in the unit circle.
 			count = new LongVbl.Sum (0);
-			workerFor() .exec (new LongLoop()
+			workerFor() .reduce (count) .exec (new LongLoop()
 				{
 				Random prng;
 				LongVbl thrCount;
@@ -142,17 +144,17 @@ public class PiClu
 					}
 				});
 
-			// Report results.
-			putTuple (count);
+			// Report overall result from the root of the reduction tree.
+			if (taskRank() == 0) putTuple (count);
 			}
 		}
 
 	/**
-	 * Class PiClu.ReduceTask combines the worker tasks' results and prints the
-	 * overall result for the {@linkplain PiClu PiClu} program.
+	 * Class PiClu.ReduceTask takes the worker tasks' reduced result and prints
+	 * the overall result for the {@linkplain PiClu PiClu} program.
 	 *
 	 * @author  Alan Kaminsky
-	 * @version 01-Jan-2014
+	 * @version 18-Mar-2015
 	 */
 	private static class ReduceTask
 		extends Task
@@ -165,11 +167,7 @@ public class PiClu
 			throws Exception
 			{
 			long N = Long.parseLong (args[0]);
-			LongVbl count = new LongVbl.Sum (0L);
-			LongVbl template = new LongVbl();
-			LongVbl taskCount;
-			while ((taskCount = tryToTakeTuple (template)) != null)
-				count.reduce (taskCount);
+			LongVbl count = takeTuple (new LongVbl());
 			System.out.printf ("pi = 4*%d/%d = %.9f%n",
 				count.item, N, 4.0*count.item/N);
 			}
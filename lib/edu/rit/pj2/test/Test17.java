@@ -0,0 +1,144 @@
+//******************************************************************************
+//
+// File:    Test17.java
+// Package: edu.rit.pj2.test
+// Unit:    Class edu.rit.pj2.test.Test17
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+
+package edu.rit.pj2.test;
+
+import edu.rit.pj2.IntParallelForLoop;
+import edu.rit.pj2.Loop;
+import edu.rit.pj2.Task;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Class Test17 is a microbenchmark main program for repeated execution of a
+ * parallel for loop. It measures the time and the number of bytes allocated
+ * per parallel for loop execution.
+ * <P>
+ * Usage: <TT>java pj2 [threads=<I>threads</I>] [schedule=<I>schedule</I>]
+ * edu.rit.pj2.test.Test17 <I>N</I></TT>
+ * <P>
+ * The program constructs one parallel for loop with a tiny loop body and
+ * executes it 2<I>N</I> times: <I>N</I> times to warm up the JVM, then
+ * <I>N</I> times to measure. The program prints the average time and the
+ * average number of bytes allocated, by the task's main thread and by all
+ * threads, per execution. The main thread should allocate nothing. The team
+ * threads allocate only the copies of the loop body for team threads other
+ * than thread 0; with one thread, nothing at all should be allocated.
+ * <P>
+ * <I>Note:</I> The allocation measurements require a JVM that supports the
+ * <TT>com.sun.management.ThreadMXBean</TT> interface.
+ *
+ * @author  Alan Kaminsky
+ * @version 11-Mar-2015
+ */
+public class Test17
+	extends Task
+	{
+
+	private static final int LB = 0;
+	private static final int UB = 99;
+
+	private static com.sun.management.ThreadMXBean bean =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	// Shared variable.
+	int[] count = new int [UB + 1];
+
+	/**
+	 * Task main program.
+	 *
+	 * @param  args  Array of zero or more command line argument strings.
+	 *
+	 * @exception  Exception
+	 *     The <TT>main()</TT> method can throw any exception.
+	 */
+	public void main
+		(String[] args)
+		throws Exception
+		{
+		if (args.length != 1) usage();
+		int N = Integer.parseInt (args[0]);
+
+		IntParallelForLoop pfl = parallelFor (LB, UB);
+		Loop body = new Loop()
+			{
+			public void run (int i)
+				{
+				++ count[i];
+				}
+			};
+
+		// Warm up.
+		for (int n = 0; n < N; ++ n)
+			pfl.exec (body);
+
+		// Measure.
+		long mainThreadId = Thread.currentThread().getId();
+		long mainBytes = bean.getThreadAllocatedBytes (mainThreadId);
+		long allBytes = allocatedBytes();
+		long t = System.nanoTime();
+		for (int n = 0; n < N; ++ n)
+			pfl.exec (body);
+		t = System.nanoTime() - t;
+		allBytes = allocatedBytes() - allBytes;
+		mainBytes = bean.getThreadAllocatedBytes (mainThreadId) - mainBytes;
+
+		// Verify.
+		for (int i = LB; i <= UB; ++ i)
+			if (count[i] != 2*N)
+				System.out.printf ("count[%d] = %d, should be %d%n",
+					i, count[i], 2*N);
+
+		System.out.printf ("threads = %d, schedule = %s%n",
+			actualThreads(), schedule());
+		System.out.printf ("%.3f usec per execution%n", t/1000.0/N);
+		System.out.printf ("%.1f bytes allocated by main thread per execution%n",
+			(double)mainBytes/N);
+		System.out.printf ("%.1f bytes allocated by all threads per execution%n",
+			(double)allBytes/N);
+		}
+
+	/**
+	 * Returns the total number of bytes allocated by all live threads.
+	 */
+	private static long allocatedBytes()
+		{
+		long[] bytes = bean.getThreadAllocatedBytes (bean.getAllThreadIds());
+		long total = 0L;
+		for (long b : bytes)
+			if (b > 0L) total += b;
+		return total;
+		}
+
+	/**
+	 * Print a usage message and exit.
+	 */
+	private static void usage()
+		{
+		System.err.println ("Usage: java pj2 [threads=<threads>] [schedule=<schedule>] edu.rit.pj2.test.Test17 <N>");
+		System.exit (1);
+		}
+
+	}
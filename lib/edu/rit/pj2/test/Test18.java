@@ -0,0 +1,374 @@
+//******************************************************************************
+//
+// File:    Test18.java
+// Package: edu.rit.pj2.test
+// Unit:    Class edu.rit.pj2.test.Test18
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.test;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import edu.rit.pj2.Job;
+import edu.rit.pj2.Task;
+import edu.rit.pj2.Tuple;
+import java.io.IOException;
+
+/**
+ * Class Test18 is a microbenchmark main program for tuple space throughput
+ * with many tasks writing and taking tuples at a high rate.
+ * <P>
+ * Usage: <TT>java pj2 edu.rit.pj2.test.Test18 <I>F</I> <I>P</I> <I>N</I></TT>
+ * <P>
+ * The job runs <I>P</I> pairs of tasks. In each pair, a producer task writes
+ * <I>N</I> tuples as fast as it can, and a consumer task takes the
+ * <I>N</I> tuples. Each tuple's index key is its pair number. The pairs use
+ * <I>F</I> different tuple classes (1 &le; <I>F</I> &le; 4), each class in
+ * its own family; pair <I>p</I> uses class <I>p</I> mod <I>F</I>. Takes and
+ * writes of tuples in different families do not contend for the same lock,
+ * so comparing <I>F</I> = 1 with <I>F</I> = 4 for the same <I>P</I> and
+ * <I>N</I> shows how much tuple traffic is serialized. When all tasks have
+ * finished, the program prints the number of tuples taken per second over all
+ * the pairs, and the number of tuples taken out of order.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class Test18
+	extends Job
+	{
+
+// Exported operations.
+
+	/**
+	 * Job main program.
+	 *
+	 * @param  args  Array of zero or more command line argument strings.
+	 *
+	 * @exception  Exception
+	 *     The <TT>main()</TT> method can throw any exception.
+	 */
+	public void main
+		(String[] args)
+		throws Exception
+		{
+		if (args.length != 3) usage();
+		int F = Integer.parseInt (args[0]);
+		int P = Integer.parseInt (args[1]);
+		int N = Integer.parseInt (args[2]);
+		if (F < 1 || F > 4 || P < 1 || N < 1) usage();
+
+		for (int p = 0; p < P; ++ p)
+			{
+			String[] taskArgs = new String[]
+				{ ""+(p % F), ""+p, ""+N };
+			rule() .task (ConsumerTask.class) .args (taskArgs);
+			rule() .task (ProducerTask.class) .args (taskArgs);
+			}
+		rule() .atFinish() .task (ReportTask.class) .args (""+P, ""+N);
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Returns a message tuple of the given family.
+	 */
+	private static Tuple message
+		(int family,
+		 int pair,
+		 int value)
+		{
+		switch (family)
+			{
+			case 0:  return new Message0 (pair, value);
+			case 1:  return new Message1 (pair, value);
+			case 2:  return new Message2 (pair, value);
+			default: return new Message3 (pair, value);
+			}
+		}
+
+	/**
+	 * Classes Message0 through Message3 are message tuples of four different
+	 * families. Each contains a pair number, which is the tuple's index key,
+	 * and a value.
+	 */
+	private static class Message0
+		extends Tuple
+		{
+		public int pair;
+		public int value;
+		public Message0()
+			{
+			}
+		public Message0 (int pair, int value)
+			{
+			this.pair = pair;
+			this.value = value;
+			}
+		public Object indexKey()
+			{
+			return pair;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeInt (pair);
+			out.writeInt (value);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			pair = in.readInt();
+			value = in.readInt();
+			}
+		}
+
+	private static class Message1
+		extends Tuple
+		{
+		public int pair;
+		public int value;
+		public Message1()
+			{
+			}
+		public Message1 (int pair, int value)
+			{
+			this.pair = pair;
+			this.value = value;
+			}
+		public Object indexKey()
+			{
+			return pair;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeInt (pair);
+			out.writeInt (value);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			pair = in.readInt();
+			value = in.readInt();
+			}
+		}
+
+	private static class Message2
+		extends Tuple
+		{
+		public int pair;
+		public int value;
+		public Message2()
+			{
+			}
+		public Message2 (int pair, int value)
+			{
+			this.pair = pair;
+			this.value = value;
+			}
+		public Object indexKey()
+			{
+			return pair;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeInt (pair);
+			out.writeInt (value);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			pair = in.readInt();
+			value = in.readInt();
+			}
+		}
+
+	private static class Message3
+		extends Tuple
+		{
+		public int pair;
+		public int value;
+		public Message3()
+			{
+			}
+		public Message3 (int pair, int value)
+			{
+			this.pair = pair;
+			this.value = value;
+			}
+		public Object indexKey()
+			{
+			return pair;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeInt (pair);
+			out.writeInt (value);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			pair = in.readInt();
+			value = in.readInt();
+			}
+		}
+
+	/**
+	 * Class ResultTuple contains one consumer task's elapsed time and number
+	 * of tuples taken out of order.
+	 */
+	private static class ResultTuple
+		extends Tuple
+		{
+		public long start;
+		public long finish;
+		public int outOfOrder;
+		public ResultTuple()
+			{
+			}
+		public ResultTuple (long start, long finish, int outOfOrder)
+			{
+			this.start = start;
+			this.finish = finish;
+			this.outOfOrder = outOfOrder;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeLong (start);
+			out.writeLong (finish);
+			out.writeInt (outOfOrder);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			start = in.readLong();
+			finish = in.readLong();
+			outOfOrder = in.readInt();
+			}
+		}
+
+	/**
+	 * Class ProducerTask writes message tuples as part of a {@linkplain Test18
+	 * Test18} job.
+	 */
+	private static class ProducerTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int family = Integer.parseInt (args[0]);
+			int pair = Integer.parseInt (args[1]);
+			int N = Integer.parseInt (args[2]);
+			for (int i = 0; i < N; ++ i)
+				putTuple (message (family, pair, i));
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	/**
+	 * Class ConsumerTask takes message tuples as part of a {@linkplain Test18
+	 * Test18} job.
+	 */
+	private static class ConsumerTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int family = Integer.parseInt (args[0]);
+			int pair = Integer.parseInt (args[1]);
+			int N = Integer.parseInt (args[2]);
+			Tuple template = message (family, pair, 0);
+			int outOfOrder = 0;
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < N; ++ i)
+				{
+				Tuple tuple = takeTuple (template);
+				if (value (tuple) != i) ++ outOfOrder;
+				}
+			long finish = System.currentTimeMillis();
+			putTuple (new ResultTuple (start, finish, outOfOrder));
+			}
+
+		private static int value
+			(Tuple tuple)
+			{
+			if (tuple instanceof Message0) return ((Message0) tuple).value;
+			if (tuple instanceof Message1) return ((Message1) tuple).value;
+			if (tuple instanceof Message2) return ((Message2) tuple).value;
+			return ((Message3) tuple).value;
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	/**
+	 * Class ReportTask prints the throughput as part of a {@linkplain Test18
+	 * Test18} job.
+	 */
+	private static class ReportTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int P = Integer.parseInt (args[0]);
+			int N = Integer.parseInt (args[1]);
+			ResultTuple template = new ResultTuple();
+			long start = Long.MAX_VALUE;
+			long finish = Long.MIN_VALUE;
+			int outOfOrder = 0;
+			for (int p = 0; p < P; ++ p)
+				{
+				ResultTuple result = takeTuple (template);
+				start = Math.min (start, result.start);
+				finish = Math.max (finish, result.finish);
+				outOfOrder += result.outOfOrder;
+				}
+			long msec = Math.max (finish - start, 1L);
+			System.out.printf ("%d tuples in %d msec, %.0f tuples/sec%n",
+				(long)P*N, msec, (double)P*N*1000/msec);
+			System.out.printf ("%d tuples out of order%n", outOfOrder);
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+// Hidden operations.
+
+	/**
+	 * Print a usage message and exit.
+	 */
+	private static void usage()
+		{
+		System.err.println ("Usage: java pj2 edu.rit.pj2.test.Test18 <F> <P> <N>");
+		System.exit (1);
+		}
+
+	}
@@ -0,0 +1,203 @@
+//******************************************************************************
+//
+// File:    Test19.java
+// Package: edu.rit.pj2.test
+// Unit:    Class edu.rit.pj2.test.Test19
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.test;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import edu.rit.pj2.Job;
+import edu.rit.pj2.Task;
+import edu.rit.pj2.Tuple;
+import java.io.IOException;
+
+/**
+ * Class Test19 is a microbenchmark main program for task launch latency.
+ * <P>
+ * Usage: <TT>java pj2 edu.rit.pj2.test.Test19 <I>N</I></TT>
+ * <P>
+ * The job runs <I>N</I> trivial tasks one after another. Each task is started
+ * by a rule that fires when the previous task (or, for the first task, the
+ * job) writes a hop tuple, so the tasks do not overlap. Each task measures the
+ * time from when the hop tuple was written until the task's main program
+ * started; this launch latency includes scheduling the task in the Tracker,
+ * starting the Backend process in the Launcher, and loading the task's
+ * classes. When all tasks have finished, the program prints the mean launch
+ * latency. To see the effect of a pool of Backend processes, run the program
+ * on a cluster whose Launchers were started without and with the
+ * <TT>pool</TT> option. The latency is measured with the clocks of the nodes
+ * where the tasks run, which must be synchronized.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class Test19
+	extends Job
+	{
+
+// Exported operations.
+
+	/**
+	 * Job main program.
+	 *
+	 * @param  args  Array of zero or more command line argument strings.
+	 *
+	 * @exception  Exception
+	 *     The <TT>main()</TT> method can throw any exception.
+	 */
+	public void main
+		(String[] args)
+		throws Exception
+		{
+		if (args.length != 1) usage();
+		int N = Integer.parseInt (args[0]);
+		if (N < 1) usage();
+
+		rule() .whenMatch (new HopTuple()) .task (HopTask.class) .args (""+N);
+		rule() .atFinish() .task (ReportTask.class) .args (""+N);
+		putTuple (new HopTuple (0, System.currentTimeMillis(), 0L));
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Class HopTuple starts the next task. It contains the task's index, the
+	 * time the tuple was written, and the total launch latency so far.
+	 */
+	private static class HopTuple
+		extends Tuple
+		{
+		public int index;
+		public long sent;
+		public long total;
+		public HopTuple()
+			{
+			}
+		public HopTuple (int index, long sent, long total)
+			{
+			this.index = index;
+			this.sent = sent;
+			this.total = total;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeInt (index);
+			out.writeLong (sent);
+			out.writeLong (total);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			index = in.readInt();
+			sent = in.readLong();
+			total = in.readLong();
+			}
+		}
+
+	/**
+	 * Class ResultTuple contains the total launch latency of all the tasks.
+	 */
+	private static class ResultTuple
+		extends Tuple
+		{
+		public long total;
+		public ResultTuple()
+			{
+			}
+		public ResultTuple (long total)
+			{
+			this.total = total;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeLong (total);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			total = in.readLong();
+			}
+		}
+
+	/**
+	 * Class HopTask measures its own launch latency and starts the next task
+	 * as part of a {@linkplain Test19 Test19} job.
+	 */
+	private static class HopTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			long now = System.currentTimeMillis();
+			int N = Integer.parseInt (args[0]);
+			HopTuple hop = (HopTuple) getMatchingTuple (0);
+			long total = hop.total + now - hop.sent;
+			if (hop.index + 1 < N)
+				putTuple (new HopTuple
+					(hop.index + 1, System.currentTimeMillis(), total));
+			else
+				putTuple (new ResultTuple (total));
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	/**
+	 * Class ReportTask prints the mean launch latency as part of a {@linkplain
+	 * Test19 Test19} job.
+	 */
+	private static class ReportTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int N = Integer.parseInt (args[0]);
+			ResultTuple result = takeTuple (new ResultTuple());
+			System.out.printf ("%d tasks, mean launch latency %.1f msec%n",
+				N, (double) result.total/N);
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+// Hidden operations.
+
+	/**
+	 * Print a usage message and exit.
+	 */
+	private static void usage()
+		{
+		System.err.println ("Usage: java pj2 edu.rit.pj2.test.Test19 <N>");
+		System.exit (1);
+		}
+
+	}
@@ -0,0 +1,157 @@
+//******************************************************************************
+//
+// File:    Test20.java
+// Package: edu.rit.pj2.test
+// Unit:    Class edu.rit.pj2.test.Test20
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.test;
+
+import edu.rit.pj2.ObjectLoop;
+import edu.rit.pj2.Task;
+import edu.rit.pj2.VblCollector;
+import edu.rit.pj2.vbl.LongVbl;
+import java.util.ArrayList;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * Class Test20 is a unit test main program for the {@link
+ * edu.rit.pj2.Task#parallelFor(java.util.Spliterator) parallelFor(Spliterator)}
+ * method of class {@linkplain edu.rit.pj2.Task Task} and for class {@linkplain
+ * edu.rit.pj2.VblCollector VblCollector}.
+ * <P>
+ * Usage: <TT>java pj2 edu.rit.pj2.test.Test20 <I>N</I></TT>
+ * <P>
+ * The program sums the integers 1 through <I>N</I> three ways: with a parallel
+ * for loop over a list's spliterator, with a parallel for loop over a parallel
+ * stream's spliterator, and by collecting a parallel stream into a shared
+ * variable. The program prints each sum and whether it is correct. For the
+ * parallel for loops, the program also prints the number of elements each
+ * team thread processed.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class Test20
+	extends Task
+	{
+
+// Exported operations.
+
+	/**
+	 * Perform this task's computation.
+	 *
+	 * @param  args  Array of zero or more command line argument strings.
+	 *
+	 * @exception  Exception
+	 *     The <TT>main()</TT> method can throw any exception.
+	 */
+	public void main
+		(String[] args)
+		throws Exception
+		{
+		if (args.length != 1) usage();
+		int N = Integer.parseInt (args[0]);
+		ArrayList<Long> list = new ArrayList<Long>();
+		for (long i = 1; i <= N; ++ i)
+			list.add (i);
+		long expected = (long)N*(N + 1)/2;
+
+		// Parallel for loop over a list's spliterator.
+		LongVbl sum = new LongVbl.Sum (0);
+		int[] counts = new int [actualThreads()];
+		loop (list.spliterator(), sum, counts);
+		print ("List spliterator", sum.item, expected, counts);
+
+		// Parallel for loop over a stream's spliterator.
+		sum = new LongVbl.Sum (0);
+		counts = new int [actualThreads()];
+		loop (LongStream.rangeClosed (1, N) .boxed() .parallel() .spliterator(), sum,
+			counts);
+		print ("Stream spliterator", sum.item, expected, counts);
+
+		// Parallel stream collected into a shared variable.
+		sum = new LongVbl.Sum (0);
+		LongVbl result = list.parallelStream() .collect
+			(new VblCollector<Long,LongVbl> (sum,
+				new BiConsumer<LongVbl,Long>()
+					{
+					public void accept (LongVbl vbl, Long x)
+						{
+						vbl.item += x;
+						}
+					}));
+		System.out.printf ("VblCollector: sum = %d, same object = %b, %s%n",
+			sum.item, result == sum, sum.item == expected ? "OK" : "ERROR");
+		}
+
+// Hidden operations.
+
+	/**
+	 * Sum the elements of the given spliterator with a parallel for loop.
+	 */
+	private void loop
+		(Spliterator<Long> spliter,
+		 final LongVbl sum,
+		 final int[] counts)
+		{
+		parallelFor (spliter) .exec (new ObjectLoop<Long>()
+			{
+			LongVbl thrSum;
+			public void start()
+				{
+				thrSum = threadLocal (sum);
+				}
+			public void run (Long x)
+				{
+				thrSum.item += x;
+				++ counts[rank()];
+				}
+			});
+		}
+
+	/**
+	 * Print the results of one way of summing.
+	 */
+	private static void print
+		(String label,
+		 long sum,
+		 long expected,
+		 int[] counts)
+		{
+		System.out.printf ("%s: sum = %d, counts =", label, sum);
+		for (int i = 0; i < counts.length; ++ i)
+			System.out.printf (" %d", counts[i]);
+		System.out.printf (", %s%n", sum == expected ? "OK" : "ERROR");
+		}
+
+	/**
+	 * Print a usage message and exit.
+	 */
+	private static void usage()
+		{
+		System.err.println ("Usage: java pj2 edu.rit.pj2.test.Test20 <N>");
+		System.exit (1);
+		}
+
+	}
@@ -0,0 +1,234 @@
+//******************************************************************************
+//
+// File:    Test21.java
+// Package: edu.rit.pj2.test
+// Unit:    Class edu.rit.pj2.test.Test21
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.test;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import edu.rit.pj2.Job;
+import edu.rit.pj2.Task;
+import edu.rit.pj2.Tuple;
+import edu.rit.pj2.tuple.EmptyTuple;
+import edu.rit.util.AList;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Class Test21 is a unit test main program for the batch tuple operations
+ * {@link edu.rit.pj2.Task#putTuples(java.util.Collection) putTuples()}, {@link
+ * edu.rit.pj2.Task#takeTuples(Tuple,int) takeTuples()}, and {@link
+ * edu.rit.pj2.Task#tryToTakeTuples(Tuple,int) tryToTakeTuples()} of class
+ * {@linkplain edu.rit.pj2.Task Task}.
+ * <P>
+ * Usage: <TT>java pj2 edu.rit.pj2.test.Test21 <I>N</I></TT>
+ * <P>
+ * The job runs a producer task and a consumer task. The consumer first tries
+ * to take a batch of tuples when there are none, which must return no tuples,
+ * then tells the producer to start. The producer puts one tuple, waits two
+ * seconds, then puts <I>N</I>&minus;1 more tuples with one
+ * <TT>putTuples()</TT> call. Meanwhile, the consumer's blocking
+ * <TT>takeTuples()</TT> for up to <I>N</I> tuples must return the first tuple
+ * alone, well before the producer's batch arrives. The consumer then takes
+ * half of the batch with another <TT>takeTuples()</TT>, which must return
+ * exactly as many tuples as requested, and the rest with
+ * <TT>tryToTakeTuples()</TT>. Finally the consumer checks that it took every
+ * tuple exactly once and that tuple space is empty. The consumer prints each
+ * step and whether it is correct.
+ * <P>
+ * Run the program on one node, on a cluster, or with the tuple space sharded
+ * across tuple servers, to test each way of executing tuple operations.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class Test21
+	extends Job
+	{
+
+// Exported operations.
+
+	/**
+	 * Perform this job's computation.
+	 *
+	 * @param  args  Array of zero or more command line argument strings.
+	 *
+	 * @exception  Exception
+	 *     The <TT>main()</TT> method can throw any exception.
+	 */
+	public void main
+		(String[] args)
+		throws Exception
+		{
+		if (args.length != 1) usage();
+		int N = Integer.parseInt (args[0]);
+		if (N < 3) usage();
+		rule() .task (ConsumerTask.class) .args (""+N);
+		rule() .task (ProducerTask.class) .args (""+N);
+		}
+
+// Hidden operations.
+
+	/**
+	 * Print a usage message and exit.
+	 */
+	private static void usage()
+		{
+		System.err.println ("Usage: java pj2 edu.rit.pj2.test.Test21 <N>");
+		System.err.println ("<N> = Number of tuples (>= 3)");
+		System.exit (1);
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Class Item is the tuple the producer puts and the consumer takes.
+	 */
+	private static class Item
+		extends Tuple
+		{
+		public int value;
+		public Item()
+			{
+			}
+		public Item (int value)
+			{
+			this.value = value;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeInt (value);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			value = in.readInt();
+			}
+		}
+
+	/**
+	 * Class ProducerTask puts one tuple, then a batch of tuples.
+	 */
+	private static class ProducerTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int N = Integer.parseInt (args[0]);
+			takeTuple (new EmptyTuple());
+			putTuple (new Item (0));
+			Thread.sleep (2000L);
+			ArrayList<Item> batch = new ArrayList<Item>();
+			for (int i = 1; i < N; ++ i)
+				batch.add (new Item (i));
+			putTuples (batch);
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	/**
+	 * Class ConsumerTask takes the tuples with batch operations and checks
+	 * them.
+	 */
+	private static class ConsumerTask
+		extends Task
+		{
+		private int N;
+		private boolean[] taken;
+		private boolean ok = true;
+
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			N = Integer.parseInt (args[0]);
+			taken = new boolean [N];
+			Item template = new Item();
+
+			AList<Item> list = tryToTakeTuples (template, N);
+			check ("tryToTakeTuples() with no tuples", list, 0);
+
+			putTuple (new EmptyTuple());
+			long t1 = System.currentTimeMillis();
+			list = takeTuples (template, N);
+			long t2 = System.currentTimeMillis();
+			check (String.format ("takeTuples() after first put, %d msec",
+				t2 - t1), list, 1);
+			if (t2 - t1 >= 1500L)
+				{
+				System.out.printf ("ERROR: takeTuples() waited for the batch%n");
+				ok = false;
+				}
+
+			int half = (N - 1)/2;
+			list = takeTuples (template, half);
+			check ("takeTuples() of half the batch", list, half);
+
+			Thread.sleep (500L);
+			list = tryToTakeTuples (template, N);
+			check ("tryToTakeTuples() of the rest", list, N - 1 - half);
+
+			list = tryToTakeTuples (template, N);
+			check ("tryToTakeTuples() when empty", list, 0);
+
+			for (int i = 0; i < N; ++ i)
+				if (! taken[i])
+					{
+					System.out.printf ("ERROR: tuple %d not taken%n", i);
+					ok = false;
+					}
+			System.out.printf ("%s%n", ok ? "OK" : "ERROR");
+			}
+
+		private void check
+			(String label,
+			 AList<Item> list,
+			 int expected)
+			{
+			boolean good = list.size() == expected;
+			for (int i = 0; i < list.size(); ++ i)
+				{
+				int v = list.get(i).value;
+				if (v < 0 || v >= N || taken[v])
+					good = false;
+				else
+					taken[v] = true;
+				}
+			System.out.printf ("%s: %d tuples, expected %d, %s%n",
+				label, list.size(), expected, good ? "OK" : "ERROR");
+			ok = ok && good;
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	}
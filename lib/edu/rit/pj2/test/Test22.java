@@ -0,0 +1,279 @@
+//******************************************************************************
+//
+// File:    Test22.java
+// Package: edu.rit.pj2.test
+// Unit:    Class edu.rit.pj2.test.Test22
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.test;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import edu.rit.pj2.Job;
+import edu.rit.pj2.Task;
+import edu.rit.pj2.Tuple;
+import java.io.IOException;
+
+/**
+ * Class Test22 is a unit test main program for a job whose tuple space is
+ * sharded across {@linkplain edu.rit.pj2.tracker.TupleServer TupleServer}s.
+ * <P>
+ * Usage: <TT>java pj2
+ * tupleServers=<I>host</I>:<I>port</I>,<I>host</I>:<I>port</I>
+ * edu.rit.pj2.test.Test22 <I>N</I> <I>K</I></TT>
+ * <P>
+ * The job puts <I>N</I> seed tuples with values 1 through <I>N</I> into tuple
+ * space before it starts; these are moved to the tuple servers. <I>K</I> worker
+ * tasks take the seed tuples, each taking its share, and put a square tuple for
+ * each seed. A summing task takes the <I>N</I> square tuples and puts one total
+ * tuple. A task that runs when the job finishes takes the total tuple, checks
+ * that it is the sum of the squares of 1 through <I>N</I>, and checks that no
+ * seed or square tuples are left. The task prints each check and whether it is
+ * correct.
+ * <P>
+ * With two tuple servers, the seed and square families are held by one tuple
+ * server and the total family by the other, so tuples written by one task and
+ * taken by another, tuples put by the job, and tuples taken by a finish rule's
+ * task all go through the tuple servers.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class Test22
+	extends Job
+	{
+
+// Exported operations.
+
+	/**
+	 * Perform this job's computation.
+	 *
+	 * @param  args  Array of zero or more command line argument strings.
+	 *
+	 * @exception  Exception
+	 *     The <TT>main()</TT> method can throw any exception.
+	 */
+	public void main
+		(String[] args)
+		throws Exception
+		{
+		if (args.length != 2) usage();
+		int N = Integer.parseInt (args[0]);
+		int K = Integer.parseInt (args[1]);
+		if (N < 1 || K < 1) usage();
+		if (tupleServers() == null)
+			{
+			System.err.println ("Test22: Tuple space is not sharded");
+			usage();
+			}
+
+		for (int i = 1; i <= N; ++ i)
+			putTuple (new Seed (i));
+		for (int k = 0; k < K; ++ k)
+			rule() .task (WorkerTask.class)
+				.args (""+(N/K + (k < N%K ? 1 : 0)));
+		rule() .task (SumTask.class) .args (""+N);
+		rule() .atFinish() .task (CheckTask.class) .args (""+N);
+		}
+
+// Hidden operations.
+
+	/**
+	 * Print a usage message and exit.
+	 */
+	private static void usage()
+		{
+		System.err.println ("Usage: java pj2 tupleServers=<host>:<port>,<host>:<port> edu.rit.pj2.test.Test22 <N> <K>");
+		System.err.println ("<N> = Number of seed tuples (>= 1)");
+		System.err.println ("<K> = Number of worker tasks (>= 1)");
+		System.exit (1);
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Class Seed is the tuple the job puts and the workers take.
+	 */
+	private static class Seed
+		extends Tuple
+		{
+		public long value;
+		public Seed()
+			{
+			}
+		public Seed (long value)
+			{
+			this.value = value;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeLong (value);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			value = in.readLong();
+			}
+		}
+
+	/**
+	 * Class Square is the tuple the workers put and the summing task takes.
+	 */
+	private static class Square
+		extends Tuple
+		{
+		public long value;
+		public Square()
+			{
+			}
+		public Square (long value)
+			{
+			this.value = value;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeLong (value);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			value = in.readLong();
+			}
+		}
+
+	/**
+	 * Class Total is the tuple the summing task puts and the finish task
+	 * takes.
+	 */
+	private static class Total
+		extends Tuple
+		{
+		public long value;
+		public Total()
+			{
+			}
+		public Total (long value)
+			{
+			this.value = value;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeLong (value);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			value = in.readLong();
+			}
+		}
+
+	/**
+	 * Class WorkerTask takes its share of the seed tuples and puts a square
+	 * tuple for each.
+	 */
+	private static class WorkerTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int count = Integer.parseInt (args[0]);
+			Seed template = new Seed();
+			for (int i = 0; i < count; ++ i)
+				{
+				Seed seed = takeTuple (template);
+				putTuple (new Square (seed.value*seed.value));
+				}
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	/**
+	 * Class SumTask takes the square tuples and puts their total.
+	 */
+	private static class SumTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int N = Integer.parseInt (args[0]);
+			Square template = new Square();
+			long sum = 0L;
+			for (int i = 0; i < N; ++ i)
+				sum += takeTuple (template) .value;
+			putTuple (new Total (sum));
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	/**
+	 * Class CheckTask takes the total tuple and checks it.
+	 */
+	private static class CheckTask
+		extends Task
+		{
+		private boolean ok = true;
+
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			long N = Long.parseLong (args[0]);
+			long expected = N*(N + 1)*(2*N + 1)/6;
+			Total total = tryToTakeTuple (new Total());
+			if (total == null)
+				check ("Total tuple", "none", "" + expected, false);
+			else
+				check ("Total tuple", "" + total.value, "" + expected,
+					total.value == expected);
+			boolean none = tryToReadTuple (new Seed()) == null;
+			check ("Seed tuples left", none ? "none" : "some", "none", none);
+			none = tryToReadTuple (new Square()) == null;
+			check ("Square tuples left", none ? "none" : "some", "none", none);
+			System.out.printf ("%s%n", ok ? "OK" : "ERROR");
+			}
+
+		private void check
+			(String label,
+			 String actual,
+			 String expected,
+			 boolean good)
+			{
+			System.out.printf ("%s: %s, expected %s, %s%n",
+				label, actual, expected, good ? "OK" : "ERROR");
+			ok = ok && good;
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	}
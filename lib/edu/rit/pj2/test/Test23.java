@@ -0,0 +1,244 @@
+//******************************************************************************
+//
+// File:    Test23.java
+// Package: edu.rit.pj2.test
+// Unit:    Class edu.rit.pj2.test.Test23
+//
+// This Java source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.test;
+
+import edu.rit.io.InStream;
+import edu.rit.io.OutStream;
+import edu.rit.pj2.Job;
+import edu.rit.pj2.Task;
+import edu.rit.pj2.Tuple;
+import java.io.IOException;
+
+/**
+ * Class Test23 is a unit test main program for the {@link
+ * edu.rit.pj2.Task#takeTuple(Tuple,long) takeTuple(template,timeout)} method
+ * of class {@linkplain edu.rit.pj2.Task Task}.
+ * <P>
+ * Usage: <TT>java pj2 edu.rit.pj2.test.Test23 <I>R</I></TT>
+ * <P>
+ * The job runs a producer task and a consumer task. First the consumer takes
+ * with a timeout when there is no matching tuple, which must return null after
+ * the timeout. Then the consumer and producer run <I>R</I> rounds. In each
+ * round the consumer tells the producer to go, then takes with a 100-msec
+ * timeout, while the producer waits between 80 and 120 msec and puts one
+ * tuple, so the put races the timeout. If the timed take returns null, the
+ * tuple must not be lost: the consumer must then get it with another take.
+ * Either way the consumer must get exactly that round's tuple. Finally the
+ * consumer checks that tuple space is empty. The consumer prints how many
+ * rounds the timed take won and lost, each check, and whether it is correct.
+ * <P>
+ * Run the program on one node, on a cluster, or with the tuple space sharded
+ * across tuple servers, to test cancelling takes in the job's process, in the
+ * job, and in a tuple server.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class Test23
+	extends Job
+	{
+
+// Exported operations.
+
+	/**
+	 * Perform this job's computation.
+	 *
+	 * @param  args  Array of zero or more command line argument strings.
+	 *
+	 * @exception  Exception
+	 *     The <TT>main()</TT> method can throw any exception.
+	 */
+	public void main
+		(String[] args)
+		throws Exception
+		{
+		if (args.length != 1) usage();
+		int R = Integer.parseInt (args[0]);
+		if (R < 1) usage();
+		rule() .task (ConsumerTask.class) .args (""+R);
+		rule() .task (ProducerTask.class) .args (""+R);
+		}
+
+// Hidden operations.
+
+	/**
+	 * Print a usage message and exit.
+	 */
+	private static void usage()
+		{
+		System.err.println ("Usage: java pj2 edu.rit.pj2.test.Test23 <R>");
+		System.err.println ("<R> = Number of rounds (>= 1)");
+		System.exit (1);
+		}
+
+// Hidden helper classes.
+
+	/**
+	 * Class Item is the tuple the producer puts and the consumer takes.
+	 */
+	private static class Item
+		extends Tuple
+		{
+		public int round;
+		public Item()
+			{
+			}
+		public Item (int round)
+			{
+			this.round = round;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeInt (round);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			round = in.readInt();
+			}
+		}
+
+	/**
+	 * Class Go is the tuple with which the consumer starts a round.
+	 */
+	private static class Go
+		extends Tuple
+		{
+		public int round;
+		public Go()
+			{
+			}
+		public Go (int round)
+			{
+			this.round = round;
+			}
+		public void writeOut (OutStream out) throws IOException
+			{
+			out.writeInt (round);
+			}
+		public void readIn (InStream in) throws IOException
+			{
+			round = in.readInt();
+			}
+		}
+
+	/**
+	 * Class ProducerTask puts one tuple in each round, after a delay close to
+	 * the consumer's timeout.
+	 */
+	private static class ProducerTask
+		extends Task
+		{
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int R = Integer.parseInt (args[0]);
+			Go template = new Go();
+			for (int r = 0; r < R; ++ r)
+				{
+				Go go = takeTuple (template);
+				Thread.sleep (80L + 10L*(r % 5));
+				putTuple (new Item (go.round));
+				}
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	/**
+	 * Class ConsumerTask takes the tuples with timeouts and checks them.
+	 */
+	private static class ConsumerTask
+		extends Task
+		{
+		private boolean ok = true;
+
+		public void main
+			(String[] args)
+			throws Exception
+			{
+			int R = Integer.parseInt (args[0]);
+			Item template = new Item();
+
+			long t1 = System.currentTimeMillis();
+			Item item = takeTuple (template, 500L);
+			long t2 = System.currentTimeMillis();
+			check (String.format ("takeTuple() with no tuple, %d msec",
+				t2 - t1), item == null && t2 - t1 >= 450L);
+
+			int won = 0;
+			int lost = 0;
+			boolean rounds = true;
+			for (int r = 0; r < R; ++ r)
+				{
+				putTuple (new Go (r));
+				item = takeTuple (template, 100L);
+				if (item != null)
+					++ won;
+				else
+					{
+					++ lost;
+					item = takeTuple (template, 5000L);
+					}
+				if (item == null)
+					{
+					System.out.printf ("ERROR: round %d tuple lost%n", r);
+					rounds = false;
+					}
+				else if (item.round != r)
+					{
+					System.out.printf
+						("ERROR: round %d took tuple of round %d%n",
+						 r, item.round);
+					rounds = false;
+					}
+				}
+			check (String.format
+				("takeTuple() racing put, %d rounds won, %d lost", won, lost),
+				rounds);
+
+			check ("Tuple space empty", tryToTakeTuple (template) == null);
+			System.out.printf ("%s%n", ok ? "OK" : "ERROR");
+			}
+
+		private void check
+			(String label,
+			 boolean good)
+			{
+			System.out.printf ("%s, %s%n", label, good ? "OK" : "ERROR");
+			ok = ok && good;
+			}
+
+		protected static int coresRequired()
+			{
+			return 1;
+			}
+		}
+
+	}
@@ -26,6 +26,7 @@
 package edu.rit.pj2.tracker;
 
 import edu.rit.pj2.Tuple;
+import edu.rit.util.AList;
 import java.io.EOFException;
 import java.net.SocketException;
 
@@ -35,7 +36,7 @@ import java.net.SocketException;
  * before the backend receiver can be used.
  *
  * @author  Alan Kaminsky
- * @version 04-Dec-2013
+ * @version 18-Mar-2015
  */
 public class BackendReceiver
 	extends Receiver
@@ -74,6 +75,7 @@ public class BackendReceiver
 		TaskInfo info;
 		long taskID, requestID;
 		Tuple tuple;
+		AList<Tuple> tuples;
 
 		try
 			{
@@ -95,6 +97,16 @@ public class BackendReceiver
 						backend.tupleTaken (taskID, requestID, tuple);
 						tuple = null;
 						break;
+					case Opcode.BACKENDREF_TUPLES_TAKEN:
+						taskID = in.readLong();
+						requestID = in.readLong();
+						tuples = in.readFields (new AList<Tuple>());
+						backend.tuplesTaken (taskID, requestID, tuples);
+						tuples = null;
+						break;
+					case Opcode.BACKENDREF_JAR_CONTENTS:
+						backend.jarContents (in.readByteArray());
+						break;
 					case Opcode.BACKENDREF_STOP_TASK:
 						backend.stopTask();
 						break;
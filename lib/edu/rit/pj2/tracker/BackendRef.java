@@ -26,13 +26,14 @@
 package edu.rit.pj2.tracker;
 
 import edu.rit.pj2.Tuple;
+import edu.rit.util.AList;
 import java.io.IOException;
 
 /**
  * Interface BackendRef specifies the interface for invoking a backend.
  *
  * @author  Alan Kaminsky
- * @version 04-Dec-2013
+ * @version 18-Mar-2015
  */
 public interface BackendRef
 	{
@@ -67,6 +68,36 @@ public interface BackendRef
 		 Tuple tuple)
 		throws IOException;
 
+	/**
+	 * Tell this backend that the given tuples were taken out of tuple space by
+	 * a batch take request.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  tuples     List of zero or more tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void tuplesTaken
+		(long taskID,
+		 long requestID,
+		 AList<Tuple> tuples)
+		throws IOException;
+
+	/**
+	 * Give this backend the contents of the job's JAR file, in response to the
+	 * job's {@link JobRef#requestJar(long) requestJar()} method.
+	 *
+	 * @param  jar  Byte array with the contents of the JAR file.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void jarContents
+		(byte[] jar)
+		throws IOException;
+
 	/**
 	 * Tell this backend to stop the task.
 	 *
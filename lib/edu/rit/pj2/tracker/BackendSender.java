@@ -26,6 +26,7 @@
 package edu.rit.pj2.tracker;
 
 import edu.rit.pj2.Tuple;
+import edu.rit.util.AList;
 import java.io.IOException;
 
 /**
@@ -34,7 +35,7 @@ import java.io.IOException;
  * backend sender can be used.
  *
  * @author  Alan Kaminsky
- * @version 30-Nov-2013
+ * @version 18-Mar-2015
  */
 public class BackendSender
 	extends Sender
@@ -93,6 +94,47 @@ public class BackendSender
 		out.flush();
 		}
 
+	/**
+	 * Tell this backend that the given tuples were taken out of tuple space by
+	 * a batch take request.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  tuples     List of zero or more tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void tuplesTaken
+		(long taskID,
+		 long requestID,
+		 AList<Tuple> tuples)
+		throws IOException
+		{
+		out.writeByte (Opcode.BACKENDREF_TUPLES_TAKEN);
+		out.writeLong (taskID);
+		out.writeLong (requestID);
+		out.writeFields (tuples);
+		out.flush();
+		}
+
+	/**
+	 * Give this backend the contents of the job's JAR file.
+	 *
+	 * @param  jar  Byte array with the contents of the JAR file.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void jarContents
+		(byte[] jar)
+		throws IOException
+		{
+		out.writeByte (Opcode.BACKENDREF_JAR_CONTENTS);
+		out.writeByteArray (jar);
+		out.flush();
+		}
+
 	/**
 	 * Tell this backend to stop the task.
 	 *
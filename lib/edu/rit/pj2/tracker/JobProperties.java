@@ -25,7 +25,9 @@
 
 package edu.rit.pj2.tracker;
 
+import edu.rit.pj2.Affinity;
 import edu.rit.pj2.Schedule;
+import edu.rit.pj2.WaitPolicy;
 
 /**
  * Class JobProperties encapsulates the properties of a {@linkplain
@@ -43,6 +45,10 @@ import edu.rit.pj2.Schedule;
  * the job.
  * <LI><TT>chunk</TT> &mdash; The chunk size for parallel loops in a task in the
  * job.
+ * <LI><TT>waitPolicy</TT> &mdash; How the threads executing parallel loops in a
+ * task in the job wait for each other.
+ * <LI><TT>affinity</TT> &mdash; How the threads executing parallel loops in a
+ * task in the job are placed on the node's cores.
  * <LI><TT>nodeName</TT> &mdash; The name of the node on which to run a task in
  * the job.
  * <LI><TT>cores</TT> &mdash; The number of CPU cores needed to run a task in
@@ -52,7 +58,7 @@ import edu.rit.pj2.Schedule;
  * </UL>
  *
  * @author  Alan Kaminsky
- * @version 30-May-2014
+ * @version 18-Mar-2015
  */
 public class JobProperties
 	{
@@ -82,6 +88,18 @@ public class JobProperties
 	 */
 	public static final int DEFAULT_CHUNK = LoopProperties.DEFAULT_CHUNK;
 
+	/**
+	 * Indicates that the <TT>waitPolicy</TT> property is defaulted.
+	 */
+	public static final WaitPolicy DEFAULT_WAIT_POLICY =
+		LoopProperties.DEFAULT_WAIT_POLICY;
+
+	/**
+	 * Indicates that the <TT>affinity</TT> property is defaulted.
+	 */
+	public static final Affinity DEFAULT_AFFINITY =
+		LoopProperties.DEFAULT_AFFINITY;
+
 	/**
 	 * Indicates that a parallel for loop will be executed by as many threads as
 	 * there are cores on the machine.
@@ -452,6 +470,74 @@ public class JobProperties
 		return loopProps.chunk();
 		}
 
+	/**
+	 * Set the <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT> property
+	 * specifies how the threads executing a parallel for loop wait for each
+	 * other. Refer to enum {@linkplain WaitPolicy} for descriptions of the
+	 * possible wait policies.
+	 *
+	 * @param  waitPolicy  Wait policy, or {@link #DEFAULT_WAIT_POLICY}.
+	 *
+	 * @return  This job properties object.
+	 *
+	 * @see  #waitPolicy()
+	 */
+	public JobProperties waitPolicy
+		(WaitPolicy waitPolicy)
+		{
+		loopProps.waitPolicy (waitPolicy);
+		return this;
+		}
+
+	/**
+	 * Get the <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT> property
+	 * specifies how the threads executing a parallel for loop wait for each
+	 * other. If the <TT>waitPolicy</TT> property is defaulted, a {@link
+	 * WaitPolicy#park park} wait policy is returned.
+	 *
+	 * @return  Wait policy.
+	 *
+	 * @see  #waitPolicy(WaitPolicy)
+	 */
+	public WaitPolicy waitPolicy()
+		{
+		return loopProps.waitPolicy();
+		}
+
+	/**
+	 * Set the <TT>affinity</TT> property. The <TT>affinity</TT> property
+	 * specifies how the threads executing a parallel for loop are placed on the
+	 * node's cores. Refer to enum {@linkplain Affinity} for descriptions of the
+	 * possible affinities.
+	 *
+	 * @param  affinity  Affinity, or {@link #DEFAULT_AFFINITY}.
+	 *
+	 * @return  This job properties object.
+	 *
+	 * @see  #affinity()
+	 */
+	public JobProperties affinity
+		(Affinity affinity)
+		{
+		loopProps.affinity (affinity);
+		return this;
+		}
+
+	/**
+	 * Get the <TT>affinity</TT> property. The <TT>affinity</TT> property
+	 * specifies how the threads executing a parallel for loop are placed on the
+	 * node's cores. If the <TT>affinity</TT> property is defaulted, {@link
+	 * Affinity#none none} is returned.
+	 *
+	 * @return  Affinity.
+	 *
+	 * @see  #affinity(Affinity)
+	 */
+	public Affinity affinity()
+		{
+		return loopProps.affinity();
+		}
+
 	/**
 	 * Set the <TT>nodeName</TT> property. The <TT>nodeName</TT> property
 	 * specifies the name of the cluster node on which a task must run.
@@ -564,9 +650,10 @@ public class JobProperties
 	public String toString()
 		{
 		return String.format
-			("JobProperties(workers=%d,masterSchedule=%s,masterChunk=%d,threads=%d,schedule=%s,chunk=%d,nodeName=\"%s\",cores=%d,gpus=%d)",
+			("JobProperties(workers=%d,masterSchedule=%s,masterChunk=%d,threads=%d,schedule=%s,chunk=%d,waitPolicy=%s,affinity=%s,nodeName=\"%s\",cores=%d,gpus=%d)",
 			 workers(), masterSchedule(), masterChunk(),
-			 threads(), schedule(), chunk(), nodeName(), cores(), gpus());
+			 threads(), schedule(), chunk(), waitPolicy(), affinity(),
+			 nodeName(), cores(), gpus());
 		}
 
 	}
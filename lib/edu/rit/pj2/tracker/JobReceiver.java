@@ -26,6 +26,7 @@
 package edu.rit.pj2.tracker;
 
 import edu.rit.pj2.Tuple;
+import edu.rit.util.AList;
 import java.io.EOFException;
 import java.net.SocketException;
 
@@ -35,7 +36,7 @@ import java.net.SocketException;
  * receiver can be used.
  *
  * @author  Alan Kaminsky
- * @version 17-Jun-2014
+ * @version 18-Mar-2015
  */
 public class JobReceiver
 	extends Receiver
@@ -76,8 +77,9 @@ public class JobReceiver
 		boolean runInJobProcess, blocking, taking;
 		String name;
 		Tuple tuple, template;
+		AList<Tuple> tuples;
 		Throwable exc;
-		int copies, stream, len;
+		int copies, maxCount, stream, len;
 		byte[] data = new byte [256];
 
 		try
@@ -132,6 +134,30 @@ public class JobReceiver
 						job.writeTuple (taskID, tuple, copies);
 						tuple = null;
 						break;
+					case Opcode.JOBREF_TAKE_TUPLES:
+//System.out.printf ("JobReceiver(): JOBREF_TAKE_TUPLES%n");
+						taskID = in.readLong();
+						requestID = in.readLong();
+						template = (Tuple) in.readObject();
+						maxCount = in.readInt();
+						blocking = in.readBoolean();
+						job.takeTuples (taskID, requestID, template, maxCount,
+							blocking);
+						template = null;
+						break;
+					case Opcode.JOBREF_WRITE_TUPLES:
+//System.out.printf ("JobReceiver(): JOBREF_WRITE_TUPLES%n");
+						taskID = in.readLong();
+						tuples = in.readFields (new AList<Tuple>());
+						job.writeTuples (taskID, tuples);
+						tuples = null;
+						break;
+					case Opcode.JOBREF_CANCEL_TAKE_TUPLE:
+//System.out.printf ("JobReceiver(): JOBREF_CANCEL_TAKE_TUPLE%n");
+						taskID = in.readLong();
+						requestID = in.readLong();
+						job.cancelTakeTuple (taskID, requestID);
+						break;
 					case Opcode.JOBREF_TASK_FINISHED:
 //System.out.printf ("JobReceiver(): JOBREF_TASK_FINISHED%n");
 						taskID = in.readLong();
@@ -144,6 +170,11 @@ public class JobReceiver
 						job.taskFailed (taskID, exc);
 						exc = null;
 						break;
+					case Opcode.JOBREF_REQUEST_JAR:
+//System.out.printf ("JobReceiver(): JOBREF_REQUEST_JAR%n");
+						taskID = in.readLong();
+						job.requestJar (taskID);
+						break;
 					case Opcode.JOBREF_HEARTBEAT_FROM_TRACKER:
 //System.out.printf ("JobReceiver(): JOBREF_HEARTBEAT_FROM_TRACKER%n");
 						job.heartbeatFromTracker();
@@ -34,7 +34,7 @@ import java.io.IOException;
  * edu.rit.pj2.Job Job}.
  *
  * @author  Alan Kaminsky
- * @version 24-Mar-2014
+ * @version 18-Mar-2015
  */
 public interface JobRef
 	{
@@ -134,6 +134,60 @@ public interface JobRef
 		 int copies)
 		throws IOException;
 
+	/**
+	 * Tell this job to take up to the given number of tuples that match the
+	 * given template out of tuple space, in one transaction.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  maxCount   Maximum number of tuples to take (1 or more).
+	 * @param  blocking   True to block until at least one tuple is taken,
+	 *                    false to take zero or more tuples without blocking.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void takeTuples
+		(long taskID,
+		 long requestID,
+		 Tuple template,
+		 int maxCount,
+		 boolean blocking)
+		throws IOException;
+
+	/**
+	 * Tell this job to write the given tuples into tuple space, in one
+	 * transaction.
+	 *
+	 * @param  taskID  Task ID.
+	 * @param  tuples  List of tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeTuples
+		(long taskID,
+		 AList<Tuple> tuples)
+		throws IOException;
+
+	/**
+	 * Tell this job to cancel the given blocking tuple take request, because
+	 * the task stopped waiting. If the request is still blocked, it is answered
+	 * with no tuple. If the request was already satisfied, this method does
+	 * nothing.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void cancelTakeTuple
+		(long taskID,
+		 long requestID)
+		throws IOException;
+
 	/**
 	 * Tell this job that the given task finished.
 	 *
@@ -160,6 +214,20 @@ public interface JobRef
 		 Throwable exc)
 		throws IOException;
 
+	/**
+	 * Tell this job to send the contents of the job's JAR file to the backend
+	 * running the given task. The job calls the backend's {@link
+	 * BackendRef#jarContents(byte[]) jarContents()} method.
+	 *
+	 * @param  taskID  Task ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void requestJar
+		(long taskID)
+		throws IOException;
+
 	/**
 	 * Tell this job that the tracker is still alive.
 	 *
@@ -26,6 +26,7 @@
 package edu.rit.pj2.tracker;
 
 import edu.rit.pj2.Tuple;
+import edu.rit.util.AList;
 import java.io.IOException;
 
 /**
@@ -34,7 +35,7 @@ import java.io.IOException;
  * can be used.
  *
  * @author  Alan Kaminsky
- * @version 24-Mar-2014
+ * @version 18-Mar-2015
  */
 public class JobSender
 	extends Sender
@@ -184,6 +185,78 @@ public class JobSender
 		out.flush();
 		}
 
+	/**
+	 * Tell this job to take up to the given number of tuples that match the
+	 * given template out of tuple space, in one transaction.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  maxCount   Maximum number of tuples to take (1 or more).
+	 * @param  blocking   True to block until at least one tuple is taken,
+	 *                    false to take zero or more tuples without blocking.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void takeTuples
+		(long taskID,
+		 long requestID,
+		 Tuple template,
+		 int maxCount,
+		 boolean blocking)
+		throws IOException
+		{
+		out.writeByte (Opcode.JOBREF_TAKE_TUPLES);
+		out.writeLong (taskID);
+		out.writeLong (requestID);
+		out.writeObject (template);
+		out.writeInt (maxCount);
+		out.writeBoolean (blocking);
+		out.flush();
+		}
+
+	/**
+	 * Tell this job to write the given tuples into tuple space, in one
+	 * transaction.
+	 *
+	 * @param  taskID  Task ID.
+	 * @param  tuples  List of tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void writeTuples
+		(long taskID,
+		 AList<Tuple> tuples)
+		throws IOException
+		{
+		out.writeByte (Opcode.JOBREF_WRITE_TUPLES);
+		out.writeLong (taskID);
+		out.writeFields (tuples);
+		out.flush();
+		}
+
+	/**
+	 * Tell this job to cancel the given blocking tuple take request.
+	 *
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void cancelTakeTuple
+		(long taskID,
+		 long requestID)
+		throws IOException
+		{
+		out.writeByte (Opcode.JOBREF_CANCEL_TAKE_TUPLE);
+		out.writeLong (taskID);
+		out.writeLong (requestID);
+		out.flush();
+		}
+
 	/**
 	 * Tell this job that the given task finished.
 	 *
@@ -221,6 +294,24 @@ public class JobSender
 		out.flush();
 		}
 
+	/**
+	 * Tell this job to send the contents of the job's JAR file to the backend
+	 * running the given task.
+	 *
+	 * @param  taskID  Task ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void requestJar
+		(long taskID)
+		throws IOException
+		{
+		out.writeByte (Opcode.JOBREF_REQUEST_JAR);
+		out.writeLong (taskID);
+		out.flush();
+		}
+
 	/**
 	 * Tell this job that the tracker is still alive.
 	 *
@@ -28,8 +28,14 @@ package edu.rit.pj2.tracker;
 import edu.rit.util.Heartbeat;
 import edu.rit.util.Logger;
 import edu.rit.util.PrintStreamLogger;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
@@ -43,7 +49,7 @@ import java.util.concurrent.Semaphore;
  * <P>
  * Usage: <TT>java edu.rit.pj2.tracker.Launcher
  * [tracker=<I>host</I>[:<I>port</I>]] [name=<I>name</I>] [cores=<I>cores</I>]
- * [gpus=<I>gpus</I>] [command="<I>command</I>"]</TT>
+ * [gpus=<I>gpus</I>] [pool=<I>pool</I>] [command="<I>command</I>"]</TT>
  * <P>
  * The following options may be specified:
  * <UL>
@@ -67,6 +73,10 @@ import java.util.concurrent.Semaphore;
  * <TT>gpus=<I>gpus</I></TT> -- The Launcher's node has the given number of GPU
  * accelerators. If omitted, the default is 0.
  * <P><LI>
+ * <TT>pool=<I>pool</I></TT> -- The Launcher will keep a pool of up to the
+ * given number of Backend processes. If omitted, the default is 0 (no pool).
+ * See below.
+ * <P><LI>
  * <TT>command="<I>command</I>"</TT> -- The Launcher will use the given command
  * to launch the Java Virtual Machine (JVM) process for the Backend main
  * program. If omitted, the Launcher will use the command <TT>"java"</TT> to
@@ -76,9 +86,24 @@ import java.util.concurrent.Semaphore;
  * <P>
  * <TT>java edu.rit.pj2.tracker.Launcher command="java -server" ...</TT>
  * </UL>
+ * <P>
+ * Without a pool, the Launcher starts a new JVM process for every task, which
+ * exits when the task finishes. With a pool, the Launcher starts the pooled
+ * Backend processes ahead of time, and the Launcher runs a task without JVM
+ * flags in an idle pooled Backend if there is one. When the task finishes
+ * successfully, the pooled Backend becomes idle again and can run another
+ * task of any job; if the task fails or is stopped, the pooled Backend exits
+ * and the Launcher starts a new one. This saves the JVM startup time, and lets
+ * tasks run in a JVM whose library code has already been compiled, which
+ * matters for jobs with many short tasks. Each task still runs with its own
+ * JAR class loader, if the job has a JAR file. Tasks that specify JVM flags,
+ * and tasks launched while every pooled Backend is busy, get a new JVM process
+ * as without a pool. The pool does not affect the cores and GPUs the Tracker
+ * assigns to tasks on the Launcher's node; an idle pooled Backend uses no
+ * cores.
  *
  * @author  Alan Kaminsky
- * @version 23-Mar-2014
+ * @version 18-Mar-2015
  */
 public class Launcher
 	implements LauncherRef
@@ -93,6 +118,7 @@ public class Launcher
 	private static int gpus = 0;
 	private static String command = "java";
 	private static String[] splitCommand = new String[] { "java" };
+	private static int poolSize = 0;
 
 	private static Logger logger;
 
@@ -106,6 +132,15 @@ public class Launcher
 	private static Semaphore finishSema = new Semaphore (0);
 	private static Throwable excThrown;
 
+	// Pooled Backend processes, server socket to which they connect, and
+	// connections from idle pooled Backends.
+	private static ArrayList<Process> pool = new ArrayList<Process>();
+	private static ServerSocket poolServer;
+	private static LinkedList<Socket> idleBackends = new LinkedList<Socket>();
+
+	// Time to wait for an idle pooled Backend to accept a task (msec).
+	private static final int POOL_TIMEOUT = 5000;
+
 // Hidden constructors.
 
 	private Launcher()
@@ -167,6 +202,17 @@ public class Launcher
 					{
 					usage (String.format ("%s illegal", args[i]));
 					}
+			else if (args[i].startsWith ("pool="))
+				try
+					{
+					poolSize = Integer.parseInt (args[i].substring (5));
+					if (poolSize < 0)
+						usage (String.format ("%s illegal", args[i]));
+					}
+				catch (NumberFormatException exc)
+					{
+					usage (String.format ("%s illegal", args[i]));
+					}
 			else if (args[i].startsWith ("command="))
 				{
 				command = args[i].substring (8);
@@ -212,8 +258,9 @@ public class Launcher
 		try
 			{
 			logger.log (String.format
-				("Launcher started, tracker=%s:%d name=%s cores=%d gpus=%d command=\"%s\"",
-				 trackerHost, trackerPort, name, cores, gpus, command));
+				("Launcher started, tracker=%s:%d name=%s cores=%d gpus=%d pool=%d command=\"%s\"",
+				 trackerHost, trackerPort, name, cores, gpus, poolSize,
+				 command));
 
 			// Add a shutdown hook that will run when the Launcher exits.
 			Runtime.getRuntime().addShutdownHook (new Thread()
@@ -224,6 +271,9 @@ public class Launcher
 						heartbeat.cancel();
 					if (executor != null)
 						executor.shutdownNow();
+					if (poolServer != null)
+						try { poolServer.close(); }
+							catch (IOException exc) {}
 					if (trackerProxy != null)
 						{
 						try { tracker.launcherStopped (launcher); }
@@ -254,6 +304,10 @@ public class Launcher
 				};
 			heartbeat.enable (executor);
 
+			// Start the pooled Backends.
+			if (poolSize > 0)
+				startPool();
+
 			// Tell the Tracker that the Launcher started.
 			tracker.launcherStarted
 				(launcher, new NodeProperties (name, cores, gpus));
@@ -295,21 +349,33 @@ public class Launcher
 		{
 		try
 			{
-			ArrayList<String> args = new ArrayList<String>();
-			for (int i = 0; i < splitCommand.length; ++ i)
-				args.add (splitCommand[i]);
-			for (int i = 0; i < jvmFlags.length; ++ i)
-				args.add (jvmFlags[i]);
-			args.add ("edu.rit.pj2.Backend");
-			args.add (name);
-			args.add (""+jobID);
-			args.add (""+taskID);
-			args.add (jobHost);
-			args.add (""+jobPort);
-			new ProcessBuilder (args) .inheritIO() .start();
-			logger.log (String.format
-				("Backend launched, jobID=%d taskID=%d jobHost=%s jobPort=%d",
-				 jobID, taskID, jobHost, jobPort));
+			if (jvmFlags.length == 0 &&
+					launchPooled (jobID, taskID, jobHost, jobPort))
+				{
+				logger.log (String.format
+					("Pooled backend launched, jobID=%d taskID=%d jobHost=%s jobPort=%d",
+					 jobID, taskID, jobHost, jobPort));
+				}
+			else
+				{
+				ArrayList<String> args = new ArrayList<String>();
+				for (int i = 0; i < splitCommand.length; ++ i)
+					args.add (splitCommand[i]);
+				for (int i = 0; i < jvmFlags.length; ++ i)
+					args.add (jvmFlags[i]);
+				args.add ("edu.rit.pj2.Backend");
+				args.add (name);
+				args.add (""+jobID);
+				args.add (""+taskID);
+				args.add (jobHost);
+				args.add (""+jobPort);
+				new ProcessBuilder (args) .inheritIO() .start();
+				logger.log (String.format
+					("Backend launched, jobID=%d taskID=%d jobHost=%s jobPort=%d",
+					 jobID, taskID, jobHost, jobPort));
+				}
+			if (poolSize > 0)
+				fillPool();
 			}
 		catch (IOException exc)
 			{
@@ -355,10 +421,127 @@ public class Launcher
 		(String msg)
 		{
 		System.err.printf ("Launcher: %s%n", msg);
-		System.err.printf ("Usage: java edu.rit.pj2.tracker.Launcher [tracker=<host>[:<port>]] [name=<name>] [cores=<cores>] [gpus=<gpus>] [command=\"<command>\"]%n");
+		System.err.printf ("Usage: java edu.rit.pj2.tracker.Launcher [tracker=<host>[:<port>]] [name=<name>] [cores=<cores>] [gpus=<gpus>] [pool=<pool>] [command=\"<command>\"]%n");
 		System.exit (1);
 		}
 
+	/**
+	 * Start the pool of Backend processes. Idle pooled Backends connect to a
+	 * server socket on the local host.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private static void startPool()
+		throws IOException
+		{
+		poolServer = new ServerSocket (0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread()
+			{
+			public void run()
+				{
+				try
+					{
+					for (;;)
+						{
+						Socket socket = poolServer.accept();
+						synchronized (idleBackends)
+							{
+							idleBackends.addLast (socket);
+							}
+						}
+					}
+				catch (IOException exc)
+					{
+					}
+				}
+			};
+		acceptor.setDaemon (true);
+		acceptor.start();
+		fillPool();
+		}
+
+	/**
+	 * Start new pooled Backend processes to replace the ones that exited, up to
+	 * the pool size.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	private static void fillPool()
+		throws IOException
+		{
+		synchronized (pool)
+			{
+			for (int i = pool.size() - 1; i >= 0; -- i)
+				if (! pool.get (i) .isAlive())
+					pool.remove (i);
+			while (pool.size() < poolSize)
+				{
+				ArrayList<String> args = new ArrayList<String>();
+				for (int i = 0; i < splitCommand.length; ++ i)
+					args.add (splitCommand[i]);
+				args.add ("edu.rit.pj2.Backend");
+				args.add (name);
+				args.add (""+poolServer.getLocalPort());
+				pool.add (new ProcessBuilder (args) .inheritIO() .start());
+				}
+			}
+		}
+
+	/**
+	 * Give the given task to an idle pooled Backend, if there is one.
+	 *
+	 * @param  jobID    Job ID.
+	 * @param  taskID   Task ID.
+	 * @param  jobHost  Job's host name.
+	 * @param  jobPort  Job's port number.
+	 *
+	 * @return  True if a pooled Backend took the task, false otherwise.
+	 */
+	private static boolean launchPooled
+		(long jobID,
+		 long taskID,
+		 String jobHost,
+		 int jobPort)
+		{
+		for (;;)
+			{
+			Socket socket;
+			synchronized (idleBackends)
+				{
+				socket = idleBackends.pollFirst();
+				}
+			if (socket == null)
+				return false;
+
+			// A pooled Backend that exited while idle will not acknowledge
+			// the task; try the next one.
+			try
+				{
+				socket.setSoTimeout (POOL_TIMEOUT);
+				DataOutputStream out =
+					new DataOutputStream (socket.getOutputStream());
+				out.writeLong (jobID);
+				out.writeLong (taskID);
+				out.writeUTF (jobHost);
+				out.writeInt (jobPort);
+				out.flush();
+				if (socket.getInputStream().read() != 0)
+					throw new EOFException();
+				return true;
+				}
+			catch (IOException exc)
+				{
+				}
+			finally
+				{
+				try { socket.close(); }
+					catch (IOException exc) {}
+				}
+			}
+		}
+
 	/**
 	 * Stop the Launcher program.
 	 *
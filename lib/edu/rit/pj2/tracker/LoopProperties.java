@@ -25,7 +25,9 @@
 
 package edu.rit.pj2.tracker;
 
+import edu.rit.pj2.Affinity;
 import edu.rit.pj2.Schedule;
+import edu.rit.pj2.WaitPolicy;
 import edu.rit.io.InStream;
 import edu.rit.io.OutStream;
 import edu.rit.io.Streamable;
@@ -39,10 +41,14 @@ import java.io.IOException;
  * loop.
  * <LI><TT>schedule</TT> &mdash; The parallel loop schedule.
  * <LI><TT>chunk</TT> &mdash; The parallel loop chunk size.
+ * <LI><TT>waitPolicy</TT> &mdash; How the parallel loop's threads wait for each
+ * other.
+ * <LI><TT>affinity</TT> &mdash; How the parallel loop's threads are placed on
+ * the node's cores.
  * </UL>
  *
  * @author  Alan Kaminsky
- * @version 23-Mar-2014
+ * @version 18-Mar-2015
  */
 public class LoopProperties
 	implements Streamable
@@ -65,6 +71,16 @@ public class LoopProperties
 	 */
 	public static final int DEFAULT_CHUNK = -1;
 
+	/**
+	 * Indicates that the <TT>waitPolicy</TT> property is defaulted.
+	 */
+	public static final WaitPolicy DEFAULT_WAIT_POLICY = null;
+
+	/**
+	 * Indicates that the <TT>affinity</TT> property is defaulted.
+	 */
+	public static final Affinity DEFAULT_AFFINITY = null;
+
 	/**
 	 * Indicates that a parallel for loop will be executed by as many threads as
 	 * there are cores on the machine.
@@ -82,6 +98,8 @@ public class LoopProperties
 	int threads = DEFAULT_THREADS;
 	Schedule schedule = DEFAULT_SCHEDULE;
 	int chunk = DEFAULT_CHUNK;
+	WaitPolicy waitPolicy = DEFAULT_WAIT_POLICY;
+	Affinity affinity = DEFAULT_AFFINITY;
 
 // Exported constructors.
 
@@ -131,6 +149,8 @@ public class LoopProperties
 		this.threads (props.threads);
 		this.schedule (props.schedule);
 		this.chunk (props.chunk);
+		this.waitPolicy (props.waitPolicy);
+		this.affinity (props.affinity);
 		}
 
 // Exported operations.
@@ -294,6 +314,74 @@ public class LoopProperties
 		return chunk == DEFAULT_CHUNK ? STANDARD_CHUNK : chunk;
 		}
 
+	/**
+	 * Set the <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT> property
+	 * specifies how the threads executing a parallel for loop wait for each
+	 * other. Refer to enum {@linkplain WaitPolicy} for descriptions of the
+	 * possible wait policies.
+	 *
+	 * @param  waitPolicy  Wait policy, or {@link #DEFAULT_WAIT_POLICY}.
+	 *
+	 * @return  This loop properties object.
+	 *
+	 * @see  #waitPolicy()
+	 */
+	public LoopProperties waitPolicy
+		(WaitPolicy waitPolicy)
+		{
+		this.waitPolicy = waitPolicy;
+		return this;
+		}
+
+	/**
+	 * Get the <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT> property
+	 * specifies how the threads executing a parallel for loop wait for each
+	 * other. If the <TT>waitPolicy</TT> property is defaulted, a {@link
+	 * WaitPolicy#park park} wait policy is returned.
+	 *
+	 * @return  Wait policy.
+	 *
+	 * @see  #waitPolicy(WaitPolicy)
+	 */
+	public WaitPolicy waitPolicy()
+		{
+		return waitPolicy == DEFAULT_WAIT_POLICY ? WaitPolicy.park : waitPolicy;
+		}
+
+	/**
+	 * Set the <TT>affinity</TT> property. The <TT>affinity</TT> property
+	 * specifies how the threads executing a parallel for loop are placed on the
+	 * node's cores. Refer to enum {@linkplain Affinity} for descriptions of the
+	 * possible affinities.
+	 *
+	 * @param  affinity  Affinity, or {@link #DEFAULT_AFFINITY}.
+	 *
+	 * @return  This loop properties object.
+	 *
+	 * @see  #affinity()
+	 */
+	public LoopProperties affinity
+		(Affinity affinity)
+		{
+		this.affinity = affinity;
+		return this;
+		}
+
+	/**
+	 * Get the <TT>affinity</TT> property. The <TT>affinity</TT> property
+	 * specifies how the threads executing a parallel for loop are placed on the
+	 * node's cores. If the <TT>affinity</TT> property is defaulted, {@link
+	 * Affinity#none none} is returned.
+	 *
+	 * @return  Affinity.
+	 *
+	 * @see  #affinity(Affinity)
+	 */
+	public Affinity affinity()
+		{
+		return affinity == DEFAULT_AFFINITY ? Affinity.none : affinity;
+		}
+
 	/**
 	 * Write this object's fields to the given out stream.
 	 *
@@ -309,6 +397,8 @@ public class LoopProperties
 		out.writeInt (threads);
 		Schedule.writeOut (schedule, out);
 		out.writeInt (chunk);
+		WaitPolicy.writeOut (waitPolicy, out);
+		Affinity.writeOut (affinity, out);
 		}
 
 	/**
@@ -326,6 +416,8 @@ public class LoopProperties
 		threads = in.readInt();
 		schedule = Schedule.readIn (in);
 		chunk = in.readInt();
+		waitPolicy = WaitPolicy.readIn (in);
+		affinity = Affinity.readIn (in);
 		}
 
 	/**
@@ -336,8 +428,8 @@ public class LoopProperties
 	public String toString()
 		{
 		return String.format
-			("LoopProperties(threads=%d,schedule=%s,chunk=%d)",
-			 threads(), schedule(), chunk());
+			("LoopProperties(threads=%d,schedule=%s,chunk=%d,waitPolicy=%s,affinity=%s)",
+			 threads(), schedule(), chunk(), waitPolicy(), affinity());
 		}
 
 	}
@@ -29,7 +29,7 @@ package edu.rit.pj2.tracker;
  * Class Opcode provides opcodes for the PJ2 binary protocol.
  *
  * @author  Alan Kaminsky
- * @version 10-Jul-2013
+ * @version 18-Mar-2015
  */
 class Opcode
 	{
@@ -79,6 +79,38 @@ class Opcode
 	public static final byte BACKENDREF_STOP_TASK               = (byte) 30;
 	public static final byte BACKENDREF_HEARTBEAT_FROM_JOB      = (byte) 31;
 
+	// Opcodes denoting batch tuple methods in interfaces JobRef and BackendRef.
+	public static final byte JOBREF_TAKE_TUPLES                 = (byte) 32;
+	public static final byte JOBREF_WRITE_TUPLES                = (byte) 33;
+	public static final byte BACKENDREF_TUPLES_TAKEN            = (byte) 34;
+
+	// Opcode denoting a tuple server at the far end, and opcodes denoting
+	// methods in interface TupleServerRef.
+	public static final byte TUPLE_SERVER                       = (byte) 35;
+	public static final byte TUPLESERVERREF_OPEN_JOB            = (byte) 36;
+	public static final byte TUPLESERVERREF_TAKE_TUPLE          = (byte) 37;
+	public static final byte TUPLESERVERREF_TAKE_TUPLES         = (byte) 38;
+	public static final byte TUPLESERVERREF_WRITE_TUPLE         = (byte) 39;
+	public static final byte TUPLESERVERREF_WRITE_TUPLES        = (byte) 40;
+	public static final byte TUPLESERVERREF_TASK_FINISHED       = (byte) 41;
+	public static final byte TUPLESERVERREF_CLOSE_JOB           = (byte) 42;
+
+	// Opcode denoting the sync method in interface TupleServerRef.
+	public static final byte TUPLESERVERREF_SYNC                = (byte) 43;
+
+	// Opcodes denoting the tuple take cancellation methods in interfaces JobRef
+	// and TupleServerRef.
+	public static final byte JOBREF_CANCEL_TAKE_TUPLE           = (byte) 44;
+	public static final byte TUPLESERVERREF_CANCEL_TAKE_TUPLE   = (byte) 45;
+
+	// Opcode denoting the tuple space metrics method in interface TrackerRef.
+	public static final byte TRACKERREF_TUPLE_SPACE_METRICS     = (byte) 46;
+
+	// Opcodes denoting JAR file transfer methods in interfaces JobRef and
+	// BackendRef.
+	public static final byte JOBREF_REQUEST_JAR                 = (byte) 47;
+	public static final byte BACKENDREF_JAR_CONTENTS            = (byte) 48;
+
 	// Opcode for shutting down the connection.
 	public static final byte SHUTDOWN                           = (byte) 255;
 	}
@@ -50,7 +50,7 @@ import java.io.IOException;
  * files needed to deserialize them.
  *
  * @author  Alan Kaminsky
- * @version 24-Mar-2014
+ * @version 18-Mar-2015
  */
 public class TaskInfo
 	implements Streamable
@@ -84,10 +84,18 @@ public class TaskInfo
 	public TaskProperties properties;
 
 	/**
-	 * Java archive (JAR) containing task's class files, or null if none.
+	 * Java archive (JAR) containing task's class files, or null if none or if
+	 * only the JAR file's hash is sent.
 	 */
 	public byte[] jar;
 
+	/**
+	 * Hash of the Java archive (JAR) containing task's class files, or null if
+	 * none. A backend that does not have the JAR file with this hash asks the
+	 * job for it.
+	 */
+	public byte[] jarHash;
+
 	/**
 	 * Size of the task's task group.
 	 */
@@ -104,6 +112,25 @@ public class TaskInfo
 	 */
 	public int[] devnum;
 
+	/**
+	 * Array of addresses (<TT>"<I>host</I>:<I>port</I>"</TT>) of the
+	 * {@linkplain TupleServer TupleServer}s across which the job's tuple space
+	 * is sharded, or null if the job's tuple space is not sharded.
+	 */
+	public String[] tupleServers;
+
+	/**
+	 * Array of class names of the tuple families that are kept in the job's
+	 * own tuple space even though the job's tuple space is sharded, or null if
+	 * the job's tuple space is not sharded.
+	 */
+	public String[] jobFamilies;
+
+	/**
+	 * ID of the job's tuple space on the tuple servers.
+	 */
+	public long spaceID;
+
 	/**
 	 * Additional data, or null if none.
 	 * <P>
@@ -156,9 +183,13 @@ public class TaskInfo
 		out.writeStringArray (args);
 		out.writeFields (properties);
 		out.writeByteArray (jar);
+		out.writeByteArray (jarHash);
 		out.writeInt (size);
 		out.writeInt (rank);
 		out.writeIntArray (devnum);
+		out.writeStringArray (tupleServers);
+		out.writeStringArray (jobFamilies);
+		out.writeLong (spaceID);
 		out.writeByteArray (marshaledInputTuples);
 		}
 
@@ -181,9 +212,13 @@ public class TaskInfo
 		inputTuples = null;
 		properties = in.readFields (new TaskProperties());
 		jar = in.readByteArray();
+		jarHash = in.readByteArray();
 		size = in.readInt();
 		rank = in.readInt();
 		devnum = in.readIntArray();
+		tupleServers = in.readStringArray();
+		jobFamilies = in.readStringArray();
+		spaceID = in.readLong();
 		moreData = null;
 		marshaledInputTuples = in.readByteArray();
 		}
@@ -244,6 +279,8 @@ public class TaskInfo
 			b.append (jar.length);
 			b.append (']');
 			}
+		b.append (",jarHash=");
+		b.append (jarHash == null ? "null" : "byte["+jarHash.length+"]");
 		b.append (",size=");
 		b.append (size);
 		b.append (",rank=");
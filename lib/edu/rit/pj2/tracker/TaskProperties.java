@@ -25,7 +25,9 @@
 
 package edu.rit.pj2.tracker;
 
+import edu.rit.pj2.Affinity;
 import edu.rit.pj2.Schedule;
+import edu.rit.pj2.WaitPolicy;
 import edu.rit.io.InStream;
 import edu.rit.io.OutStream;
 import edu.rit.io.Streamable;
@@ -39,6 +41,10 @@ import java.io.IOException;
  * in the task.
  * <LI><TT>schedule</TT> &mdash; The schedule for parallel loops in the task.
  * <LI><TT>chunk</TT> &mdash; The chunk size for parallel loops in the task.
+ * <LI><TT>waitPolicy</TT> &mdash; How the threads executing parallel loops in
+ * the task wait for each other.
+ * <LI><TT>affinity</TT> &mdash; How the threads executing parallel loops in the
+ * task are placed on the node's cores.
  * <LI><TT>nodeName</TT> &mdash; The name of the node on which to run the task.
  * <LI><TT>cores</TT> &mdash; The number of CPU cores needed to run the task.
  * <LI><TT>gpus</TT> &mdash; The number of GPU accelerators needed to run the
@@ -55,7 +61,7 @@ import java.io.IOException;
  * if any are not serialized; only the ultimate setting values are serialized.
  *
  * @author  Alan Kaminsky
- * @version 30-May-2014
+ * @version 18-Mar-2015
  */
 public class TaskProperties
 	implements Streamable
@@ -79,6 +85,18 @@ public class TaskProperties
 	 */
 	public static final int DEFAULT_CHUNK = LoopProperties.DEFAULT_CHUNK;
 
+	/**
+	 * Indicates that the <TT>waitPolicy</TT> property is defaulted.
+	 */
+	public static final WaitPolicy DEFAULT_WAIT_POLICY =
+		LoopProperties.DEFAULT_WAIT_POLICY;
+
+	/**
+	 * Indicates that the <TT>affinity</TT> property is defaulted.
+	 */
+	public static final Affinity DEFAULT_AFFINITY =
+		LoopProperties.DEFAULT_AFFINITY;
+
 	/**
 	 * Indicates that a parallel for loop will be executed by as many threads as
 	 * there are cores on the machine.
@@ -186,7 +204,9 @@ public class TaskProperties
 		(TaskProperties props)
 		{
 		loopProps = new LoopProperties
-			(props.threads(), props.schedule(), props.chunk());
+			(props.threads(), props.schedule(), props.chunk())
+			.waitPolicy (props.waitPolicy())
+			.affinity (props.affinity());
 		nodeProps = new NodeProperties
 			(props.nodeName(), props.cores(), props.gpus());
 		}
@@ -449,6 +469,88 @@ public class TaskProperties
 		return rv == DEFAULT_CHUNK ? STANDARD_CHUNK : rv;
 		}
 
+	/**
+	 * Set the <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT> property
+	 * specifies how the threads executing a parallel for loop wait for each
+	 * other. Refer to enum {@linkplain WaitPolicy} for descriptions of the
+	 * possible wait policies.
+	 *
+	 * @param  waitPolicy  Wait policy, or {@link #DEFAULT_WAIT_POLICY}.
+	 *
+	 * @return  This task properties object.
+	 *
+	 * @see  #waitPolicy()
+	 */
+	public TaskProperties waitPolicy
+		(WaitPolicy waitPolicy)
+		{
+		loopProps.waitPolicy (waitPolicy);
+		return this;
+		}
+
+	/**
+	 * Get the <TT>waitPolicy</TT> property. The <TT>waitPolicy</TT> property
+	 * specifies how the threads executing a parallel for loop wait for each
+	 * other. If the <TT>waitPolicy</TT> property is defaulted, a {@link
+	 * WaitPolicy#park park} wait policy is returned.
+	 *
+	 * @return  Wait policy.
+	 *
+	 * @see  #waitPolicy(WaitPolicy)
+	 */
+	public WaitPolicy waitPolicy()
+		{
+		TaskProperties p = this;
+		WaitPolicy rv = p.loopProps.waitPolicy;
+		while (rv == DEFAULT_WAIT_POLICY && p.chained != null)
+			{
+			p = p.chained;
+			rv = p.loopProps.waitPolicy;
+			}
+		return rv == DEFAULT_WAIT_POLICY ? WaitPolicy.park : rv;
+		}
+
+	/**
+	 * Set the <TT>affinity</TT> property. The <TT>affinity</TT> property
+	 * specifies how the threads executing a parallel for loop are placed on the
+	 * node's cores. Refer to enum {@linkplain Affinity} for descriptions of the
+	 * possible affinities.
+	 *
+	 * @param  affinity  Affinity, or {@link #DEFAULT_AFFINITY}.
+	 *
+	 * @return  This task properties object.
+	 *
+	 * @see  #affinity()
+	 */
+	public TaskProperties affinity
+		(Affinity affinity)
+		{
+		loopProps.affinity (affinity);
+		return this;
+		}
+
+	/**
+	 * Get the <TT>affinity</TT> property. The <TT>affinity</TT> property
+	 * specifies how the threads executing a parallel for loop are placed on the
+	 * node's cores. If the <TT>affinity</TT> property is defaulted, {@link
+	 * Affinity#none none} is returned.
+	 *
+	 * @return  Affinity.
+	 *
+	 * @see  #affinity(Affinity)
+	 */
+	public Affinity affinity()
+		{
+		TaskProperties p = this;
+		Affinity rv = p.loopProps.affinity;
+		while (rv == DEFAULT_AFFINITY && p.chained != null)
+			{
+			p = p.chained;
+			rv = p.loopProps.affinity;
+			}
+		return rv == DEFAULT_AFFINITY ? Affinity.none : rv;
+		}
+
 	/**
 	 * Set the <TT>nodeName</TT> property. The <TT>nodeName</TT> property
 	 * specifies the name of the cluster node on which the task must run.
@@ -599,6 +701,8 @@ public class TaskProperties
 		out.writeInt (threads());
 		Schedule.writeOut (schedule(), out);
 		out.writeInt (chunk());
+		WaitPolicy.writeOut (waitPolicy(), out);
+		Affinity.writeOut (affinity(), out);
 		out.writeString (nodeName());
 		out.writeInt (cores());
 		out.writeInt (gpus());
@@ -629,8 +733,9 @@ public class TaskProperties
 	public String toString()
 		{
 		return String.format
-			("TaskProperties(threads=%d,schedule=%s,chunk=%d,nodeName=\"%s\",cores=%d,gpus=%d)",
-			 threads(), schedule(), chunk(), nodeName(), cores(), gpus());
+			("TaskProperties(threads=%d,schedule=%s,chunk=%d,waitPolicy=%s,affinity=%s,nodeName=\"%s\",cores=%d,gpus=%d)",
+			 threads(), schedule(), chunk(), waitPolicy(), affinity(),
+			 nodeName(), cores(), gpus());
 		}
 
 	}
@@ -28,6 +28,7 @@ package edu.rit.pj2.tracker;
 import edu.rit.http.HttpRequest;
 import edu.rit.http.HttpResponse;
 import edu.rit.http.HttpServer;
+import edu.rit.pj2.TupleSpaceMetrics;
 import edu.rit.pj2.Version;
 import edu.rit.util.AList;
 import edu.rit.util.Action;
@@ -182,7 +183,11 @@ import java.util.concurrent.ScheduledExecutorService;
  * node.
  * <P><LI>
  * Details about each job, including the running, launched, and finished tasks
- * for the job.
+ * for the job, and the job's tuple space metrics (see class {@linkplain
+ * edu.rit.pj2.TupleSpaceMetrics TupleSpaceMetrics}): for each tuple class, the
+ * live count, size, put and take rates, and match attempts versus hits; a
+ * histogram of blocked tuple take wait times; and the longest waiting tuple
+ * take requests. A job sends its metrics to the tracker every 10 seconds.
  * <P><LI>
  * A list of all running, launched, and finished tasks in the system.
  * </UL>
@@ -265,6 +270,7 @@ public class Tracker
 		public long startTime;
 		public long minTaskStartTime;
 		public Heartbeat heartbeat;
+		public TupleSpaceMetrics metrics; // Null if none received yet
 		}
 	private static Map<Long,JobInfo> jobMap = new Map<Long,JobInfo>();
 	private static JobInfo[] jobArray = new JobInfo [0];
@@ -978,6 +984,31 @@ public class Tracker
 			}
 		}
 
+	/**
+	 * Tell this tracker the current metrics of the given job's tuple space.
+	 *
+	 * @param  jobID    Job ID.
+	 * @param  metrics  Tuple space metrics.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void tupleSpaceMetrics
+		(long jobID,
+		 TupleSpaceMetrics metrics)
+		throws IOException
+		{
+		synchronized (lock)
+			{
+			JobInfo info = jobMap.get (jobID);
+			if (info == null)
+				logger.log (String.format
+					("tupleSpaceMetrics(%d): Unknown job", jobID));
+			else
+				info.metrics = metrics;
+			}
+		}
+
 	/**
 	 * Tell this tracker that the given launcher is still alive.
 	 *
@@ -2163,11 +2194,142 @@ public class Tracker
 			displayTaskList (out, now, true, false,
 				new FindJob (info.jobID),
 				runningTaskList, pendingTaskList, finishedTaskList);
+			out.printf ("<H3>Tuple Space</H3>%n");
+			if (info.metrics == null)
+				out.printf ("<P>%nNo metrics received yet%n");
+			else
+				displayTupleSpaceMetrics (out, info.metrics);
 			}
 
 		return jobDetailsUrl (id);
 		}
 
+	/**
+	 * Display a job's tuple space metrics.
+	 *
+	 * @param  out      Print writer for HTML body.
+	 * @param  metrics  Tuple space metrics.
+	 */
+	private static void displayTupleSpaceMetrics
+		(PrintWriter out,
+		 TupleSpaceMetrics metrics)
+		{
+		int row;
+		out.printf ("<P>%n");
+		out.printf ("As of %s: %d tuples, %d bytes, %d blocked take requests%n",
+			new Date (metrics.getTime()), metrics.getTupleCount(),
+			metrics.getTupleBytes(), metrics.getBlockedTakes());
+
+		// Print metrics for each tuple class.
+		row = 0;
+		out.printf ("<P>%n");
+		out.printf ("<TABLE BORDER=1 CELLPADDING=2 CELLSPACING=0>%n");
+		out.printf ("<TR>%n");
+		out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">%n");
+		out.printf ("<TABLE BORDER=0 CELLPADDING=2 CELLSPACING=0>%n");
+		out.printf ("<TR BGCOLOR=\"%s\">%n", stripeColor (row ++));
+		out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\"><I>&nbsp;Tuple class&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Count&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Bytes&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Puts&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Puts/sec&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Takes&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Takes/sec&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Match attempts&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Match hits&nbsp;</I></TD>%n");
+		out.printf ("</TR>%n");
+		for (TupleSpaceMetrics.TupleClass tc : metrics.getTupleClasses())
+			{
+			out.printf ("<TR BGCOLOR=\"%s\">%n", stripeColor (row ++));
+			out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">&nbsp;%s&nbsp;</TD>%n",
+				tc.getName());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%d&nbsp;</TD>%n",
+				tc.getCount());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%d&nbsp;</TD>%n",
+				tc.getBytes());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%d&nbsp;</TD>%n",
+				tc.getPuts());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%.1f&nbsp;</TD>%n",
+				tc.getPutRate());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%d&nbsp;</TD>%n",
+				tc.getTakes());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%.1f&nbsp;</TD>%n",
+				tc.getTakeRate());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%d&nbsp;</TD>%n",
+				tc.getMatchAttempts());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%d&nbsp;</TD>%n",
+				tc.getMatchHits());
+			out.printf ("</TR>%n");
+			}
+		out.printf ("</TABLE>%n");
+		out.printf ("</TD>%n");
+		out.printf ("</TR>%n");
+		out.printf ("</TABLE>%n");
+
+		// Print wait time histogram, omitting empty bins.
+		row = 0;
+		out.printf ("<P>%n");
+		out.printf ("<TABLE BORDER=1 CELLPADDING=2 CELLSPACING=0>%n");
+		out.printf ("<TR>%n");
+		out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">%n");
+		out.printf ("<TABLE BORDER=0 CELLPADDING=2 CELLSPACING=0>%n");
+		out.printf ("<TR BGCOLOR=\"%s\">%n", stripeColor (row ++));
+		out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\"><I>&nbsp;Blocked take wait time&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Requests&nbsp;</I></TD>%n");
+		out.printf ("</TR>%n");
+		long[] waitCounts = metrics.getWaitCounts();
+		for (int i = 0; i < waitCounts.length; ++ i)
+			{
+			if (waitCounts[i] == 0L) continue;
+			out.printf ("<TR BGCOLOR=\"%s\">%n", stripeColor (row ++));
+			if (i == 0)
+				out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">&nbsp;&lt; 1 msec&nbsp;</TD>%n");
+			else if (i == waitCounts.length - 1)
+				out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">&nbsp;&ge; %d msec&nbsp;</TD>%n",
+					1L << (i - 1));
+			else
+				out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">&nbsp;%d &ndash; %d msec&nbsp;</TD>%n",
+					1L << (i - 1), (1L << i) - 1L);
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%d&nbsp;</TD>%n",
+				waitCounts[i]);
+			out.printf ("</TR>%n");
+			}
+		out.printf ("</TABLE>%n");
+		out.printf ("</TD>%n");
+		out.printf ("</TR>%n");
+		out.printf ("</TABLE>%n");
+
+		// Print longest waiting take requests.
+		TupleSpaceMetrics.Waiter[] waiters = metrics.getLongestWaiters();
+		if (waiters.length == 0) return;
+		row = 0;
+		out.printf ("<P>%n");
+		out.printf ("<TABLE BORDER=1 CELLPADDING=2 CELLSPACING=0>%n");
+		out.printf ("<TR>%n");
+		out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">%n");
+		out.printf ("<TABLE BORDER=0 CELLPADDING=2 CELLSPACING=0>%n");
+		out.printf ("<TR BGCOLOR=\"%s\">%n", stripeColor (row ++));
+		out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\"><I>&nbsp;Task&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\"><I>&nbsp;Template&nbsp;</I></TD>%n");
+		out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\"><I>&nbsp;Waiting&nbsp;</I></TD>%n");
+		out.printf ("</TR>%n");
+		for (TupleSpaceMetrics.Waiter waiter : waiters)
+			{
+			out.printf ("<TR BGCOLOR=\"%s\">%n", stripeColor (row ++));
+			out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">&nbsp;%d&nbsp;</TD>%n",
+				waiter.getTaskID());
+			out.printf ("<TD ALIGN=\"left\" VALIGN=\"top\">&nbsp;%s&nbsp;</TD>%n",
+				waiter.getTemplate());
+			out.printf ("<TD ALIGN=\"right\" VALIGN=\"top\">&nbsp;%d sec&nbsp;</TD>%n",
+				msecToSec (waiter.getWaitTime()));
+			out.printf ("</TR>%n");
+			}
+		out.printf ("</TABLE>%n");
+		out.printf ("</TD>%n");
+		out.printf ("</TR>%n");
+		out.printf ("</TABLE>%n");
+		}
+
 	/**
 	 * Display the task list web page.
 	 *
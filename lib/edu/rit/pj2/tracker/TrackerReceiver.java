@@ -25,6 +25,7 @@
 
 package edu.rit.pj2.tracker;
 
+import edu.rit.pj2.TupleSpaceMetrics;
 import edu.rit.util.AList;
 import java.io.EOFException;
 import java.net.SocketException;
@@ -76,6 +77,7 @@ public class TrackerReceiver
 		String user, jobHost, msg;
 		int jobPort;
 		AList<TaskSpecInfo> taskGroup;
+		TupleSpaceMetrics metrics;
 
 		try
 			{
@@ -133,6 +135,13 @@ public class TrackerReceiver
 						jobID = in.readLong();
 						tracker.heartbeatFromJob (jobID);
 						break;
+					case Opcode.TRACKERREF_TUPLE_SPACE_METRICS:
+						jobID = in.readLong();
+						metrics = in.readFields (new TupleSpaceMetrics());
+						in.clearCache();
+						tracker.tupleSpaceMetrics (jobID, metrics);
+						metrics = null;
+						break;
 					case Opcode.TRACKERREF_HEARTBEAT_FROM_LAUNCHER:
 						tracker.heartbeatFromLauncher ((LauncherRef)sender);
 						break;
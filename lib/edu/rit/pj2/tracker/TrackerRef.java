@@ -25,6 +25,7 @@
 
 package edu.rit.pj2.tracker;
 
+import edu.rit.pj2.TupleSpaceMetrics;
 import edu.rit.util.AList;
 import java.io.IOException;
 
@@ -166,6 +167,20 @@ public interface TrackerRef
 		(long jobID)
 		throws IOException;
 
+	/**
+	 * Tell this tracker the current metrics of the given job's tuple space.
+	 *
+	 * @param  jobID    Job ID.
+	 * @param  metrics  Tuple space metrics.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void tupleSpaceMetrics
+		(long jobID,
+		 TupleSpaceMetrics metrics)
+		throws IOException;
+
 	/**
 	 * Tell this tracker that the given launcher is still alive.
 	 *
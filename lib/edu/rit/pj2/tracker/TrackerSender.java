@@ -25,6 +25,7 @@
 
 package edu.rit.pj2.tracker;
 
+import edu.rit.pj2.TupleSpaceMetrics;
 import edu.rit.util.AList;
 import java.io.IOException;
 
@@ -231,6 +232,27 @@ public class TrackerSender
 		out.flush();
 		}
 
+	/**
+	 * Tell this tracker the current metrics of the given job's tuple space.
+	 *
+	 * @param  jobID    Job ID.
+	 * @param  metrics  Tuple space metrics.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void tupleSpaceMetrics
+		(long jobID,
+		 TupleSpaceMetrics metrics)
+		throws IOException
+		{
+		out.writeByte (Opcode.TRACKERREF_TUPLE_SPACE_METRICS);
+		out.writeLong (jobID);
+		out.writeFields (metrics);
+		out.clearCache();
+		out.flush();
+		}
+
 	/**
 	 * Tell this tracker that the given launcher is still alive.
 	 *
@@ -0,0 +1,944 @@
+//******************************************************************************
+//
+// File:    TupleServer.java
+// Package: edu.rit.pj2.tracker
+// Unit:    Class edu.rit.pj2.tracker.TupleServer
+//
+// This Java source file is copyright (C) 2013 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.tracker;
+
+import edu.rit.pj2.JarClassLoader;
+import edu.rit.pj2.Tuple;
+import edu.rit.pj2.TupleSpace;
+import edu.rit.pj2.Version;
+import edu.rit.util.AList;
+import edu.rit.util.DList;
+import edu.rit.util.DListEntry;
+import edu.rit.util.Logger;
+import edu.rit.util.PrintStreamLogger;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class TupleServer provides a tuple server object and main program for holding
+ * part of the tuple space of one or more {@linkplain edu.rit.pj2.Job Job}s. The
+ * tuple server prints log messages on the standard output.
+ * <P>
+ * Usage: <TT>java edu.rit.pj2.tracker.TupleServer
+ * [server=<I>host</I>[:<I>port</I>]] [budget=<I>bytes</I>]</TT>
+ * <P>
+ * The following options may be specified:
+ * <UL>
+ * <P><LI>
+ * <TT>server=<I>host</I></TT> &mdash; The tuple server will listen for
+ * connections from Jobs and Backends at the given host name and port 20619.
+ * <P>
+ * <TT>server=<I>host</I>:<I>port</I></TT> &mdash; The tuple server will listen
+ * for connections from Jobs and Backends at the given host name and port
+ * number.
+ * <P>
+ * If omitted, the tuple server will listen for connections at host
+ * <TT>localhost</TT> and port 20619.
+ * <P><LI>
+ * <TT>budget=<I>bytes</I></TT> &mdash; Each job's tuples beyond the given
+ * number of bytes are spilled to a log file rather than being kept in the
+ * tuple server's heap. See the {@link edu.rit.pj2.TupleSpace#budget(long)
+ * TupleSpace.budget()} method for further information.
+ * <P>
+ * If omitted, all tuples are kept in the tuple server's heap.
+ * </UL>
+ * <P>
+ * A job whose tuple space is sharded across tuple servers (see the {@link
+ * edu.rit.pj2.Job#tupleServers(String[]) Job.tupleServers()} method) assigns
+ * each family of tuple classes to one tuple server, by hashing the name of the
+ * family's class. The job's tasks send tuple requests for that family directly
+ * to the tuple server, not to the job; the tuple server keeps the family's
+ * tuples, matches take requests with them, and sends the results directly to
+ * the tasks. Several tuple servers, typically one on each node alongside the
+ * {@linkplain Launcher Launcher}, thus spread both the memory and the message
+ * traffic of a large tuple space. Several tuple servers may run on one machine
+ * if they listen at different ports.
+ * <P>
+ * A tuple server may serve several jobs at once; each job's tuples are kept
+ * separately. The tuple server discards a job's tuples, and deletes the job's
+ * spill log file if any, when the job finishes.
+ * The tuple server loads the job's tuple classes from the JAR file specified
+ * for the job, if any, otherwise from the tuple server's own class path.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class TupleServer
+	implements TupleServerRef
+	{
+
+// Hidden data members.
+
+	private static String serverHost = "localhost";
+	private static int serverPort = 20619;
+	private static long budget = 0L;
+
+	private static Logger logger;
+
+	private static TupleServerRef server;
+	private static ServerSocket serverSocket;
+
+	// Take request.
+	private static class TakeInfo
+		{
+		public BackendRef client;
+		public long taskID;
+		public long requestID;
+		public Tuple template;
+		public boolean taking;
+		public int maxCount;         // 0 = take or read one tuple
+		public Tuple target;         // Result if maxCount = 0
+		public AList<Tuple> targets; // Result if maxCount > 0
+		public long seq;             // Order of arrival
+		public Class<?> family;      // Null = any family
+		public DListEntry<TakeInfo> entry; // While blocked
+		}
+
+	// Blocked take requests of one family, indexed by the template's matching
+	// class. Each list is in order of arrival.
+	private static class BlockedTakes
+		{
+		public HashMap<Class<?>,DList<TakeInfo>> lists =
+			new HashMap<Class<?>,DList<TakeInfo>>();
+		public volatile int count;
+		}
+
+	// One job's part of tuple space. As in class Job, blocked take requests
+	// are grouped by the family of the template's matching class, so a
+	// written tuple is matched only with the requests that might match it. A
+	// family's requests are accessed only within a tuple space transaction
+	// that covers the family. Requests whose templates can match any family
+	// are grouped under Tuple.class and are accessed only within a
+	// transaction that covers all of tuple space. Blocked requests are also
+	// indexed by task ID and request ID, so they can be cancelled.
+	private static class JobSpace
+		{
+		public ClassLoader classLoader;
+		public TupleSpace tupleSpace = new TupleSpace();
+		public ConcurrentHashMap<Class<?>,BlockedTakes> blocked =
+			new ConcurrentHashMap<Class<?>,BlockedTakes>();
+		public ConcurrentHashMap<Long,ConcurrentHashMap<Long,TakeInfo>>
+			requests =
+				new ConcurrentHashMap<Long,ConcurrentHashMap<Long,TakeInfo>>();
+		public AtomicLong seq = new AtomicLong();
+		}
+
+	// Job spaces, indexed by space ID.
+	private static HashMap<Long,JobSpace> spaceMap =
+		new HashMap<Long,JobSpace>();
+
+	private static Object lock = new Object();
+
+// Hidden constructors.
+
+	private TupleServer()
+		{
+		}
+
+// Main program.
+
+	/**
+	 * Main program.
+	 *
+	 * @param  args  Array of command line arguments.
+	 */
+	public static void main
+		(String[] args)
+		{
+		// Parse command line arguments.
+		for (int i = 0; i < args.length; ++ i)
+			{
+			if (args[i].startsWith ("server="))
+				{
+				serverHost = args[i].substring (7);
+				int j = serverHost.indexOf (':');
+				if (j >= 0)
+					try
+						{
+						serverPort = Integer.parseInt
+							(serverHost.substring (j + 1));
+						if (0 > serverPort || serverPort > 65535)
+							usageIllegal (args[i]);
+						serverHost = serverHost.substring (0, j);
+						}
+					catch (NumberFormatException exc)
+						{
+						usageIllegal (args[i]);
+						}
+				}
+			else if (args[i].startsWith ("budget="))
+				{
+				try
+					{
+					budget = Long.parseLong (args[i].substring (7));
+					if (budget < 1L)
+						usageIllegal (args[i]);
+					}
+				catch (NumberFormatException exc)
+					{
+					usageIllegal (args[i]);
+					}
+				}
+			else
+				usageIllegal (args[i]);
+			}
+
+		// Log messages on standard output.
+		logger = new PrintStreamLogger (System.out);
+
+		// Create tuple server.
+		server = new TupleServer();
+
+		// Listen for connections from Jobs and Backends.
+		try
+			{
+			serverSocket = new ServerSocket();
+			serverSocket.bind
+				(new InetSocketAddress (serverHost, serverPort));
+			}
+		catch (IOException exc)
+			{
+			usage (String.format
+				("Cannot listen for connections at %s:%d",
+				 serverHost, serverPort));
+			}
+
+		// Tuple server has started successfully.
+		try
+			{
+			logger.log (String.format
+				("Tuple server started, server=%s:%d version=%s",
+				 serverHost, serverPort, Version.PJ2_VERSION));
+
+			// Repeatedly accept incoming connections. If an error occurs while
+			// accepting a connection, go to the catch-all exception handler.
+			for (;;)
+				{
+				Socket socket = serverSocket.accept();
+
+				// Attach a proxy to the incoming connection.
+				try
+					{
+					new Proxy
+						(socket,
+						 new TupleServerReceiver
+							(new ReceiverListener()
+								{
+								public void receiverFailed
+									(Receiver receiver,
+									 Throwable exc)
+									{
+									// Log the error and terminate the proxy.
+									logger.log
+										("Exception while receiving message",
+										 exc);
+									receiver.terminate();
+									}
+								},
+							 server));
+					}
+
+				// If an error occurs while creating the proxy, log the error,
+				// close the socket, and keep running.
+				catch (Throwable exc)
+					{
+					logger.log
+						(String.format
+							("Exception while creating proxy, socket=%s",
+							 socket),
+						exc);
+					try { socket.close(); }
+						catch (IOException exc2) {}
+					}
+				}
+
+			// All further work is done in response to incoming messages.
+			}
+
+		// Catch-all exception handler. Log the error and exit.
+		catch (Throwable exc)
+			{
+			logger.log ("Unexpected exception", exc);
+			System.exit (0);
+			}
+		}
+
+// Exported operations.
+
+	/**
+	 * Tell this tuple server that the client will send requests for the tuple
+	 * space with the given space ID. The calling thread's context class loader
+	 * is set to the job space's class loader.
+	 *
+	 * @param  client   Client.
+	 * @param  spaceID  Space ID.
+	 * @param  jar      Java archive (JAR) containing the job's class files, or
+	 *                  null if none.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void openJob
+		(BackendRef client,
+		 long spaceID,
+		 byte[] jar)
+		throws IOException
+		{
+		ClassLoader classLoader;
+		synchronized (lock)
+			{
+			JobSpace js = spaceMap.get (spaceID);
+			if (js == null)
+				{
+				js = new JobSpace();
+				js.tupleSpace.budget (budget);
+				js.classLoader = Thread.currentThread().getContextClassLoader();
+				if (jar != null)
+					js.classLoader = new JarClassLoader (js.classLoader, jar);
+				spaceMap.put (spaceID, js);
+				logger.log (String.format ("Job space %016x opened",
+					spaceID));
+				}
+			classLoader = js.classLoader;
+			}
+		Thread.currentThread().setContextClassLoader (classLoader);
+		}
+
+	/**
+	 * Tell this tuple server to take a tuple that matches the given template
+	 * out of tuple space.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  blocking   True for a blocking take or read, false for a
+	 *                    non-blocking take or read.
+	 * @param  taking     True to take a tuple, false to read a tuple.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void takeTuple
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID,
+		 Tuple template,
+		 boolean blocking,
+		 boolean taking)
+		throws IOException
+		{
+		TakeInfo info = new TakeInfo();
+		info.client = client;
+		info.taskID = taskID;
+		info.requestID = requestID;
+		info.template = template;
+		info.taking = taking;
+		info.maxCount = 0;
+		takeTuple (spaceID, info, blocking);
+		}
+
+	/**
+	 * Tell this tuple server to take up to the given number of tuples that
+	 * match the given template out of tuple space, in one transaction.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  maxCount   Maximum number of tuples to take (1 or more).
+	 * @param  blocking   True to block until at least one tuple is taken,
+	 *                    false to take zero or more tuples without blocking.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void takeTuples
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID,
+		 Tuple template,
+		 int maxCount,
+		 boolean blocking)
+		throws IOException
+		{
+		TakeInfo info = new TakeInfo();
+		info.client = client;
+		info.taskID = taskID;
+		info.requestID = requestID;
+		info.template = template;
+		info.taking = true;
+		info.maxCount = Math.max (maxCount, 1);
+		takeTuple (spaceID, info, blocking);
+		}
+
+	/**
+	 * Tell this tuple server to write the given tuple into tuple space.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 * @param  tuple    Tuple.
+	 * @param  copies   Number of copies to write (1 or more).
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeTuple
+		(long spaceID,
+		 long taskID,
+		 Tuple tuple,
+		 int copies)
+		throws IOException
+		{
+		AList<Tuple> tuples = new AList<Tuple>();
+		for (int i = 0; i < copies; ++ i)
+			tuples.addLast (tuple);
+		writeTuples (spaceID, taskID, tuples);
+		}
+
+	/**
+	 * Tell this tuple server to write the given tuples into tuple space, in
+	 * one transaction.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 * @param  tuples   List of tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeTuples
+		(long spaceID,
+		 long taskID,
+		 AList<Tuple> tuples)
+		throws IOException
+		{
+		JobSpace js = jobSpace (spaceID);
+		if (js == null || tuples.isEmpty()) return;
+		js.tupleSpace.putTuples (tuples);
+
+		// Find the tuples that blocked requests might be waiting for. If a
+		// request was blocked before the tuples were put, its group's count is
+		// seen here; if after, the request found the tuples.
+		boolean anyFamily = count (js, null) > 0;
+		int n = tuples.size();
+		AList<Tuple> offered = new AList<Tuple>();
+		for (int i = 0; i < n; ++ i)
+			{
+			Tuple tuple = tuples.get (i);
+			if (anyFamily ||
+					count (js, TupleSpace.family (tuple.getClass())) > 0)
+				offered.addLast (tuple);
+			}
+		int m = offered.size();
+		if (m == 0) return;
+
+		// Match those tuples with blocked requests.
+		TupleSpace.Transaction trans;
+		if (anyFamily)
+			trans = js.tupleSpace.getTransaction();
+		else
+			{
+			Class<?>[] classes = new Class<?> [m];
+			for (int i = 0; i < m; ++ i)
+				classes[i] = offered.get(i).getClass();
+			trans = js.tupleSpace.getTransaction (classes);
+			}
+		AList<TakeInfo> taken = new AList<TakeInfo>();
+		for (int i = 0; i < m; ++ i)
+			matchBlockedTakes (js, offered.get (i), anyFamily, trans, taken);
+		trans.commit();
+
+		// Send results, if any, to taking tasks.
+		int k = taken.size();
+		for (int i = 0; i < k; ++ i)
+			report (taken.get (i));
+		}
+
+	/**
+	 * Tell this tuple server to cancel the given blocking tuple take request,
+	 * because the task stopped waiting. If the request is still blocked, it is
+	 * answered with no tuple. If the request was already satisfied, this
+	 * method does nothing.
+	 *
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void cancelTakeTuple
+		(long spaceID,
+		 long taskID,
+		 long requestID)
+		throws IOException
+		{
+		JobSpace js = jobSpace (spaceID);
+		if (js == null) return;
+		ConcurrentHashMap<Long,TakeInfo> requests = js.requests.get (taskID);
+		TakeInfo info = requests == null ? null : requests.get (requestID);
+		if (info == null) return;
+		TupleSpace.Transaction trans =
+			js.tupleSpace.getTransaction (info.template.matchClass());
+		boolean cancelled = info.entry != null;
+		if (cancelled)
+			removeTake (js, info);
+		trans.commit();
+		if (cancelled)
+			{
+			info.target = null;
+			info.targets = new AList<Tuple>();
+			report (info);
+			}
+		}
+
+	/**
+	 * Tell this tuple server to report no tuple for the given request once it
+	 * has handled all the requests sent before this one on the same
+	 * connection. Requests on a connection are handled in order, so this
+	 * tuple server reports right away.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void sync
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID)
+		throws IOException
+		{
+		client.tupleTaken (taskID, requestID, null);
+		}
+
+	/**
+	 * Tell this tuple server that the given task finished or failed.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void taskFinished
+		(long spaceID,
+		 long taskID)
+		throws IOException
+		{
+		JobSpace js = jobSpace (spaceID);
+		if (js == null) return;
+		ConcurrentHashMap<Long,TakeInfo> requests = js.requests.remove (taskID);
+		if (requests == null) return;
+		for (TakeInfo info : requests.values())
+			{
+			TupleSpace.Transaction trans =
+				js.tupleSpace.getTransaction (info.template.matchClass());
+			if (info.entry != null)
+				removeTake (js, info);
+			trans.commit();
+			}
+		}
+
+	/**
+	 * Tell this tuple server that the job finished.
+	 *
+	 * @param  spaceID  Space ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void closeJob
+		(long spaceID)
+		throws IOException
+		{
+		JobSpace js;
+		synchronized (lock)
+			{
+			js = spaceMap.remove (spaceID);
+			}
+		if (js != null)
+			{
+			js.tupleSpace.clear();
+			logger.log (String.format ("Job space %016x closed", spaceID));
+			}
+		}
+
+	/**
+	 * Gracefully shut down communication with the far end.
+	 */
+	public void shutdown()
+		{
+		}
+
+	/**
+	 * Forcibly terminate communication with the far end.
+	 */
+	public void terminate()
+		{
+		}
+
+// Hidden operations.
+
+	/**
+	 * Returns the job space with the given space ID.
+	 *
+	 * @param  spaceID  Space ID.
+	 *
+	 * @return  Job space, or null if the job space does not exist (the job
+	 *          finished).
+	 */
+	private static JobSpace jobSpace
+		(long spaceID)
+		{
+		synchronized (lock)
+			{
+			return spaceMap.get (spaceID);
+			}
+		}
+
+	/**
+	 * Perform the given take request on the job space with the given space ID.
+	 * If the request is satisfied or is non-blocking, the result is sent to the
+	 * client, otherwise the request is blocked.
+	 *
+	 * @param  spaceID   Space ID.
+	 * @param  info      Take request.
+	 * @param  blocking  True if the request is blocking.
+	 */
+	private static void takeTuple
+		(long spaceID,
+		 TakeInfo info,
+		 boolean blocking)
+		{
+		JobSpace js = jobSpace (spaceID);
+		if (js == null) return;
+		Class<?> matchClass = info.template.matchClass();
+		info.family = TupleSpace.family (matchClass);
+		info.seq = js.seq.getAndIncrement();
+		TupleSpace.Transaction trans =
+			js.tupleSpace.getTransaction (matchClass);
+		boolean report = take (info, trans) || ! blocking;
+		if (! report)
+			{
+			BlockedTakes takes = blockedTakes (js, info.family);
+			DList<TakeInfo> list = takes.lists.get (matchClass);
+			if (list == null)
+				{
+				list = new DList<TakeInfo>();
+				takes.lists.put (matchClass, list);
+				}
+			info.entry = list.addLast (info);
+			++ takes.count;
+			ConcurrentHashMap<Long,TakeInfo> requests =
+				js.requests.get (info.taskID);
+			if (requests == null)
+				{
+				requests = new ConcurrentHashMap<Long,TakeInfo>();
+				ConcurrentHashMap<Long,TakeInfo> prev =
+					js.requests.putIfAbsent (info.taskID, requests);
+				if (prev != null)
+					requests = prev;
+				}
+			requests.put (info.requestID, info);
+			}
+		trans.commit();
+		if (report)
+			report (info);
+		}
+
+	/**
+	 * Attempt to satisfy the given take request, using the given tuple space
+	 * transaction. The transaction must cover the family of the request's
+	 * template's matching class.
+	 *
+	 * @param  info   Take request.
+	 * @param  trans  Tuple space transaction.
+	 *
+	 * @return  True if the request was satisfied, false otherwise.
+	 */
+	private static boolean take
+		(TakeInfo info,
+		 TupleSpace.Transaction trans)
+		{
+		boolean found;
+		if (info.maxCount == 0)
+			{
+			TupleSpace.TupleRef ref = trans.find (info.template);
+			found = ref != null;
+			if (found && info.taking)
+				trans.remove (ref);
+			info.target = found ? ref.tuple : null;
+			}
+		else
+			{
+			info.targets = new AList<Tuple>();
+			TupleSpace.TupleRef ref;
+			while (info.targets.size() < info.maxCount &&
+					(ref = trans.find (info.template)) != null)
+				{
+				trans.remove (ref);
+				info.targets.addLast (ref.tuple);
+				}
+			found = ! info.targets.isEmpty();
+			}
+		return found;
+		}
+
+	/**
+	 * Match blocked take requests with the given newly written tuple. Only
+	 * requests whose templates' matching classes match the tuple are
+	 * considered, in order of arrival, until the tuple has been taken. The
+	 * given transaction must cover the family of the tuple's class, and must
+	 * cover all of tuple space if requests that can match any family are
+	 * considered.
+	 *
+	 * @param  js         Job space.
+	 * @param  tuple      Tuple.
+	 * @param  anyFamily  True to consider requests that can match any family.
+	 * @param  trans      Tuple space transaction.
+	 * @param  taken      List to which satisfied requests are added; their
+	 *                    results are to be sent after the transaction is
+	 *                    committed.
+	 */
+	private static void matchBlockedTakes
+		(JobSpace js,
+		 Tuple tuple,
+		 boolean anyFamily,
+		 TupleSpace.Transaction trans,
+		 AList<TakeInfo> taken)
+		{
+		// Find the lists of blocked requests whose templates' matching classes
+		// match the tuple.
+		Class<?> tupleClass = tuple.getClass();
+		AList<DListEntry<TakeInfo>> cursors =
+			new AList<DListEntry<TakeInfo>>();
+		addCursors (cursors, js.blocked.get (TupleSpace.family (tupleClass)),
+			tupleClass);
+		if (anyFamily)
+			addCursors (cursors, js.blocked.get (Tuple.class), tupleClass);
+		int n = cursors.size();
+
+		// Examine the requests in those lists in order of arrival.
+		int copies = 1;
+		while (copies > 0)
+			{
+			int min = -1;
+			for (int i = 0; i < n; ++ i)
+				{
+				DListEntry<TakeInfo> p = cursors.get (i);
+				if (p != null && (min == -1 ||
+						p.item().seq < cursors.get(min).item().seq))
+					min = i;
+				}
+			if (min == -1) break;
+			DListEntry<TakeInfo> p = cursors.get (min);
+			cursors.set (min, p.succ());
+			TakeInfo info = p.item();
+
+			// Satisfy the request if its template matches the tuple. The
+			// request may have taken an earlier matching tuple written
+			// concurrently; only this tuple counts.
+			if (info.template.match (tuple) && take (info, trans))
+				{
+				removeTake (js, info);
+				taken.addLast (info);
+				if (info.taking && taken (info, tuple))
+					-- copies;
+				}
+			}
+		}
+
+	/**
+	 * Determine whether the given take request took the given tuple.
+	 *
+	 * @param  info   Take request.
+	 * @param  tuple  Tuple.
+	 *
+	 * @return  True if the request took the tuple, false otherwise.
+	 */
+	private static boolean taken
+		(TakeInfo info,
+		 Tuple tuple)
+		{
+		if (info.maxCount == 0)
+			return info.target == tuple;
+		int n = info.targets.size();
+		for (int i = 0; i < n; ++ i)
+			if (info.targets.get (i) == tuple)
+				return true;
+		return false;
+		}
+
+	/**
+	 * Add the first entries of the given group's lists of blocked take
+	 * requests whose matching classes match the given tuple class to the given
+	 * list of cursors.
+	 *
+	 * @param  cursors     List of cursors.
+	 * @param  takes       Group of blocked take requests, or null if none.
+	 * @param  tupleClass  Tuple class.
+	 */
+	private static void addCursors
+		(AList<DListEntry<TakeInfo>> cursors,
+		 BlockedTakes takes,
+		 Class<?> tupleClass)
+		{
+		if (takes == null) return;
+		for (Map.Entry<Class<?>,DList<TakeInfo>> e : takes.lists.entrySet())
+			if (e.getKey().isAssignableFrom (tupleClass))
+				cursors.addLast (e.getValue().first());
+		}
+
+	/**
+	 * Remove the given blocked take request. The caller must be within a
+	 * transaction that covers the family of the request's template's matching
+	 * class.
+	 *
+	 * @param  js    Job space.
+	 * @param  info  Take request.
+	 */
+	private static void removeTake
+		(JobSpace js,
+		 TakeInfo info)
+		{
+		-- blockedTakes (js, info.family) .count;
+		info.entry.remove();
+		info.entry = null;
+		ConcurrentHashMap<Long,TakeInfo> requests =
+			js.requests.get (info.taskID);
+		if (requests != null)
+			requests.remove (info.requestID);
+		}
+
+	/**
+	 * Returns the group of blocked take requests for the given family in the
+	 * given job space, creating it if necessary. The caller must be within a
+	 * transaction that covers the family.
+	 *
+	 * @param  js      Job space.
+	 * @param  family  Family, or null for requests that can match any family.
+	 *
+	 * @return  Group of blocked take requests.
+	 */
+	private static BlockedTakes blockedTakes
+		(JobSpace js,
+		 Class<?> family)
+		{
+		Class<?> key = family == null ? Tuple.class : family;
+		BlockedTakes takes = js.blocked.get (key);
+		if (takes == null)
+			{
+			takes = new BlockedTakes();
+			js.blocked.put (key, takes);
+			}
+		return takes;
+		}
+
+	/**
+	 * Returns the number of blocked take requests for the given family in the
+	 * given job space. The caller need not be within a transaction.
+	 *
+	 * @param  js      Job space.
+	 * @param  family  Family, or null for requests that can match any family.
+	 *
+	 * @return  Number of blocked take requests.
+	 */
+	private static int count
+		(JobSpace js,
+		 Class<?> family)
+		{
+		BlockedTakes takes = js.blocked.get
+			(family == null ? Tuple.class : family);
+		return takes == null ? 0 : takes.count;
+		}
+
+	/**
+	 * Send the result of the given take request to the requesting client. If
+	 * the client cannot be reached, its task has failed, and the result is
+	 * discarded.
+	 *
+	 * @param  info  Take request.
+	 */
+	private static void report
+		(TakeInfo info)
+		{
+		try
+			{
+			if (info.maxCount == 0)
+				info.client.tupleTaken
+					(info.taskID, info.requestID, info.target);
+			else
+				info.client.tuplesTaken
+					(info.taskID, info.requestID, info.targets);
+			}
+		catch (IOException exc)
+			{
+			logger.log (String.format
+				("Cannot send tuple to task %d", info.taskID), exc);
+			}
+		}
+
+	/**
+	 * Print an illegal argument usage message and exit.
+	 *
+	 * @param  arg  Command line argument.
+	 */
+	private static void usageIllegal
+		(String arg)
+		{
+		usage (arg + " illegal");
+		}
+
+	/**
+	 * Print a usage message and exit.
+	 *
+	 * @param  msg  Error message.
+	 */
+	private static void usage
+		(String msg)
+		{
+		System.err.printf ("TupleServer: %s%n", msg);
+		System.err.printf ("Usage: java edu.rit.pj2.tracker.TupleServer [server=<host>[:<port>]] [budget=<bytes>]%n");
+		System.exit (1);
+		}
+
+	}
@@ -0,0 +1,185 @@
+//******************************************************************************
+//
+// File:    TupleServerReceiver.java
+// Package: edu.rit.pj2.tracker
+// Unit:    Class edu.rit.pj2.tracker.TupleServerReceiver
+//
+// This Java source file is copyright (C) 2013 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.tracker;
+
+import edu.rit.pj2.Tuple;
+import edu.rit.util.AList;
+import java.io.EOFException;
+import java.net.SocketException;
+
+/**
+ * Class TupleServerReceiver provides a thread that receives messages from a
+ * tuple server's client. A tuple server receiver must be attached to a
+ * {@linkplain Proxy Proxy} before the tuple server receiver can be used.
+ * <P>
+ * Incoming messages invoke methods on the tuple server in this receiver's
+ * thread; the tuple server's {@link TupleServerRef#openJob(BackendRef,long,
+ * byte[]) openJob()} method may therefore set this thread's context class
+ * loader, which is used to deserialize the tuples in later messages.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class TupleServerReceiver
+	extends Receiver
+	{
+
+// Hidden data members.
+
+	private TupleServerRef server;
+
+// Exported constructors.
+
+	/**
+	 * Construct a new tuple server receiver. Failures are reported to the given
+	 * listener. Incoming messages invoke methods on the given tuple server.
+	 *
+	 * @param  listener  Receiver listener.
+	 * @param  server    Tuple server.
+	 */
+	public TupleServerReceiver
+		(ReceiverListener listener,
+		 TupleServerRef server)
+		{
+		super (listener);
+		this.server = server;
+		opcode = Opcode.TUPLE_SERVER;
+		}
+
+// Exported operations.
+
+	/**
+	 * Run this tuple server receiver thread.
+	 */
+	public void run()
+		{
+		byte opcode;
+		long spaceID, taskID, requestID;
+		byte[] jar;
+		Tuple template, tuple;
+		AList<Tuple> tuples;
+		boolean blocking, taking;
+		int maxCount, copies;
+
+		try
+			{
+			// Repeatedly read a message and invoke a method on the tuple
+			// server.
+			for (;;)
+				{
+				opcode = in.readByte();
+				switch (opcode)
+					{
+					case Opcode.TUPLESERVERREF_OPEN_JOB:
+						spaceID = in.readLong();
+						jar = in.readByteArray();
+						server.openJob ((BackendRef)sender, spaceID, jar);
+						jar = null;
+						break;
+					case Opcode.TUPLESERVERREF_TAKE_TUPLE:
+						spaceID = in.readLong();
+						taskID = in.readLong();
+						requestID = in.readLong();
+						template = (Tuple) in.readObject();
+						blocking = in.readBoolean();
+						taking = in.readBoolean();
+						server.takeTuple ((BackendRef)sender, spaceID, taskID,
+							requestID, template, blocking, taking);
+						template = null;
+						break;
+					case Opcode.TUPLESERVERREF_TAKE_TUPLES:
+						spaceID = in.readLong();
+						taskID = in.readLong();
+						requestID = in.readLong();
+						template = (Tuple) in.readObject();
+						maxCount = in.readInt();
+						blocking = in.readBoolean();
+						server.takeTuples ((BackendRef)sender, spaceID, taskID,
+							requestID, template, maxCount, blocking);
+						template = null;
+						break;
+					case Opcode.TUPLESERVERREF_WRITE_TUPLE:
+						spaceID = in.readLong();
+						taskID = in.readLong();
+						tuple = (Tuple) in.readObject();
+						copies = in.readInt();
+						server.writeTuple (spaceID, taskID, tuple, copies);
+						tuple = null;
+						break;
+					case Opcode.TUPLESERVERREF_WRITE_TUPLES:
+						spaceID = in.readLong();
+						taskID = in.readLong();
+						tuples = in.readFields (new AList<Tuple>());
+						server.writeTuples (spaceID, taskID, tuples);
+						tuples = null;
+						break;
+					case Opcode.TUPLESERVERREF_CANCEL_TAKE_TUPLE:
+						spaceID = in.readLong();
+						taskID = in.readLong();
+						requestID = in.readLong();
+						server.cancelTakeTuple (spaceID, taskID, requestID);
+						break;
+					case Opcode.TUPLESERVERREF_SYNC:
+						spaceID = in.readLong();
+						taskID = in.readLong();
+						requestID = in.readLong();
+						server.sync ((BackendRef)sender, spaceID, taskID,
+							requestID);
+						break;
+					case Opcode.TUPLESERVERREF_TASK_FINISHED:
+						spaceID = in.readLong();
+						taskID = in.readLong();
+						server.taskFinished (spaceID, taskID);
+						break;
+					case Opcode.TUPLESERVERREF_CLOSE_JOB:
+						spaceID = in.readLong();
+						server.closeJob (spaceID);
+						break;
+					case Opcode.SHUTDOWN:
+						throw new EOFException();
+					default:
+						throw new IllegalArgumentException (String.format
+							("TupleServerReceiver.run(): Opcode = %d illegal",
+							 opcode));
+					}
+				}
+			}
+
+		catch (EOFException exc2)
+			{
+			proxy.farEndShutdown();
+			}
+		catch (SocketException exc2)
+			{
+			proxy.farEndShutdown();
+			}
+		catch (Throwable exc2)
+			{
+			listener.receiverFailed (this, exc2);
+			}
+		}
+
+	}
@@ -0,0 +1,241 @@
+//******************************************************************************
+//
+// File:    TupleServerRef.java
+// Package: edu.rit.pj2.tracker
+// Unit:    Interface edu.rit.pj2.tracker.TupleServerRef
+//
+// This Java source file is copyright (C) 2013 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.tracker;
+
+import edu.rit.pj2.Tuple;
+import edu.rit.util.AList;
+import java.io.IOException;
+
+/**
+ * Interface TupleServerRef specifies the interface for invoking a tuple server.
+ * <P>
+ * A tuple server holds the part of a job's tuple space that is assigned to it;
+ * see class {@linkplain TupleServer TupleServer}. Each job's tuple space is
+ * identified on the tuple server by a <I>space ID</I> that the job chooses.
+ * The results of take requests are reported by calling the {@link
+ * BackendRef#tupleTaken(long,long,Tuple) tupleTaken()} or {@link
+ * BackendRef#tuplesTaken(long,long,AList) tuplesTaken()} method of the client
+ * that sent the request.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public interface TupleServerRef
+	{
+
+// Exported operations.
+
+	/**
+	 * Tell this tuple server that the client will send requests for the tuple
+	 * space with the given space ID. If the tuple space does not exist yet, it
+	 * is created, and tuples in it are deserialized using the class files in
+	 * the given JAR. Further requests from the client are deserialized using
+	 * the tuple space's class files.
+	 *
+	 * @param  client   Client.
+	 * @param  spaceID  Space ID.
+	 * @param  jar      Java archive (JAR) containing the job's class files, or
+	 *                  null if none.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void openJob
+		(BackendRef client,
+		 long spaceID,
+		 byte[] jar)
+		throws IOException;
+
+	/**
+	 * Tell this tuple server to take a tuple that matches the given template
+	 * out of tuple space.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  blocking   True for a blocking take or read, false for a
+	 *                    non-blocking take or read.
+	 * @param  taking     True to take a tuple, false to read a tuple.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void takeTuple
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID,
+		 Tuple template,
+		 boolean blocking,
+		 boolean taking)
+		throws IOException;
+
+	/**
+	 * Tell this tuple server to take up to the given number of tuples that
+	 * match the given template out of tuple space, in one transaction.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  maxCount   Maximum number of tuples to take (1 or more).
+	 * @param  blocking   True to block until at least one tuple is taken,
+	 *                    false to take zero or more tuples without blocking.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void takeTuples
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID,
+		 Tuple template,
+		 int maxCount,
+		 boolean blocking)
+		throws IOException;
+
+	/**
+	 * Tell this tuple server to write the given tuple into tuple space.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 * @param  tuple    Tuple.
+	 * @param  copies   Number of copies to write (1 or more).
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeTuple
+		(long spaceID,
+		 long taskID,
+		 Tuple tuple,
+		 int copies)
+		throws IOException;
+
+	/**
+	 * Tell this tuple server to write the given tuples into tuple space, in
+	 * one transaction.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 * @param  tuples   List of tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void writeTuples
+		(long spaceID,
+		 long taskID,
+		 AList<Tuple> tuples)
+		throws IOException;
+
+	/**
+	 * Tell this tuple server to cancel the given blocking tuple take request,
+	 * because the task stopped waiting. If the request is still blocked, it is
+	 * answered with no tuple. If the request was already satisfied, this
+	 * method does nothing.
+	 *
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void cancelTakeTuple
+		(long spaceID,
+		 long taskID,
+		 long requestID)
+		throws IOException;
+
+	/**
+	 * Tell this tuple server to report no tuple for the given request once it
+	 * has handled all the requests sent before this one on the same
+	 * connection. A task uses this to make sure the tuples it wrote are in
+	 * tuple space before it is reported finished.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void sync
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID)
+		throws IOException;
+
+	/**
+	 * Tell this tuple server that the given task finished or failed. Any of
+	 * the task's blocked take requests are discarded.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void taskFinished
+		(long spaceID,
+		 long taskID)
+		throws IOException;
+
+	/**
+	 * Tell this tuple server that the job finished. The tuple space with the
+	 * given space ID, and any blocked take requests for it, are discarded.
+	 *
+	 * @param  spaceID  Space ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public void closeJob
+		(long spaceID)
+		throws IOException;
+
+	/**
+	 * Gracefully shut down communication with the far end. The
+	 * <TT>shutdown()</TT> method blocks until the far end acknowledges that
+	 * communication was shut down.
+	 */
+	public void shutdown();
+
+	/**
+	 * Forcibly terminate communication with the far end. The
+	 * <TT>terminate()</TT> method returns immediately, without waiting for an
+	 * acknowledgment from the far end.
+	 */
+	public void terminate();
+
+	}
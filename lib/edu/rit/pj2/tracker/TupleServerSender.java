@@ -0,0 +1,293 @@
+//******************************************************************************
+//
+// File:    TupleServerSender.java
+// Package: edu.rit.pj2.tracker
+// Unit:    Class edu.rit.pj2.tracker.TupleServerSender
+//
+// This Java source file is copyright (C) 2013 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This Java source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+package edu.rit.pj2.tracker;
+
+import edu.rit.pj2.Tuple;
+import edu.rit.util.AList;
+import java.io.IOException;
+
+/**
+ * Class TupleServerSender provides an object for sending messages to a
+ * {@linkplain TupleServer TupleServer}. A tuple server sender must be attached
+ * to a {@linkplain Proxy Proxy} before the tuple server sender can be used.
+ * The <TT>client</TT> argument of the methods is not sent; the tuple server
+ * reports results to the far end of the proxy's connection.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+public class TupleServerSender
+	extends Sender
+	implements TupleServerRef
+	{
+
+// Exported constructors.
+
+	/**
+	 * Construct a new tuple server sender.
+	 */
+	public TupleServerSender()
+		{
+		opcode = Opcode.TUPLE_SERVER;
+		}
+
+// Exported operations.
+
+	/**
+	 * Tell this tuple server that the client will send requests for the tuple
+	 * space with the given space ID.
+	 *
+	 * @param  client   Client.
+	 * @param  spaceID  Space ID.
+	 * @param  jar      Java archive (JAR) containing the job's class files, or
+	 *                  null if none.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void openJob
+		(BackendRef client,
+		 long spaceID,
+		 byte[] jar)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_OPEN_JOB);
+		out.writeLong (spaceID);
+		out.writeByteArray (jar);
+		out.flush();
+		}
+
+	/**
+	 * Tell this tuple server to take a tuple that matches the given template
+	 * out of tuple space.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  blocking   True for a blocking take or read, false for a
+	 *                    non-blocking take or read.
+	 * @param  taking     True to take a tuple, false to read a tuple.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void takeTuple
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID,
+		 Tuple template,
+		 boolean blocking,
+		 boolean taking)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_TAKE_TUPLE);
+		out.writeLong (spaceID);
+		out.writeLong (taskID);
+		out.writeLong (requestID);
+		out.writeObject (template);
+		out.writeBoolean (blocking);
+		out.writeBoolean (taking);
+		out.flush();
+		}
+
+	/**
+	 * Tell this tuple server to take up to the given number of tuples that
+	 * match the given template out of tuple space, in one transaction.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 * @param  template   Template.
+	 * @param  maxCount   Maximum number of tuples to take (1 or more).
+	 * @param  blocking   True to block until at least one tuple is taken,
+	 *                    false to take zero or more tuples without blocking.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void takeTuples
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID,
+		 Tuple template,
+		 int maxCount,
+		 boolean blocking)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_TAKE_TUPLES);
+		out.writeLong (spaceID);
+		out.writeLong (taskID);
+		out.writeLong (requestID);
+		out.writeObject (template);
+		out.writeInt (maxCount);
+		out.writeBoolean (blocking);
+		out.flush();
+		}
+
+	/**
+	 * Tell this tuple server to write the given tuple into tuple space.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 * @param  tuple    Tuple.
+	 * @param  copies   Number of copies to write (1 or more).
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void writeTuple
+		(long spaceID,
+		 long taskID,
+		 Tuple tuple,
+		 int copies)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_WRITE_TUPLE);
+		out.writeLong (spaceID);
+		out.writeLong (taskID);
+		out.writeObject (tuple);
+		out.writeInt (copies);
+		out.flush();
+		}
+
+	/**
+	 * Tell this tuple server to write the given tuples into tuple space, in
+	 * one transaction.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 * @param  tuples   List of tuples.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void writeTuples
+		(long spaceID,
+		 long taskID,
+		 AList<Tuple> tuples)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_WRITE_TUPLES);
+		out.writeLong (spaceID);
+		out.writeLong (taskID);
+		out.writeFields (tuples);
+		out.flush();
+		}
+
+	/**
+	 * Tell this tuple server to cancel the given blocking tuple take request,
+	 * because the task stopped waiting.
+	 *
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void cancelTakeTuple
+		(long spaceID,
+		 long taskID,
+		 long requestID)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_CANCEL_TAKE_TUPLE);
+		out.writeLong (spaceID);
+		out.writeLong (taskID);
+		out.writeLong (requestID);
+		out.flush();
+		}
+
+	/**
+	 * Tell this tuple server to report no tuple for the given request once it
+	 * has handled all the requests sent before this one on the same
+	 * connection.
+	 *
+	 * @param  client     Client to which the result is reported.
+	 * @param  spaceID    Space ID.
+	 * @param  taskID     Task ID.
+	 * @param  requestID  Request ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void sync
+		(BackendRef client,
+		 long spaceID,
+		 long taskID,
+		 long requestID)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_SYNC);
+		out.writeLong (spaceID);
+		out.writeLong (taskID);
+		out.writeLong (requestID);
+		out.flush();
+		}
+
+	/**
+	 * Tell this tuple server that the given task finished or failed.
+	 *
+	 * @param  spaceID  Space ID.
+	 * @param  taskID   Task ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void taskFinished
+		(long spaceID,
+		 long taskID)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_TASK_FINISHED);
+		out.writeLong (spaceID);
+		out.writeLong (taskID);
+		out.flush();
+		}
+
+	/**
+	 * Tell this tuple server that the job finished.
+	 *
+	 * @param  spaceID  Space ID.
+	 *
+	 * @exception  IOException
+	 *     Thrown if an I/O error occurred.
+	 */
+	public synchronized void closeJob
+		(long spaceID)
+		throws IOException
+		{
+		out.writeByte (Opcode.TUPLESERVERREF_CLOSE_JOB);
+		out.writeLong (spaceID);
+		out.flush();
+		}
+
+	}
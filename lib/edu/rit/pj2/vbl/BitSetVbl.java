@@ -27,6 +27,7 @@ package edu.rit.pj2.vbl;
 
 import edu.rit.io.InStream;
 import edu.rit.io.OutStream;
+import edu.rit.pj2.SliceableVbl;
 import edu.rit.pj2.Vbl;
 import edu.rit.pj2.TerminateException;
 import edu.rit.util.BitSet;
@@ -60,7 +61,7 @@ import java.io.IOException;
  * </UL>
  *
  * @author  Alan Kaminsky
- * @version 14-Jan-2015
+ * @version 18-Mar-2015
  */
 public class BitSetVbl
 	extends BitSet
@@ -896,10 +897,11 @@ public class BitSetVbl
 	 * specified as a constructor argument.
 	 *
 	 * @author  Alan Kaminsky
-	 * @version 13-Jan-2015
+	 * @version 18-Mar-2015
 	 */
 	public static class Union
 		extends BitSetVbl
+		implements SliceableVbl
 		{
 
 	// Exported constructors.
@@ -1152,6 +1154,61 @@ public class BitSetVbl
 			{
 			union ((BitSetVbl)vbl);
 			}
+
+		/**
+		 * Returns the number of units in this shared variable's array. A unit
+		 * is 32 consecutive elements.
+		 *
+		 * @return  Number of units, <I>N</I>/32.
+		 */
+		public int length()
+			{
+			return capacity() >> 5;
+			}
+
+		/**
+		 * Reduce the given slice of the given shared variable into this shared
+		 * variable. The elements from 32<TT>lb</TT> through
+		 * 32<TT>ub</TT>&minus;1 of this set are changed to the union of
+		 * this set and the given set.
+		 *
+		 * @param  vbl  Shared variable.
+		 * @param  lb   Lower bound unit (inclusive).
+		 * @param  ub   Upper bound unit (exclusive).
+		 *
+		 * @exception  ClassCastException
+		 *     (unchecked exception) Thrown if the class of <TT>vbl</TT> is not
+		 *     compatible with the class of this shared variable.
+		 */
+		public void reduce
+			(Vbl vbl,
+			 int lb,
+			 int ub)
+			{
+			union ((BitSetVbl)vbl, lb << 5, ub << 5);
+			}
+
+		/**
+		 * Set the given slice of this shared variable to the given slice of
+		 * the given shared variable. The elements from 32<TT>lb</TT> through
+		 * 32<TT>ub</TT>&minus;1 of this set are changed to be a copy of those
+		 * elements of the given set.
+		 *
+		 * @param  vbl  Shared variable.
+		 * @param  lb   Lower bound unit (inclusive).
+		 * @param  ub   Upper bound unit (exclusive).
+		 *
+		 * @exception  ClassCastException
+		 *     (unchecked exception) Thrown if the class of <TT>vbl</TT> is not
+		 *     compatible with the class of this shared variable.
+		 */
+		public void set
+			(Vbl vbl,
+			 int lb,
+			 int ub)
+			{
+			copy ((BitSetVbl)vbl, lb << 5, ub << 5);
+			}
 		}
 
 	/**
@@ -1162,10 +1219,11 @@ public class BitSetVbl
 	 * <I>N</I> is specified as a constructor argument.
 	 *
 	 * @author  Alan Kaminsky
-	 * @version 13-Jan-2015
+	 * @version 18-Mar-2015
 	 */
 	public static class Intersection
 		extends BitSetVbl
+		implements SliceableVbl
 		{
 
 	// Exported constructors.
@@ -1418,6 +1476,61 @@ public class BitSetVbl
 			{
 			intersection ((BitSetVbl)vbl);
 			}
+
+		/**
+		 * Returns the number of units in this shared variable's array. A unit
+		 * is 32 consecutive elements.
+		 *
+		 * @return  Number of units, <I>N</I>/32.
+		 */
+		public int length()
+			{
+			return capacity() >> 5;
+			}
+
+		/**
+		 * Reduce the given slice of the given shared variable into this shared
+		 * variable. The elements from 32<TT>lb</TT> through
+		 * 32<TT>ub</TT>&minus;1 of this set are changed to the intersection of
+		 * this set and the given set.
+		 *
+		 * @param  vbl  Shared variable.
+		 * @param  lb   Lower bound unit (inclusive).
+		 * @param  ub   Upper bound unit (exclusive).
+		 *
+		 * @exception  ClassCastException
+		 *     (unchecked exception) Thrown if the class of <TT>vbl</TT> is not
+		 *     compatible with the class of this shared variable.
+		 */
+		public void reduce
+			(Vbl vbl,
+			 int lb,
+			 int ub)
+			{
+			intersection ((BitSetVbl)vbl, lb << 5, ub << 5);
+			}
+
+		/**
+		 * Set the given slice of this shared variable to the given slice of
+		 * the given shared variable. The elements from 32<TT>lb</TT> through
+		 * 32<TT>ub</TT>&minus;1 of this set are changed to be a copy of those
+		 * elements of the given set.
+		 *
+		 * @param  vbl  Shared variable.
+		 * @param  lb   Lower bound unit (inclusive).
+		 * @param  ub   Upper bound unit (exclusive).
+		 *
+		 * @exception  ClassCastException
+		 *     (unchecked exception) Thrown if the class of <TT>vbl</TT> is not
+		 *     compatible with the class of this shared variable.
+		 */
+		public void set
+			(Vbl vbl,
+			 int lb,
+			 int ub)
+			{
+			copy ((BitSetVbl)vbl, lb << 5, ub << 5);
+			}
 		}
 
 	}
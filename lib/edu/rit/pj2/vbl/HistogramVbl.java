@@ -29,6 +29,7 @@ import edu.rit.io.InStream;
 import edu.rit.io.OutStream;
 import edu.rit.io.Streamable;
 import edu.rit.numeric.Statistics;
+import edu.rit.pj2.SliceableVbl;
 import edu.rit.pj2.Vbl;
 import edu.rit.pj2.TerminateException;
 import edu.rit.util.Instance;
@@ -53,13 +54,15 @@ import java.io.IOException;
  * end of the parallel statement, the thread-local copies are automatically
  * <I>reduced</I> together, and the result is stored in the original shared
  * variable. The reduction is performed by the shared variable's {@link
- * #reduce(Vbl) reduce()} method.
+ * #reduce(Vbl) reduce()} method. A histogram with many bins is a {@linkplain
+ * SliceableVbl SliceableVbl}; the team threads reduce different bins in
+ * parallel.
  *
  * @author  Alan Kaminsky
- * @version 12-Feb-2015
+ * @version 18-Mar-2015
  */
 public abstract class HistogramVbl
-	implements Vbl, Streamable
+	implements SliceableVbl, Streamable
 	{
 
 // Hidden data members.
@@ -305,6 +308,76 @@ public abstract class HistogramVbl
 		this.total += hist.total;
 		}
 
+	/**
+	 * Returns the number of units in this shared variable's array. A unit is
+	 * one bin.
+	 *
+	 * @return  Number of bins.
+	 */
+	public int length()
+		{
+		return B;
+		}
+
+	/**
+	 * Reduce the given slice of the given shared variable into this shared
+	 * variable. The count in each bin from <TT>lb</TT> through
+	 * <TT>ub</TT>&minus;1 of <TT>vbl</TT> is added to the count in the
+	 * corresponding bin of this histogram. If <TT>lb</TT> = 0, the total count
+	 * of <TT>vbl</TT> is added to the total count of this histogram.
+	 *
+	 * @param  vbl  Shared variable.
+	 * @param  lb   Lower bound bin (inclusive).
+	 * @param  ub   Upper bound bin (exclusive).
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>vbl</TT> does not have the same
+	 *     number of bins as this histogram.
+	 */
+	public void reduce
+		(Vbl vbl,
+		 int lb,
+		 int ub)
+		{
+		HistogramVbl hist = (HistogramVbl)vbl;
+		if (hist.B != this.B)
+			throw new IllegalArgumentException
+				("HistogramVbl.reduce(): Histograms are different sizes");
+		for (int i = lb; i < ub; ++ i)
+			this.count[i] += hist.count[i];
+		if (lb == 0)
+			this.total += hist.total;
+		}
+
+	/**
+	 * Set the given slice of this shared variable to the given slice of the
+	 * given shared variable. The count in each bin from <TT>lb</TT> through
+	 * <TT>ub</TT>&minus;1 of this histogram is set to the count in the
+	 * corresponding bin of <TT>vbl</TT>. If <TT>lb</TT> = 0, the total count
+	 * is set as well.
+	 *
+	 * @param  vbl  Shared variable.
+	 * @param  lb   Lower bound bin (inclusive).
+	 * @param  ub   Upper bound bin (exclusive).
+	 *
+	 * @exception  IllegalArgumentException
+	 *     (unchecked exception) Thrown if <TT>vbl</TT> does not have the same
+	 *     number of bins as this histogram.
+	 */
+	public void set
+		(Vbl vbl,
+		 int lb,
+		 int ub)
+		{
+		HistogramVbl hist = (HistogramVbl)vbl;
+		if (hist.B != this.B)
+			throw new IllegalArgumentException
+				("HistogramVbl.set(): Histograms are different sizes");
+		System.arraycopy (hist.count, lb, this.count, lb, ub - lb);
+		if (lb == 0)
+			this.total = hist.total;
+		}
+
 	/**
 	 * Write this histogram to the given out stream.
 	 *
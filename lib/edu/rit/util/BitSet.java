@@ -39,7 +39,7 @@ import java.io.IOException;
  * <I>Note:</I> Class BitSet is not multiple thread safe.
  *
  * @author  Alan Kaminsky
- * @version 16-Jan-2015
+ * @version 18-Mar-2015
  */
 public class BitSet
 	implements Streamable
@@ -135,6 +135,48 @@ public class BitSet
 		return this;
 		}
 
+	/**
+	 * Returns the capacity of this set. This set can hold elements from 0
+	 * through <I>N</I>&minus;1 inclusive, where <I>N</I> is the capacity, a
+	 * multiple of 32.
+	 *
+	 * @return  Capacity <I>N</I>.
+	 */
+	public int capacity()
+		{
+		return bitmap.length << 5;
+		}
+
+	/**
+	 * Change the given range of this set to be a copy of the same range of the
+	 * given set. Each element from <TT>lb</TT> through <TT>ub</TT>&minus;1
+	 * inclusive is in this set if and only if it is in the given set. Elements
+	 * outside that range are unchanged.
+	 * <P>
+	 * It is assumed that <I>N</I> is the same for both sets; if not, the
+	 * behavior of the <TT>copy()</TT> method is not specified.
+	 *
+	 * @param  set  Set to copy.
+	 * @param  lb   Lower bound element (inclusive).
+	 * @param  ub   Upper bound element (exclusive).
+	 *
+	 * @return  This set.
+	 */
+	public BitSet copy
+		(BitSet set,
+		 int lb,
+		 int ub)
+		{
+		int ilb = wordLowerBound (lb);
+		int iub = wordUpperBound (ub);
+		for (int i = ilb; i < iub; ++ i)
+			{
+			int mask = maskForRange (i, lb, ub);
+			this.bitmap[i] = (this.bitmap[i] & ~mask) | (set.bitmap[i] & mask);
+			}
+		return this;
+		}
+
 	/**
 	 * Returns the number of elements in this set.
 	 *
@@ -339,6 +381,60 @@ public class BitSet
 		return this;
 		}
 
+	/**
+	 * Change the given range of this set to be the union of itself and the
+	 * same range of the given set. Each element from <TT>lb</TT> through
+	 * <TT>ub</TT>&minus;1 inclusive that is in the given set is added to this
+	 * set. Elements outside that range are unchanged.
+	 * <P>
+	 * It is assumed that <I>N</I> is the same for both sets; if not, the
+	 * behavior of the <TT>union()</TT> method is not specified.
+	 *
+	 * @param  set  Set.
+	 * @param  lb   Lower bound element (inclusive).
+	 * @param  ub   Upper bound element (exclusive).
+	 *
+	 * @return  This set.
+	 */
+	public BitSet union
+		(BitSet set,
+		 int lb,
+		 int ub)
+		{
+		int ilb = wordLowerBound (lb);
+		int iub = wordUpperBound (ub);
+		for (int i = ilb; i < iub; ++ i)
+			this.bitmap[i] |= set.bitmap[i] & maskForRange (i, lb, ub);
+		return this;
+		}
+
+	/**
+	 * Change the given range of this set to be the intersection of itself and
+	 * the same range of the given set. Each element from <TT>lb</TT> through
+	 * <TT>ub</TT>&minus;1 inclusive that is not in the given set is removed
+	 * from this set. Elements outside that range are unchanged.
+	 * <P>
+	 * It is assumed that <I>N</I> is the same for both sets; if not, the
+	 * behavior of the <TT>intersection()</TT> method is not specified.
+	 *
+	 * @param  set  Set.
+	 * @param  lb   Lower bound element (inclusive).
+	 * @param  ub   Upper bound element (exclusive).
+	 *
+	 * @return  This set.
+	 */
+	public BitSet intersection
+		(BitSet set,
+		 int lb,
+		 int ub)
+		{
+		int ilb = wordLowerBound (lb);
+		int iub = wordUpperBound (ub);
+		for (int i = ilb; i < iub; ++ i)
+			this.bitmap[i] &= set.bitmap[i] | ~maskForRange (i, lb, ub);
+		return this;
+		}
+
 	/**
 	 * Change this set to be the difference of itself and the given set. The
 	 * difference consists of all elements that appear in this set and not in
@@ -503,6 +599,26 @@ public class BitSet
 		return 0 <= i && i < bitmap.length ? i : -1;
 		}
 
+	/**
+	 * Returns the index of the first bitmap word that contains elements at or
+	 * above <TT>lb</TT>.
+	 */
+	private int wordLowerBound
+		(int lb)
+		{
+		return Math.min (Math.max (lb, 0) >> 5, bitmap.length);
+		}
+
+	/**
+	 * Returns one plus the index of the last bitmap word that contains
+	 * elements below <TT>ub</TT>.
+	 */
+	private int wordUpperBound
+		(int ub)
+		{
+		return ub <= 0 ? 0 : Math.min (((ub - 1) >> 5) + 1, bitmap.length);
+		}
+
 	/**
 	 * Returns a mask that has a 1 bit at position <TT>elem</TT> and 0 bits
 	 * elsewhere, for bitmap word <TT>i</TT>.
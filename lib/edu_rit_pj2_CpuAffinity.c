@@ -0,0 +1,107 @@
+//******************************************************************************
+//
+// File:    CpuAffinity.c
+// Package: edu.rit.pj2
+// Unit:    Class edu.rit.pj2.CpuAffinity
+//
+// This C source file is copyright (C) 2015 by Alan Kaminsky. All rights
+// reserved. For further information, contact the author, Alan Kaminsky, at
+// ark@cs.rit.edu.
+//
+// This C source file is part of the Parallel Java 2 Library ("PJ2"). PJ2 is
+// free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+#define _GNU_SOURCE
+#include <jni.h>
+#include <errno.h>
+#include <sched.h>
+#include "edu_rit_pj2_CpuAffinity.h"
+
+/**
+ * File CpuAffinity.c contains the C code implementations of the native methods
+ * in class edu.rit.pj2.CpuAffinity.
+ *
+ * @author  Alan Kaminsky
+ * @version 18-Mar-2015
+ */
+
+/*
+ * CPU affinity mask of the thread that loaded the library. Threads that are
+ * unpinned get this mask.
+ */
+static cpu_set_t originalMask;
+static int originalMaskValid = 0;
+
+/*
+ * Save the original CPU affinity mask when the library is loaded.
+ */
+JNIEXPORT jint JNICALL JNI_OnLoad
+	(JavaVM *vm,
+	 void *reserved)
+	{
+	CPU_ZERO (&originalMask);
+	originalMaskValid =
+		sched_getaffinity (0, sizeof(cpu_set_t), &originalMask) == 0;
+	return JNI_VERSION_1_6;
+	}
+
+/*
+ * Class:     edu_rit_pj2_CpuAffinity
+ * Method:    setAffinity
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_edu_rit_pj2_CpuAffinity_setAffinity
+	(JNIEnv *env,
+	 jclass cls,
+	 jint cpu)
+	{
+	cpu_set_t mask;
+	if (cpu < 0)
+		{
+		if (! originalMaskValid) return 0;
+		mask = originalMask;
+		}
+	else if (cpu >= CPU_SETSIZE)
+		return EINVAL;
+	else
+		{
+		CPU_ZERO (&mask);
+		CPU_SET (cpu, &mask);
+		}
+	return sched_setaffinity (0, sizeof(cpu_set_t), &mask) == 0 ? 0 : errno;
+	}
+
+/*
+ * Class:     edu_rit_pj2_CpuAffinity
+ * Method:    getAllowedCpus
+ * Signature: ()[I
+ */
+JNIEXPORT jintArray JNICALL Java_edu_rit_pj2_CpuAffinity_getAllowedCpus
+	(JNIEnv *env,
+	 jclass cls)
+	{
+	jint cpus[CPU_SETSIZE];
+	jint n = 0;
+	jint cpu;
+	jintArray rv;
+	if (! originalMaskValid) return NULL;
+	for (cpu = 0; cpu < CPU_SETSIZE; ++ cpu)
+		if (CPU_ISSET (cpu, &originalMask))
+			cpus[n++] = cpu;
+	rv = (*env)->NewIntArray (env, n);
+	if (rv != NULL)
+		(*env)->SetIntArrayRegion (env, rv, 0, n, cpus);
+	return rv;
+	}
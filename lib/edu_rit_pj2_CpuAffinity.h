@@ -0,0 +1,29 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class edu_rit_pj2_CpuAffinity */
+
+#ifndef _Included_edu_rit_pj2_CpuAffinity
+#define _Included_edu_rit_pj2_CpuAffinity
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     edu_rit_pj2_CpuAffinity
+ * Method:    setAffinity
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_edu_rit_pj2_CpuAffinity_setAffinity
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     edu_rit_pj2_CpuAffinity
+ * Method:    getAllowedCpus
+ * Signature: ()[I
+ */
+JNIEXPORT jintArray JNICALL Java_edu_rit_pj2_CpuAffinity_getAllowedCpus
+  (JNIEnv *, jclass);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -23,6 +23,7 @@
 //
 //******************************************************************************
 
+import edu.rit.pj2.Affinity;
 import edu.rit.pj2.Debug;
 import edu.rit.pj2.JarClassLoader;
 import edu.rit.pj2.Job;
@@ -30,6 +31,7 @@ import edu.rit.pj2.Rule;
 import edu.rit.pj2.Schedule;
 import edu.rit.pj2.Task;
 import edu.rit.pj2.TaskSpec;
+import edu.rit.pj2.WaitPolicy;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -40,13 +42,18 @@ import java.util.EnumSet;
  * Class pj2 is the PJ2 job and task launcher main program.
  * <P>
  * Usage: <TT>java pj2 [threads=<I>threads</I>] [schedule=<I>schedule</I>]
- * [chunk=<I>chunk</I>] [nodeName=<I>nodeName</I>] [cores=<I>cores</I>]
- * [gpus=<I>gpus</I>] [workers=<I>workers</I>]
+ * [chunk=<I>chunk</I>] [waitPolicy=<I>waitPolicy</I>]
+ * [affinity=<I>affinity</I>]
+ * [nodeName=<I>nodeName</I>] [cores=<I>cores</I>] [gpus=<I>gpus</I>]
+ * [workers=<I>workers</I>]
  * [masterSchedule=<I>masterSchedule</I>] [masterChunk=<I>masterChunk</I>]
  * [tracker=<I>host</I>[:<I>port</I>]] [listen=<I>host</I>[:<I>port</I>]]
  * [debug=<I>message</I>[,<I>message</I>...]]
  * [jvmFlags=<I>flag</I>[,<I>flag</I>]] [jar=<I>file</I>]
- * [timelimit=<I>timelimit</I>] <I>jobOrTaskClass</I> [<I>arg</I> ...]</TT>
+ * [timelimit=<I>timelimit</I>]
+ * [tupleServers=<I>host</I>:<I>port</I>[,<I>host</I>:<I>port</I>...]]
+ * [tupleSpaceBudget=<I>bytes</I>]
+ * <I>jobOrTaskClass</I> [<I>arg</I> ...]</TT>
  * <P>
  * PJ2 is designed for writing two kinds of parallel programs: tightly coupled
  * single-node and loosely coupled multi-node.
@@ -143,6 +150,18 @@ import java.util.EnumSet;
  * Job.chunk()} or {@link edu.rit.pj2.Task#chunk(int) Task.chunk()} method for
  * further information.
  * <P><LI>
+ * <TT>waitPolicy</TT> specifies how the threads executing a parallel statement
+ * wait for each other. The default is <TT>waitPolicy=park</TT>. See the {@link
+ * edu.rit.pj2.Job#waitPolicy(edu.rit.pj2.WaitPolicy) Job.waitPolicy()} or
+ * {@link edu.rit.pj2.Task#waitPolicy(edu.rit.pj2.WaitPolicy)
+ * Task.waitPolicy()} method for further information.
+ * <P><LI>
+ * <TT>affinity</TT> specifies how the threads executing a parallel statement
+ * are placed on the node's cores. The default is <TT>affinity=none</TT>. See
+ * the {@link edu.rit.pj2.Job#affinity(edu.rit.pj2.Affinity) Job.affinity()} or
+ * {@link edu.rit.pj2.Task#affinity(edu.rit.pj2.Affinity) Task.affinity()}
+ * method for further information.
+ * <P><LI>
  * <TT>nodeName</TT> specifies the name of the node on which a task must run.
  * Specify <TT>nodeName=any</TT> to indicate that a task can run on any node.
  * The default is <TT>nodeName=any</TT>. See the {@link
@@ -211,6 +230,18 @@ import java.util.EnumSet;
  * <TT>timelimit</TT> specifies a time limit in seconds for the job. The default
  * is no time limit. See the {@link edu.rit.pj2.Job#timeLimit(int)
  * Job.timeLimit()} method for further information.
+ * <P><LI>
+ * <TT>tupleServers</TT> specifies the host and port of each tuple server across
+ * which the job's tuple space is sharded, separated by commas (no spaces). The
+ * default is that tuple space is not sharded. See the {@link
+ * edu.rit.pj2.Job#tupleServers(String[]) Job.tupleServers()} method for further
+ * information.
+ * <P><LI>
+ * <TT>tupleSpaceBudget</TT> specifies the number of bytes of tuples the job's
+ * tuple space keeps in the job process's heap; further tuples are spilled to a
+ * log file. The default is no budget. See the {@link
+ * edu.rit.pj2.Job#tupleSpaceBudget(long) Job.tupleSpaceBudget()} method for
+ * further information.
  * </UL>
  * <P>
  * <B>Abnormal termination.</B>
@@ -231,7 +262,7 @@ import java.util.EnumSet;
  * @see  edu.rit.pj2.Task
  *
  * @author  Alan Kaminsky
- * @version 24-Mar-2014
+ * @version 18-Mar-2015
  */
 public class pj2
 	{
@@ -247,6 +278,8 @@ public class pj2
 	private static Integer threads = null;
 	private static Schedule schedule = null;
 	private static Integer chunk = null;
+	private static WaitPolicy waitPolicy = null;
+	private static Affinity affinity = null;
 	private static String nodeName = null;
 	private static Integer cores = null;
 	private static Integer gpus = null;
@@ -259,6 +292,8 @@ public class pj2
 	private static String[] jvmFlags = null;
 	private static String jar = null;
 	private static Integer timeLimit = null;
+	private static String[] tupleServers = null;
+	private static Long tupleSpaceBudget = null;
 	private static String jobOrTaskClass = null;
 	private static Class<?> jtclass = null;
 	private static String[] taskArgs = null;
@@ -323,6 +358,30 @@ public class pj2
 						usageIllegal (args[argi]);
 						}
 					}
+				else if (args[argi].startsWith ("waitPolicy="))
+					{
+					try
+						{
+						waitPolicy =
+							WaitPolicy.valueOf (args[argi].substring (11));
+						}
+					catch (IllegalArgumentException exc)
+						{
+						usageIllegal (args[argi]);
+						}
+					}
+				else if (args[argi].startsWith ("affinity="))
+					{
+					try
+						{
+						affinity =
+							Affinity.valueOf (args[argi].substring (9));
+						}
+					catch (IllegalArgumentException exc)
+						{
+						usageIllegal (args[argi]);
+						}
+					}
 				else if (args[argi].startsWith ("nodeName="))
 					{
 					nodeName = args[argi].substring (9);
@@ -450,6 +509,24 @@ public class pj2
 						usageIllegal (args[argi]);
 						}
 					}
+				else if (args[argi].startsWith ("tupleServers="))
+					{
+					tupleServers = args[argi] .substring (13) .split (",");
+					}
+				else if (args[argi].startsWith ("tupleSpaceBudget="))
+					{
+					try
+						{
+						tupleSpaceBudget =
+							Long.valueOf (args[argi].substring (17));
+						if (tupleSpaceBudget < 1)
+							usageIllegal (args[argi]);
+						}
+					catch (NumberFormatException exc)
+						{
+						usageIllegal (args[argi]);
+						}
+					}
 				else
 					{
 					jobOrTaskClass = args[argi];
@@ -562,6 +639,10 @@ public class pj2
 				job.schedule (schedule);
 			if (chunk != null)
 				job.chunk (chunk);
+			if (waitPolicy != null)
+				job.waitPolicy (waitPolicy);
+			if (affinity != null)
+				job.affinity (affinity);
 			if (nodeName != null)
 				job.nodeName (nodeName);
 			if (cores != null)
@@ -616,6 +697,17 @@ public class pj2
 				job.jar (new File (jar));
 			if (timeLimit != null)
 				job.timeLimit (timeLimit);
+			if (tupleServers != null)
+				try
+					{
+					job.tupleServers (tupleServers);
+					}
+				catch (IllegalArgumentException exc)
+					{
+					usage (exc.getMessage());
+					}
+			if (tupleSpaceBudget != null)
+				job.tupleSpaceBudget (tupleSpaceBudget);
 
 			// Execute job.
 			job.main (taskArgs);
@@ -655,7 +747,7 @@ public class pj2
 		(String msg)
 		{
 		System.err.printf ("pj2: %s%n", msg);
-		System.err.println ("Usage: java pj2 [threads=<threads>] [schedule=<schedule>] [chunk=<chunk>] [nodeName=<nodeName>] [cores=<cores>] [gpus=<gpus>] [workers=<workers>] [masterSchedule=<masterSchedule>] [masterChunk=<masterChunk>] [tracker=<host>[:<port>]] [listen=<host>[:<port>]] [debug=<message>[,<message>...]] [jar=<file>] [timelimit=<timelimit>] <jobOrTaskClass> [<arg> ...]");
+		System.err.println ("Usage: java pj2 [threads=<threads>] [schedule=<schedule>] [chunk=<chunk>] [waitPolicy=<waitPolicy>] [affinity=<affinity>] [nodeName=<nodeName>] [cores=<cores>] [gpus=<gpus>] [workers=<workers>] [masterSchedule=<masterSchedule>] [masterChunk=<masterChunk>] [tracker=<host>[:<port>]] [listen=<host>[:<port>]] [debug=<message>[,<message>...]] [jar=<file>] [timelimit=<timelimit>] [tupleServers=<host>:<port>[,<host>:<port>...]] [tupleSpaceBudget=<bytes>] <jobOrTaskClass> [<arg> ...]");
 		System.exit (1);
 		}
 